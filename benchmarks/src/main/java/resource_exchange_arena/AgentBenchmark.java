@@ -0,0 +1,71 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decisions made by a single {@link Agent} during an exchange round. Each call is made by the next
+ * {@link Agent} of the population in turn, part way through a {@link Day} after the time slots have been allocated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentBenchmark {
+
+    @State(Scope.Thread)
+    public static class Requests {
+        Population population;
+
+        /**
+         * Gives each {@link Agent} a request from its neighbour in the shuffled population, asking for the first of
+         * its allocated time slots in exchange for the first of the neighbour's.
+         *
+         * @param population The {@link Population} whose {@link Agent}s receive the requests.
+         */
+        @Setup(Level.Trial)
+        public void setUp(Population population) {
+            this.population = population;
+            ArrayList<Agent> agents = population.agents;
+            for (int i = 0; i < agents.size(); i++) {
+                Agent a = agents.get(i);
+                Agent b = agents.get((i + 1) % agents.size());
+                ArrayList<Integer> request = new ArrayList<>();
+                request.add(b.agentID);
+                request.add(a.publishAllocatedTimeSlots().get(0));
+                request.add(b.publishAllocatedTimeSlots().get(0));
+                a.receiveExchangeRequest(request, b.getAgentType());
+            }
+        }
+    }
+
+    @Benchmark
+    public double calculateSatisfaction(Population population) {
+        return population.nextAgent().calculateSatisfaction(null);
+    }
+
+    @Benchmark
+    public ArrayList<Integer> requestExchange(Population population) {
+        return population.nextAgent().requestExchange(population.advertisingBoard);
+    }
+
+    @Benchmark
+    public boolean considerRequest(Requests requests) {
+        Agent a = requests.population.nextAgent();
+        a.setExchangeRequestApproved(false);
+        return a.considerRequest();
+    }
+}
@@ -0,0 +1,27 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Benchmarks {
+
+    /**
+     * Runs the benchmarks with JMH, writing the results as JSON to 'jmh-result.json' unless another result format or
+     * file is given, so that they can be compared between versions. Any of JMH's options can be given, e.g.
+     * "-p populationSize=96 -p demandCurve=BASE AgentBenchmark" to run a single configuration of a single benchmark,
+     * or "-h" to list them.
+     *
+     * @param args JMH's command line options.
+     * @throws Exception If the benchmarks can't be run.
+     */
+    public static void main(String[] args) throws Exception {
+        ArrayList<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add(0, "-rf");
+            options.add(1, "json");
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,37 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the end of {@link Day} statistics calculated for each {@link Agent} type, and the optimum average
+ * satisfaction of a {@link Day}'s allocation, which costs in proportion to the time slots allocated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculateSatisfactionBenchmark {
+
+    @Benchmark
+    public void statisticalValues(Population population, Blackhole blackhole) {
+        for (int agentType : population.uniqueAgentTypes) {
+            blackhole.consume(CalculateSatisfaction.statisticalValues(population.agents, population.satisfactions,
+                    agentType));
+        }
+    }
+
+    @Benchmark
+    public double optimumAgentSatisfaction(Population population) {
+        return CalculateSatisfaction.optimumAgentSatisfaction(population.agents, population.network);
+    }
+}
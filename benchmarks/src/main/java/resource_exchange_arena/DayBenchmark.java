@@ -0,0 +1,50 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full {@link Day}; allocation, every exchange round, the day's statistics and output, and social learning
+ * by every {@link Agent}. The population's types are restored before each {@link Day} so that it doesn't settle on a
+ * single type as the measurement goes on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DayBenchmark {
+
+    private Population population;
+    private SocialLearning socialLearning;
+
+    @Setup(Level.Trial)
+    public void setUp(Population population) {
+        this.population = population;
+        socialLearning = new SocialLearning(population.populationSize, population.slotsPerAgent,
+                population.populationSize, population.network);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        population.restore();
+    }
+
+    @Benchmark
+    public Day day() throws IOException {
+        return population.simulateDay(Population.WARM_UP_DAYS + 1, socialLearning);
+    }
+}
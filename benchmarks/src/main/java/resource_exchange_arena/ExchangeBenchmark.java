@@ -0,0 +1,60 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full {@link Exchange} round; advertising, requesting, considering and completing exchanges and the round's
+ * statistics. Every round is the first of the {@link Day}, as the population is returned to its initial allocation
+ * before each one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeBenchmark {
+
+    private Population population;
+
+    @Setup(Level.Trial)
+    public void setUp(Population population) {
+        this.population = population;
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        population.restore();
+    }
+
+    @Benchmark
+    public Exchange round() throws IOException {
+        return new Exchange(
+                1,
+                Population.WARM_UP_DAYS + 1,
+                0,
+                population.uniqueAgentTypes,
+                population.agents,
+                population.network,
+                population.orderBook,
+                population.centralPlanner,
+                population.cycles,
+                population.crossRunSummary,
+                null,
+                population.discardedOutput
+        );
+    }
+}
@@ -0,0 +1,324 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+import resource_exchange_arena.parameters.DemandCurves;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class MacroBenchmark {
+    // Every workload starts from the same seed.
+    static final long SEED = Population.SEED;
+    // The canonical population sizes, the largest are only run when asked for as a full day takes minutes or more.
+    static final int[] POPULATION_SIZES = {96, 960, 9600, 100000};
+    static final int[] DEFAULT_POPULATION_SIZES = {96, 960};
+    // Days simulated in each run of a workload for the given population sizes, fewer for larger populations.
+    static final int[] DAYS = {20, 3, 2, 2};
+    // Population size and demand curve of the scaling workloads.
+    static final int SCALING_POPULATION_SIZE = 96;
+    static final String SCALING_DEMAND_CURVE = "BASE";
+    static final int SLOTS_PER_AGENT = 4;
+    static final int[] AGENT_TYPES = {ResourceExchangeArena.SELFISH, ResourceExchangeArena.SOCIAL};
+
+    private static final String HEADER = "Workload,Population Size,Demand Curve,Threads,Runs,Days,Seconds,"
+            + "Days Per Second,Agent Exchanges Per Second,Exchanges Per Second,Peak Heap MB,Scaling Efficiency\n";
+
+    // How the Agents of every workload find a partner for an exchange.
+    private static String exchangeMechanism = Exchange.BOARD;
+
+    /**
+     * Runs fixed, seeded {@link ArenaEnvironment} workloads and reports their throughput, so that the effect of a change
+     * on whole simulations can be measured and compared with an earlier baseline. Each run of a workload simulates a
+     * fixed number of days without social learning, so that every run does the same amount of work. An agent-exchange
+     * is one {@link Agent}'s chance to exchange in one round, so that throughput can be compared between population
+     * sizes.
+     * <p>
+     * The throughput workloads run every population size with every demand curve on a single thread. The scaling
+     * workloads run on 1 up to the given number of threads, each thread simulating its own environment. Strong scaling
+     * splits a fixed number of runs between the threads, while weak scaling gives each thread the same number of runs.
+     * Each thread seeds its runs from its own range, following on from the runs of the threads before it, so the runs
+     * are the same in every invocation however the threads are scheduled.
+     * <p>
+     * Options:
+     * <ul>
+     *     <li>--populations, the population sizes to run, e.g. "96,960,9600,100000", defaults to "96,960".</li>
+     *     <li>--curves, the names of the demand curves to run from {@link DemandCurves}, defaults to all of them.</li>
+     *     <li>--threads, the most threads for the scaling workloads, defaults to the number of processors.</li>
+     *     <li>--runs, the runs of each workload, and of each thread for weak scaling, defaults to 2.</li>
+     *     <li>--mechanism, how the {@link Agent}s find a partner for an exchange, "board", "order-book" or
+     *     "central-planner", defaults to "board".</li>
+     *     <li>--output, the CSV file the results are written to, defaults to "macroBenchmark.csv".</li>
+     *     <li>--baseline, an earlier output to compare the results with.</li>
+     *     <li>--tolerance, the fraction by which throughput may fall or peak heap grow before being flagged as a
+     *     regression, defaults to 0.1.</li>
+     * </ul>
+     *
+     * @param args The options, each followed by its value.
+     * @throws Exception If a workload fails.
+     */
+    public static void main(String @NotNull [] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        int[] populationSizes = options.containsKey("--populations")
+                ? Arrays.stream(options.get("--populations").split(",")).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_POPULATION_SIZES;
+        String[] curves = options.containsKey("--curves") ? options.get("--curves").split(",") : DemandCurves.NAMES;
+        int maxThreads = Integer.parseInt(options.getOrDefault("--threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int runs = Integer.parseInt(options.getOrDefault("--runs", "2"));
+        exchangeMechanism = options.getOrDefault("--mechanism", Exchange.BOARD);
+        double tolerance = Double.parseDouble(options.getOrDefault("--tolerance", "0.1"));
+        File output = new File(options.getOrDefault("--output", "macroBenchmark.csv"));
+
+        List<Workload> workloads = new ArrayList<>();
+        for (int populationSize : populationSizes) {
+            for (String curve : curves) {
+                workloads.add(new Workload("throughput_P" + populationSize + "_" + curve, populationSize, curve,
+                        days(populationSize), runs, 1));
+            }
+        }
+        ArrayList<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) threadCounts.add(threads);
+        threadCounts.add(maxThreads);
+        for (int threads : threadCounts) {
+            workloads.add(new Workload("strong_T" + threads, SCALING_POPULATION_SIZE, SCALING_DEMAND_CURVE,
+                    days(SCALING_POPULATION_SIZE), runs * maxThreads, threads));
+        }
+        for (int threads : threadCounts) {
+            workloads.add(new Workload("weak_T" + threads, SCALING_POPULATION_SIZE, SCALING_DEMAND_CURVE,
+                    days(SCALING_POPULATION_SIZE), runs * threads, threads));
+        }
+
+        // The first workload is run once beforehand so that the measured workloads aren't slowed by compilation.
+        Workload warmUp = workloads.get(0);
+        new Workload("warm_up", warmUp.populationSize, warmUp.demandCurve, warmUp.days, 1, 1).run();
+
+        Map<String, Result> results = new HashMap<>();
+        Writer out = new OutputStreamWriter(System.out);
+        out.write(HEADER);
+        out.flush();
+        for (Workload workload : workloads) {
+            Result result = workload.run();
+            results.put(workload.name, result);
+            if (workload.threads > 1) {
+                Result single = results.get(workload.name.replaceAll("_T\\d+$", "_T1"));
+                result.scalingEfficiency = workload.name.startsWith("strong")
+                        ? single.seconds / (workload.threads * result.seconds)
+                        : single.seconds / result.seconds;
+            } else if (!workload.name.startsWith("throughput")) {
+                result.scalingEfficiency = 1.0;
+            }
+            result.write(out);
+            out.flush();
+        }
+
+        try (FileWriter resultsWriter = new FileWriter(output)) {
+            resultsWriter.write(HEADER);
+            for (Workload workload : workloads) {
+                results.get(workload.name).write(resultsWriter);
+            }
+        }
+        System.out.println("Results written to " + output.getPath());
+
+        if (options.containsKey("--baseline")) {
+            int regressions = compare(results, Path.of(options.get("--baseline")), tolerance);
+            if (regressions > 0) System.exit(1);
+        }
+    }
+
+    /**
+     * @param populationSize {@link Integer} value representing the size of the {@link Agent} population.
+     * @return The number of days simulated in each run for the population size.
+     */
+    static int days(int populationSize) {
+        for (int i = POPULATION_SIZES.length - 1; i >= 0; i--) {
+            if (populationSize >= POPULATION_SIZES[i]) return DAYS[i];
+        }
+        return DAYS[0];
+    }
+
+    /**
+     * Compares the results with an earlier output, flagging every workload whose agent-exchanges per second fell, or
+     * whose peak heap grew, by more than the tolerance.
+     *
+     * @param results   The results of each workload, by name.
+     * @param baseline  {@link Path} of an earlier output.
+     * @param tolerance {@link Double} value representing the fraction by which the results may be worse.
+     * @return The number of regressions found.
+     * @throws IOException On input error.
+     */
+    static int compare(Map<String, Result> results, Path baseline, double tolerance) throws IOException {
+        int regressions = 0;
+        List<String> lines = Files.readAllLines(baseline);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] values = line.split(",");
+            Result result = results.get(values[0]);
+            if (result == null) continue;
+            double baselineThroughput = Double.parseDouble(values[8]);
+            double baselineHeap = Double.parseDouble(values[10]);
+            double throughputChange = result.agentExchangesPerSecond() / baselineThroughput - 1;
+            double heapChange = result.peakHeapMB() / baselineHeap - 1;
+            boolean regression = throughputChange < -tolerance || heapChange > tolerance;
+            if (regression) regressions++;
+            System.out.println((regression ? "REGRESSION " : "ok         ") + values[0]
+                    + String.format(": agent-exchanges per second %+.1f%%, peak heap %+.1f%%",
+                    100 * throughputChange, 100 * heapChange));
+        }
+        System.out.println(regressions + " regressions against " + baseline);
+        return regressions;
+    }
+
+    private static final class Workload {
+        private final String name;
+        private final int populationSize;
+        private final String demandCurve;
+        private final int days;
+        private final int runs;
+        private final int threads;
+
+        /**
+         * @param name           {@link String} identifying the workload in the results and baselines.
+         * @param populationSize {@link Integer} value representing the size of the {@link Agent} population.
+         * @param demandCurve    {@link String} naming the demand curve used by every {@link Agent}.
+         * @param days           {@link Integer} value representing the number of days simulated in each run.
+         * @param runs           {@link Integer} value representing the total number of runs across all threads.
+         * @param threads        {@link Integer} value representing the number of threads simulating at once.
+         */
+        private Workload(String name, int populationSize, String demandCurve, int days, int runs, int threads) {
+            this.name = name;
+            this.populationSize = populationSize;
+            this.demandCurve = demandCurve;
+            this.days = days;
+            this.runs = runs;
+            this.threads = threads;
+        }
+
+        /**
+         * Simulates the workload with its runs split between the threads, each thread simulating its own instrumented
+         * {@link ArenaEnvironment} into a temporary folder that is deleted afterwards.
+         *
+         * @return The throughput and peak heap of the workload.
+         * @throws Exception If the simulations fail.
+         */
+        private Result run() throws Exception {
+            Path folder = Files.createTempDirectory("macroBenchmark");
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            try {
+                List<Future<Instrumentation>> workers = new ArrayList<>();
+                int firstRun = 0;
+                for (int worker = 0; worker < threads; worker++) {
+                    int workerRuns = runs / threads + (worker < runs % threads ? 1 : 0);
+                    String environmentTag = "worker_" + worker;
+                    long workerSeed = SEED + firstRun;
+                    workers.add(pool.submit(() -> simulate(folder, environmentTag, workerSeed, workerRuns)));
+                    firstRun += workerRuns;
+                }
+                Result result = new Result(this);
+                for (Future<Instrumentation> worker : workers) {
+                    Instrumentation instrumentation = worker.get();
+                    result.days += instrumentation.total(Instrumentation.DAYS);
+                    result.agentExchanges += instrumentation.total(Instrumentation.ROUNDS) * populationSize;
+                    result.exchanges += instrumentation.total(Instrumentation.EXCHANGES);
+                }
+                result.seconds = (System.nanoTime() - start) / 1e9;
+                result.peakHeap = heapPools.stream().mapToLong(heapPool -> heapPool.getPeakUsage().getUsed()).sum();
+                return result;
+            } finally {
+                pool.shutdown();
+                try (Stream<Path> paths = Files.walk(folder)) {
+                    paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+                }
+            }
+        }
+
+        /**
+         * Simulates a thread's share of the runs on the current thread, the runs being seeded in turn from the seed
+         * given.
+         */
+        private Instrumentation simulate(Path folder, String environmentTag, long workerSeed, int workerRuns)
+                throws IOException {
+            ResourceExchangeArena.setCurrentSeed(workerSeed);
+            ResourceExchangeArena.setRandom(new CounterBasedRandom(workerSeed));
+            // With no social learning a takeover is recorded on the first day, after which the run continues until
+            // the given number of days have been simulated.
+            return new ArenaEnvironment.Builder(folder.toString(), environmentTag)
+                    .demandCurves(new double[][]{DemandCurves.byName(demandCurve)})
+                    .socialCapital(true)
+                    .simulationRuns(workerRuns)
+                    .days(days + 1)
+                    .populationSize(populationSize)
+                    .slotsPerAgent(SLOTS_PER_AGENT)
+                    .numberOfAgentsToEvolve(0)
+                    .agentTypes(AGENT_TYPES)
+                    .exchangeMechanism(exchangeMechanism)
+                    .instrument(true)
+                    .build()
+                    .instrumentation;
+        }
+    }
+
+    private static final class Result {
+        private final Workload workload;
+        private double seconds;
+        private long days;
+        private long agentExchanges;
+        private long exchanges;
+        private long peakHeap;
+        private double scalingEfficiency = Double.NaN;
+
+        private Result(Workload workload) {
+            this.workload = workload;
+        }
+
+        private double agentExchangesPerSecond() {
+            return agentExchanges / seconds;
+        }
+
+        private double peakHeapMB() {
+            return peakHeap / (1024.0 * 1024.0);
+        }
+
+        private void write(Writer writer) throws IOException {
+            Utilities.write(writer, workload.name, ",",
+                    String.valueOf(workload.populationSize), ",",
+                    workload.demandCurve, ",",
+                    String.valueOf(workload.threads), ",",
+                    String.valueOf(workload.runs), ",",
+                    String.valueOf(days), ",",
+                    String.format(Locale.ROOT, "%.3f", seconds), ",",
+                    String.format(Locale.ROOT, "%.2f", days / seconds), ",",
+                    String.format(Locale.ROOT, "%.0f", agentExchangesPerSecond()), ",",
+                    String.format(Locale.ROOT, "%.0f", exchanges / seconds), ",",
+                    String.format(Locale.ROOT, "%.1f", peakHeapMB()), ",",
+                    Double.isNaN(scalingEfficiency) ? "" : String.format(Locale.ROOT, "%.3f", scalingEfficiency), "\n");
+        }
+    }
+}
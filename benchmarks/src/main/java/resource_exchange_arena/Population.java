@@ -0,0 +1,236 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import resource_exchange_arena.parameters.DemandCurves;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@State(Scope.Thread)
+public class Population {
+    // Every benchmark starts from the same population for a given set of parameters.
+    static final long SEED = 1599767866160L;
+    // Days simulated before measuring, so that the Agents have built up social capital.
+    static final int WARM_UP_DAYS = 10;
+    // Half of the Agents start out social and half selfish.
+    static final int[] AGENT_TYPES = {ResourceExchangeArena.SELFISH, ResourceExchangeArena.SOCIAL};
+
+    @Param({"96", "960"})
+    public int populationSize;
+
+    @Param({"4", "8"})
+    public int slotsPerAgent;
+
+    @Param({"true", "false"})
+    public boolean socialCapital;
+
+    @Param({"BASE", "ALL_ENERGY_USES", "WASHING_DRYING_DISHWASHER", "WDD_SINGLE_PENSIONERS", "WDD_SINGLE_NON_PENSIONERS"})
+    public String demandCurve;
+
+    // The market is that of the simulation's defaults unless others are given, e.g. "-p uniqueTimeSlots=24,96,1440",
+    // "-p topology=,grid,small-world:6:0.1,feeder:3", "-p exchangeMechanism=board,order-book,central-planner" or
+    // "-p tradingCycles=false,true".
+    @Param({"24"})
+    public int uniqueTimeSlots;
+
+    @Param({""})
+    public String topology;
+
+    @Param({"board"})
+    public String exchangeMechanism;
+
+    @Param({"false"})
+    public boolean tradingCycles;
+
+    double[][] demandCurves;
+    double[] totalDemandValues;
+    int[] availabilityCurve;
+    int totalAvailability;
+    ArrayList<Integer> uniqueAgentTypes;
+    Topology network;
+    OrderBook orderBook;
+    CentralPlanner centralPlanner;
+    TradingCycles cycles;
+
+    ArrayList<Agent> agents;
+    double[] satisfactions;
+    CrossRunSummary crossRunSummary;
+    Writer discardedOutput = Writer.nullWriter();
+
+    // The state of every Agent part way through a day, after its allocation but before any exchanges, indexed by
+    // agentID - 1.
+    ArrayList<ArrayList<Integer>> allocations;
+    int[] agentTypes;
+    ArrayList<ArrayList<Integer>> advertisingBoard;
+
+    private int next;
+
+    /**
+     * Creates the population in the same way as a {@link SimulationRun}, simulates a few days without any social
+     * learning, and then gives each {@link Agent} a new allocation of time slots for the day being measured.
+     *
+     * @throws IOException On output error, which can't happen as the output is discarded.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ResourceExchangeArena.setRandom(new Random(SEED));
+
+        totalDemandValues = new double[1];
+        demandCurves = ArenaEnvironment.bucketDemandCurves(
+                new double[][]{DemandCurves.byName(demandCurve)}, uniqueTimeSlots, totalDemandValues);
+        availabilityCurve = new int[uniqueTimeSlots];
+        totalAvailability = ArenaEnvironment.bucketAvailabilityCurve(
+                ResourceExchangeArena.AVAILABILITY_CURVE, availabilityCurve);
+        uniqueAgentTypes = Arrays.stream(AGENT_TYPES).distinct().boxed().sorted()
+                .collect(Collectors.toCollection(ArrayList::new));
+        network = topology.isEmpty() ? null : Topology.of(topology, populationSize, SEED);
+
+        // The population is warmed up with the market being measured, as searching the advertising board grows with
+        // the square of the population.
+        if (!exchangeMechanism.equals(Exchange.BOARD) && !exchangeMechanism.equals(Exchange.ORDER_BOOK)
+                && !exchangeMechanism.equals(Exchange.CENTRAL_PLANNER)) {
+            throw new IllegalArgumentException("Unknown exchange mechanism '" + exchangeMechanism + "'.");
+        }
+        if (!exchangeMechanism.equals(Exchange.BOARD) && network != null) {
+            throw new IllegalArgumentException("Only the advertising board can be combined with a network.");
+        }
+        if (exchangeMechanism.equals(Exchange.CENTRAL_PLANNER) && tradingCycles) {
+            throw new IllegalArgumentException("A central planner can't be combined with trading cycles.");
+        }
+        orderBook = exchangeMechanism.equals(Exchange.ORDER_BOOK)
+                ? new OrderBook(populationSize, uniqueTimeSlots, slotsPerAgent)
+                : null;
+        centralPlanner = exchangeMechanism.equals(Exchange.CENTRAL_PLANNER)
+                ? new CentralPlanner(populationSize, uniqueTimeSlots, slotsPerAgent)
+                : null;
+        cycles = tradingCycles ? new TradingCycles(populationSize, uniqueTimeSlots, slotsPerAgent) : null;
+
+        agents = new ArrayList<>();
+        IntStream.rangeClosed(1, populationSize).forEach(agentNumber -> new Agent(
+                agentNumber,
+                AGENT_TYPES[agentNumber % AGENT_TYPES.length],
+                slotsPerAgent,
+                agents,
+                socialCapital
+        ));
+        Collections.shuffle(agents, ResourceExchangeArena.random());
+        agents.forEach(Agent::initializeFavoursStore);
+
+        satisfactions = new double[populationSize];
+        crossRunSummary = new CrossRunSummary(populationSize, uniqueAgentTypes);
+        SocialLearning noLearning = new SocialLearning(populationSize, slotsPerAgent, 0, network);
+        for (int day = 1; day <= WARM_UP_DAYS; day++) {
+            simulateDay(day, noLearning);
+        }
+
+        allocate();
+    }
+
+    /**
+     * @param day            {@link Integer} value representing the {@link Day} to simulate.
+     * @param socialLearning Used to allow {@link Agent}s to change their strategy at the end of the {@link Day}.
+     * @return The simulated {@link Day}.
+     * @throws IOException On output error, which can't happen as the output is discarded.
+     */
+    Day simulateDay(int day, SocialLearning socialLearning) throws IOException {
+        return new Day(
+                demandCurves,
+                totalDemandValues,
+                availabilityCurve,
+                totalAvailability,
+                null,
+                null,
+                null,
+                network,
+                orderBook,
+                centralPlanner,
+                cycles,
+                day,
+                populationSize,
+                uniqueTimeSlots,
+                slotsPerAgent,
+                uniqueAgentTypes,
+                agents,
+                satisfactions,
+                socialLearning,
+                crossRunSummary,
+                null,
+                discardedOutput,
+                discardedOutput,
+                discardedOutput,
+                1
+        );
+    }
+
+    /**
+     * Each {@link Agent} requests time slots and is given a random allocation as at the start of a {@link Day}, which
+     * is kept so that it can be restored by {@link #restore()}.
+     */
+    private void allocate() {
+        Random random = ResourceExchangeArena.random();
+        SelectionWheel availabilityWheel = SelectionWheel.ofAvailability(availabilityCurve, totalAvailability);
+        SelectionWheel demandWheel = SelectionWheel.ofDemand(demandCurves[0], totalDemandValues[0]);
+        ArrayList<Integer> availableTimeSlots = new ArrayList<>();
+        for (int i = 0; i < populationSize * slotsPerAgent; i++) {
+            availableTimeSlots.add(availabilityWheel.select(random));
+        }
+        Collections.shuffle(availableTimeSlots, random);
+
+        allocations = new ArrayList<>(Collections.nCopies(populationSize, null));
+        agentTypes = new int[populationSize];
+        for (Agent a : agents) {
+            a.resetDailyTracking();
+            a.requestTimeSlots(demandWheel);
+            ArrayList<Integer> allocation = new ArrayList<>();
+            for (int i = 0; i < slotsPerAgent; i++) {
+                allocation.add(availableTimeSlots.remove(availableTimeSlots.size() - 1));
+            }
+            a.receiveAllocatedTimeSlots(allocation);
+            allocations.set(a.agentID - 1, new ArrayList<>(allocation));
+            agentTypes[a.agentID - 1] = a.getAgentType();
+            satisfactions[a.agentID - 1] = a.calculateSatisfaction(null);
+        }
+
+        advertisingBoard = new ArrayList<>();
+        for (Agent a : agents) {
+            ArrayList<Integer> unlockedTimeSlots = a.publishUnlockedTimeSlots();
+            if (!unlockedTimeSlots.isEmpty()) {
+                ArrayList<Integer> advert = new ArrayList<>();
+                advert.add(a.agentID);
+                advert.addAll(unlockedTimeSlots);
+                advertisingBoard.add(advert);
+            }
+        }
+    }
+
+    /**
+     * Returns every {@link Agent} to its allocation and type from before the measurement began.
+     */
+    void restore() {
+        for (Agent a : agents) {
+            a.receiveAllocatedTimeSlots(new ArrayList<>(allocations.get(a.agentID - 1)));
+            a.setType(agentTypes[a.agentID - 1]);
+            if (!a.getExchangeRequestReceived().isEmpty()) a.setExchangeRequestReceived();
+            a.setExchangeRequestApproved(false);
+        }
+    }
+
+    /**
+     * @return Each {@link Agent} of the population in turn.
+     */
+    Agent nextAgent() {
+        Agent a = agents.get(next);
+        next = next + 1 == agents.size() ? 0 : next + 1;
+        return a;
+    }
+}
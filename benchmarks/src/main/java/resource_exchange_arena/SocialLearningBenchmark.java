@@ -0,0 +1,48 @@
+package resource_exchange_arena;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SocialLearning} at the end of a {@link Day} when every {@link Agent} may change its strategy. The
+ * population's types are restored before each measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocialLearningBenchmark {
+
+    private Population population;
+    private SocialLearning socialLearning;
+
+    @Setup(Level.Trial)
+    public void setUp(Population population) {
+        this.population = population;
+        socialLearning = new SocialLearning(population.populationSize, population.slotsPerAgent,
+                population.populationSize, population.network);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() {
+        population.restore();
+    }
+
+    @Benchmark
+    public void learn() {
+        socialLearning.learn(population.agents, population.satisfactions, 1, Population.WARM_UP_DAYS + 1);
+    }
+}
@@ -0,0 +1,163 @@
+import csv
+import os
+import plotly as py
+import sys
+
+from typing import Any, Dict, List
+
+""" Takes the summary of every run written by the CrossRunSummary class and produces line graphs demonstrating how the
+average agent satisfaction and population vary from day to day across all runs. The summary holds one row per day, so
+the graphs are drawn without reading the data of each individual run.
+
+Parameters
+---------
+folderName : str
+    The output destination folder, used to organise output data.
+tag : str
+    A unique tag so that generated graphs can easily be associated with their corresponding data sets.
+summary : str
+    The absolute path of the daily summary required for generating the line graphs.
+"""
+
+# Get the output folder from command line arguments.
+folderName: str = sys.argv[1]
+
+# Unique identifier to identify which run the produced graphs are associated with.
+tag: str = sys.argv[2]
+
+# Get the location of the summary that requires visualising from command line arguments.
+summaryFile: str = sys.argv[3]
+
+# Get the directory in which the generated graphs will be stored.
+baseOutputDirectory: str = \
+    os.path.join(os.path.dirname(os.path.dirname(os.path.dirname(os.path.dirname(__file__)))),
+                 folderName
+                 + '/'
+                 + tag
+                 + '/images')
+
+# Create the output directory if it does not already exist.
+if not os.path.exists(baseOutputDirectory):
+    os.makedirs(baseOutputDirectory)
+
+# Get suitable filenames format for the graphs that will be produced from the summary.
+baseFileName: str = summaryFile.split('/')[-1]
+satisfactionFileName: str = baseFileName.split('dailySummary.')[0] + 'averageSatisfaction.png'
+populationFileName: str = baseFileName.split('dailySummary.')[0] + 'averagePopulation.png'
+
+days: List[int] = []
+mean: Dict[str, List[float]] = {}
+ci: Dict[str, List[float]] = {}
+for name in ['Social Pop', 'Selfish Pop', 'Social Sat', 'Selfish Sat', 'Random Allocation Sat',
+             'Optimum Allocation Sat']:
+    mean[name] = []
+    ci[name] = []
+
+with open(summaryFile) as summaryData:
+    reader = csv.DictReader(summaryData)
+    for row in reader:
+        days.append(int(row['Day']))
+        for name in mean:
+            mean[name].append(float(row[name + ' Mean']))
+            ci[name].append(float(row[name + ' CI']))
+
+
+def band(name: str, population: str, colour: str, fill: str) -> List[Any]:
+    """ The mean of a value across runs and its 95% confidence interval, on the days that the population exists. """
+    x: List[int] = []
+    y: List[float] = []
+    upper: List[float] = []
+    lower: List[float] = []
+    for d in range(len(days)):
+        if population == '' or mean[population][d] > 0:
+            x.append(days[d])
+            y.append(mean[name][d])
+            upper.append(mean[name][d] + ci[name][d])
+            lower.append(mean[name][d] - ci[name][d])
+    return [
+        py.graph_objs.Scatter(
+            x=x + x[::-1],
+            y=upper + lower[::-1],
+            fill='toself',
+            fillcolor=fill,
+            line=dict(color='rgba(255, 255, 255, 0)'),
+            hoverinfo='skip',
+            showlegend=False,
+        ),
+        py.graph_objs.Scatter(
+            x=x,
+            y=y,
+            name=name.split(' Pop')[0].split(' Sat')[0],
+            line=dict(
+                color=colour,
+                dash='solid',
+                width=0.8,
+            ),
+        ),
+    ]
+
+
+def layout(title: str, yTitle: str, yRange: List[float], yTick: float) -> Dict[str, Any]:
+    return dict(
+        title=dict(
+            text=title,
+            xanchor='center',
+            x=0.5,
+        ),
+        xaxis=dict(
+            title='Day',
+            showline=True,
+            linecolor='black',
+            linewidth=1,
+            gridcolor='rgb(225, 225, 225)',
+            gridwidth=1,
+            range=[days[0], days[-1]],
+        ),
+        yaxis=dict(
+            title=yTitle,
+            showline=True,
+            linecolor='black',
+            linewidth=1,
+            gridcolor='rgb(225, 225, 225)',
+            gridwidth=1,
+            range=yRange,
+            tickmode='linear',
+            tick0=0,
+            dtick=yTick,
+        ),
+        margin=dict(
+            l=40,
+            r=30,
+            b=80,
+            t=100,
+        ),
+        paper_bgcolor='rgb(255, 255, 255)',
+        plot_bgcolor='rgb(255, 255, 255)',
+        font=dict(
+            size=16
+        ),
+    )
+
+
+if len(days) > 0:
+    # Average consumer satisfactions for each agent type for each day, with the hypothetical random and optimum
+    # allocations for reference.
+    satisfactionData: List[Any] = \
+        band('Social Sat', 'Social Pop', 'green', 'rgba(0, 128, 0, 0.2)') \
+        + band('Selfish Sat', 'Selfish Pop', 'purple', 'rgba(128, 0, 128, 0.2)') \
+        + band('Random Allocation Sat', '', 'red', 'rgba(255, 0, 0, 0.2)') \
+        + band('Optimum Allocation Sat', '', 'blue', 'rgba(0, 0, 255, 0.2)')
+    fig: Dict[Any, Any] = dict(data=satisfactionData,
+                               layout=layout('Average Satisfaction Across Runs', 'Average consumer satisfaction',
+                                             [0, 1], 0.2))
+    py.io.write_image(fig, os.path.join(baseOutputDirectory, satisfactionFileName), format="png")
+
+    # Average size of each population for each day.
+    populationSize: float = mean['Social Pop'][0] + mean['Selfish Pop'][0]
+    populationData: List[Any] = \
+        band('Social Pop', '', 'green', 'rgba(0, 128, 0, 0.2)') \
+        + band('Selfish Pop', '', 'purple', 'rgba(128, 0, 128, 0.2)')
+    fig = dict(data=populationData,
+               layout=layout('Average Population Across Runs', 'Average population', [0, populationSize],
+                             populationSize / 4))
+    py.io.write_image(fig, os.path.join(baseOutputDirectory, populationFileName), format="png")
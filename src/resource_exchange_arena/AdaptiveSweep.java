@@ -0,0 +1,224 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+class AdaptiveSweep {
+    // Axes of the sweep, each environment is a point with an evolve percentage and a starting social percentage.
+    private static final int EVOLVE_AXIS = 0;
+    private static final int SOCIAL_AXIS = 1;
+
+    private final int resolution;
+    private final double minProbabilityChange;
+    private final int maxEnvironments;
+
+    // Results of the environments that have been run, keyed by evolve percentage then social percentage.
+    private final HashMap<Long, Double> takeoverProbabilities = new HashMap<>();
+    // Starting agent types for each social percentage, the ratios given by the user are kept exactly.
+    private final HashMap<Integer, int[]> agentTypesBySocialPercentage = new HashMap<>();
+    private final TreeSet<Integer> coarseEvolvePercentages = new TreeSet<>();
+    private final TreeSet<Integer> coarseSocialPercentages = new TreeSet<>();
+
+    // Neighbouring environments, the pair whose takeover probabilities differ the most is refined first.
+    private final PriorityQueue<Interval> intervals =
+            new PriorityQueue<>(Comparator.comparingDouble((Interval i) -> i.probabilityChange).reversed());
+
+    /**
+     * Runs an {@link ArenaEnvironment} for a single point of the sweep.
+     */
+    @FunctionalInterface
+    interface EnvironmentRunner {
+        /**
+         * @param fileName         {@link String} detailing specifics about the simulation environment.
+         * @param evolvePercentage {@link Integer} value representing the percentage of agents that may change strategy each day.
+         * @param agentTypes       {@link Integer} array containing the agent types that the simulation will begin with.
+         * @return The proportion of runs in which the social population took over.
+         * @throws IOException On input error.
+         */
+        double takeoverProbability(String fileName, int evolvePercentage, int[] agentTypes) throws IOException;
+    }
+
+    /**
+     * Starts from a coarse grid of evolve percentages and starting ratios and then repeatedly bisects between the
+     * neighbouring environments whose probability of a social takeover differs the most, so that environments are
+     * concentrated where the outcome of the simulation changes.
+     *
+     * @param evolvePercentages    The coarse grid of percentages of agents that may change strategy each day.
+     * @param agentTypesArray      The coarse grid of starting ratios of agent types.
+     * @param resolution           {@link Integer} value representing the smallest gap, in percentage points, that will be bisected.
+     * @param minProbabilityChange The smallest change in takeover probability between neighbours that is worth refining.
+     * @param maxEnvironments      {@link Integer} value representing the most environments that will be run in total.
+     */
+    AdaptiveSweep(
+            int @NotNull [] evolvePercentages,
+            int[] @NotNull [] agentTypesArray,
+            int resolution,
+            double minProbabilityChange,
+            int maxEnvironments
+    ) {
+        this.resolution = Math.max(1, resolution);
+        this.minProbabilityChange = minProbabilityChange;
+        this.maxEnvironments = maxEnvironments;
+
+        for (int evolvePercentage : evolvePercentages) {
+            coarseEvolvePercentages.add(evolvePercentage);
+        }
+        for (int[] agentTypes : agentTypesArray) {
+            int socialPercentage = socialPercentage(agentTypes);
+            coarseSocialPercentages.add(socialPercentage);
+            agentTypesBySocialPercentage.putIfAbsent(socialPercentage, agentTypes);
+        }
+    }
+
+    /**
+     * Runs the coarse grid followed by the refinements, and records the result of every environment in
+     * {@code adaptiveSweep.csv}.
+     *
+     * @param dataOutputFolder {@link String} representing the folder that the set's data is stored in.
+     * @param runner           Runs each environment of the sweep.
+     * @throws IOException On input error.
+     */
+    void run(String dataOutputFolder, EnvironmentRunner runner) throws IOException {
+        FileWriter sweepWriter = new FileWriter(new File(dataOutputFolder, "adaptiveSweep.csv"));
+        Utilities.write(sweepWriter, "Environment", ",", "Evolve Percentage", ",", "Social Percentage",
+                ",", "Social Takeover Probability", "\n");
+
+        for (int evolvePercentage : coarseEvolvePercentages) {
+            for (int socialPercentage : coarseSocialPercentages) {
+                evaluate(evolvePercentage, socialPercentage, runner, sweepWriter);
+            }
+        }
+
+        // Neighbours along each axis of the coarse grid form the initial intervals.
+        for (int evolvePercentage : coarseEvolvePercentages) {
+            Integer previous = null;
+            for (int socialPercentage : coarseSocialPercentages) {
+                if (previous != null) addInterval(SOCIAL_AXIS, evolvePercentage, previous, socialPercentage);
+                previous = socialPercentage;
+            }
+        }
+        for (int socialPercentage : coarseSocialPercentages) {
+            Integer previous = null;
+            for (int evolvePercentage : coarseEvolvePercentages) {
+                if (previous != null) addInterval(EVOLVE_AXIS, socialPercentage, previous, evolvePercentage);
+                previous = evolvePercentage;
+            }
+        }
+
+        while (!intervals.isEmpty() && takeoverProbabilities.size() < maxEnvironments) {
+            Interval interval = intervals.poll();
+            int midpoint = (interval.lower + interval.upper) / 2;
+
+            if (interval.axis == EVOLVE_AXIS) {
+                evaluate(midpoint, interval.fixed, runner, sweepWriter);
+            } else {
+                evaluate(interval.fixed, midpoint, runner, sweepWriter);
+            }
+            addInterval(interval.axis, interval.fixed, interval.lower, midpoint);
+            addInterval(interval.axis, interval.fixed, midpoint, interval.upper);
+        }
+        sweepWriter.close();
+    }
+
+    private void evaluate(int evolvePercentage, int socialPercentage, EnvironmentRunner runner, FileWriter sweepWriter)
+            throws IOException {
+        long key = key(evolvePercentage, socialPercentage);
+        if (takeoverProbabilities.containsKey(key)) return;
+
+        String fileName = "AE_" + evolvePercentage + "_SP_" + socialPercentage;
+        int[] agentTypes = agentTypesBySocialPercentage.computeIfAbsent(socialPercentage, AdaptiveSweep::agentTypes);
+        double takeoverProbability = runner.takeoverProbability(fileName, evolvePercentage, agentTypes);
+        takeoverProbabilities.put(key, takeoverProbability);
+
+        Utilities.write(sweepWriter, fileName, ",", String.valueOf(evolvePercentage), ",",
+                String.valueOf(socialPercentage), ",", String.valueOf(takeoverProbability), "\n");
+        System.out.println("Adaptive sweep environments completed: " + takeoverProbabilities.size());
+    }
+
+    /**
+     * Queues the interval between two evaluated environments for refinement if it is wider than the resolution and
+     * the outcome changes enough across it.
+     */
+    private void addInterval(int axis, int fixed, int lower, int upper) {
+        if (upper - lower <= resolution) return;
+
+        Double lowerProbability = axis == EVOLVE_AXIS
+                ? takeoverProbabilities.get(key(lower, fixed))
+                : takeoverProbabilities.get(key(fixed, lower));
+        Double upperProbability = axis == EVOLVE_AXIS
+                ? takeoverProbabilities.get(key(upper, fixed))
+                : takeoverProbabilities.get(key(fixed, upper));
+        if (lowerProbability == null || upperProbability == null) return;
+
+        double probabilityChange = Math.abs(upperProbability - lowerProbability);
+        if (probabilityChange < minProbabilityChange) return;
+
+        intervals.add(new Interval(axis, fixed, lower, upper, probabilityChange));
+    }
+
+    private static long key(int evolvePercentage, int socialPercentage) {
+        return ((long) evolvePercentage << 32) | (socialPercentage & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param agentTypes {@link Integer} array containing the agent types that the simulation will begin with.
+     * @return The percentage of the starting population that are social, to the nearest whole percent.
+     */
+    static int socialPercentage(int @NotNull [] agentTypes) {
+        int social = 0;
+        for (int type : agentTypes) {
+            if (type == ResourceExchangeArena.SOCIAL) social++;
+        }
+        return Math.round(100.0f * social / agentTypes.length);
+    }
+
+    /**
+     * Creates the shortest starting ratio with the given percentage of social agents, with the social agents spread
+     * evenly through the ratio as agents are assigned their type in order.
+     *
+     * @param socialPercentage {@link Integer} value representing the percentage of agents that should start as social.
+     * @return {@link Integer} array of agent types with the given proportion of social agents.
+     */
+    static int @NotNull [] agentTypes(int socialPercentage) {
+        int divisor = gcd(socialPercentage, 100);
+        int length = 100 / divisor;
+        int social = socialPercentage / divisor;
+
+        int[] agentTypes = new int[length];
+        for (int i = 0; i < length; i++) {
+            boolean isSocial = (i + 1) * social / length > i * social / length;
+            agentTypes[i] = isSocial ? ResourceExchangeArena.SOCIAL : ResourceExchangeArena.SELFISH;
+        }
+        return agentTypes;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * A gap between two evaluated environments along one axis of the sweep, with the other axis held fixed.
+     */
+    private static final class Interval {
+        private final int axis;
+        private final int fixed;
+        private final int lower;
+        private final int upper;
+        private final double probabilityChange;
+
+        Interval(int axis, int fixed, int lower, int upper, double probabilityChange) {
+            this.axis = axis;
+            this.fixed = fixed;
+            this.lower = lower;
+            this.upper = upper;
+            this.probabilityChange = probabilityChange;
+        }
+    }
+}
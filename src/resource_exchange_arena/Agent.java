@@ -4,9 +4,19 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 class Agent {
+    // The reasons an Agent can give for its decision on an exchange request.
+    static final int IMPROVES_SATISFACTION = 1;
+    static final int REPAYS_SOCIAL_CAPITAL = 2;
+    static final int NEUTRAL_ACCEPTED = 3;
+    static final int TIME_SLOT_NOT_HELD = 4;
+    static final int LOWERS_SATISFACTION = 5;
+    static final int NO_IMPROVEMENT = 6;
+    static final int NO_SOCIAL_CAPITAL_OWED = 7;
+
     private final boolean usesSocialCapital;
     private final int numberOfTimeSlotsWanted;
     private final ArrayList<Integer> requestedTimeSlots = new ArrayList<>();
@@ -20,6 +30,7 @@ class Agent {
     private ArrayList<Integer> allocatedTimeSlots = new ArrayList<>();
     private ArrayList<Integer> exchangeRequestReceived = new ArrayList<>();
     private boolean exchangeRequestApproved;
+    private int decisionReason;
     private int totalSocialCapital;
     private int dailySocialCapitalExchanges;
     private int dailyNoSocialCapitalExchanges;
@@ -117,6 +128,15 @@ class Agent {
         exchangeRequestApproved = approved;
     }
 
+    /**
+     * Getter for why the {@link Agent} accepted or rejected the current received exchange request.
+     *
+     * @return {@link Integer} value representing the reason for the decision, one of the {@link Agent}'s reason constants.
+     */
+    int getDecisionReason() {
+        return decisionReason;
+    }
+
     /**
      * Getter for the currently received exchange request.
      *
@@ -152,36 +172,38 @@ class Agent {
     }
 
     /**
-     * Identifies all other {@link Agent}s in the {@link ResourceExchangeArena} and initialises counts of favours given to and received from
-     * each other {@link Agent}.
-     *
-     * @param agents An {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * Clears the {@link Agent}'s relations with all other {@link Agent}s in the {@link ResourceExchangeArena}.
+     * Initially no favours are owed to or have been given to any other {@link Agent}, and a relation is only stored once
+     * a favour is recorded with that {@link Agent}, so the memory used grows with the exchanges made rather than with
+     * the square of the population.
      */
-    void initializeFavoursStore(ArrayList<Agent> agents) {
+    void initializeFavoursStore() {
         if (usesSocialCapital) {
-            if (!favoursGiven.isEmpty()) {
-                favoursGiven.clear();
-            }
-            if (!favoursOwed.isEmpty()) {
-                favoursOwed.clear();
-            }
-            // Initially, no favours are owed or have been given to any other Agent.
-            // Store a reference to the new relations in the Agents corresponding lists of relations.
-            agents.stream().filter(a -> a.agentID != agentID).forEach(a -> {
-                ArrayList<Integer> favoursOwedRelation = new ArrayList<>();
-                ArrayList<Integer> favoursGivenRelation = new ArrayList<>();
-                favoursOwedRelation.add(a.agentID);
-                favoursOwedRelation.add(0);
-                favoursGivenRelation.add(a.agentID);
-                favoursGivenRelation.add(0);
-                favoursOwed.add(favoursOwedRelation);
-                favoursGiven.add(favoursGivenRelation);
-            });
-
+            favoursGiven.clear();
+            favoursOwed.clear();
             totalSocialCapital = 0;
         }
     }
 
+    /**
+     * Restores the relations and social capital the {@link Agent} had when a {@link Checkpoint} was taken.
+     *
+     * @param totalSocialCapital {@link Integer} value representing the {@link Agent}'s unspent social capital.
+     * @param owed               Pairs of agentID and the number of favours owed to that {@link Agent}.
+     * @param given              Pairs of agentID and the number of favours given to that {@link Agent}.
+     */
+    void restoreState(int totalSocialCapital, int @NotNull [] owed, int @NotNull [] given) {
+        favoursOwed.clear();
+        favoursGiven.clear();
+        for (int i = 0; i < owed.length; i += 2) {
+            favoursOwed.add(new ArrayList<>(List.of(owed[i], owed[i + 1])));
+        }
+        for (int i = 0; i < given.length; i += 2) {
+            favoursGiven.add(new ArrayList<>(List.of(given[i], given[i + 1])));
+        }
+        this.totalSocialCapital = totalSocialCapital;
+    }
+
     /**
      * Getter for the current amount of unspent social capital the {@link Agent} has.
      *
@@ -279,12 +301,12 @@ class Agent {
 
     /**
      * Checks the time slots that exist in the simulation and makes a new request for a number of unique time slots,
-     * according to how many slots the {@link Agent} wants and the given demand curve.
+     * according to how many slots the {@link Agent} wants and the given demand.
      *
-     * @param demandCurve An array of {@link Double}s representing the demand curve that the {@link Agent} should base its requests around.
+     * @param demandWheel The {@link SelectionWheel} of the demand curve or household that the {@link Agent} should base its requests around.
      * @return The time slots that the {@link Agent} has requested.
      */
-    ArrayList<Integer> requestTimeSlots(double[] demandCurve, double totalDemand) {
+    ArrayList<Integer> requestTimeSlots(@NotNull SelectionWheel demandWheel) {
 
         if (!requestedTimeSlots.isEmpty()) {
             requestedTimeSlots.clear();
@@ -292,16 +314,9 @@ class Agent {
 
         for (int i = 1; i <= numberOfTimeSlotsWanted; i++) {
             // Get the simulations seeded Random object.
-            Random random = ResourceExchangeArena.random;
-
-            // Selects a time slot based on the demand curve.
-            int wheelSelector = random.nextInt((int) (totalDemand * 10));
-            int wheelCalculator = 0;
-            int timeSlot = 0;
-            while (wheelCalculator < wheelSelector) {
-                wheelCalculator = wheelCalculator + ((int) (demandCurve[timeSlot] * 10));
-                timeSlot++;
-            }
+            Random random = ResourceExchangeArena.random();
+
+            int timeSlot = demandWheel.select(random);
 
             // Ensures all requested time slots are unique.
             if (requestedTimeSlots.contains(timeSlot)) i--;
@@ -310,6 +325,21 @@ class Agent {
         return requestedTimeSlots;
     }
 
+    /**
+     * Makes the request for time slots that the {@link ScenarioBank} holds for this {@link Agent} on the given day,
+     * rather than sampling a new request.
+     *
+     * @param scenarioBank The {@link ScenarioBank} being replayed.
+     * @param run          {@link Integer} value identifying the current simulation run.
+     * @param day          {@link Integer} value representing the current {@link Day} being simulated.
+     * @return The time slots that the {@link Agent} has requested.
+     */
+    ArrayList<Integer> requestTimeSlots(@NotNull ScenarioBank scenarioBank, int run, int day) {
+        requestedTimeSlots.clear();
+        scenarioBank.requestedTimeSlots(run, day, agentID, requestedTimeSlots);
+        return requestedTimeSlots;
+    }
+
     /**
      * Getter method for retrieving the time slots that the {@link Agent} has currently requested.
      *
@@ -387,7 +417,7 @@ class Agent {
         // If all requested have been allocated, the Agent has no need to request an exchange.
         if (!targetTimeSlots.isEmpty()) {
             // Search the advertising board for a potential exchange.
-            Collections.shuffle(advertisingBoard, ResourceExchangeArena.random);
+            Collections.shuffle(advertisingBoard, ResourceExchangeArena.random());
             advertSelection:
             for (ArrayList<Integer> advert : advertisingBoard) {
                 for (int j = 1; j < advert.size(); j++) {
@@ -437,6 +467,7 @@ class Agent {
         // Create a new local list of time slots in order to test how the Agents satisfaction would change after the
         // potential exchange.
         ArrayList<Integer> potentialAllocatedTimeSlots = new ArrayList<>(allocatedTimeSlots);
+        decisionReason = TIME_SLOT_NOT_HELD;
         // Check this Agent still has the time slot requested.
         if (potentialAllocatedTimeSlots.contains(exchangeRequestReceived.get(1))) {
             potentialAllocatedTimeSlots.remove(exchangeRequestReceived.get(1));
@@ -453,6 +484,7 @@ class Agent {
                 // with the Agent who made the request.
                 if (Double.compare(potentialSatisfaction, currentSatisfaction) > 0) {
                     exchangeRequestApproved = true;
+                    decisionReason = IMPROVES_SATISFACTION;
                     dailyNoSocialCapitalExchanges++;
                 } else if (Double.compare(potentialSatisfaction, currentSatisfaction) == 0) {
                     if (usesSocialCapital) {
@@ -471,20 +503,31 @@ class Agent {
 
                         if (favoursOwedToRequester > favoursGivenToRequester) {
                             exchangeRequestApproved = true;
+                            decisionReason = REPAYS_SOCIAL_CAPITAL;
                             dailySocialCapitalExchanges++;
+                        } else {
+                            decisionReason = NO_SOCIAL_CAPITAL_OWED;
                         }
                     } else {
                         // When social capital isn't used, social agents always accept neutral exchanges.
                         exchangeRequestApproved = true;
+                        decisionReason = NEUTRAL_ACCEPTED;
                         dailyNoSocialCapitalExchanges++;
                     }
+                } else {
+                    decisionReason = LOWERS_SATISFACTION;
                 }
             } else {
                 // Selfish Agents and Agents with no known type use the default selfish approach.
                 // Selfish Agents only accept offers that improve their individual satisfaction.
                 if (Double.compare(potentialSatisfaction, currentSatisfaction) > 0) {
                     exchangeRequestApproved = true;
+                    decisionReason = IMPROVES_SATISFACTION;
                     dailyNoSocialCapitalExchanges++;
+                } else if (Double.compare(potentialSatisfaction, currentSatisfaction) == 0) {
+                    decisionReason = NO_IMPROVEMENT;
+                } else {
+                    decisionReason = LOWERS_SATISFACTION;
                 }
             }
             if (!exchangeRequestApproved) {
@@ -531,13 +574,7 @@ class Agent {
             if (Double.compare(newSatisfaction, previousSatisfaction) > 0
                     && agentType == ResourceExchangeArena.SOCIAL) {
 
-                for (ArrayList<Integer> favours : favoursOwed) {
-                    if (favours.get(0).equals(agentID)) {
-                        int currentFavour = favours.get(1);
-                        favours.set(1, currentFavour + 1);
-                        break;
-                    }
-                }
+                recordFavour(favoursOwed, agentID);
                 SCGain = true;
             }
         }
@@ -570,19 +607,74 @@ class Agent {
             if (Double.compare(newSatisfaction, previousSatisfaction) <= 0
                     && agentType == ResourceExchangeArena.SOCIAL) {
 
-                for (ArrayList<Integer> favours : favoursGiven) {
-                    if (favours.get(0).equals(offer.get(0))) {
-                        int currentFavour = favours.get(1);
-                        favours.set(1, currentFavour + 1);
-                        break;
-                    }
-                }
+                recordFavour(favoursGiven, offer.get(0));
                 scLoss = true;
             }
         }
         return scLoss;
     }
 
+    /**
+     * Completes this {@link Agent}'s part of a trading cycle, receiving a time slot that it wants from the next
+     * {@link Agent} in the cycle and giving a time slot that it doesn't need to the previous {@link Agent}. As the
+     * {@link Agent} always improves its satisfaction, it is treated as having requested the time slot it receives and
+     * as having accepted the request for the time slot it gives.
+     *
+     * @param receivedTimeSlot The time slot that the {@link Agent} receives.
+     * @param givenTimeSlot    The time slot that the {@link Agent} gives away.
+     * @param agentID          The ID of the {@link Agent} that gives this {@link Agent} the time slot it receives.
+     * @return Whether the giving {@link Agent} gained social capital.
+     */
+    boolean completeCycleExchange(int receivedTimeSlot, int givenTimeSlot, int agentID) {
+        boolean scGain = false;
+        allocatedTimeSlots.remove(Integer.valueOf(givenTimeSlot));
+        allocatedTimeSlots.add(receivedTimeSlot);
+
+        if (usesSocialCapital && agentType == ResourceExchangeArena.SOCIAL) {
+            recordFavour(favoursOwed, agentID);
+            scGain = true;
+        }
+        dailyNoSocialCapitalExchanges++;
+        dailyAcceptedRequestedExchanges++;
+        return scGain;
+    }
+
+    /**
+     * Completes a trade that a central planner imposes on this {@link Agent}, receiving one time slot and giving away
+     * another. As no {@link Agent} chose the trade, no favours are recorded and it counts as an exchange made without
+     * social capital, in which the {@link Agent} requested the time slot it receives and accepted the request for the
+     * time slot it gives.
+     *
+     * @param receivedTimeSlot The time slot that the {@link Agent} receives.
+     * @param givenTimeSlot    The time slot that the {@link Agent} gives away.
+     */
+    void completePlannedExchange(int receivedTimeSlot, int givenTimeSlot) {
+        allocatedTimeSlots.remove(Integer.valueOf(givenTimeSlot));
+        allocatedTimeSlots.add(receivedTimeSlot);
+        dailyNoSocialCapitalExchanges++;
+        dailyAcceptedRequestedExchanges++;
+    }
+
+    /**
+     * Adds a favour to the relation with another {@link Agent}, storing the relation if it is the first favour.
+     *
+     * @param ledger  Either the favours owed or the favours given by this {@link Agent}.
+     * @param agentID The ID of the other {@link Agent}.
+     */
+    private static void recordFavour(@NotNull ArrayList<ArrayList<Integer>> ledger, int agentID) {
+        for (ArrayList<Integer> favours : ledger) {
+            if (favours.get(0).equals(agentID)) {
+                int currentFavour = favours.get(1);
+                favours.set(1, currentFavour + 1);
+                return;
+            }
+        }
+        ArrayList<Integer> favours = new ArrayList<>();
+        favours.add(agentID);
+        favours.add(1);
+        ledger.add(favours);
+    }
+
     /**
      * Calculates the {@link Agent}'s satisfaction with a given list of time slots by comparing the list with the time slots
      * requested by this {@link Agent}.
@@ -4,19 +4,25 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.Writer;
+import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Base64;
 import java.util.stream.Collectors;
 
 public class ArenaEnvironment {
+    // Bucketed demand is given per hour, whatever the length of the time slots.
+    private static final int HOURS_PER_DAY = 24;
+
     // Data that is collected over simulation runs is held within the arenaEnvironment.
-    ArrayList<ArrayList<Double>> keyDaysData = new ArrayList<>();
-    ArrayList<Integer> maxExchanges = new ArrayList<>();
+    KeyDaysData keyDaysData = new KeyDaysData();
+    // The time spent in each phase of the simulations and the counts of what happened, when instrumented.
+    Instrumentation instrumentation;
 
     /**
      * The arena is the environment in which all simulations take place.
@@ -27,6 +33,7 @@ public class ArenaEnvironment {
      * @param availabilityCurve       {@link Integer} array of energy availability used by the simulation.
      * @param socialCapital           {@link Boolean} value that determines whether social {@link Agent}s will utilise social capital.
      * @param simulationRuns          {@link Integer} value representing the number of simulations to be run and averaged.
+     * @param sequentialStopping      Decides the number of simulations to be run when it is chosen adaptively, otherwise {@code null}.
      * @param days                    {@link Integer} value representing the number of {@link Day}s to be simulated.
      * @param populationSize          {@link Integer} value representing the size of the initial {@link Agent} population.
      * @param uniqueTimeSlots         {@link Integer} value representing the number of unique time slots available in the simulation.
@@ -35,18 +42,29 @@ public class ArenaEnvironment {
      * @param agentTypes              {@link Integer} array containing the {@link Agent} types that the simulation will begin with. The same type can exist multiple times in the array where more {@link Agent}s of one type are required.
      * @param singleAgentType         {@link Boolean} value specifying whether only a single {@link Agent} type should exist, used for establishing baseline results.
      * @param selectedSingleAgentType {@link Integer} value representing the single {@link Agent} type to be modelled when {@code singleAgentType} is true.
-     * @param pythonExe               {@link String} representing the system path to python environment executable.
+     * @param scenarioBank            Replays the same pre-generated requested and available time slots in every environment, or {@code null} to sample them each {@link Day}.
+     * @param profileLibrary          Gives each {@link Agent} a household's demand of its own, or {@code null} to share the demand curves.
+     * @param shardedMarket           Divides each run's {@link Agent}s into regional markets, or {@code null} to trade in a single global market.
+     * @param topology                The network that limits which {@link Agent}s can trade with and learn from each other, or {@code null} for a complete network.
+     * @param exchangeMechanism       {@link String} naming how {@link Agent}s find a partner for an exchange, {@link Exchange#BOARD}, {@link Exchange#ORDER_BOOK} or {@link Exchange#CENTRAL_PLANNER}.
+     * @param tradingCycles           {@link Boolean} value that determines whether {@link Agent}s also trade around cycles after each round's pairwise exchanges.
+     * @param checkpointInterval      {@link Integer} value representing the number of {@link Day}s between snapshots that an interrupted environment can be resumed from, or 0 to disable snapshots.
+     * @param resultCache             Reuses the results of environments that have already been simulated, or {@code null} to always simulate.
+     * @param traceExchanges          {@link Boolean} value that determines whether every step of every exchange is recorded in an {@link ExchangeEventLog}.
+     * @param instrument              {@link Boolean} value that determines whether the time spent in each phase of the simulations is recorded.
+     * @param pythonExe               {@link String} representing the system path to python environment executable, or {@code null} to skip visualisation.
      * @param pythonPath              {@link String} representing the system path to the python data visualiser.
      * @throws IOException On input error.
      * @see IOException
      */
-    ArenaEnvironment(
+    private ArenaEnvironment(
             String folderName,
             String environmentTag,
             double[][] demandCurves,
             int[] availabilityCurve,
             boolean socialCapital,
             int simulationRuns,
+            SequentialStopping sequentialStopping,
             int days,
             int populationSize,
             int uniqueTimeSlots,
@@ -55,11 +73,71 @@ public class ArenaEnvironment {
             int @NotNull [] agentTypes,
             boolean singleAgentType,
             int selectedSingleAgentType,
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            ShardedMarket shardedMarket,
+            Topology topology,
+            String exchangeMechanism,
+            boolean tradingCycles,
+            int checkpointInterval,
+            ResultCache resultCache,
+            boolean traceExchanges,
+            boolean instrument,
             String pythonExe,
             String pythonPath
     ) throws IOException {
 
+        // Regions sample their own time slots and trade out of sight of the exchange log.
+        if (shardedMarket != null && scenarioBank != null) {
+            throw new IllegalArgumentException("A scenario bank can't be replayed by a sharded market.");
+        }
+        if (shardedMarket != null && traceExchanges) {
+            throw new IllegalArgumentException("The exchanges of a sharded market can't be traced.");
+        }
+        // The bank's requests were generated from the demand curves.
+        if (profileLibrary != null && scenarioBank != null) {
+            throw new IllegalArgumentException("A scenario bank can't be replayed with households from a profile library.");
+        }
+        // Regions are drawn at random each run, so they would cut across the edges of a network.
+        if (topology != null && shardedMarket != null) {
+            throw new IllegalArgumentException("A sharded market can't be combined with a network.");
+        }
+        // Regions make their own pairwise exchanges.
+        if (tradingCycles && shardedMarket != null) {
+            throw new IllegalArgumentException("A sharded market can't trade around cycles.");
+        }
+        if (!exchangeMechanism.equals(Exchange.BOARD) && !exchangeMechanism.equals(Exchange.ORDER_BOOK)
+                && !exchangeMechanism.equals(Exchange.CENTRAL_PLANNER)) {
+            throw new IllegalArgumentException("Unknown exchange mechanism '" + exchangeMechanism + "', expected '"
+                    + Exchange.BOARD + "', '" + Exchange.ORDER_BOOK + "' or '" + Exchange.CENTRAL_PLANNER + "'.");
+        }
+        // Regions search their own boards, and the book holds the orders of the whole population.
+        if (exchangeMechanism.equals(Exchange.ORDER_BOOK) && shardedMarket != null) {
+            throw new IllegalArgumentException("A sharded market can't match requests through an order book.");
+        }
+        if (exchangeMechanism.equals(Exchange.ORDER_BOOK) && topology != null) {
+            throw new IllegalArgumentException("An order book can't be combined with a network.");
+        }
+        // The planner moves time slots between any Agents of the whole population, and leaves no cycle to trade.
+        if (exchangeMechanism.equals(Exchange.CENTRAL_PLANNER) && shardedMarket != null) {
+            throw new IllegalArgumentException("A sharded market can't be reallocated by a central planner.");
+        }
+        if (exchangeMechanism.equals(Exchange.CENTRAL_PLANNER) && topology != null) {
+            throw new IllegalArgumentException("A central planner can't be combined with a network.");
+        }
+        if (exchangeMechanism.equals(Exchange.CENTRAL_PLANNER) && tradingCycles) {
+            throw new IllegalArgumentException("A central planner can't be combined with trading cycles.");
+        }
+        if (topology != null && topology.agents() != populationSize) {
+            throw new IllegalArgumentException("The network has " + topology.agents() + " agents, but the population has "
+                    + populationSize + ".");
+        }
+
         System.out.println("Starting simulation...");
+        ProgressServer.environmentStarted(environmentTag);
+
+        // Times each phase of the simulations, when enabled.
+        instrumentation = instrument ? Instrumentation.begin() : null;
 
         // Array of the unique agent types used in the simulation.
         ArrayList<Integer> uniqueAgentTypes =
@@ -72,62 +150,9 @@ public class ArenaEnvironment {
         Path dataOutputPath = Path.of(dataOutputFolder);
         Files.createDirectories(dataOutputPath);
 
-        // Stores the amount of unspent social capital each agent has accumulated.
+        // Stores the state of the system at the end of each day, this is also used by the visualiser.
         File allDailyData = new File(dataOutputFolder, "dailyData.csv");
 
-        FileWriter allDailyDataCSVWriter = new FileWriter(allDailyData);
-
-        Utilities.write(allDailyDataCSVWriter, "Simulation Run",
-                ",", "Day",
-                ",", "Social Pop",
-                ",", "Selfish Pop",
-                ",", "Social Sat",
-                ",", "Selfish Sat",
-                ",", "Social SD",
-                ",", "Selfish SD",
-                ",", "Social Upper Quartile",
-                ",", "Selfish Upper Quartile",
-                ",", "Social Lower Quartile",
-                ",", "Selfish Lower Quartile",
-                ",", "Social 95th Percentile",
-                ",", "Selfish 95th Percentile",
-                ",", "Social Max",
-                ",", "Selfish Max",
-                ",", "Social Min",
-                ",", "Selfish Min",
-                ",", "Social Median",
-                ",", "Selfish Median",
-                ",", "Random Allocation Sat",
-                ",", "Optimum Allocation Sat", "\n");
-
-        // Stores the amount of unspent social capital each agent has accumulated.
-        File perAgentData = new File(dataOutputFolder, "agentData.csv");
-
-        FileWriter perAgentDataCSVWriter = new FileWriter(perAgentData);
-
-        Utilities.write(perAgentDataCSVWriter, "Simulation Run",
-                ",", "Day",
-                ",", "Agent Type",
-                ",", "Satisfaction",
-                ",", "Rejected Received Exchanges",
-                ",", "Accepted Received Exchanges",
-                ",", "Rejected Requested Exchanges",
-                ",", "Accepted Requested Exchanges",
-                ",", "Social Capital Exchanges",
-                ",", "No Social Capital Exchanges",
-                ",", "Unspent Social Capital", "\n");
-
-        // Stores the satisfaction of each individual Agent at the end of every round throughout the simulation.
-        File exchangeData = new File(dataOutputFolder, "exchangeData.csv");
-
-        FileWriter eachRoundDataCSVWriter = new FileWriter(exchangeData);
-
-        Utilities.write(eachRoundDataCSVWriter, "Simulation Run",
-                ",", "Day",
-                ",", "Round",
-                ",", "Agent Type",
-                ",", "Satisfaction", "\n");
-
         // Stores the key data about the simulation about to begin in the data output location.
         File simulationData = new File(folderName + "/" + environmentTag, "simulationData.txt");
 
@@ -135,13 +160,19 @@ public class ArenaEnvironment {
 
         Utilities.write(simulationDataWriter, "Simulation Information: \n\n",
                 "Seed: ",
-                String.valueOf(ResourceExchangeArena.seed),
+                String.valueOf(ResourceExchangeArena.currentSeed()),
+                "\n", "Random source: ",
+                CounterBasedRandom.isCounterBased(ResourceExchangeArena.random()) ? "counter based" : "legacy",
+                "\n", "Random state: ",
+                Base64.getEncoder().encodeToString(ResultCache.serialize(ResourceExchangeArena.random())),
                 "\n", "Single agent type: ",
                 String.valueOf(singleAgentType),
                 "\n", "Use social capital: ",
                 String.valueOf(socialCapital),
                 "\n", "Simulation runs: ",
-                String.valueOf(simulationRuns),
+                sequentialStopping == null ? String.valueOf(simulationRuns)
+                        : "adaptive, in batches of " + sequentialStopping.batchSize()
+                        + " up to " + sequentialStopping.maximumRuns(),
                 "\n", "Days after strategy takeover: ",
                 String.valueOf(days),
                 "\n", "Population size: ",
@@ -150,6 +181,20 @@ public class ArenaEnvironment {
                 String.valueOf(uniqueTimeSlots),
                 "\n", "Slots per agent: ",
                 String.valueOf(slotsPerAgent),
+                "\n", "Scenarios: ",
+                scenarioBank == null ? "sampled each day" : scenarioBank.toString(),
+                "\n", "Demand: ",
+                profileLibrary == null ? "demand curves" : profileLibrary.file() + " " + profileLibrary,
+                "\n", "Curves checksum: ",
+                Long.toHexString(curvesChecksum(demandCurves, availabilityCurve)),
+                "\n", "Market: ",
+                shardedMarket == null ? "global" : shardedMarket.toString(),
+                "\n", "Network: ",
+                topology == null ? "complete" : topology.source() + " " + topology,
+                "\n", "Exchange mechanism: ",
+                exchangeMechanism,
+                "\n", "Trading cycles: ",
+                String.valueOf(tradingCycles),
                 "\n", "Number of agents to evolve: ",
                 String.valueOf(numberOfAgentsToEvolve),
                 "\n", "Starting ratio of agent types: ");
@@ -164,63 +209,39 @@ public class ArenaEnvironment {
             simulationDataWriter.append("Agent type: ").append(String.valueOf(selectedSingleAgentType)).append("\n");
         simulationDataWriter.append("\n\n");
 
-        // The demand curves are bucketed before the simulations for efficiency, as they will all use the same bucketed values.
-        double[][] bucketedDemandCurves = new double[demandCurves.length][uniqueTimeSlots];
+        // The curves are bucketed before the simulations for efficiency, as they will all use the same bucketed values.
         double[] totalDemandValues = new double[demandCurves.length];
-
-        for (int i = 0; i < demandCurves.length; i++) {
-            double[] bucketedDemandCurve = new double[uniqueTimeSlots];
-            int bucket = 0;
-            int bucketFill = 0;
-            for (int j = 0; j < demandCurves[i].length; j++) {
-                bucketedDemandCurve[bucket] = bucketedDemandCurve[bucket] + demandCurves[i][j];
-                bucketFill++;
-                if (bucketFill == 6) {
-                    // Rounding to fix precision errors.
-                    bucketedDemandCurve[bucket] = Math.round(bucketedDemandCurve[bucket] * 10.0) / 10.0;
-                    bucketFill = 0;
-                    bucket++;
-                }
-            }
-            bucketedDemandCurves[i] = bucketedDemandCurve;
-
-            // The total demand is also calculated here for efficiency.
-            double totalDemand = Arrays.stream(bucketedDemandCurve).sum();
-            totalDemand = Math.round(totalDemand * 10.0) / 10.0;
-            totalDemandValues[i] = totalDemand;
-        }
-
-        // The availability curve is bucketed before the simulations for efficiency, as they will all use the same bucketed values.
+        double[][] bucketedDemandCurves = bucketDemandCurves(demandCurves, uniqueTimeSlots, totalDemandValues);
         int[] bucketedAvailabilityCurve = new int[uniqueTimeSlots];
-        int totalAvailability = 0;
+        int totalAvailability = bucketAvailabilityCurve(availabilityCurve, bucketedAvailabilityCurve);
 
-        int bucket = 0;
-        int bucketFill = 0;
-        int bucketValue = 0;
-        for (int j : availabilityCurve) {
-            totalAvailability += j;
-            bucketValue += j;
-            bucketFill++;
-
-            if (bucketFill == 2) {
-                bucketedAvailabilityCurve[bucket] = bucketValue;
-                bucket++;
-                bucketValue = 0;
-                bucketFill = 0;
-            }
+        if (scenarioBank != null) {
+            scenarioBank.prepare(
+                    bucketedDemandCurves,
+                    totalDemandValues,
+                    bucketedAvailabilityCurve,
+                    totalAvailability,
+                    populationSize,
+                    slotsPerAgent
+            );
         }
 
-        // Run as many simulations as has been requested.
-        for (int simulationRun = 1; simulationRun <= simulationRuns; simulationRun++) {
-
-            // Create a new simulation run.
-            new SimulationRun(
+        // Identifies the environment's parameters and starting random state, for reuse of earlier results.
+        String environmentKey = null;
+        if (resultCache != null || checkpointInterval > 0) {
+            environmentKey = ResultCache.key(
                     bucketedDemandCurves,
                     totalDemandValues,
                     bucketedAvailabilityCurve,
-                    totalAvailability,
+                    socialCapital,
+                    sequentialStopping == null ? String.valueOf(simulationRuns) : sequentialStopping.toString(),
+                    scenarioBank == null ? "sampled" : scenarioBank.toString(),
+                    shardedMarket == null ? null : shardedMarket.toString(),
+                    profileLibrary == null ? null : profileLibrary.toString(),
+                    topology == null ? null : topology.toString(),
+                    exchangeMechanism,
+                    tradingCycles,
                     days,
-                    maxExchanges,
                     populationSize,
                     uniqueTimeSlots,
                     slotsPerAgent,
@@ -228,190 +249,594 @@ public class ArenaEnvironment {
                     agentTypes,
                     uniqueAgentTypes,
                     singleAgentType,
-                    selectedSingleAgentType,
-                    socialCapital,
-                    keyDaysData,
-                    allDailyDataCSVWriter,
-                    perAgentDataCSVWriter,
-                    eachRoundDataCSVWriter,
-                    simulationRun
+                    selectedSingleAgentType
             );
-            System.out.println("RUNS COMPLETED: " + simulationRun);
         }
 
-        ArrayList<ArrayList<Double>> socialTakeoverDays = new ArrayList<>();
-        ArrayList<ArrayList<Double>> selfishTakeoverDays = new ArrayList<>();
-
-        ArrayList<ArrayList<Double>> socialFinalDays = new ArrayList<>();
-        ArrayList<ArrayList<Double>> selfishFinalDays = new ArrayList<>();
+        // Resume from the last snapshot if this environment was interrupted.
+        Checkpoint checkpoint = null;
+        Checkpoint.Snapshot snapshot = null;
+        if (checkpointInterval > 0) {
+            checkpoint = new Checkpoint(Path.of(folderName, environmentTag), checkpointInterval);
+            snapshot = checkpoint.load(environmentKey);
+        }
 
-        int socialRunsTotal = 0;
-        int selfishRunsTotal = 0;
+        // Reuse the results of an identical environment that has already been simulated where possible, when exchanges
+        // are traced the cached environment must have been traced too.
+        KeyDaysData cachedKeyDaysData = null;
+        if (resultCache != null && (snapshot == null || !snapshot.environmentComplete)
+                && (!traceExchanges || resultCache.contains(environmentKey, ExchangeEventLog.FILE_NAME))) {
+            cachedKeyDaysData = resultCache.restore(environmentKey, dataOutputPath);
+        }
 
-        for (ArrayList<Double> data : keyDaysData) {
-            ArrayList<Double> newData = new ArrayList<>();
-            newData.add(data.get(0));
-            newData.add(data.get(1));
+        if (snapshot != null && snapshot.environmentComplete) {
+            keyDaysData = snapshot.keyDaysData;
+            snapshot.restoreRandom();
+            System.out.println("RUNS RESTORED FROM CHECKPOINT: " + keyDaysData.runs());
+            ProgressServer.runsPlanned(keyDaysData.runs(), keyDaysData.runs());
+        } else if (cachedKeyDaysData != null) {
+            keyDaysData = cachedKeyDaysData;
+            System.out.println("RUNS RESTORED FROM CACHE: " + keyDaysData.runs());
+            ProgressServer.runsPlanned(keyDaysData.runs(), keyDaysData.runs());
+        } else {
+            File perAgentData = new File(dataOutputFolder, "agentData.csv");
+            File exchangeData = new File(dataOutputFolder, "exchangeData.csv");
+            File exchangeEvents = new File(dataOutputFolder, ExchangeEventLog.FILE_NAME);
+            File[] dataFiles = traceExchanges
+                    ? new File[]{allDailyData, perAgentData, exchangeData, exchangeEvents}
+                    : new File[]{allDailyData, perAgentData, exchangeData};
+
+            // A resumed environment continues its data files from where they were when the snapshot was taken.
+            boolean resuming = snapshot != null;
+            if (resuming) snapshot.truncate(dataFiles);
+
+            // Stores the amount of unspent social capital each agent has accumulated.
+            FileWriter allDailyDataCSVWriter = new FileWriter(allDailyData, resuming);
+
+            if (!resuming) writeDailyDataHeader(allDailyDataCSVWriter);
+
+            // Stores the amount of unspent social capital each agent has accumulated.
+            FileWriter perAgentDataCSVWriter = new FileWriter(perAgentData, resuming);
+
+            if (!resuming) writeAgentDataHeader(perAgentDataCSVWriter);
+
+            // Stores the satisfaction of each individual Agent at the end of every round throughout the simulation.
+            FileWriter eachRoundDataCSVWriter = new FileWriter(exchangeData, resuming);
+
+            if (!resuming) writeExchangeDataHeader(eachRoundDataCSVWriter);
+
+            // Records every advert, request, decision and exchange.
+            ExchangeEventLog exchangeEventLog = traceExchanges
+                    ? new ExchangeEventLog(exchangeEvents.toPath(), resuming, populationSize, slotsPerAgent, uniqueTimeSlots)
+                    : null;
+
+            // Summarises each day and round across all runs as the runs progress.
+            CrossRunSummary crossRunSummary = resuming
+                    ? snapshot.crossRunSummary
+                    : new CrossRunSummary(populationSize, uniqueAgentTypes);
+
+            // Run as many simulations as has been requested, or when chosen adaptively, keep running batches of
+            // simulations until the results are precise enough.
+            int firstRun = 1;
+            int runsToComplete;
+            if (resuming) {
+                keyDaysData = snapshot.keyDaysData;
+                snapshot.restoreRandom();
+                firstRun = snapshot.run;
+                runsToComplete = snapshot.runsToComplete;
+                System.out.println("RESUMING FROM CHECKPOINT AT RUN: " + firstRun);
+            } else {
+                runsToComplete = sequentialStopping == null ? simulationRuns : sequentialStopping.nextBatch(0, keyDaysData);
+            }
 
-            if (data.get(data.size() - 1) == 0.0) {
-                if (data.get(3) == 0) {
-                    newData.add(data.get(4));
-                    newData.add(data.get(6));
+            ProgressServer.runsPlanned(firstRun - 1, runsToComplete);
 
-                    socialTakeoverDays.add(newData);
-                    socialRunsTotal++;
-                } else {
-                    newData.add(data.get(5));
-                    newData.add(data.get(7));
+            if (checkpoint != null) {
+                checkpoint.track(environmentKey, keyDaysData, crossRunSummary, traceExchanges
+                                ? new Flushable[]{allDailyDataCSVWriter, perAgentDataCSVWriter, eachRoundDataCSVWriter, exchangeEventLog}
+                                : new Flushable[]{allDailyDataCSVWriter, perAgentDataCSVWriter, eachRoundDataCSVWriter},
+                        dataFiles, runsToComplete);
+            }
 
-                    selfishTakeoverDays.add(newData);
-                    selfishRunsTotal++;
+            for (int simulationRun = firstRun; simulationRun <= runsToComplete; simulationRun++) {
+
+                // Create a new simulation run.
+                new SimulationRun(
+                        bucketedDemandCurves,
+                        totalDemandValues,
+                        bucketedAvailabilityCurve,
+                        totalAvailability,
+                        scenarioBank,
+                        profileLibrary,
+                        shardedMarket,
+                        topology,
+                        exchangeMechanism,
+                        tradingCycles,
+                        days,
+                        populationSize,
+                        uniqueTimeSlots,
+                        slotsPerAgent,
+                        numberOfAgentsToEvolve,
+                        agentTypes,
+                        uniqueAgentTypes,
+                        singleAgentType,
+                        selectedSingleAgentType,
+                        socialCapital,
+                        keyDaysData,
+                        crossRunSummary,
+                        exchangeEventLog,
+                        checkpoint,
+                        resuming && simulationRun == snapshot.run && snapshot.runInProgress ? snapshot : null,
+                        allDailyDataCSVWriter,
+                        perAgentDataCSVWriter,
+                        eachRoundDataCSVWriter,
+                        simulationRun
+                );
+                System.out.println("RUNS COMPLETED: " + simulationRun);
+
+                if (sequentialStopping != null && simulationRun == runsToComplete) {
+                    runsToComplete += sequentialStopping.nextBatch(simulationRun, keyDaysData);
+                    ProgressServer.runsPlanned(simulationRun, runsToComplete);
                 }
-            } else {
-                if (data.get(3) == 0) {
-                    newData.add(data.get(4));
-                    newData.add(data.get(6));
+                if (checkpoint != null) checkpoint.saveRun(simulationRun + 1, runsToComplete);
+            }
 
-                    socialFinalDays.add(newData);
-                } else {
-                    newData.add(data.get(5));
-                    newData.add(data.get(7));
+            crossRunSummary.write(dataOutputFolder);
 
-                    selfishFinalDays.add(newData);
-                }
+            // Close the data file writers once the simulation is complete.
+            for (FileWriter fileWriter : Arrays.asList(allDailyDataCSVWriter, perAgentDataCSVWriter, eachRoundDataCSVWriter))
+                fileWriter.close();
+            if (exchangeEventLog != null) exchangeEventLog.close();
+
+            if (resultCache != null) resultCache.store(environmentKey, dataOutputPath, keyDaysData);
+            if (checkpoint != null) checkpoint.saveComplete();
+        }
+
+        if (sequentialStopping != null) sequentialStopping.writePrecision(simulationDataWriter, keyDaysData);
+
+        int middleSocial = keyDaysData.typicalRun(KeyDaysData.SOCIAL_TAKEOVER);
+        int middleSelfish = keyDaysData.typicalRun(KeyDaysData.SELFISH_TAKEOVER);
+
+        writeKeyDaysSummary(simulationDataWriter, KeyDaysData.SOCIAL_TAKEOVER, "Social", "social");
+        writeKeyDaysSummary(simulationDataWriter, KeyDaysData.SELFISH_TAKEOVER, "Selfish", "selfish");
+
+        // Begin visualisation
+        long visualiserStart = Instrumentation.start();
+        try {
+            if (pythonExe != null) {
+                new SimulationVisualiserInitiator(
+                        pythonExe,
+                        pythonPath,
+                        folderName,
+                        environmentTag,
+                        allDailyData,
+                        new File(dataOutputFolder, CrossRunSummary.DAILY_SUMMARY),
+                        middleSocial,
+                        middleSelfish
+                );
+            }
+        } finally {
+            Instrumentation.lap(Instrumentation.VISUALISER, visualiserStart);
+            if (instrumentation != null) {
+                instrumentation.end();
+                instrumentation.write(simulationDataWriter);
             }
+            simulationDataWriter.close();
         }
+        ProgressServer.environmentCompleted();
+    }
 
-        final int column = 1;
-        Comparator<ArrayList<Double>> myComparator = Comparator.comparing(o -> o.get(column));
+    /**
+     * @param demandCurves      {@link Double} arrays of demand used by the {@link Agent}s.
+     * @param availabilityCurve {@link Integer} array of energy availability used by the simulation.
+     * @return {@link Long} value identifying the curves, so that a replay can tell whether they have changed since the
+     * environment was simulated.
+     */
+    static long curvesChecksum(double[][] demandCurves, int[] availabilityCurve) {
+        return (Arrays.deepHashCode(demandCurves) & 0xFFFFFFFFL) << 32
+                | (Arrays.hashCode(availabilityCurve) & 0xFFFFFFFFL);
+    }
 
-        socialTakeoverDays.sort(myComparator);
-        selfishTakeoverDays.sort(myComparator);
+    /**
+     * Buckets each demand curve into the number of unique time slots used by the simulation.
+     *
+     * @param demandCurves      {@link Double} arrays of demand used by the {@link Agent}s.
+     * @param uniqueTimeSlots   {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param totalDemandValues Filled with the sum of all values in each bucketed demand curve.
+     * @return The bucketed demand curves.
+     */
+    static double[][] bucketDemandCurves(double[][] demandCurves, int uniqueTimeSlots, double[] totalDemandValues) {
+        double[][] bucketedDemandCurves = new double[demandCurves.length][uniqueTimeSlots];
 
-        socialFinalDays.sort(myComparator);
-        selfishFinalDays.sort(myComparator);
+        for (int i = 0; i < demandCurves.length; i++) {
+            bucketedDemandCurves[i] = bucketDemandCurve(demandCurves[i], uniqueTimeSlots);
 
-        int middleSelfish = 0;
-        int middleSocial = 0;
+            // The total demand is also calculated here for efficiency.
+            totalDemandValues[i] = totalDemand(bucketedDemandCurves[i]);
+        }
+        return bucketedDemandCurves;
+    }
 
-        if (socialRunsTotal > 0) {
-            ArrayList<Double> middleSocialTakeover = socialTakeoverDays.get((int) Math.floor(socialRunsTotal / 2.0f));
-            ArrayList<Double> slowestSocialTakeover = socialTakeoverDays.get(socialRunsTotal - 1);
-            ArrayList<Double> fastestSocialTakeover = socialTakeoverDays.get(0);
+    /**
+     * Buckets a single demand curve into the number of unique time slots used by the simulation. Each time slot takes
+     * the share of each of the curve's values that falls within it, so a curve may have more or fewer values than there
+     * are time slots. The bucketed demand is given per hour, which leaves hourly time slots with the sum of the values
+     * within them and keeps the demand of shorter time slots large enough to be told apart by the selection wheel.
+     *
+     * @param demandCurve     {@link Double} array of demand.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @return The bucketed demand curve.
+     */
+    static double @NotNull [] bucketDemandCurve(double @NotNull [] demandCurve, int uniqueTimeSlots) {
+        double[] bucketedDemandCurve = new double[uniqueTimeSlots];
+        double hourlyScale = uniqueTimeSlots / (double) HOURS_PER_DAY;
+        forEachOverlap(demandCurve.length, uniqueTimeSlots, (value, bucket, overlap) ->
+                bucketedDemandCurve[bucket] += demandCurve[value] * ((double) overlap / uniqueTimeSlots));
+        for (int bucket = 0; bucket < uniqueTimeSlots; bucket++) {
+            // Rounding to fix precision errors.
+            bucketedDemandCurve[bucket] = Math.round(bucketedDemandCurve[bucket] * hourlyScale * 10.0) / 10.0;
+        }
+        return bucketedDemandCurve;
+    }
 
-            middleSocial = (int) Math.floor(middleSocialTakeover.get(0));
-            int slowSocial = (int) Math.floor(slowestSocialTakeover.get(0));
-            int fastSocial = (int) Math.floor(fastestSocialTakeover.get(0));
+    /**
+     * @param bucketedDemandCurve {@link Double} array of demand bucketed into time slots.
+     * @return {@link Double} value representing the sum of all values in the curve, rounded as the curve is.
+     */
+    static double totalDemand(double @NotNull [] bucketedDemandCurve) {
+        double totalDemand = Arrays.stream(bucketedDemandCurve).sum();
+        return Math.round(totalDemand * 10.0) / 10.0;
+    }
 
-            for (Writer writer : Arrays.asList(
-                    simulationDataWriter.append("Social Takeovers: ").append(String.valueOf(socialRunsTotal)),
-                    simulationDataWriter.append("Fastest Social: Run ").append(String.valueOf(fastSocial)),
-                    simulationDataWriter.append("Slowest Social: Run ").append(String.valueOf(slowSocial)),
-                    simulationDataWriter.append("Typical Social: Run ").append(String.valueOf(middleSocial))))
-                writer.append("\n");
+    /**
+     * Buckets the availability curve into the number of unique time slots used by the simulation. Each time slot takes
+     * the share of each of the curve's values that falls within it, in whole units of the largest share that divides
+     * every overlap, so that the availability of each time slot stays in proportion to the curve.
+     *
+     * @param availabilityCurve         {@link Integer} array of energy availability used by the simulation.
+     * @param bucketedAvailabilityCurve Filled with the bucketed availability curve.
+     * @return {@link Integer} value representing the total energy available throughout the {@link Day}.
+     */
+    static int bucketAvailabilityCurve(int @NotNull [] availabilityCurve, int @NotNull [] bucketedAvailabilityCurve) {
+        int values = availabilityCurve.length;
+        int uniqueTimeSlots = bucketedAvailabilityCurve.length;
+        int share = BigInteger.valueOf(values).gcd(BigInteger.valueOf(uniqueTimeSlots)).intValue();
+        Arrays.fill(bucketedAvailabilityCurve, 0);
+        forEachOverlap(values, uniqueTimeSlots, (value, bucket, overlap) ->
+                bucketedAvailabilityCurve[bucket] += availabilityCurve[value] * (overlap / share));
 
-            double avgDaysSocial = 0;
-            double avgSatSocial = 0;
-            double avgSDSocial = 0;
+        int totalAvailability = 0;
+        for (int availability : bucketedAvailabilityCurve) {
+            totalAvailability += availability;
+        }
+        return totalAvailability;
+    }
 
-            for (ArrayList<Double> run : socialTakeoverDays) {
-                avgDaysSocial += run.get(1);
-                avgSatSocial += run.get(2);
-                avgSDSocial += run.get(3);
-            }
+    /**
+     * Visits each overlap between the values of a curve covering a whole {@link Day} and the time slots, in order. The
+     * day is measured in steps of which each value covers as many as there are time slots and each time slot covers as
+     * many as there are values, so that every overlap is a whole number of steps.
+     *
+     * @param values          {@link Integer} value representing the number of values in a curve covering a whole {@link Day}.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param visitor         Given the index of the value, the time slot and the number of steps that they share.
+     * @throws IllegalArgumentException If the curve or the time slots are empty.
+     */
+    private static void forEachOverlap(int values, int uniqueTimeSlots, @NotNull OverlapVisitor visitor) {
+        if (values < 1 || uniqueTimeSlots < 1) {
+            throw new IllegalArgumentException("A curve of " + values + " values can't be bucketed into "
+                    + uniqueTimeSlots + " time slots.");
+        }
+        int value = 0;
+        int bucket = 0;
+        long position = 0;
+        while (value < values && bucket < uniqueTimeSlots) {
+            long valueEnd = (long) (value + 1) * uniqueTimeSlots;
+            long bucketEnd = (long) (bucket + 1) * values;
+            long end = Math.min(valueEnd, bucketEnd);
+            visitor.visit(value, bucket, (int) (end - position));
+            position = end;
+            if (end == valueEnd) value++;
+            if (end == bucketEnd) bucket++;
+        }
+    }
 
-            for (String s : Arrays.asList("Average Takeover Days (social): ",
-                    String.valueOf(avgDaysSocial / socialTakeoverDays.size()),
-                    "Average Takeover Satisfaction (social): ",
-                    String.valueOf(avgSatSocial / socialTakeoverDays.size()),
-                    "Average Takeover SD (social): ",
-                    String.valueOf(avgSDSocial / socialTakeoverDays.size())))
-                simulationDataWriter.append(s).append("\n");
-
-            Utilities.write(simulationDataWriter, "Average Takeover Days (social): ",
-                    "\n", String.valueOf(avgDaysSocial / socialTakeoverDays.size()),
-                    "\n", "Average Takeover Satisfaction (social): ",
-                    "\n", String.valueOf(avgSatSocial / socialTakeoverDays.size()),
-                    "\n", "Average Takeover SD (social): ",
-                    "\n", String.valueOf(avgSDSocial / socialTakeoverDays.size()), "\n");
-
-            avgDaysSocial = 0;
-            avgSatSocial = 0;
-            avgSDSocial = 0;
-
-            for (ArrayList<Double> run : socialFinalDays) {
-                avgDaysSocial += run.get(1);
-                avgSatSocial += run.get(2);
-                avgSDSocial += run.get(3);
-            }
+    private interface OverlapVisitor {
+        void visit(int value, int bucket, int overlap);
+    }
 
-            simulationDataWriter.append("Average Final Satisfaction (social): ").append(String.valueOf(avgSatSocial / socialFinalDays.size())).append("\n");
-            simulationDataWriter.append("Average Final SD (social): ").append(String.valueOf(avgSDSocial / socialFinalDays.size())).append("\n\n");
+    /**
+     * @param writer Used to store the state of the system at the end of each {@link Day}.
+     * @throws IOException On output error.
+     */
+    static void writeDailyDataHeader(Writer writer) throws IOException {
+        Utilities.write(writer, "Simulation Run",
+                ",", "Day",
+                ",", "Social Pop",
+                ",", "Selfish Pop",
+                ",", "Social Sat",
+                ",", "Selfish Sat",
+                ",", "Social SD",
+                ",", "Selfish SD",
+                ",", "Social Upper Quartile",
+                ",", "Selfish Upper Quartile",
+                ",", "Social Lower Quartile",
+                ",", "Selfish Lower Quartile",
+                ",", "Social 95th Percentile",
+                ",", "Selfish 95th Percentile",
+                ",", "Social Max",
+                ",", "Selfish Max",
+                ",", "Social Min",
+                ",", "Selfish Min",
+                ",", "Social Median",
+                ",", "Selfish Median",
+                ",", "Random Allocation Sat",
+                ",", "Optimum Allocation Sat", "\n");
+    }
+
+    /**
+     * @param writer Used to store the state of each {@link Agent} at the end of each {@link Day}.
+     * @throws IOException On output error.
+     */
+    static void writeAgentDataHeader(Writer writer) throws IOException {
+        Utilities.write(writer, "Simulation Run",
+                ",", "Day",
+                ",", "Agent Type",
+                ",", "Satisfaction",
+                ",", "Rejected Received Exchanges",
+                ",", "Accepted Received Exchanges",
+                ",", "Rejected Requested Exchanges",
+                ",", "Accepted Requested Exchanges",
+                ",", "Social Capital Exchanges",
+                ",", "No Social Capital Exchanges",
+                ",", "Unspent Social Capital", "\n");
+    }
+
+    /**
+     * @param writer Used to store the satisfaction of each {@link Agent} at the end of every round.
+     * @throws IOException On output error.
+     */
+    static void writeExchangeDataHeader(Writer writer) throws IOException {
+        Utilities.write(writer, "Simulation Run",
+                ",", "Day",
+                ",", "Round",
+                ",", "Agent Type",
+                ",", "Satisfaction", "\n");
+    }
+
+    /**
+     * Writes the takeover and final day results for a single population to the simulation data file.
+     *
+     * @param writer     Used to store the key data about the simulation.
+     * @param population Either {@link KeyDaysData#SOCIAL_TAKEOVER} or {@link KeyDaysData#SELFISH_TAKEOVER}.
+     * @param title      {@link String} naming the population at the start of a line.
+     * @param name       {@link String} naming the population within a line.
+     * @throws IOException On output error.
+     */
+    private void writeKeyDaysSummary(Writer writer, int population, String title, String name) throws IOException {
+        int takeovers = keyDaysData.takeovers(population);
+        if (takeovers == 0) return;
+
+        Utilities.write(writer, title, " Takeovers: ", String.valueOf(takeovers),
+                "\n", "Fastest ", name, ": Run ", String.valueOf(keyDaysData.fastestRun(population)),
+                "\n", "Slowest ", name, ": Run ", String.valueOf(keyDaysData.slowestRun(population)),
+                "\n", "Typical ", name, ": Run ", String.valueOf(keyDaysData.typicalRun(population)),
+                "\n", "Average Takeover Days (", name, "): ",
+                String.valueOf(keyDaysData.averageTakeoverDays(population)),
+                "\n", "Average Takeover Satisfaction (", name, "): ",
+                String.valueOf(keyDaysData.averageTakeoverSatisfaction(population)),
+                "\n", "Average Takeover SD (", name, "): ",
+                String.valueOf(keyDaysData.averageTakeoverSD(population)),
+                "\n", "Average Final Satisfaction (", name, "): ",
+                String.valueOf(keyDaysData.averageFinalSatisfaction(population)),
+                "\n", "Average Final SD (", name, "): ",
+                String.valueOf(keyDaysData.averageFinalSD(population)), "\n\n");
+    }
+
+    /**
+     * Gathers the parameters of an {@link ArenaEnvironment} by name. The simulation's parameters default to those in
+     * {@link resource_exchange_arena.parameters.UserParameters}, and every optional feature is off, or {@code null},
+     * unless it is set. See the {@link ArenaEnvironment} constructor for what each parameter means.
+     */
+    static final class Builder {
+        private final String folderName;
+        private final String environmentTag;
+        private double[][] demandCurves = ResourceExchangeArena.DEMAND_CURVES;
+        private int[] availabilityCurve = ResourceExchangeArena.AVAILABILITY_CURVE;
+        private boolean socialCapital = ResourceExchangeArena.USE_SOCIAL_CAPITAL;
+        private int simulationRuns = ResourceExchangeArena.SIMULATION_RUNS;
+        private SequentialStopping sequentialStopping;
+        private int days = ResourceExchangeArena.DAYS;
+        private int populationSize = ResourceExchangeArena.POPULATION_SIZE;
+        private int uniqueTimeSlots = ResourceExchangeArena.UNIQUE_TIME_SLOTS;
+        private int slotsPerAgent = ResourceExchangeArena.SLOTS_PER_AGENT;
+        private int numberOfAgentsToEvolve;
+        private int[] agentTypes = ResourceExchangeArena.AGENT_TYPES_ARRAY[0];
+        private boolean singleAgentType;
+        private int selectedSingleAgentType;
+        private ScenarioBank scenarioBank;
+        private ProfileLibrary profileLibrary;
+        private ShardedMarket shardedMarket;
+        private Topology topology;
+        private String exchangeMechanism = Exchange.BOARD;
+        private boolean tradingCycles;
+        private int checkpointInterval;
+        private ResultCache resultCache;
+        private boolean traceExchanges;
+        private boolean instrument;
+        private String pythonExe;
+        private String pythonPath;
+
+        /**
+         * @param folderName     {@link String} representing the output destination folder, used to organise output data.
+         * @param environmentTag {@link String} detailing specifics about the simulation environment.
+         */
+        Builder(String folderName, String environmentTag) {
+            this.folderName = folderName;
+            this.environmentTag = environmentTag;
         }
 
-        if (selfishRunsTotal > 0) {
-            ArrayList<Double> middleSelfishTakeover = selfishTakeoverDays.get((int) Math.floor(selfishRunsTotal / 2.0f));
-            ArrayList<Double> slowestSelfishTakeover = selfishTakeoverDays.get(selfishRunsTotal - 1);
-            ArrayList<Double> fastestSelfishTakeover = selfishTakeoverDays.get(0);
+        Builder demandCurves(double[][] demandCurves) {
+            this.demandCurves = demandCurves;
+            return this;
+        }
 
-            middleSelfish = (int) Math.floor(middleSelfishTakeover.get(0));
-            int slowSelfish = (int) Math.floor(slowestSelfishTakeover.get(0));
-            int fastSelfish = (int) Math.floor(fastestSelfishTakeover.get(0));
+        Builder availabilityCurve(int[] availabilityCurve) {
+            this.availabilityCurve = availabilityCurve;
+            return this;
+        }
 
-            Utilities.write(simulationDataWriter, "Selfish Takeovers: ", "\n",
-                    String.valueOf(selfishRunsTotal), "\n",
-                    "Fastest selfish: Run ", "\n",
-                    String.valueOf(fastSelfish), "\n",
-                    "Slowest selfish: Run ", "\n",
-                    String.valueOf(slowSelfish), "\n",
-                    "Typical selfish: Run ", "\n",
-                    String.valueOf(middleSelfish));
+        Builder socialCapital(boolean socialCapital) {
+            this.socialCapital = socialCapital;
+            return this;
+        }
 
-            double avgDaysSelfish = 0;
-            double avgSatSelfish = 0;
-            double avgSDSelfish = 0;
+        Builder simulationRuns(int simulationRuns) {
+            this.simulationRuns = simulationRuns;
+            return this;
+        }
 
-            for (ArrayList<Double> run : selfishTakeoverDays) {
-                avgDaysSelfish += run.get(1);
-                avgSatSelfish += run.get(2);
-                avgSDSelfish += run.get(3);
-            }
+        Builder sequentialStopping(SequentialStopping sequentialStopping) {
+            this.sequentialStopping = sequentialStopping;
+            return this;
+        }
 
-            Utilities.write(simulationDataWriter, "Average Takeover Days (selfish): ",
-                    String.valueOf(avgDaysSelfish / selfishTakeoverDays.size()),
-                    "\n", "Average Takeover Satisfaction (selfish): ",
-                    String.valueOf(avgSatSelfish / selfishTakeoverDays.size()),
-                    "\n", "Average Takeover SD (selfish): ",
-                    String.valueOf(avgSDSelfish / socialTakeoverDays.size()),
-                    "\n");
-
-            avgDaysSelfish = 0;
-            avgSatSelfish = 0;
-            avgSDSelfish = 0;
-
-            for (ArrayList<Double> run : selfishFinalDays) {
-                avgDaysSelfish += run.get(1);
-                avgSatSelfish += run.get(2);
-                avgSDSelfish += run.get(3);
-            }
+        Builder days(int days) {
+            this.days = days;
+            return this;
+        }
 
-            simulationDataWriter.append("Average Final Satisfaction (selfish): ").append(String.valueOf(avgSatSelfish / selfishFinalDays.size())).append("\n");
-            simulationDataWriter.append("Average Final SD (selfish): ").append(String.valueOf(avgSDSelfish / selfishFinalDays.size()));
+        Builder populationSize(int populationSize) {
+            this.populationSize = populationSize;
+            return this;
         }
 
-        // Close the file writers once the simulation is complete.
-        for (FileWriter fileWriter : Arrays.asList(allDailyDataCSVWriter, perAgentDataCSVWriter, eachRoundDataCSVWriter, simulationDataWriter))
-            fileWriter.close();
+        Builder uniqueTimeSlots(int uniqueTimeSlots) {
+            this.uniqueTimeSlots = uniqueTimeSlots;
+            return this;
+        }
 
-        // Begin visualisation
-        new SimulationVisualiserInitiator(
-                pythonExe,
-                pythonPath,
-                folderName,
-                environmentTag,
-                allDailyData,
-                middleSocial,
-                middleSelfish
-        );
+        Builder slotsPerAgent(int slotsPerAgent) {
+            this.slotsPerAgent = slotsPerAgent;
+            return this;
+        }
+
+        Builder numberOfAgentsToEvolve(int numberOfAgentsToEvolve) {
+            this.numberOfAgentsToEvolve = numberOfAgentsToEvolve;
+            return this;
+        }
+
+        Builder agentTypes(int[] agentTypes) {
+            this.agentTypes = agentTypes;
+            return this;
+        }
+
+        Builder singleAgentType(boolean singleAgentType) {
+            this.singleAgentType = singleAgentType;
+            return this;
+        }
+
+        Builder selectedSingleAgentType(int selectedSingleAgentType) {
+            this.selectedSingleAgentType = selectedSingleAgentType;
+            return this;
+        }
+
+        Builder scenarioBank(ScenarioBank scenarioBank) {
+            this.scenarioBank = scenarioBank;
+            return this;
+        }
+
+        Builder profileLibrary(ProfileLibrary profileLibrary) {
+            this.profileLibrary = profileLibrary;
+            return this;
+        }
+
+        Builder shardedMarket(ShardedMarket shardedMarket) {
+            this.shardedMarket = shardedMarket;
+            return this;
+        }
+
+        Builder topology(Topology topology) {
+            this.topology = topology;
+            return this;
+        }
+
+        Builder exchangeMechanism(String exchangeMechanism) {
+            this.exchangeMechanism = exchangeMechanism;
+            return this;
+        }
+
+        Builder tradingCycles(boolean tradingCycles) {
+            this.tradingCycles = tradingCycles;
+            return this;
+        }
+
+        Builder checkpointInterval(int checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        Builder resultCache(ResultCache resultCache) {
+            this.resultCache = resultCache;
+            return this;
+        }
+
+        Builder traceExchanges(boolean traceExchanges) {
+            this.traceExchanges = traceExchanges;
+            return this;
+        }
+
+        Builder instrument(boolean instrument) {
+            this.instrument = instrument;
+            return this;
+        }
+
+        Builder pythonExe(String pythonExe) {
+            this.pythonExe = pythonExe;
+            return this;
+        }
+
+        Builder pythonPath(String pythonPath) {
+            this.pythonPath = pythonPath;
+            return this;
+        }
+
+        /**
+         * Simulates the environment.
+         *
+         * @return The completed {@link ArenaEnvironment}.
+         * @throws IOException On input error.
+         */
+        ArenaEnvironment build() throws IOException {
+            return new ArenaEnvironment(
+                    folderName,
+                    environmentTag,
+                    demandCurves,
+                    availabilityCurve,
+                    socialCapital,
+                    simulationRuns,
+                    sequentialStopping,
+                    days,
+                    populationSize,
+                    uniqueTimeSlots,
+                    slotsPerAgent,
+                    numberOfAgentsToEvolve,
+                    agentTypes,
+                    singleAgentType,
+                    selectedSingleAgentType,
+                    scenarioBank,
+                    profileLibrary,
+                    shardedMarket,
+                    topology,
+                    exchangeMechanism,
+                    tradingCycles,
+                    checkpointInterval,
+                    resultCache,
+                    traceExchanges,
+                    instrument,
+                    pythonExe,
+                    pythonPath
+            );
+        }
     }
 }
@@ -43,22 +43,40 @@ class CalculateSatisfaction {
         return agentSatisfactions.stream().mapToDouble(val -> val).average().orElse(0.0);
     }
 
+    /**
+     * Calculates the average satisfaction of the {@link Agent}s of a given type from a snapshot of their satisfactions,
+     * avoiding recalculating each {@link Agent}'s satisfaction.
+     *
+     * @param agents        {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param satisfactions The satisfaction of each {@link Agent}, indexed by agentID - 1.
+     * @param agentType     The type for which to calculate the average satisfaction of all {@link Agent}s of that type.
+     * @return The average satisfaction between 0 and 1 of all {@link Agent}s of the given type.
+     */
+    static double averageAgentSatisfaction(@NotNull ArrayList<Agent> agents, double @NotNull [] satisfactions, int agentType) {
+        return agents.stream()
+                .filter(a -> a.getAgentType() == agentType)
+                .mapToDouble(a -> satisfactions[a.agentID - 1])
+                .average()
+                .orElse(0.0);
+    }
+
     /**
      * Takes all {@link Agent}s of a given types individual satisfactions and calculates the variance between the average
      * satisfaction of the {@link Agent}s of that type.
      *
-     * @param agents    {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
-     * @param agentType The type for which to calculate the variance between the average satisfactions of all {@link Agent}s of
-     *                  that type.
+     * @param agents        {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param satisfactions The satisfaction of each {@link Agent}, indexed by agentID - 1.
+     * @param agentType     The type for which to calculate the variance between the average satisfactions of all {@link Agent}s of
+     *                      that type.
      * @return The variance between the average satisfactions of all {@link Agent}s of the given type.
      */
-    static double averageSatisfactionStandardDeviation(ArrayList<Agent> agents, int agentType) {
+    static double averageSatisfactionStandardDeviation(ArrayList<Agent> agents, double[] satisfactions, int agentType) {
         double sumDiffsSquared = 0.0;
-        double averageSatisfaction = averageAgentSatisfaction(agents, agentType);
+        double averageSatisfaction = averageAgentSatisfaction(agents, satisfactions, agentType);
         int groupSize = 0;
         for (Agent a : agents) {
             if (a.getAgentType() == agentType) {
-                double diff = a.calculateSatisfaction(null) - averageSatisfaction;
+                double diff = satisfactions[a.agentID - 1] - averageSatisfaction;
                 diff *= diff;
                 sumDiffsSquared += diff;
                 groupSize++;
@@ -74,16 +92,17 @@ class CalculateSatisfaction {
      * Takes all {@link Agent}s of a given types individual satisfactions and calculates the quartile ranges, min, max, median
      * and 95th percentile satisfaction values for that type.
      *
-     * @param agents    {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
-     * @param agentType The agent type for which to calculate the various values.
+     * @param agents        {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param satisfactions The satisfaction of each {@link Agent}, indexed by agentID - 1.
+     * @param agentType     The agent type for which to calculate the various values.
      * @return The quartile ranges, min, max, median and 95th percentile satisfaction values for
      * {@link Agent}s of the given type.
      */
-    static double @NotNull [] statisticalValues(@NotNull ArrayList<Agent> agents, int agentType) {
+    static double @NotNull [] statisticalValues(@NotNull ArrayList<Agent> agents, double @NotNull [] satisfactions, int agentType) {
         ArrayList<Double> agentSatisfactions =
                 agents.stream()
                         .filter(a -> a.getAgentType() == agentType)
-                        .map(a -> a.calculateSatisfaction(null))
+                        .map(a -> satisfactions[a.agentID - 1])
                         .sorted()
                         .collect(Collectors.toCollection(ArrayList::new));
 
@@ -170,29 +189,107 @@ class CalculateSatisfaction {
      * @return The highest possible average satisfaction between 0 and 1 of all {@link Agent}s in the simulation.
      */
     static double optimumAgentSatisfaction(@NotNull ArrayList<Agent> agents) {
-        ArrayList<Integer> allRequestedSlots = new ArrayList<>();
-        ArrayList<Integer> allAllocatedSlots = new ArrayList<>();
+        int[] requestedSlots = new int[0];
+        int[] allocatedSlots = new int[0];
+        for (Agent a : agents) {
+            requestedSlots = countTimeSlots(a.publishRequestedTimeSlots(), requestedSlots);
+            allocatedSlots = countTimeSlots(a.publishAllocatedTimeSlots(), allocatedSlots);
+        }
+        return optimumAgentSatisfaction(requestedSlots, allocatedSlots);
+    }
+
+    /**
+     * Returns the optimum average satisfaction possible for all {@link Agent}s when they can only trade across the edges
+     * of a network. Time slots can pass along a chain of exchanges between any two {@link Agent}s joined by a path, but
+     * never between {@link Agent}s in different components of the network, so the optimum is found for each component
+     * on its own and the satisfied requests of every component are added together.
+     *
+     * @param agents   {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param topology The network that limits which {@link Agent}s can trade with each other, or {@code null} for every
+     *                 {@link Agent} to trade with any other.
+     * @return The highest possible average satisfaction between 0 and 1 of all {@link Agent}s in the simulation.
+     */
+    static double optimumAgentSatisfaction(@NotNull ArrayList<Agent> agents, Topology topology) {
+        if (topology == null || topology.components() == 1) return optimumAgentSatisfaction(agents);
+
+        // The Agents are grouped by the component that they belong to.
+        int components = topology.components();
+        int[] starts = new int[components + 1];
+        for (Agent a : agents) starts[topology.component(a.agentID) + 1]++;
+        for (int component = 0; component < components; component++) starts[component + 1] += starts[component];
+        int[] filled = Arrays.copyOf(starts, components);
+        Agent[] grouped = new Agent[agents.size()];
+        for (Agent a : agents) grouped[filled[topology.component(a.agentID)]++] = a;
 
-        agents.forEach(a -> {
-            allRequestedSlots.addAll(a.publishRequestedTimeSlots());
-            allAllocatedSlots.addAll(a.publishAllocatedTimeSlots());
-        });
+        // The counts are shared by the components, each component clearing the time slots that it counted.
+        int[] requestedSlots = new int[0];
+        int[] allocatedSlots = new int[0];
+        double satisfiedSlots = 0;
+        double totalSlots = 0;
+        for (int component = 0; component < components; component++) {
+            for (int i = starts[component]; i < starts[component + 1]; i++) {
+                requestedSlots = countTimeSlots(grouped[i].publishRequestedTimeSlots(), requestedSlots);
+                allocatedSlots = countTimeSlots(grouped[i].publishAllocatedTimeSlots(), allocatedSlots);
+            }
+            for (int i = starts[component]; i < starts[component + 1]; i++) {
+                for (int timeSlot : grouped[i].publishRequestedTimeSlots()) {
+                    totalSlots++;
+                    if (requestedSlots[timeSlot] == 0) continue;
+                    int allocated = timeSlot < allocatedSlots.length ? allocatedSlots[timeSlot] : 0;
+                    satisfiedSlots += Math.min(requestedSlots[timeSlot], allocated);
+                    requestedSlots[timeSlot] = 0;
+                }
+            }
+            for (int i = starts[component]; i < starts[component + 1]; i++) {
+                for (int timeSlot : grouped[i].publishAllocatedTimeSlots()) allocatedSlots[timeSlot] = 0;
+            }
+        }
+        return satisfiedSlots / totalSlots;
+    }
 
+    /**
+     * Returns the optimum average satisfaction from the number of times each time slot has been requested and allocated,
+     * so that the counts of separate groups of {@link Agent}s can be added together first.
+     * <p>
+     * Each request can be satisfied by any allocation of the same time slot, but no allocation can satisfy two requests.
+     * This is exactly the maximum flow through the network that carries each allocation from a source to the time slot
+     * allocated, from each time slot to the {@link Agent}s that requested it, as many units as each requested, and from
+     * each {@link Agent} to a sink, as many units as it requested in all. The flow into each time slot is independent
+     * of the others and no {@link Agent} can be sent more than it requested in all, so the maximum flow through each time
+     * slot is the smaller of its allocations and its requests. Every {@link Agent} is allocated as many time slots as it
+     * requests, so the spare time slots of the allocations can always make up the difference, and the optimum can be
+     * reached by trading; {@link CentralPlanner} makes those trades.
+     *
+     * @param requestedSlots The number of times each time slot has been requested, indexed by time slot.
+     * @param allocatedSlots The number of times each time slot has been allocated, indexed by time slot.
+     * @return The highest possible average satisfaction between 0 and 1 of the {@link Agent}s counted.
+     */
+    static double optimumAgentSatisfaction(int @NotNull [] requestedSlots, int @NotNull [] allocatedSlots) {
         // Stores the number of slots that could potentially be fulfilled with perfect trading.
         double satisfiedSlots = 0;
 
         // Stores the total number of slots requested by all {@link Agent}s.
-        double totalSlots = allRequestedSlots.size();
-
-        for (Integer slot : allRequestedSlots) {
-            if (allAllocatedSlots.contains(slot)) {
-                // For each request, if it has been allocated to any agent, increase the number of satisfied slots.
-                satisfiedSlots++;
+        double totalSlots = 0;
 
-                // Remove the slot from the list of all allocated slots so no slots can be allocated twice.
-                allAllocatedSlots.remove(slot);
-            }
+        for (int slot = 0; slot < requestedSlots.length; slot++) {
+            totalSlots += requestedSlots[slot];
+            satisfiedSlots += Math.min(requestedSlots[slot], slot < allocatedSlots.length ? allocatedSlots[slot] : 0);
         }
         return satisfiedSlots / totalSlots;
     }
+
+    /**
+     * Adds time slots to a count of each time slot, growing the count when a time slot is beyond its end.
+     *
+     * @param timeSlots The time slots to count.
+     * @param counts    The number of times each time slot has been counted so far, indexed by time slot.
+     * @return The updated counts, which are a new array if they had to grow.
+     */
+    static int @NotNull [] countTimeSlots(@NotNull ArrayList<Integer> timeSlots, int @NotNull [] counts) {
+        for (int timeSlot : timeSlots) {
+            if (timeSlot >= counts.length) counts = Arrays.copyOf(counts, timeSlot + 1);
+            counts[timeSlot]++;
+        }
+        return counts;
+    }
 }
@@ -0,0 +1,196 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+class CentralPlanner {
+    // The time slots that each Agent wants and could give away, repeated as often as they are wanted or spare.
+    private final TimeSlotIndex index;
+    private final int timeSlotValues;
+
+    // The Agents wanting each time slot, once for each time it is wanted, those of time slot t being held from
+    // wanters[wantedOffsets[t]] up to, but not including, wanters[wantedOffsets[t + 1]]. The Agents holding a spare
+    // time slot are held in the same way.
+    private final int[] wantedOffsets;
+    private final int[] wanters;
+    private final int[] spareOffsets;
+    private final int[] sparers;
+
+    // The index of the Agent at each position of the random order that the round serves the Agents in.
+    private final int[] order;
+
+    // Each time slot that is to move from one Agent to another, and the number of time slots that each Agent is to
+    // receive less the number it is to give.
+    private final int[] moveFrom;
+    private final int[] moveTo;
+    private final int[] moveTimeSlot;
+    private int moves;
+    private final int[] balance;
+
+    // The moves of the time slots that each Agent gives, those of the Agent with index i being held from
+    // movesByGiver[giverOffsets[i]] up to, but not including, movesByGiver[giverOffsets[i + 1]], and the next of them
+    // that is still to be traded.
+    private final int[] giverOffsets;
+    private final int[] movesByGiver;
+    private final int[] giverCursor;
+
+    // The moves of the closed walk currently being traded, in the order that they are followed.
+    private final int[] walk;
+
+    /**
+     * A central planner that reallocates every {@link Agent}'s time slots at once, in place of the {@link Agent}s
+     * finding partners, for reference runs against which the {@link Agent}s' own exchanges can be compared. The planner
+     * reaches the optimum allocation given by {@link CalculateSatisfaction#optimumAgentSatisfaction(ArrayList)}; for
+     * each time slot it moves as many spare allocations of the time slot as there are unsatisfied requests for it to
+     * the {@link Agent}s that requested it. The {@link Agent}s that are to receive more time slots than they give then
+     * pass their remaining spare time slots to those that are to give more than they receive, so that every
+     * {@link Agent} still holds as many time slots as it needs.
+     * <p>
+     * Each {@link Agent} gives as many time slots as it receives, so the moves split into closed walks from
+     * {@link Agent} to {@link Agent}, each traded as a chain of exchanges. Every step costs in proportion to the number
+     * of time slots allocated, rather than to the square of the population.
+     *
+     * @param populationSize  {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param slotsPerAgent   {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     */
+    CentralPlanner(int populationSize, int uniqueTimeSlots, int slotsPerAgent) {
+        index = new TimeSlotIndex(populationSize, uniqueTimeSlots, slotsPerAgent, false);
+        timeSlotValues = index.timeSlotValues;
+        int timeSlots = populationSize * slotsPerAgent;
+        wantedOffsets = new int[timeSlotValues + 1];
+        wanters = new int[timeSlots];
+        spareOffsets = new int[timeSlotValues + 1];
+        sparers = new int[timeSlots];
+        order = new int[populationSize];
+        moveFrom = new int[timeSlots];
+        moveTo = new int[timeSlots];
+        moveTimeSlot = new int[timeSlots];
+        balance = new int[populationSize];
+        giverOffsets = new int[populationSize + 1];
+        movesByGiver = new int[timeSlots];
+        giverCursor = new int[populationSize];
+        walk = new int[timeSlots];
+    }
+
+    /**
+     * Reallocates the {@link Agent}s' time slots so that as many requests as possible are satisfied. Once the optimum
+     * has been reached no further time slots are moved, so a second round ends the {@link Day}.
+     *
+     * @param run           {@link Integer} value identifying the current simulation run.
+     * @param day           {@link Integer} value representing the current {@link Day} being simulated.
+     * @param exchange      {@link Integer} value representing the current exchange being simulated.
+     * @param agents        {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param exchangeTrace Receives each closed walk as the chain of exchanges that passes the first {@link Agent}'s
+     *                      time slot around it, or {@code null} if the round isn't traced.
+     * @return {@link Integer} value representing the number of exchanges made, where a walk through k {@link Agent}s
+     * counts as the k - 1 exchanges that it is traced as.
+     * @throws IOException On output error.
+     */
+    int reallocate(int run, int day, int exchange, @NotNull ArrayList<Agent> agents, ExchangeTrace exchangeTrace)
+            throws IOException {
+        int population = agents.size();
+        Random random = ResourceExchangeArena.random();
+        CounterBasedRandom.jump(random, run, day, exchange, CounterBasedRandom.PLANNER, 0);
+        Collections.shuffle(agents, random);
+        indexTimeSlots(agents);
+        moves = 0;
+        for (int id = 0; id < population; id++) balance[id] = 0;
+
+        // Each request that a spare time slot can satisfy is satisfied.
+        for (int timeSlot = 0; timeSlot < timeSlotValues; timeSlot++) {
+            int wants = wantedOffsets[timeSlot + 1] - wantedOffsets[timeSlot];
+            int spares = spareOffsets[timeSlot + 1] - spareOffsets[timeSlot];
+            for (int i = 0; i < Math.min(wants, spares); i++) {
+                move(sparers[spareOffsets[timeSlot] + i], wanters[wantedOffsets[timeSlot] + i], timeSlot);
+            }
+        }
+
+        // The Agents left with more time slots than they need give their remaining spare time slots to those left
+        // with too few, in the order of the round.
+        int receiver = 0;
+        for (int timeSlot = 0; timeSlot < timeSlotValues; timeSlot++) {
+            int wants = wantedOffsets[timeSlot + 1] - wantedOffsets[timeSlot];
+            for (int i = spareOffsets[timeSlot] + wants; i < spareOffsets[timeSlot + 1]; i++) {
+                int giver = sparers[i];
+                if (balance[giver] <= 0) continue;
+                while (balance[order[receiver]] >= 0) receiver++;
+                move(giver, order[receiver], timeSlot);
+            }
+        }
+
+        // The moves are grouped by the Agent giving the time slot.
+        for (int id = 0; id <= population; id++) giverOffsets[id] = 0;
+        for (int m = 0; m < moves; m++) giverOffsets[moveFrom[m] + 1]++;
+        for (int id = 0; id < population; id++) giverOffsets[id + 1] += giverOffsets[id];
+        for (int id = 0; id < population; id++) giverCursor[id] = giverOffsets[id];
+        for (int m = 0; m < moves; m++) movesByGiver[giverCursor[moveFrom[m]]++] = m;
+        for (int id = 0; id < population; id++) giverCursor[id] = giverOffsets[id];
+
+        // Every Agent gives as many time slots as it receives, so a walk that follows the moves can only stop where it
+        // began.
+        int exchanges = 0;
+        for (int start = 0; start < population; start++) {
+            while (giverCursor[start] < giverOffsets[start + 1]) {
+                int length = 0;
+                int current = start;
+                while (giverCursor[current] < giverOffsets[current + 1]) {
+                    int m = movesByGiver[giverCursor[current]++];
+                    walk[length++] = m;
+                    current = moveTo[m];
+                }
+                exchanges += tradeAround(run, day, exchange, length, exchangeTrace);
+            }
+        }
+        return exchanges;
+    }
+
+    /**
+     * Records the time slots that each {@link Agent} wants and could give away, and which {@link Agent}s want and
+     * could give away each time slot, in the order that the {@link Agent}s are held.
+     */
+    private void indexTimeSlots(@NotNull ArrayList<Agent> agents) {
+        for (int i = 0; i < agents.size(); i++) order[i] = index.index(agents.get(i));
+        index.group(agents, index.wanted, index.wantedCount, id -> true, wantedOffsets, wanters);
+        index.group(agents, index.unwanted, index.unwantedCount, id -> true, spareOffsets, sparers);
+    }
+
+    private void move(int from, int to, int timeSlot) {
+        moveFrom[moves] = from;
+        moveTo[moves] = to;
+        moveTimeSlot[moves++] = timeSlot;
+        balance[from]--;
+        balance[to]++;
+    }
+
+    /**
+     * Trades along the closed walk of moves, where each {@link Agent} gives the time slot of its move to the next
+     * {@link Agent} on the walk and receives the time slot of the move before it. The walk is traced as a chain of
+     * exchanges in which the first {@link Agent} receives the time slot of the last move, and the time slot of the
+     * first move is passed back along the walk.
+     *
+     * @return {@link Integer} value representing the number of exchanges that the walk is traced as.
+     */
+    private int tradeAround(int run, int day, int exchange, int length, ExchangeTrace exchangeTrace)
+            throws IOException {
+        for (int position = 0; position < length; position++) {
+            int received = walk[position == 0 ? length - 1 : position - 1];
+            index.agentsByID[moveFrom[walk[position]]].completePlannedExchange(moveTimeSlot[received],
+                    moveTimeSlot[walk[position]]);
+        }
+        if (exchangeTrace != null) {
+            int passedTimeSlot = moveTimeSlot[walk[0]];
+            for (int position = length - 1; position > 0; position--) {
+                int requester = moveTo[walk[position]];
+                int receiver = moveFrom[walk[position]];
+                exchangeTrace.exchange(run, day, exchange, receiver + 1, requester + 1, moveTimeSlot[walk[position]],
+                        passedTimeSlot, false, false);
+            }
+        }
+        return length - 1;
+    }
+}
@@ -0,0 +1,497 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+class Checkpoint {
+    private final SlotFile snapshots;
+    private final SlotFile summaries;
+    private final int interval;
+
+    // The environment being checkpointed and the state shared by all of its runs.
+    private String environmentKey;
+    private KeyDaysData keyDaysData;
+    private CrossRunSummary crossRunSummary;
+    private Flushable[] writers;
+    private File[] files;
+    private int runsToComplete;
+    // Sequence number of the saved summary that the journal of the current run starts from.
+    private long summarySequence;
+
+    /**
+     * Periodically saves the state of an {@link ArenaEnvironment} at the end of a {@link Day}, so that a simulation
+     * that is interrupted can be resumed from the last snapshot and produce the same output as if it had never been
+     * interrupted.
+     * <p>
+     * The {@link CrossRunSummary} is much larger than the rest of the state, so it is saved in full once per run and
+     * each snapshot only holds the values added to it since. Snapshots and summaries are written to alternate slots
+     * of memory mapped files, so that an interruption while one is being written leaves the previous one intact.
+     *
+     * @param checkpointFolder {@link Path} of the folder that the snapshots are stored in.
+     * @param interval         {@link Integer} value representing the number of {@link Day}s between snapshots.
+     */
+    Checkpoint(Path checkpointFolder, int interval) {
+        this.snapshots = new SlotFile(checkpointFolder.resolve("checkpoint.bin"));
+        this.summaries = new SlotFile(checkpointFolder.resolve("checkpointSummary.bin"));
+        this.interval = interval;
+    }
+
+    /**
+     * Loads the most recent snapshot, as long as it was taken of the same environment.
+     *
+     * @param environmentKey {@link String} identifying the environment's parameters and starting random state.
+     * @return The most recent snapshot, or {@code null} if the environment has to be started from the beginning.
+     * @throws IOException On input error.
+     */
+    Snapshot load(String environmentKey) throws IOException {
+        snapshots.open();
+        summaries.open();
+        byte[] newest = snapshots.newest();
+        if (newest == null) return null;
+
+        Snapshot snapshot = new Snapshot(newest);
+        if (!snapshot.environmentKey.equals(environmentKey)) return null;
+
+        if (!snapshot.environmentComplete) {
+            byte[] summary = summaries.read(snapshot.summarySequence);
+            if (summary == null) return null;
+            snapshot.crossRunSummary = (CrossRunSummary) Snapshot.readObject(
+                    new DataInputStream(new ByteArrayInputStream(summary)));
+            snapshot.crossRunSummary.replay(snapshot.journal);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Starts checkpointing an environment's runs, saving the summary as it currently is.
+     *
+     * @param environmentKey  {@link String} identifying the environment's parameters and starting random state.
+     * @param keyDaysData     Stores the state of the simulation when a population takes over and when the simulation ends.
+     * @param crossRunSummary Summarises each {@link Day} and round across all simulation runs.
+     * @param writers         The writers of the environment's data files, flushed before each snapshot.
+     * @param files           The data files written to by the writers, in the same order.
+     * @param runsToComplete  {@link Integer} value representing the number of runs that will currently be made.
+     * @throws IOException On output error.
+     */
+    void track(
+            String environmentKey,
+            KeyDaysData keyDaysData,
+            CrossRunSummary crossRunSummary,
+            Flushable[] writers,
+            File[] files,
+            int runsToComplete
+    ) throws IOException {
+        this.environmentKey = environmentKey;
+        this.keyDaysData = keyDaysData;
+        this.crossRunSummary = crossRunSummary;
+        this.writers = writers;
+        this.files = files;
+        this.runsToComplete = runsToComplete;
+        saveSummary();
+    }
+
+    /**
+     * Takes a snapshot part way through a run, if enough {@link Day}s have passed since the last one.
+     *
+     * @param run       {@link Integer} value identifying the current simulation run.
+     * @param nextDay   {@link Integer} value representing the next {@link Day} to be simulated.
+     * @param takeover  Whether a population has already taken over during the run.
+     * @param extension {@link Integer} value representing how many {@link Day}s the run has continued after the takeover.
+     * @param agents    {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @throws IOException On output error.
+     */
+    void saveDay(int run, int nextDay, boolean takeover, int extension, ArrayList<Agent> agents) throws IOException {
+        if ((nextDay - 1) % interval != 0) return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeEnvironment(out, false, run, true);
+        out.writeInt(nextDay);
+        out.writeBoolean(takeover);
+        out.writeInt(extension);
+
+        out.writeInt(agents.size());
+        for (Agent a : agents) {
+            out.writeInt(a.agentID);
+            out.writeInt(a.getAgentType());
+            out.writeInt(a.getUnspentSocialCapital());
+            writeLedger(out, a.getFavoursOwed());
+            writeLedger(out, a.getFavoursGiven());
+        }
+        out.flush();
+        snapshots.write(bytes.toByteArray());
+    }
+
+    /**
+     * Takes a snapshot between runs, saving the summary in full.
+     *
+     * @param nextRun        {@link Integer} value identifying the next simulation run to be made.
+     * @param runsToComplete {@link Integer} value representing the number of runs that will currently be made.
+     * @throws IOException On output error.
+     */
+    void saveRun(int nextRun, int runsToComplete) throws IOException {
+        this.runsToComplete = runsToComplete;
+        saveSummary();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeEnvironment(out, false, nextRun, false);
+        out.flush();
+        snapshots.write(bytes.toByteArray());
+    }
+
+    /**
+     * Takes a snapshot of a completed environment, once its data files have been closed, so that a resumed sweep
+     * can move straight on to the next environment.
+     *
+     * @throws IOException On output error.
+     */
+    void saveComplete() throws IOException {
+        writers = null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeEnvironment(out, true, 0, false);
+        out.flush();
+        snapshots.write(bytes.toByteArray());
+    }
+
+    private void saveSummary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeObject(out, crossRunSummary);
+        out.flush();
+        summarySequence = summaries.write(bytes.toByteArray());
+        crossRunSummary.startJournal();
+    }
+
+    private void writeEnvironment(DataOutputStream out, boolean environmentComplete, int run, boolean runInProgress)
+            throws IOException {
+        out.writeUTF(environmentKey);
+        out.writeBoolean(environmentComplete);
+        out.writeInt(run);
+        out.writeBoolean(runInProgress);
+        out.writeInt(runsToComplete);
+        out.writeLong(ResourceExchangeArena.currentSeed());
+        writeObject(out, ResourceExchangeArena.random());
+        writeObject(out, keyDaysData);
+
+        out.writeLong(summarySequence);
+        byte[] journal = environmentComplete ? new byte[0] : crossRunSummary.journal();
+        out.writeInt(journal.length);
+        out.write(journal);
+
+        // The data files are flushed so that their lengths match the state being saved.
+        if (writers == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(writers.length);
+            for (int i = 0; i < writers.length; i++) {
+                writers[i].flush();
+                out.writeLong(files[i].length());
+            }
+        }
+    }
+
+    private static void writeObject(DataOutputStream out, Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(object);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static void writeLedger(DataOutputStream out, ArrayList<ArrayList<Integer>> ledger) throws IOException {
+        out.writeInt(ledger.size());
+        for (ArrayList<Integer> relation : ledger) {
+            out.writeInt(relation.get(0));
+            out.writeInt(relation.get(1));
+        }
+    }
+
+    /**
+     * A memory mapped file with two slots that are written alternately. Each slot starts with its sequence number,
+     * the length of its contents and their checksum, and the contents are forced to disk before the sequence number
+     * so a slot is only ever read once it has been completely written.
+     */
+    private static final class SlotFile {
+        // Identifies a checkpoint file and the version of its layout.
+        private static final int MAGIC = 0x52454143;
+        private static final int VERSION = 1;
+        private static final int HEADER_BYTES = 16;
+        private static final int SLOT_HEADER_BYTES = 24;
+
+        private final Path file;
+        private MappedByteBuffer mapped;
+        private int slotCapacity;
+        private long sequence;
+
+        SlotFile(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * Maps an existing file and continues its sequence numbers.
+         */
+        void open() throws IOException {
+            if (!Files.isRegularFile(file) || Files.size(file) < HEADER_BYTES) return;
+            map();
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                mapped = null;
+                return;
+            }
+            slotCapacity = mapped.getInt(8);
+            for (int slot = 0; slot < 2; slot++) {
+                sequence = Math.max(sequence, mapped.getLong(slotOffset(slot)));
+            }
+        }
+
+        /**
+         * @return The contents of the most recently written slot, or {@code null} if neither slot is readable.
+         */
+        byte[] newest() {
+            byte[] newest = read(sequence);
+            return newest != null ? newest : read(sequence - 1);
+        }
+
+        /**
+         * @param slotSequence The sequence number of the contents.
+         * @return The contents written with the given sequence number, or {@code null} if they have been overwritten.
+         */
+        byte[] read(long slotSequence) {
+            if (mapped == null || slotSequence <= 0) return null;
+            int offset = slotOffset((int) (slotSequence % 2));
+            int length = mapped.getInt(offset + 8);
+            if (mapped.getLong(offset) != slotSequence || length <= 0 || length > slotCapacity) return null;
+
+            byte[] contents = new byte[length];
+            mapped.get(offset + SLOT_HEADER_BYTES, contents);
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            return crc.getValue() == mapped.getLong(offset + 16) ? contents : null;
+        }
+
+        /**
+         * Writes to the older of the two slots.
+         *
+         * @return The sequence number of the contents.
+         */
+        long write(byte[] contents) throws IOException {
+            if (mapped == null || contents.length > slotCapacity) resize(contents.length);
+
+            sequence++;
+            int offset = slotOffset((int) (sequence % 2));
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+
+            mapped.putLong(offset, 0L);
+            mapped.put(offset + SLOT_HEADER_BYTES, contents);
+            mapped.putInt(offset + 8, contents.length);
+            mapped.putLong(offset + 16, crc.getValue());
+            mapped.force();
+            mapped.putLong(offset, sequence);
+            mapped.force();
+            return sequence;
+        }
+
+        /**
+         * Replaces the file with a larger one, keeping both slots. Both slots are written to a new file under a
+         * temporary name, which is forced to disk before it is renamed over the file, so the previous contents remain
+         * readable until the replacement, holding the same contents, is complete.
+         */
+        private void resize(int length) throws IOException {
+            int newCapacity = Math.max(4096, Integer.highestOneBit(length) << 1);
+            byte[] older = read(sequence - 1);
+            byte[] newer = read(sequence);
+
+            Path folder = file.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            Path temporaryFile = Files.createTempFile(folder, "checkpoint", ".tmp");
+            try (RandomAccessFile newFile = new RandomAccessFile(temporaryFile.toFile(), "rw")) {
+                newFile.setLength(HEADER_BYTES + 2L * (SLOT_HEADER_BYTES + newCapacity));
+                newFile.writeInt(MAGIC);
+                newFile.writeInt(VERSION);
+                newFile.writeInt(newCapacity);
+                if (older != null) writeSlot(newFile, newCapacity, sequence - 1, older);
+                if (newer != null) writeSlot(newFile, newCapacity, sequence, newer);
+                newFile.getFD().sync();
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            map();
+            slotCapacity = newCapacity;
+        }
+
+        /**
+         * Writes contents, with the sequence number they were written with, to their slot of a new file.
+         */
+        private static void writeSlot(RandomAccessFile newFile, int capacity, long slotSequence, byte[] contents)
+                throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            newFile.seek(HEADER_BYTES + (slotSequence % 2) * (SLOT_HEADER_BYTES + capacity));
+            newFile.writeLong(slotSequence);
+            newFile.writeInt(contents.length);
+            newFile.writeInt(0);
+            newFile.writeLong(crc.getValue());
+            newFile.write(contents);
+        }
+
+        private void map() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+        }
+
+        private int slotOffset(int slot) {
+            return HEADER_BYTES + slot * (SLOT_HEADER_BYTES + slotCapacity);
+        }
+    }
+
+    /**
+     * The state of an environment at the time a snapshot was taken.
+     */
+    static final class Snapshot {
+        private final String environmentKey;
+        // Whether every run of the environment had finished and its data files had been closed.
+        final boolean environmentComplete;
+        // The run in progress, or the next run to be made when no run is in progress.
+        final int run;
+        final boolean runInProgress;
+        final int runsToComplete;
+        private final long seed;
+        private final Random random;
+        final KeyDaysData keyDaysData;
+        // The summary as it was when the snapshot was taken, rebuilt from the saved summary and the journal.
+        CrossRunSummary crossRunSummary;
+        private final long summarySequence;
+        private final byte[] journal;
+        private final long[] fileLengths;
+
+        // The state of the run in progress.
+        int day;
+        boolean takeover;
+        int extension;
+        private int[] agentIDs;
+        private int[] agentTypes;
+        private int[] socialCapital;
+        private int[][] favoursOwed;
+        private int[][] favoursGiven;
+
+        private Snapshot(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            environmentKey = in.readUTF();
+            environmentComplete = in.readBoolean();
+            run = in.readInt();
+            runInProgress = in.readBoolean();
+            runsToComplete = in.readInt();
+            seed = in.readLong();
+            random = (Random) readObject(in);
+            keyDaysData = (KeyDaysData) readObject(in);
+            summarySequence = in.readLong();
+            journal = new byte[in.readInt()];
+            in.readFully(journal);
+            fileLengths = new long[in.readInt()];
+            for (int i = 0; i < fileLengths.length; i++) {
+                fileLengths[i] = in.readLong();
+            }
+
+            if (runInProgress) {
+                day = in.readInt();
+                takeover = in.readBoolean();
+                extension = in.readInt();
+
+                int populationSize = in.readInt();
+                agentIDs = new int[populationSize];
+                agentTypes = new int[populationSize];
+                socialCapital = new int[populationSize];
+                favoursOwed = new int[populationSize][];
+                favoursGiven = new int[populationSize][];
+                for (int i = 0; i < populationSize; i++) {
+                    agentIDs[i] = in.readInt();
+                    agentTypes[i] = in.readInt();
+                    socialCapital[i] = in.readInt();
+                    favoursOwed[i] = readLedger(in);
+                    favoursGiven[i] = readLedger(in);
+                }
+            }
+        }
+
+        private static Object readObject(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return objectIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unreadable checkpoint", e);
+            }
+        }
+
+        private static int[] readLedger(DataInputStream in) throws IOException {
+            int[] ledger = new int[in.readInt() * 2];
+            for (int i = 0; i < ledger.length; i++) {
+                ledger[i] = in.readInt();
+            }
+            return ledger;
+        }
+
+        /**
+         * Moves the simulation's seed and {@link Random} back to where they were when the snapshot was taken.
+         */
+        void restoreRandom() {
+            ResourceExchangeArena.setCurrentSeed(seed);
+            ResourceExchangeArena.setRandom(random);
+        }
+
+        /**
+         * Discards anything written to the data files after the snapshot was taken. Files that weren't being written
+         * when the snapshot was taken are deleted, as what they hold can't be matched to the snapshot.
+         *
+         * @param files The data files, in the same order as when the snapshot was taken.
+         * @throws IOException On output error.
+         */
+        void truncate(File @NotNull [] files) throws IOException {
+            for (int i = 0; i < files.length; i++) {
+                if (i >= fileLengths.length) {
+                    Files.deleteIfExists(files[i].toPath());
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(files[i].toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(fileLengths[i]);
+                }
+            }
+        }
+
+        /**
+         * Recreates the {@link Agent}s of the run in progress, in the order they were in when the snapshot was taken.
+         *
+         * @param agents        {@link ArrayList} that the recreated {@link Agent}s are added to.
+         * @param slotsPerAgent {@link Integer} value representing the number of time slots each {@link Agent} requires.
+         * @param socialCapital Determines whether the {@link Agent}s use social capital.
+         */
+        void restoreAgents(ArrayList<Agent> agents, int slotsPerAgent, boolean socialCapital) {
+            for (int i = 0; i < agentIDs.length; i++) {
+                new Agent(agentIDs[i], agentTypes[i], slotsPerAgent, agents, socialCapital)
+                        .restoreState(this.socialCapital[i], favoursOwed[i], favoursGiven[i]);
+            }
+        }
+    }
+}
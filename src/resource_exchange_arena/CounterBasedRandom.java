@@ -0,0 +1,120 @@
+package resource_exchange_arena;
+
+import java.io.Serial;
+import java.util.Random;
+
+class CounterBasedRandom extends Random {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // The phases of the simulation that draw random numbers, each phase has its own streams.
+    static final int SETUP = 0;
+    static final int AVAILABILITY = 1;
+    static final int DEMAND = 2;
+    static final int ALLOCATION = 3;
+    static final int ADVERTISING = 4;
+    static final int REQUESTING = 5;
+    static final int CONSIDERING = 6;
+    static final int COMPLETING = 7;
+    static final int LEARNING = 8;
+    static final int SHARDING = 9;
+    static final int PROFILES = 10;
+    static final int TOPOLOGY = 11;
+    static final int CYCLES = 12;
+    static final int PLANNER = 13;
+
+    // Weyl sequence increment used to step through a stream.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long seed;
+    // Key of the current stream, derived from the seed and the position in the simulation.
+    private long stream;
+    // Number of values drawn from the current stream.
+    private long counter;
+
+    /**
+     * A random number generator where every value is a pure function of a key and a counter, rather than of every value
+     * drawn before it. Each stream is keyed by the seed and a position in the simulation, the run, {@link Day},
+     * {@link Exchange} round, phase and {@link Agent}, so any stream can be jumped to directly without replaying the
+     * streams before it. An instance holds no shared state and needs no locking, so each thread uses its own instance.
+     * <p>
+     * Values are produced by the SplitMix64 finaliser applied to the stream key plus a multiple of the counter.
+     *
+     * @param seed {@link Long} value that every stream is derived from.
+     */
+    CounterBasedRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Changes the seed and returns to the start of the first stream.
+     *
+     * @param seed {@link Long} value that every stream is derived from.
+     */
+    @Override
+    public void setSeed(long seed) {
+        // Called by the superclass constructor, the superclass's own state is never used.
+        this.seed = seed;
+        jump(0, 0, 0, SETUP, 0);
+    }
+
+    /**
+     * Moves to the start of the stream for the given position in the simulation.
+     *
+     * @param run   {@link Integer} value identifying the simulation run.
+     * @param day   {@link Integer} value representing the {@link Day}.
+     * @param round {@link Integer} value representing the {@link Exchange} round, or 0 outside of the exchanges.
+     * @param phase {@link Integer} value representing the phase of the simulation drawing the values.
+     * @param agent {@link Integer} value identifying the {@link Agent} drawing the values, or 0 if shared by all.
+     */
+    void jump(int run, int day, int round, int phase, int agent) {
+        long key = mix(seed);
+        key = mix(key ^ (((long) run << 32) | (day & 0xFFFFFFFFL)));
+        key = mix(key ^ (((long) round << 32) | ((long) (phase & 0xFF) << 24) | (agent & 0xFFFFFFL)));
+        stream = key;
+        counter = 0;
+    }
+
+    /**
+     * Moves the given {@link Random} to the start of a stream if it is counter based. The legacy generator has a single
+     * stream and is left where it is, so that it reproduces results produced before streams existed.
+     *
+     * @param random The {@link Random} being used by the simulation.
+     * @param run    {@link Integer} value identifying the simulation run.
+     * @param day    {@link Integer} value representing the {@link Day}.
+     * @param round  {@link Integer} value representing the {@link Exchange} round, or 0 outside of the exchanges.
+     * @param phase  {@link Integer} value representing the phase of the simulation drawing the values.
+     * @param agent  {@link Integer} value identifying the {@link Agent} drawing the values, or 0 if shared by all.
+     */
+    static void jump(Random random, int run, int day, int round, int phase, int agent) {
+        if (random instanceof CounterBasedRandom counterBasedRandom) {
+            counterBasedRandom.jump(run, day, round, phase, agent);
+        }
+    }
+
+    /**
+     * @param random The {@link Random} being used by the simulation.
+     * @return Whether the {@link Random} is counter based.
+     */
+    static boolean isCounterBased(Random random) {
+        return random instanceof CounterBasedRandom;
+    }
+
+    @Override
+    protected int next(int bits) {
+        counter++;
+        return (int) (mix(stream + counter * GOLDEN_GAMMA) >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        counter++;
+        return mix(stream + counter * GOLDEN_GAMMA);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
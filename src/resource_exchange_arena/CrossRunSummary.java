@@ -0,0 +1,275 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+class CrossRunSummary implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // Resolution of the quantile sketches, satisfaction is always between 0 and 1.
+    private static final int DAY_SATISFACTION_BINS = 200;
+    private static final int ROUND_SATISFACTION_BINS = 50;
+    private static final int MAX_POPULATION_BINS = 200;
+
+    // The files that the summaries are written to, in the data output folder.
+    static final String DAILY_SUMMARY = "dailySummary.csv";
+    static final String EXCHANGE_SUMMARY = "exchangeSummary.csv";
+
+    // Types of the entries recorded in the journal.
+    private static final byte DAY_ENTRY = 0;
+    private static final byte ROUND_ENTRY = 1;
+
+    private final int populationSize;
+    private final ArrayList<Integer> uniqueAgentTypes;
+    // Summaries for each day, where index 0 holds day 1.
+    private final ArrayList<DaySummary> days = new ArrayList<>();
+    // Values added since the journal was started, or null when no journal is being kept.
+    private transient ByteArrayOutputStream journalBytes;
+    private transient DataOutputStream journal;
+
+    /**
+     * Summarises the daily and per round results of every simulation run as each {@link Day} and {@link Exchange}
+     * finishes, so that results can be compared across runs without re-reading the raw data files.
+     *
+     * @param populationSize   {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param uniqueAgentTypes {@link Integer} {@link ArrayList} containing each unique {@link Agent} type that exists when the simulation begins.
+     */
+    CrossRunSummary(int populationSize, ArrayList<Integer> uniqueAgentTypes) {
+        this.populationSize = populationSize;
+        this.uniqueAgentTypes = uniqueAgentTypes;
+    }
+
+    /**
+     * Adds the end of day results of a single run. The satisfaction of a population is only included on days where
+     * that population exists.
+     *
+     * @param day     {@link Integer} value representing the {@link Day} that has finished.
+     * @param current The {@link Day} that has finished.
+     */
+    void addDay(int day, @NotNull Day current) {
+        addDay(day, current.socPop, current.selPop, current.socSat, current.selSat,
+                current.randomAllocations, current.optimumAllocations);
+    }
+
+    private void addDay(int day, int socPop, int selPop, double socSat, double selSat,
+                        double randomAllocations, double optimumAllocations) {
+        DaySummary summary = daySummary(day);
+        summary.socialPopulation.add(socPop);
+        summary.selfishPopulation.add(selPop);
+        if (socPop > 0) summary.socialSatisfaction.add(socSat);
+        if (selPop > 0) summary.selfishSatisfaction.add(selSat);
+        summary.randomAllocation.add(randomAllocations);
+        summary.optimumAllocation.add(optimumAllocations);
+
+        if (journal != null) {
+            try {
+                journal.writeByte(DAY_ENTRY);
+                journal.writeInt(day);
+                journal.writeInt(socPop);
+                journal.writeInt(selPop);
+                journal.writeDouble(socSat);
+                journal.writeDouble(selSat);
+                journal.writeDouble(randomAllocations);
+                journal.writeDouble(optimumAllocations);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Adds the end of round average satisfaction of a single {@link Agent} type for a single run.
+     *
+     * @param day          {@link Integer} value representing the current {@link Day} being simulated.
+     * @param round        {@link Integer} value representing the {@link Exchange} round that has finished.
+     * @param agentType    The {@link Agent} type that the satisfaction belongs to.
+     * @param satisfaction The average satisfaction of the {@link Agent}s of that type.
+     */
+    void addRound(int day, int round, int agentType, double satisfaction) {
+        ArrayList<Metric[]> rounds = daySummary(day).rounds;
+        while (rounds.size() <= round) {
+            Metric[] roundMetrics = new Metric[uniqueAgentTypes.size()];
+            for (int i = 0; i < roundMetrics.length; i++) {
+                roundMetrics[i] = new Metric(0.0, 1.0, ROUND_SATISFACTION_BINS);
+            }
+            rounds.add(roundMetrics);
+        }
+        rounds.get(round)[uniqueAgentTypes.indexOf(agentType)].add(satisfaction);
+
+        if (journal != null) {
+            try {
+                journal.writeByte(ROUND_ENTRY);
+                journal.writeInt(day);
+                journal.writeInt(round);
+                journal.writeInt(agentType);
+                journal.writeDouble(satisfaction);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Starts recording every value added to the summary, discarding anything recorded before. A {@link Checkpoint}
+     * saves the whole summary once per run and only the values recorded since then at the end of each {@link Day}.
+     */
+    void startJournal() {
+        journalBytes = new ByteArrayOutputStream();
+        journal = new DataOutputStream(journalBytes);
+    }
+
+    /**
+     * @return Every value added to the summary since {@link #startJournal()} was called.
+     */
+    byte[] journal() {
+        return journalBytes.toByteArray();
+    }
+
+    /**
+     * Adds the values of a journal to the summary again, in the order they were first added.
+     *
+     * @param journal The journal to replay, see {@link #journal()}.
+     * @throws IOException On input error.
+     */
+    void replay(byte[] journal) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(journal));
+        while (in.available() > 0) {
+            byte entry = in.readByte();
+            if (entry == DAY_ENTRY) {
+                addDay(in.readInt(), in.readInt(), in.readInt(), in.readDouble(), in.readDouble(),
+                        in.readDouble(), in.readDouble());
+            } else {
+                addRound(in.readInt(), in.readInt(), in.readInt(), in.readDouble());
+            }
+        }
+    }
+
+    private DaySummary daySummary(int day) {
+        while (days.size() < day) {
+            days.add(new DaySummary());
+        }
+        return days.get(day - 1);
+    }
+
+    /**
+     * Writes the summaries of each day and each round to the data output folder.
+     *
+     * @param dataOutputFolder {@link String} representing the folder that the simulation's data is stored in.
+     * @throws IOException On output error.
+     */
+    void write(String dataOutputFolder) throws IOException {
+        FileWriter dailySummaryWriter = new FileWriter(new File(dataOutputFolder, DAILY_SUMMARY));
+
+        dailySummaryWriter.append("Day,Runs");
+        for (String name : new String[]{"Social Pop", "Selfish Pop", "Social Sat", "Selfish Sat",
+                "Random Allocation Sat", "Optimum Allocation Sat"}) {
+            Metric.writeHeader(dailySummaryWriter, name);
+        }
+        dailySummaryWriter.append("\n");
+
+        for (int i = 0; i < days.size(); i++) {
+            DaySummary summary = days.get(i);
+            Utilities.write(dailySummaryWriter, String.valueOf(i + 1), ",",
+                    String.valueOf(summary.socialPopulation.statistics.count()));
+            for (Metric metric : new Metric[]{summary.socialPopulation, summary.selfishPopulation,
+                    summary.socialSatisfaction, summary.selfishSatisfaction,
+                    summary.randomAllocation, summary.optimumAllocation}) {
+                metric.write(dailySummaryWriter);
+            }
+            dailySummaryWriter.append("\n");
+        }
+        dailySummaryWriter.close();
+
+        FileWriter exchangeSummaryWriter = new FileWriter(new File(dataOutputFolder, EXCHANGE_SUMMARY));
+
+        exchangeSummaryWriter.append("Day,Round,Agent Type,Runs");
+        Metric.writeHeader(exchangeSummaryWriter, "Satisfaction");
+        exchangeSummaryWriter.append("\n");
+
+        for (int i = 0; i < days.size(); i++) {
+            ArrayList<Metric[]> rounds = days.get(i).rounds;
+            for (int round = 0; round < rounds.size(); round++) {
+                for (int type = 0; type < uniqueAgentTypes.size(); type++) {
+                    Metric metric = rounds.get(round)[type];
+                    Utilities.write(exchangeSummaryWriter, String.valueOf(i + 1), ",",
+                            String.valueOf(round), ",",
+                            String.valueOf(uniqueAgentTypes.get(type)), ",",
+                            String.valueOf(metric.statistics.count()));
+                    metric.write(exchangeSummaryWriter);
+                    exchangeSummaryWriter.append("\n");
+                }
+            }
+        }
+        exchangeSummaryWriter.close();
+    }
+
+    /**
+     * The summaries of all runs for a single {@link Day}.
+     */
+    private final class DaySummary implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Metric socialPopulation = populationMetric();
+        private final Metric selfishPopulation = populationMetric();
+        private final Metric socialSatisfaction = new Metric(0.0, 1.0, DAY_SATISFACTION_BINS);
+        private final Metric selfishSatisfaction = new Metric(0.0, 1.0, DAY_SATISFACTION_BINS);
+        private final Metric randomAllocation = new Metric(0.0, 1.0, DAY_SATISFACTION_BINS);
+        private final Metric optimumAllocation = new Metric(0.0, 1.0, DAY_SATISFACTION_BINS);
+        private final ArrayList<Metric[]> rounds = new ArrayList<>();
+
+        private Metric populationMetric() {
+            return new Metric(0.0, populationSize, Math.min(populationSize, MAX_POPULATION_BINS));
+        }
+    }
+
+    /**
+     * Mean, variance and quantiles of a single value across runs.
+     */
+    private static final class Metric implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final RunningStatistics statistics = new RunningStatistics();
+        private final QuantileSketch sketch;
+
+        Metric(double lowerBound, double upperBound, int numberOfBins) {
+            sketch = new QuantileSketch(lowerBound, upperBound, Math.max(1, numberOfBins));
+        }
+
+        void add(double value) {
+            statistics.add(value);
+            sketch.add(value);
+        }
+
+        static void writeHeader(FileWriter writer, String name) throws IOException {
+            Utilities.write(writer, ",", name, " Mean",
+                    ",", name, " SD",
+                    ",", name, " CI",
+                    ",", name, " Lower Quartile",
+                    ",", name, " Median",
+                    ",", name, " Upper Quartile");
+        }
+
+        void write(FileWriter writer) throws IOException {
+            Utilities.write(writer, ",", String.valueOf(statistics.mean()),
+                    ",", String.valueOf(statistics.standardDeviation()),
+                    ",", String.valueOf(statistics.confidenceInterval()),
+                    ",", String.valueOf(sketch.quantile(0.25)),
+                    ",", String.valueOf(sketch.quantile(0.5)),
+                    ",", String.valueOf(sketch.quantile(0.75)));
+        }
+    }
+}
@@ -2,14 +2,17 @@ package resource_exchange_arena;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Random;
 import java.util.stream.IntStream;
 
 public class Day {
+    // The number of consecutive rounds without any exchanges after which no more rounds take place.
+    static final int MAX_TIMEOUT = 10;
+
     // List of all the possible allocations that exist in the current simulation.
     private final ArrayList<Integer> availableTimeSlots = new ArrayList<>();
 
@@ -26,19 +29,31 @@ public class Day {
     double randomAllocations;
     double optimumAllocations;
 
+    // The number of exchanges that took place across all of the day's rounds.
+    int exchanges;
+
     /**
      * @param demandCurves           {@link Double} arrays of demand used by the {@link Agent}s, when multiple curves are used the {@link Agent}s are split equally between the curves.
      * @param totalDemandValues      {@link Double} values representing the sum of all values in their associated demand curves.
      * @param availabilityCurve      {@link Integer} array representing the amount of energy available at each timeslot.
      * @param totalAvailability      {@link Integer} value representing the total energy available throughout the {@link Day}.
+     * @param scenarioBank           Replays pre-generated requested and available time slots, or {@code null} to sample them each {@link Day}.
+     * @param profileLibrary         Gives each {@link Agent} a household's demand of its own, or {@code null} to share the demand curves.
+     * @param regions                The regional markets that the {@link Agent}s trade in, or {@code null} to trade in a single global market.
+     * @param topology               The network that limits which {@link Agent}s can trade with each other, or {@code null} for every {@link Agent} to trade with any other.
+     * @param orderBook              Matches each exchange request with the best resting order for a time slot, or {@code null} for {@link Agent}s to search a shuffled advertising board.
+     * @param centralPlanner         Makes every trade of each round in place of the {@link Agent}s' requests, or {@code null} for the {@link Agent}s to find their own partners.
+     * @param tradingCycles          Trades around cycles of {@link Agent}s after each round's pairwise exchanges, or {@code null} to only exchange in pairs.
      * @param day                    {@link Integer} value representing the current {@link Day} being simulated.
-     * @param maxExchanges           Stores the highest number of exchange rounds reached each simulation.
      * @param populationSize         {@link Integer} value representing the size of the initial {@link Agent} population.
      * @param uniqueTimeSlots        {@link Integer} value representing the number of unique time slots available in the simulation.
      * @param slotsPerAgent          {@link Integer} value representing the number of time slots each {@link Agent} requires.
-     * @param numberOfAgentsToEvolve {@link Integer} value representing the number of {@link Agent}s whose strategy will change at the end of each {@link Day}.
      * @param uniqueAgentTypes       {@link Integer} {@link ArrayList} containing each unique {@link Agent} type that exists when the simulation begins.
      * @param agents                 {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param agentSatisfactions     Reused each {@link Day} to hold the satisfaction of each {@link Agent}, indexed by agentID - 1.
+     * @param socialLearning         Used to allow {@link Agent}s to change their strategy at the end of the {@link Day}.
+     * @param crossRunSummary        Summarises each {@link Day} and round across all simulation runs.
+     * @param exchangeTrace          Receives every step of each exchange round, or {@code null} if they aren't traced.
      * @param dailyDataWriter        Used to store data regarding the state of the system at the end of each {@link Day}.
      * @param perAgentDataCSVWriter  Used to store data regarding the state of the {@link Agent} at the end of each {@link Day}.
      * @param eachRoundDataCSVWriter Used to store data regarding the state of the system at the end of each round.
@@ -50,93 +65,97 @@ public class Day {
             double[] totalDemandValues,
             int[] availabilityCurve,
             int totalAvailability,
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            ShardedMarket.Regions regions,
+            Topology topology,
+            OrderBook orderBook,
+            CentralPlanner centralPlanner,
+            TradingCycles tradingCycles,
             int day,
-            ArrayList<Integer> maxExchanges,
             int populationSize,
             int uniqueTimeSlots,
             int slotsPerAgent,
-            int numberOfAgentsToEvolve,
             ArrayList<Integer> uniqueAgentTypes,
             ArrayList<Agent> agents,
-            FileWriter dailyDataWriter,
-            FileWriter perAgentDataCSVWriter,
-            FileWriter eachRoundDataCSVWriter,
+            double[] agentSatisfactions,
+            SocialLearning socialLearning,
+            CrossRunSummary crossRunSummary,
+            ExchangeTrace exchangeTrace,
+            Writer dailyDataWriter,
+            Writer perAgentDataCSVWriter,
+            Writer eachRoundDataCSVWriter,
             int run
     ) throws IOException {
 
-        if (!availableTimeSlots.isEmpty()) {
-            availableTimeSlots.clear();
-        }
-
-        // Fill the available time slots with all the slots that exist each day.
-        int requiredTimeSLots = populationSize * slotsPerAgent;
-
-        for (int i = 1; i <= requiredTimeSLots; i++) {
-            // Get the simulations seeded Random object.
-            Random random = ResourceExchangeArena.random;
-
-            // Selects a time slot based on the demand curve.
-            int wheelSelector = random.nextInt(totalAvailability);
-            int wheelCalculator = 0;
-            int timeSlot = 0;
-            while (wheelCalculator < wheelSelector) {
-                wheelCalculator = wheelCalculator + (availabilityCurve[timeSlot]);
-                timeSlot++;
-            }
-            availableTimeSlots.add(timeSlot);
-        }
+        Instrumentation.startDay(run, day);
+        long phaseStart = Instrumentation.start();
 
+        if (regions != null) {
+            // Each region allocates and trades on its own, and only the totals of the regions are kept.
+            exchanges = regions.trade(run, day, uniqueAgentTypes, crossRunSummary, eachRoundDataCSVWriter);
+            randomAllocations = regions.randomAllocations();
+            optimumAllocations = regions.optimumAllocations();
+        } else {
+            allocate(
+                    agents,
+                    availableTimeSlots,
+                    demandCurves,
+                    totalDemandValues,
+                    availabilityCurve,
+                    totalAvailability,
+                    scenarioBank,
+                    profileLibrary,
+                    exchangeTrace,
+                    slotsPerAgent,
+                    run,
+                    day
+            );
 
-        // Agents start the day by requesting and receiving an allocation of time slots.
-        Collections.shuffle(agents, ResourceExchangeArena.random);
-        ArrayList<Integer> curves = new ArrayList<>();
-
-        int curve = 0;
-        for (int i = 0; i < agents.size(); i++) {
-            curves.add(curve);
-            curve++;
-            if (curve >= demandCurves.length) {
-                curve = 0;
+            // The random and optimum average satisfaction scores are calculated before exchanges take place.
+            randomAllocations = CalculateSatisfaction.averageAgentSatisfaction(agents);
+            optimumAllocations = CalculateSatisfaction.optimumAgentSatisfaction(agents, topology);
+
+            Instrumentation.count(Instrumentation.ALLOCATED_TIME_SLOTS, (long) populationSize * slotsPerAgent);
+            Instrumentation.lap(Instrumentation.DAY_SETUP, phaseStart);
+
+            // A pre-determined number of pairwise exchanges take place, during each exchange all agents have a chance to
+            // trade with another agent.
+            int currentExchanges = 0;
+            int timeout = 0;
+
+            while (timeout < MAX_TIMEOUT) {
+                Exchange current = new Exchange(
+                        run,
+                        day,
+                        currentExchanges,
+                        uniqueAgentTypes,
+                        agents,
+                        topology,
+                        orderBook,
+                        centralPlanner,
+                        tradingCycles,
+                        crossRunSummary,
+                        exchangeTrace,
+                        eachRoundDataCSVWriter
+                );
+
+                exchanges += current.exchanges;
+                if (current.noExchanges) timeout++;
+                else timeout = 0;
+
+                currentExchanges++;
             }
         }
-        Collections.shuffle(curves);
-
-        for (Agent a : agents) {
-            a.resetDailyTracking();
-            int selector = curves.remove(0);
-            ArrayList<Integer> requestedTimeSlots = a.requestTimeSlots(demandCurves[selector], totalDemandValues[selector]);
-            ArrayList<Integer> allocatedTimeSlots = getRandomInitialAllocation(requestedTimeSlots);
-            a.receiveAllocatedTimeSlots(allocatedTimeSlots);
-        }
-
-        // The random and optimum average satisfaction scores are calculated before exchanges take place.
-        randomAllocations = CalculateSatisfaction.averageAgentSatisfaction(agents);
-        optimumAllocations = CalculateSatisfaction.optimumAgentSatisfaction(agents);
-
-        // A pre-determined number of pairwise exchanges take place, during each exchange all agents have a chance to
-        // trade with another agent.
-        int currentExchanges = 0;
-        int timeout = 0;
-        int maxTimeout = 10;
-
-        while (timeout < maxTimeout) {
-            Exchange current = new Exchange(
-                    run,
-                    day,
-                    currentExchanges,
-                    uniqueAgentTypes,
-                    agents,
-                    eachRoundDataCSVWriter
-            );
 
-            if (current.noExchanges) timeout++;
-            else timeout = 0;
+        // The rounds time their own phases.
+        phaseStart = Instrumentation.start();
 
-            currentExchanges++;
+        // Each Agent's satisfaction is calculated once and reused for the statistics, the output and social learning.
+        for (Agent a : agents) {
+            agentSatisfactions[a.agentID - 1] = a.calculateSatisfaction(null);
         }
 
-        maxExchanges.add(currentExchanges);
-
         socPop = 0;
         selPop = 0;
 
@@ -148,13 +167,17 @@ public class Day {
             }
         }
 
-        socSat = CalculateSatisfaction.averageAgentSatisfaction(agents, ResourceExchangeArena.SOCIAL);
-        selSat = CalculateSatisfaction.averageAgentSatisfaction(agents, ResourceExchangeArena.SELFISH);
-        socSD = CalculateSatisfaction.averageSatisfactionStandardDeviation(agents, ResourceExchangeArena.SOCIAL);
-        selSD = CalculateSatisfaction.averageSatisfactionStandardDeviation(agents, ResourceExchangeArena.SELFISH);
+        socSat = CalculateSatisfaction.averageAgentSatisfaction(agents, agentSatisfactions, ResourceExchangeArena.SOCIAL);
+        selSat = CalculateSatisfaction.averageAgentSatisfaction(agents, agentSatisfactions, ResourceExchangeArena.SELFISH);
+        socSD = CalculateSatisfaction.averageSatisfactionStandardDeviation(agents, agentSatisfactions, ResourceExchangeArena.SOCIAL);
+        selSD = CalculateSatisfaction.averageSatisfactionStandardDeviation(agents, agentSatisfactions, ResourceExchangeArena.SELFISH);
+
+        socialStatValues = CalculateSatisfaction.statisticalValues(agents, agentSatisfactions, ResourceExchangeArena.SOCIAL);
+        selfishStatValues = CalculateSatisfaction.statisticalValues(agents, agentSatisfactions, ResourceExchangeArena.SELFISH);
+
+        crossRunSummary.addDay(day, this);
 
-        socialStatValues = CalculateSatisfaction.statisticalValues(agents, ResourceExchangeArena.SOCIAL);
-        selfishStatValues = CalculateSatisfaction.statisticalValues(agents, ResourceExchangeArena.SELFISH);
+        phaseStart = Instrumentation.lap(Instrumentation.DAY_STATISTICS, phaseStart);
 
         Utilities.write(dailyDataWriter, String.valueOf(run), ",",
                 String.valueOf(day), ",",
@@ -184,7 +207,7 @@ public class Day {
             Utilities.write(perAgentDataCSVWriter, String.valueOf(run), ",",
                     String.valueOf(day), ",",
                     String.valueOf(a.getAgentType()), ",",
-                    String.valueOf(a.calculateSatisfaction(null)), ",",
+                    String.valueOf(agentSatisfactions[a.agentID - 1]), ",",
                     String.valueOf(a.getRejectedReceivedExchanges()), ",",
                     String.valueOf(a.getSocialCapitalExchanges() + a.getNoSocialCapitalExchanges()), ",",
                     String.valueOf(a.getRejectedRequestedExchanges()), ",",
@@ -194,6 +217,8 @@ public class Day {
                     String.valueOf(a.getUnspentSocialCapital()), "\n");
         }
 
+        phaseStart = Instrumentation.lap(Instrumentation.DATA_OUTPUT, phaseStart);
+
         /*
          * To facilitate social learning, for the number of the agents who are able to consider changing their strategy,
          * an Agent is selected at random, and then a second agent is selected to be observed. The first agent selected
@@ -201,23 +226,132 @@ public class Day {
          * strategy used by the observed agent in the previous day, with the likelihood of copying their strategy
          * proportional to the difference between their individual satisfactions.
          */
-        new SocialLearning(agents, slotsPerAgent, numberOfAgentsToEvolve);
+        socialLearning.learn(agents, agentSatisfactions, run, day);
+
+        Instrumentation.lap(Instrumentation.SOCIAL_LEARNING, phaseStart);
+        Instrumentation.endDay();
+    }
+
+    /**
+     * Samples the time slots available for the {@link Day}, and gives each {@link Agent} a random allocation of them once
+     * it has requested the time slots it wants.
+     *
+     * @param agents             {@link ArrayList} of the {@link Agent}s to allocate time slots to, which is shuffled.
+     * @param availableTimeSlots Reused to hold the time slots that are yet to be allocated.
+     * @param demandCurves       {@link Double} arrays of demand used by the {@link Agent}s, when multiple curves are used the {@link Agent}s are split equally between the curves.
+     * @param totalDemandValues  {@link Double} values representing the sum of all values in their associated demand curves.
+     * @param availabilityCurve  {@link Integer} array representing the amount of energy available at each timeslot.
+     * @param totalAvailability  {@link Integer} value representing the total energy available throughout the {@link Day}.
+     * @param scenarioBank       Replays pre-generated requested and available time slots, or {@code null} to sample them each {@link Day}.
+     * @param profileLibrary     Gives each {@link Agent} a household's demand of its own, or {@code null} to share the demand curves.
+     * @param exchangeTrace      Receives each {@link Agent}'s allocation, or {@code null} if they aren't traced.
+     * @param slotsPerAgent      {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param run                {@link Integer} value identifying the current simulation run.
+     * @param day                {@link Integer} value representing the current {@link Day} being simulated.
+     * @throws IOException On output error.
+     */
+    static void allocate(
+            @NotNull ArrayList<Agent> agents,
+            @NotNull ArrayList<Integer> availableTimeSlots,
+            double[][] demandCurves,
+            double[] totalDemandValues,
+            int[] availabilityCurve,
+            int totalAvailability,
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            ExchangeTrace exchangeTrace,
+            int slotsPerAgent,
+            int run,
+            int day
+    ) throws IOException {
+        if (!availableTimeSlots.isEmpty()) {
+            availableTimeSlots.clear();
+        }
+
+        // Fill the available time slots with all the slots that exist each day.
+        int requiredTimeSLots = agents.size() * slotsPerAgent;
+
+        if (scenarioBank != null) {
+            scenarioBank.availableTimeSlots(run, day, availableTimeSlots);
+        } else {
+            SelectionWheel availabilityWheel = SelectionWheel.ofAvailability(availabilityCurve, totalAvailability);
+            CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, 0, CounterBasedRandom.AVAILABILITY, 0);
+            for (int i = 1; i <= requiredTimeSLots; i++) {
+                // Get the simulations seeded Random object.
+                Random random = ResourceExchangeArena.random();
+
+                availableTimeSlots.add(availabilityWheel.select(random));
+            }
+        }
+
+
+        // Agents start the day by requesting and receiving an allocation of time slots.
+        CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, 0, CounterBasedRandom.ALLOCATION, 0);
+        Collections.shuffle(agents, ResourceExchangeArena.random());
+        ArrayList<Integer> curves = new ArrayList<>();
+        SelectionWheel[] demandWheels = new SelectionWheel[demandCurves.length];
+
+        // Requests replayed from the scenario bank already have their demand curves assigned, and households from the
+        // library are assigned by the library.
+        if (scenarioBank == null && profileLibrary == null) {
+            for (int i = 0; i < demandCurves.length; i++) {
+                demandWheels[i] = SelectionWheel.ofDemand(demandCurves[i], totalDemandValues[i]);
+            }
+            int curve = 0;
+            for (int i = 0; i < agents.size(); i++) {
+                curves.add(curve);
+                curve++;
+                if (curve >= demandCurves.length) {
+                    curve = 0;
+                }
+            }
+            // The legacy generator never drew the curves from the simulation's Random, so it still doesn't.
+            if (CounterBasedRandom.isCounterBased(ResourceExchangeArena.random())) {
+                Collections.shuffle(curves, ResourceExchangeArena.random());
+            } else {
+                Collections.shuffle(curves);
+            }
+        }
+
+        for (Agent a : agents) {
+            a.resetDailyTracking();
+            ArrayList<Integer> requestedTimeSlots;
+            if (scenarioBank != null) {
+                requestedTimeSlots = a.requestTimeSlots(scenarioBank, run, day);
+            } else if (profileLibrary != null) {
+                CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, 0, CounterBasedRandom.DEMAND, a.agentID);
+                requestedTimeSlots = a.requestTimeSlots(profileLibrary.household(run, a.agentID).demandWheel);
+            } else {
+                int selector = curves.remove(0);
+                CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, 0, CounterBasedRandom.DEMAND, a.agentID);
+                requestedTimeSlots = a.requestTimeSlots(demandWheels[selector]);
+            }
+            CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, 0, CounterBasedRandom.ALLOCATION, a.agentID);
+            ArrayList<Integer> allocatedTimeSlots = getRandomInitialAllocation(availableTimeSlots, requestedTimeSlots);
+            a.receiveAllocatedTimeSlots(allocatedTimeSlots);
+            if (exchangeTrace != null) {
+                exchangeTrace.allocation(run, day, a.agentID, a.getAgentType(), requestedTimeSlots, allocatedTimeSlots);
+            }
+        }
     }
 
     /**
      * Gives a random initial time slot allocation to an {@link Agent} based on the number of time slots it requests and the
      * time slots that are currently available.
      *
+     * @param availableTimeSlots The time slots that are yet to be allocated.
      * @param requestedTimeSlots The time slots that the {@link Agent} has requested.
      * @return A list of time slots to allocated to the {@link Agent}.
      */
-    private @NotNull ArrayList<Integer> getRandomInitialAllocation(@NotNull ArrayList<Integer> requestedTimeSlots) {
+    private static @NotNull ArrayList<Integer> getRandomInitialAllocation(
+            @NotNull ArrayList<Integer> availableTimeSlots,
+            @NotNull ArrayList<Integer> requestedTimeSlots) {
         ArrayList<Integer> timeSlots = new ArrayList<>();
 
         // Only allocate time slots if there are slots available to allocate.
         IntStream.rangeClosed(1, requestedTimeSlots.size()).forEach(requestedTimeSlot -> {
             if (!availableTimeSlots.isEmpty()) {
-                int selector = ResourceExchangeArena.random.nextInt(availableTimeSlots.size());
+                int selector = ResourceExchangeArena.random().nextInt(availableTimeSlots.size());
                 int timeSlot = availableTimeSlots.get(selector);
 
                 timeSlots.add(timeSlot);
@@ -0,0 +1,436 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+public class EngineVerification {
+    // The critical value of the two-sample Kolmogorov-Smirnov statistic at the 95% level, before scaling by the sample
+    // sizes.
+    static final double KS_95 = 1.3581;
+    // The number of diverging runs that are described individually.
+    static final int RUNS_REPORTED = 10;
+
+    /**
+     * Checks that an environment simulated by an optimised engine produced the same results as the reference engine.
+     * The reference is either a second environment folder, or when none is given the environment is simulated again
+     * by the reference engine from the parameters, seed and starting random state in its simulationData.txt, with the
+     * demand and availability curves taken from the current {@link ResourceExchangeArena} parameters.
+     * <p>
+     * Each run of both environments is reduced to fingerprints: a hash of the statistics row of each {@link Day}, of
+     * each {@link Day}'s per-agent rows and of each round's rows, and the key day records of the takeover and the final
+     * {@link Day}. When the fingerprints differ, the first {@link Day} and round at which each run diverges is reported,
+     * and the distributions of the outcomes across the runs are compared instead, for engines that are only meant to
+     * be statistically equivalent. The process exits with status 1 if the engines aren't equivalent.
+     *
+     * @param args Optionally "--statistical" to accept statistically equivalent results, then the environment folder of
+     *             the optimised engine, then optionally the environment folder of the reference engine.
+     * @throws IOException On input or output error.
+     */
+    public static void main(String @NotNull [] args) throws IOException {
+        boolean statistical = args.length > 0 && args[0].equals("--statistical");
+        int first = statistical ? 1 : 0;
+        if (args.length - first < 1) {
+            System.out.println("Usage: EngineVerification [--statistical] <environment folder> [reference environment folder]");
+            return;
+        }
+        Path candidateFolder = Path.of(args[first]);
+        Map<String, String> simulationData = RunReplay.readSimulationData(candidateFolder.resolve("simulationData.txt"));
+        int numberOfAgentsToEvolve = Integer.parseInt(simulationData.get("Number of agents to evolve"));
+        Fingerprint candidate = new Fingerprint(candidateFolder.resolve("data"), numberOfAgentsToEvolve);
+
+        Fingerprint reference;
+        if (args.length - first > 1) {
+            reference = new Fingerprint(Path.of(args[first + 1]).resolve("data"), numberOfAgentsToEvolve);
+        } else {
+            Path workFolder = Files.createTempDirectory("verification");
+            try {
+                reference = new Fingerprint(
+                        simulateReference(simulationData, candidate.runs.size(), workFolder), numberOfAgentsToEvolve);
+            } finally {
+                try (Stream<Path> paths = Files.walk(workFolder)) {
+                    paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+                }
+            }
+        }
+
+        boolean identical = compare(reference, candidate);
+        if (identical) {
+            System.out.println("IDENTICAL: " + candidate.runs.size() + " runs match the reference engine.");
+            return;
+        }
+
+        boolean equivalent = compareDistributions(reference, candidate);
+        if (equivalent && statistical) {
+            System.out.println("STATISTICALLY EQUIVALENT: the runs differ but their outcomes are consistent with the reference engine.");
+        } else {
+            System.out.println(equivalent
+                    ? "DIVERGED: the runs differ from the reference engine, although their outcomes are consistent with it."
+                    : "DIVERGED: the runs and their outcomes differ from the reference engine.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Simulates the recorded environment again with the reference engine, without visualisation.
+     *
+     * @param simulationData Each value in the environment's simulationData.txt, keyed by the name before its colon.
+     * @param runs           {@link Integer} value representing the number of runs the environment completed.
+     * @param workFolder     {@link Path} of the folder to simulate the environment in.
+     * @return {@link Path} of the folder containing the reference engine's data.
+     * @throws IOException On input or output error.
+     */
+    private static Path simulateReference(Map<String, String> simulationData, int runs, @NotNull Path workFolder)
+            throws IOException {
+        RunReplay.RecordedEnvironment environment = new RunReplay.RecordedEnvironment(simulationData);
+        ResourceExchangeArena.setCurrentSeed(environment.seed);
+        ResourceExchangeArena.setRandom(environment.random());
+
+        new ArenaEnvironment.Builder(workFolder.toString(), "reference")
+                .demandCurves(ResourceExchangeArena.DEMAND_CURVES)
+                .availabilityCurve(ResourceExchangeArena.AVAILABILITY_CURVE)
+                .socialCapital(environment.socialCapital)
+                .simulationRuns(runs)
+                .days(environment.days)
+                .populationSize(environment.populationSize)
+                .uniqueTimeSlots(environment.uniqueTimeSlots)
+                .slotsPerAgent(environment.slotsPerAgent)
+                .numberOfAgentsToEvolve(environment.numberOfAgentsToEvolve)
+                .agentTypes(environment.agentTypes)
+                .singleAgentType(environment.singleAgentType)
+                .selectedSingleAgentType(environment.selectedSingleAgentType)
+                .scenarioBank(environment.scenarioBank(workFolder.resolve("scenarioBank.bin")))
+                .profileLibrary(environment.profileLibrary())
+                .topology(environment.topology())
+                .exchangeMechanism(environment.exchangeMechanism)
+                .tradingCycles(environment.tradingCycles)
+                .build();
+        return workFolder.resolve("reference").resolve("data");
+    }
+
+    /**
+     * Compares the fingerprints of every run, describing the first {@link Day} and round at which runs diverge.
+     *
+     * @param reference The fingerprints of the reference engine's runs.
+     * @param candidate The fingerprints of the optimised engine's runs.
+     * @return Whether every run is identical.
+     */
+    private static boolean compare(@NotNull Fingerprint reference, @NotNull Fingerprint candidate) {
+        System.out.println("Runs: reference " + reference.runs.size() + ", optimised " + candidate.runs.size());
+        for (String file : new String[]{"agentData.csv", "exchangeData.csv"}) {
+            if (reference.missing.contains(file) != candidate.missing.contains(file)) {
+                System.out.println("Only one engine wrote " + file + ", it is left out of the comparison.");
+            }
+        }
+
+        TreeSet<Integer> runs = new TreeSet<>(reference.runs.keySet());
+        runs.addAll(candidate.runs.keySet());
+        int diverged = 0;
+        int firstDiverged = 0;
+        for (int run : runs) {
+            String divergence = divergence(run, reference.runs.get(run), candidate.runs.get(run),
+                    !reference.missing.contains("agentData.csv") && !candidate.missing.contains("agentData.csv"),
+                    !reference.missing.contains("exchangeData.csv") && !candidate.missing.contains("exchangeData.csv"));
+            if (divergence == null) continue;
+            if (diverged == 0) firstDiverged = run;
+            diverged++;
+            if (diverged <= RUNS_REPORTED) System.out.println(divergence);
+        }
+        if (diverged > RUNS_REPORTED) System.out.println("... and " + (diverged - RUNS_REPORTED) + " more runs.");
+        if (diverged > 0) {
+            System.out.println(diverged + " of " + runs.size() + " runs diverged, the exchanges of a run can be traced with "
+                    + "RunReplay <environment folder> " + firstDiverged + ".");
+        }
+        return diverged == 0;
+    }
+
+    /**
+     * @param run           {@link Integer} value identifying the simulation run.
+     * @param reference     The reference engine's run, or {@code null} if it has no such run.
+     * @param candidate     The optimised engine's run, or {@code null} if it has no such run.
+     * @param compareAgents Whether both engines wrote per-agent rows.
+     * @param compareRounds Whether both engines wrote per-round rows.
+     * @return A description of where the run first diverges, or {@code null} if it doesn't.
+     */
+    private static String divergence(int run, RunFingerprint reference, RunFingerprint candidate,
+                                     boolean compareAgents, boolean compareRounds) {
+        if (reference == null) return "Run " + run + ": only simulated by the optimised engine.";
+        if (candidate == null) return "Run " + run + ": only simulated by the reference engine.";
+
+        TreeSet<Integer> days = new TreeSet<>(reference.days.keySet());
+        days.addAll(candidate.days.keySet());
+        for (int day : days) {
+            DayFingerprint referenceDay = reference.days.get(day);
+            DayFingerprint candidateDay = candidate.days.get(day);
+            if (referenceDay == null || candidateDay == null) {
+                return "Run " + run + ": diverges on day " + day + ", which only the "
+                        + (referenceDay == null ? "optimised" : "reference") + " engine simulated.";
+            }
+
+            ArrayList<String> differences = new ArrayList<>();
+            if (compareRounds) {
+                int rounds = Math.max(referenceDay.rounds.size(), candidateDay.rounds.size());
+                for (int round = 0; round < rounds; round++) {
+                    if (round >= referenceDay.rounds.size() || round >= candidateDay.rounds.size()) {
+                        differences.add("round " + round + " only in the "
+                                + (round >= referenceDay.rounds.size() ? "optimised" : "reference") + " engine");
+                        break;
+                    }
+                    if (!referenceDay.rounds.get(round).equals(candidateDay.rounds.get(round))) {
+                        differences.add("round " + round + " satisfaction");
+                        break;
+                    }
+                }
+            }
+            if (referenceDay.daily != candidateDay.daily) differences.add("daily statistics");
+            if (compareAgents && (referenceDay.agents != candidateDay.agents
+                    || referenceDay.agentRows != candidateDay.agentRows)) {
+                differences.add("agent rows");
+            }
+            if (!differences.isEmpty()) {
+                return "Run " + run + ": diverges on day " + day + " at " + String.join(", ", differences) + ".";
+            }
+        }
+
+        if (!Arrays.equals(reference.takeover, candidate.takeover) || !Arrays.equals(reference.last, candidate.last)) {
+            return "Run " + run + ": the key day records differ.";
+        }
+        return null;
+    }
+
+    /**
+     * Compares the outcomes of the runs of both engines at the 95% level: the proportion of social takeovers with a
+     * two-proportion z test, and the takeover days and the final satisfaction of the population that took over with
+     * two-sample Kolmogorov-Smirnov tests.
+     *
+     * @param reference The fingerprints of the reference engine's runs.
+     * @param candidate The fingerprints of the optimised engine's runs.
+     * @return Whether all the outcomes are consistent between the engines.
+     */
+    private static boolean compareDistributions(@NotNull Fingerprint reference, @NotNull Fingerprint candidate) {
+        System.out.println("\nDistributions of outcomes across runs (reference / optimised):");
+        boolean equivalent = true;
+
+        int referenceRuns = reference.takeovers.length;
+        int candidateRuns = candidate.takeovers.length;
+        double referenceSocial = Arrays.stream(reference.takeovers).filter(p -> p == KeyDaysData.SOCIAL_TAKEOVER).count();
+        double candidateSocial = Arrays.stream(candidate.takeovers).filter(p -> p == KeyDaysData.SOCIAL_TAKEOVER).count();
+        double pooled = (referenceSocial + candidateSocial) / (referenceRuns + candidateRuns);
+        double z = pooled == 0 || pooled == 1 ? 0 : (referenceSocial / referenceRuns - candidateSocial / candidateRuns)
+                / Math.sqrt(pooled * (1 - pooled) * (1.0 / referenceRuns + 1.0 / candidateRuns));
+        boolean consistent = Math.abs(z) <= RunningStatistics.Z_95;
+        equivalent &= consistent;
+        System.out.println("Social takeovers: " + String.format("%.3f / %.3f", referenceSocial / referenceRuns,
+                candidateSocial / candidateRuns) + ", z = " + String.format("%.3f", z) + (consistent ? "" : " DIFFERENT"));
+
+        equivalent &= kolmogorovSmirnov("Takeover day", reference.takeoverDays, candidate.takeoverDays);
+        equivalent &= kolmogorovSmirnov("Final satisfaction", reference.finalSatisfactions, candidate.finalSatisfactions);
+        return equivalent;
+    }
+
+    /**
+     * @param name      {@link String} naming the outcome being compared.
+     * @param reference The outcome of each of the reference engine's runs.
+     * @param candidate The outcome of each of the optimised engine's runs.
+     * @return Whether the two samples are consistent with coming from the same distribution.
+     */
+    private static boolean kolmogorovSmirnov(String name, double @NotNull [] reference, double @NotNull [] candidate) {
+        double[] a = reference.clone();
+        double[] b = candidate.clone();
+        Arrays.sort(a);
+        Arrays.sort(b);
+
+        // The largest distance between the empirical distribution functions, which can only change at sample values.
+        double distance = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            double value = Math.min(a[i], b[j]);
+            while (i < a.length && a[i] == value) i++;
+            while (j < b.length && b[j] == value) j++;
+            distance = Math.max(distance, Math.abs((double) i / a.length - (double) j / b.length));
+        }
+        double critical = KS_95 * Math.sqrt((double) (a.length + b.length) / ((double) a.length * b.length));
+        boolean consistent = distance <= critical;
+        System.out.println(name + ": mean " + String.format("%.4f / %.4f", mean(a), mean(b))
+                + ", D = " + String.format("%.4f", distance) + " (critical " + String.format("%.4f", critical) + ")"
+                + (consistent ? "" : " DIFFERENT"));
+        return consistent;
+    }
+
+    private static double mean(double @NotNull [] values) {
+        return Arrays.stream(values).average().orElse(Double.NaN);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a row, so that a row's fingerprint doesn't depend on the platform or the JVM.
+     */
+    private static long hash(@NotNull String row) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < row.length(); i++) {
+            hash ^= row.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @param row  A row of one of the data files.
+     * @param from {@link Integer} value representing the index of the first character of the field.
+     * @return The index of the comma ending the field, or the end of the row.
+     */
+    private static int fieldEnd(@NotNull String row, int from) {
+        int end = row.indexOf(',', from);
+        return end < 0 ? row.length() : end;
+    }
+
+    /**
+     * The fingerprints of all the runs of an environment, read from its data files.
+     */
+    private static class Fingerprint {
+        final TreeMap<Integer, RunFingerprint> runs = new TreeMap<>();
+        final TreeSet<String> missing = new TreeSet<>();
+
+        // The outcome of each run, for the comparison of the distributions.
+        final int[] takeovers;
+        final double[] takeoverDays;
+        final double[] finalSatisfactions;
+
+        /**
+         * @param dataFolder             {@link Path} of the environment's data folder.
+         * @param numberOfAgentsToEvolve {@link Integer} value representing the number of {@link Agent}s whose strategy
+         *                               changes at the end of each {@link Day}, without which the first {@link Day} is
+         *                               recorded as the takeover.
+         * @throws IOException On input error.
+         */
+        Fingerprint(@NotNull Path dataFolder, int numberOfAgentsToEvolve) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(dataFolder.resolve("dailyData.csv"))) {
+                reader.readLine();
+                for (String row = reader.readLine(); row != null; row = reader.readLine()) {
+                    int runEnd = fieldEnd(row, 0);
+                    int dayEnd = fieldEnd(row, runEnd + 1);
+                    int run = Integer.parseInt(row.substring(0, runEnd));
+                    int day = Integer.parseInt(row.substring(runEnd + 1, dayEnd));
+                    DayFingerprint dayFingerprint = runs.computeIfAbsent(run, r -> new RunFingerprint()).day(day);
+                    dayFingerprint.daily = hash(row);
+                    dayFingerprint.statistics = Arrays.stream(row.substring(dayEnd + 1).split(",", 7))
+                            .limit(6).mapToDouble(Double::parseDouble).toArray();
+                }
+            }
+
+            // The agents are written in whatever order the engine holds them, so their rows are combined in a way that
+            // doesn't depend on the order.
+            Path agentData = dataFolder.resolve("agentData.csv");
+            if (Files.exists(agentData)) {
+                try (BufferedReader reader = Files.newBufferedReader(agentData)) {
+                    reader.readLine();
+                    for (String row = reader.readLine(); row != null; row = reader.readLine()) {
+                        DayFingerprint dayFingerprint = day(row);
+                        dayFingerprint.agents += hash(row);
+                        dayFingerprint.agentRows++;
+                    }
+                }
+            } else {
+                missing.add("agentData.csv");
+            }
+
+            Path exchangeData = dataFolder.resolve("exchangeData.csv");
+            if (Files.exists(exchangeData)) {
+                try (BufferedReader reader = Files.newBufferedReader(exchangeData)) {
+                    reader.readLine();
+                    for (String row = reader.readLine(); row != null; row = reader.readLine()) {
+                        int dayEnd = fieldEnd(row, fieldEnd(row, 0) + 1);
+                        int round = Integer.parseInt(row.substring(dayEnd + 1, fieldEnd(row, dayEnd + 1)));
+                        ArrayList<Long> rounds = day(row).rounds;
+                        while (rounds.size() <= round) rounds.add(0L);
+                        rounds.set(round, rounds.get(round) * 31 + hash(row));
+                    }
+                }
+            } else {
+                missing.add("exchangeData.csv");
+            }
+
+            // Runs cut short, such as those of an interrupted environment, have no outcome.
+            for (RunFingerprint run : runs.values()) run.recordKeyDays(numberOfAgentsToEvolve);
+            RunFingerprint[] complete = runs.values().stream()
+                    .filter(run -> run.takeover != null).toArray(RunFingerprint[]::new);
+            takeovers = Arrays.stream(complete).mapToInt(run -> (int) run.takeover[1]).toArray();
+            takeoverDays = Arrays.stream(complete).mapToDouble(run -> run.takeover[0]).toArray();
+            finalSatisfactions = Arrays.stream(complete).mapToDouble(run -> run.last[2]).toArray();
+        }
+
+        /**
+         * @param row A row of the per-agent or per-round data, which starts with its run and {@link Day}.
+         * @return The fingerprint of the row's {@link Day}.
+         */
+        private DayFingerprint day(@NotNull String row) {
+            int runEnd = fieldEnd(row, 0);
+            int run = Integer.parseInt(row.substring(0, runEnd));
+            int day = Integer.parseInt(row.substring(runEnd + 1, fieldEnd(row, runEnd + 1)));
+            return runs.computeIfAbsent(run, r -> new RunFingerprint()).day(day);
+        }
+    }
+
+    /**
+     * The fingerprints of each {@link Day} of a run, and its key day records.
+     */
+    private static class RunFingerprint {
+        final TreeMap<Integer, DayFingerprint> days = new TreeMap<>();
+
+        // The day, population, satisfaction and standard deviation recorded for the takeover and the final day, as
+        // they are by KeyDaysData.
+        double[] takeover;
+        double[] last;
+
+        DayFingerprint day(int day) {
+            return days.computeIfAbsent(day, d -> new DayFingerprint());
+        }
+
+        /**
+         * Finds the key days from the daily statistics in the same way as a {@link SimulationRun}.
+         *
+         * @param numberOfAgentsToEvolve {@link Integer} value representing the number of {@link Agent}s whose strategy
+         *                               changes at the end of each {@link Day}.
+         */
+        void recordKeyDays(int numberOfAgentsToEvolve) {
+            for (Map.Entry<Integer, DayFingerprint> day : days.entrySet()) {
+                double[] statistics = day.getValue().statistics;
+                if (statistics == null) continue;
+                if (takeover == null && (statistics[0] == 0 || statistics[1] == 0 || numberOfAgentsToEvolve == 0)) {
+                    takeover = keyDay(day.getKey(), statistics);
+                }
+                last = keyDay(day.getKey(), statistics);
+            }
+        }
+
+        private static double @NotNull [] keyDay(int day, double @NotNull [] statistics) {
+            // Social pop, selfish pop, social sat, selfish sat, social SD and selfish SD.
+            int population = statistics[1] == 0 ? KeyDaysData.SOCIAL_TAKEOVER : KeyDaysData.SELFISH_TAKEOVER;
+            return population == KeyDaysData.SOCIAL_TAKEOVER
+                    ? new double[]{day, population, statistics[2], statistics[4]}
+                    : new double[]{day, population, statistics[3], statistics[5]};
+        }
+    }
+
+    /**
+     * The fingerprints of a single {@link Day} of a run.
+     */
+    private static class DayFingerprint {
+        long daily;
+        double[] statistics;
+        long agents;
+        int agentRows;
+        final ArrayList<Long> rounds = new ArrayList<>();
+    }
+}
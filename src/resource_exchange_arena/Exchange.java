@@ -2,14 +2,20 @@ package resource_exchange_arena;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.OptionalDouble;
 
 class Exchange {
+    // Names of the mechanisms that Agents can use to find a partner for an exchange.
+    static final String BOARD = "board";
+    static final String ORDER_BOOK = "order-book";
+    static final String CENTRAL_PLANNER = "central-planner";
 
     boolean noExchanges = false;
+    int exchanges;
 
     /**
      * With each exchange all {@link Agent}s form pairwise exchanges and are able to consider a trade with their partner for
@@ -20,7 +26,19 @@ class Exchange {
      * @param exchange               {@link Integer} value representing the current exchange being simulated.
      * @param uniqueAgentTypes       {@link Integer} ArrayList containing each unique {@link Agent} type that exists when the simulation begins.
      * @param agents                 {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
-     * @param eachRoundDataCSVWriter Used to store data regarding the state of the system at the end of each round.
+     * @param topology               The network that limits which {@link Agent}s can trade with each other, or
+     *                               {@code null} for every {@link Agent} to trade with any other.
+     * @param orderBook              Matches each request with the best resting order for a time slot, or
+     *                               {@code null} for {@link Agent}s to search a shuffled advertising board.
+     * @param centralPlanner         Makes every trade of the round in place of the {@link Agent}s' requests, or
+     *                               {@code null} for the {@link Agent}s to find their own partners.
+     * @param tradingCycles          Trades around cycles of {@link Agent}s after the pairwise exchanges, or
+     *                               {@code null} to only exchange in pairs.
+     * @param crossRunSummary        Summarises each {@link Day} and round across all simulation runs, or {@code null}
+     *                               when the round's statistics are gathered by the caller instead.
+     * @param exchangeTrace          Receives every step of the exchange round, or {@code null} if it isn't traced.
+     * @param eachRoundDataCSVWriter Used to store data regarding the state of the system at the end of each round, unused
+     *                               when {@code crossRunSummary} is {@code null}.
      * @throws IOException On input error.
      * @see IOException
      */
@@ -30,37 +48,91 @@ class Exchange {
             int exchange,
             ArrayList<Integer> uniqueAgentTypes,
             @NotNull ArrayList<Agent> agents,
-            FileWriter eachRoundDataCSVWriter
+            Topology topology,
+            OrderBook orderBook,
+            CentralPlanner centralPlanner,
+            TradingCycles tradingCycles,
+            CrossRunSummary crossRunSummary,
+            ExchangeTrace exchangeTrace,
+            Writer eachRoundDataCSVWriter
     ) throws IOException {
 
+        Instrumentation.startRound(run, day, exchange);
+        long phaseStart = Instrumentation.start();
+
+        // A central planner moves the time slots itself, so no Agent advertises or makes a request.
+        if (centralPlanner != null) {
+            int plannedExchanges = centralPlanner.reallocate(run, day, exchange, agents, exchangeTrace);
+            phaseStart = Instrumentation.lap(Instrumentation.CENTRAL_PLANNER, phaseStart);
+            endRound(run, day, exchange, uniqueAgentTypes, agents, crossRunSummary, eachRoundDataCSVWriter,
+                    plannedExchanges, 0, 0, phaseStart);
+            return;
+        }
+
         ArrayList<ArrayList<Integer>> advertisingBoard = new ArrayList<>();
 
+        // On a network each Agent can only see the adverts of its neighbours, so the adverts are indexed by the Agent
+        // that posted them and each Agent's board is gathered from its neighbourhood. The Agents are indexed too, so
+        // that a round costs in proportion to the edges of the network rather than the square of the population.
+        ArrayList<ArrayList<Integer>> advertsByAgent = null;
+        Agent[] agentsByID = null;
+        if (topology != null) {
+            advertsByAgent = new ArrayList<>(Collections.nCopies(topology.agents(), null));
+            agentsByID = new Agent[topology.agents()];
+            for (Agent a : agents) agentsByID[a.agentID - 1] = a;
+        } else if (orderBook != null) {
+            agentsByID = new Agent[agents.size()];
+            for (Agent a : agents) agentsByID[a.agentID - 1] = a;
+        }
+
         // Reset the check for whether each Agent has made an interaction this round.
         agents.forEach(a -> a.setMadeInteraction(false));
 
         // Exchanges start by Agents advertising time slots they may be willing to exchange.
-        Collections.shuffle(agents, ResourceExchangeArena.random);
-        agents.forEach(a -> {
+        CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, exchange, CounterBasedRandom.ADVERTISING, 0);
+        Collections.shuffle(agents, ResourceExchangeArena.random());
+        for (Agent a : agents) {
             ArrayList<Integer> unlockedTimeSlots = a.publishUnlockedTimeSlots();
             if (!unlockedTimeSlots.isEmpty()) {
-                ArrayList<Integer> advert = new ArrayList<>();
-                advert.add(a.agentID);
-                advert.addAll(unlockedTimeSlots);
-                advertisingBoard.add(advert);
+                if (orderBook == null) {
+                    ArrayList<Integer> advert = new ArrayList<>();
+                    advert.add(a.agentID);
+                    advert.addAll(unlockedTimeSlots);
+                    if (advertsByAgent != null) advertsByAgent.set(a.agentID - 1, advert);
+                    else advertisingBoard.add(advert);
+                }
+                if (exchangeTrace != null) exchangeTrace.advert(run, day, exchange, a.agentID, unlockedTimeSlots);
             }
-        });
+        }
+        // The Agents' orders are filed in the order that they advertised.
+        if (orderBook != null) orderBook.post(agents);
+
+        phaseStart = Instrumentation.lap(Instrumentation.ADVERTISING, phaseStart);
 
         // Each Agent has the opportunity to make exchange requests for advertised time slots.
-        Collections.shuffle(agents, ResourceExchangeArena.random);
+        int requests = 0;
+        CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, exchange, CounterBasedRandom.REQUESTING, 0);
+        Collections.shuffle(agents, ResourceExchangeArena.random());
         for (Agent a : agents) {
             if (!a.madeInteraction()) {
-                ArrayList<Integer> chosenAdvert = a.requestExchange(advertisingBoard);
+                CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, exchange,
+                        CounterBasedRandom.REQUESTING, a.agentID);
+                if (topology != null) neighbourhoodBoard(topology, a.agentID, advertsByAgent, advertisingBoard);
+                ArrayList<Integer> chosenAdvert = orderBook != null
+                        ? orderBook.match(a)
+                        : a.requestExchange(advertisingBoard);
                 a.setMadeInteraction(true);
                 if (!chosenAdvert.isEmpty()) {
-                    // Select an unwanted time slot to offer in the exchange.
-                    ArrayList<Integer> unwantedTimeSlots = a.publishUnlockedTimeSlots();
-                    int selector = ResourceExchangeArena.random.nextInt(unwantedTimeSlots.size());
-                    int unwantedTimeSlot = unwantedTimeSlots.get(selector);
+                    // Offer the time slot that the matched order wants in return, or otherwise select an unwanted
+                    // time slot to offer in the exchange.
+                    int unwantedTimeSlot;
+                    if (chosenAdvert.size() > 2) {
+                        unwantedTimeSlot = chosenAdvert.get(2);
+                    } else {
+                        ArrayList<Integer> unwantedTimeSlots = a.publishUnlockedTimeSlots();
+                        int selector = ResourceExchangeArena.random().nextInt(unwantedTimeSlots.size());
+                        unwantedTimeSlot = unwantedTimeSlots.get(selector);
+                    }
 
                     ArrayList<Integer> request = new ArrayList<>();
                     request.add(a.agentID);
@@ -68,47 +140,97 @@ class Exchange {
                     request.add(unwantedTimeSlot);
 
                     // The agent who offered the requested time slot receives the exchange request.
-                    for (Agent b : agents) {
-                        if (b.agentID == chosenAdvert.get(0) && !b.madeInteraction()) {
+                    boolean delivered = false;
+                    if (agentsByID != null) {
+                        Agent b = agentsByID[chosenAdvert.get(0) - 1];
+                        if (!b.madeInteraction()) {
                             b.receiveExchangeRequest(request, a.getAgentType());
                             b.setMadeInteraction(true);
-                            break;
+                            delivered = true;
+                            requests++;
+                        }
+                    } else {
+                        for (Agent b : agents) {
+                            if (b.agentID == chosenAdvert.get(0) && !b.madeInteraction()) {
+                                b.receiveExchangeRequest(request, a.getAgentType());
+                                b.setMadeInteraction(true);
+                                delivered = true;
+                                requests++;
+                                break;
+                            }
                         }
                     }
+                    if (exchangeTrace != null) {
+                        exchangeTrace.request(run, day, exchange, a.agentID, chosenAdvert.get(0), chosenAdvert.get(1),
+                                unwantedTimeSlot, delivered);
+                    }
                 }
             }
         }
 
+        phaseStart = Instrumentation.lap(Instrumentation.REQUESTING, phaseStart);
+
         // Agents who have received a request consider it.
-        Collections.shuffle(agents, ResourceExchangeArena.random);
-        agents.stream().filter(a -> !a.getExchangeRequestReceived().isEmpty()).forEach(a -> {
+        int rejections = 0;
+        CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, exchange, CounterBasedRandom.CONSIDERING, 0);
+        Collections.shuffle(agents, ResourceExchangeArena.random());
+        for (Agent a : agents) {
+            if (a.getExchangeRequestReceived().isEmpty()) continue;
             boolean accepted = a.considerRequest();
-            if (!accepted)
-                agents.stream().filter(b -> b.agentID == a.getExchangeRequest().get(0)).findFirst().ifPresent(Agent::requestRejected);
-        });
+            if (!accepted) {
+                if (agentsByID != null) agentsByID[a.getExchangeRequest().get(0) - 1].requestRejected();
+                else agents.stream().filter(b -> b.agentID == a.getExchangeRequest().get(0)).findFirst().ifPresent(Agent::requestRejected);
+                rejections++;
+            }
+            if (exchangeTrace != null) {
+                exchangeTrace.decision(run, day, exchange, a.agentID, a.getExchangeRequest().get(0), accepted,
+                        a.getDecisionReason());
+            }
+        }
+
 
+        phaseStart = Instrumentation.lap(Instrumentation.CONSIDERING, phaseStart);
 
         int successfulExchanges = 0;
 
         // Agents confirm and complete approved requests if they are able to do so, and update their relations with
         // other Agents accordingly.
-        Collections.shuffle(agents, ResourceExchangeArena.random);
+        CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, exchange, CounterBasedRandom.COMPLETING, 0);
+        Collections.shuffle(agents, ResourceExchangeArena.random());
         for (Agent a : agents) {
             if (a.getExchangeRequestApproved()) {
                 ArrayList<Integer> offer = a.getExchangeRequestReceived();
                 if (a.finalCheck(offer.get(1))) {
-                    for (Agent b : agents) {
-                        if (b.agentID == offer.get(0)) {
-                            if (b.finalCheck(offer.get(2))) {
-                                boolean scGain = b.completeRequestedExchange(offer, a.agentID, a.getAgentType());
-                                boolean scLoss = a.completeReceivedExchange(offer, b.getAgentType());
-                                if (scGain) a.gainedSocialCapital();
-                                if (scLoss) b.lostSocialCapital();
-                                successfulExchanges++;
+                    Agent b = null;
+                    if (agentsByID != null) {
+                        b = agentsByID[offer.get(0) - 1];
+                    } else {
+                        for (Agent candidate : agents) {
+                            if (candidate.agentID == offer.get(0)) {
+                                b = candidate;
+                                break;
+                            }
+                        }
+                    }
+                    if (b != null) {
+                        if (b.finalCheck(offer.get(2))) {
+                            boolean scGain = b.completeRequestedExchange(offer, a.agentID, a.getAgentType());
+                            boolean scLoss = a.completeReceivedExchange(offer, b.getAgentType());
+                            if (scGain) a.gainedSocialCapital();
+                            if (scLoss) b.lostSocialCapital();
+                            successfulExchanges++;
+                            if (exchangeTrace != null) {
+                                exchangeTrace.exchange(run, day, exchange, a.agentID, b.agentID, offer.get(1),
+                                        offer.get(2), scGain, scLoss);
                             }
-                            break;
+                        } else if (exchangeTrace != null) {
+                            exchangeTrace.finalCheckFailed(run, day, exchange, a.agentID, b.agentID, b.agentID,
+                                    offer.get(2));
                         }
                     }
+                } else if (exchangeTrace != null) {
+                    exchangeTrace.finalCheckFailed(run, day, exchange, a.agentID, offer.get(0), a.agentID,
+                            offer.get(1));
                 }
                 a.setExchangeRequestApproved(false);
             }
@@ -116,16 +238,89 @@ class Exchange {
             if (!a.getExchangeRequestReceived().isEmpty()) a.setExchangeRequestReceived();
         }
 
+        phaseStart = Instrumentation.lap(Instrumentation.COMPLETING, phaseStart);
+
+        // Agents still wanting time slots that no pair could exchange may trade around a cycle of Agents.
+        if (tradingCycles != null) {
+            int cycleExchanges = tradingCycles.trade(run, day, exchange, agents, topology, exchangeTrace);
+            successfulExchanges += cycleExchanges;
+            Instrumentation.count(Instrumentation.CYCLE_EXCHANGES, cycleExchanges);
+            phaseStart = Instrumentation.lap(Instrumentation.TRADING_CYCLES, phaseStart);
+        }
+
+        endRound(run, day, exchange, uniqueAgentTypes, agents, crossRunSummary, eachRoundDataCSVWriter,
+                successfulExchanges, requests, rejections, phaseStart);
+    }
+
+    /**
+     * Records the outcome of the round and the satisfaction of each {@link Agent} type at its end.
+     *
+     * @param successfulExchanges {@link Integer} value representing the number of exchanges made in the round.
+     * @param requests            {@link Integer} value representing the number of requests delivered in the round.
+     * @param rejections          {@link Integer} value representing the number of requests rejected in the round.
+     * @param phaseStart          The time at which the round's statistics began to be gathered.
+     * @throws IOException On output error.
+     */
+    private void endRound(
+            int run,
+            int day,
+            int exchange,
+            ArrayList<Integer> uniqueAgentTypes,
+            @NotNull ArrayList<Agent> agents,
+            CrossRunSummary crossRunSummary,
+            Writer eachRoundDataCSVWriter,
+            int successfulExchanges,
+            int requests,
+            int rejections,
+            long phaseStart
+    ) throws IOException {
         if (successfulExchanges == 0) noExchanges = true;
+        exchanges = successfulExchanges;
 
         // The average end of round satisfaction is stored for each Agent type.
         // This data can later be averaged over simulation runs and added to the individual data file.
-        for (int uniqueAgentType : uniqueAgentTypes)
-            Utilities.write(eachRoundDataCSVWriter, String.valueOf(run), ",",
-                    String.valueOf(day), ",",
-                    String.valueOf(exchange), ",",
-                    String.valueOf(uniqueAgentType), ",",
-                    String.valueOf(CalculateSatisfaction.averageAgentSatisfaction(agents, uniqueAgentType)), "\n");
+        if (crossRunSummary != null) {
+            for (int uniqueAgentType : uniqueAgentTypes) {
+                OptionalDouble averageSatisfaction = agents.stream()
+                        .filter(a -> a.getAgentType() == uniqueAgentType)
+                        .mapToDouble(a -> a.calculateSatisfaction(null))
+                        .average();
+                // Types that no longer exist are recorded as 0 but left out of the summary across runs.
+                averageSatisfaction.ifPresent(satisfaction -> crossRunSummary.addRound(day, exchange, uniqueAgentType, satisfaction));
+                Utilities.write(eachRoundDataCSVWriter, String.valueOf(run), ",",
+                        String.valueOf(day), ",",
+                        String.valueOf(exchange), ",",
+                        String.valueOf(uniqueAgentType), ",",
+                        String.valueOf(averageSatisfaction.orElse(0.0)), "\n");
+            }
+        }
 
+        Instrumentation.lap(Instrumentation.ROUND_STATISTICS, phaseStart);
+        Instrumentation.count(Instrumentation.REQUESTS, requests);
+        Instrumentation.count(Instrumentation.REJECTIONS, rejections);
+        Instrumentation.count(Instrumentation.EXCHANGES, successfulExchanges);
+        Instrumentation.endRound();
+    }
+
+    /**
+     * Gathers the adverts that an {@link Agent} can see on a network, those posted by its neighbours, in the order of
+     * their IDs, so that the {@link Agent} searches a board no larger than its neighbourhood.
+     *
+     * @param topology       The network that limits which {@link Agent}s can trade with each other.
+     * @param agentID        {@link Integer} value identifying the {@link Agent} looking for an exchange.
+     * @param advertsByAgent The advert posted by each {@link Agent} this round, indexed by agentID - 1, or {@code null}.
+     * @param board          Reused to hold the adverts that the {@link Agent} can see.
+     */
+    private static void neighbourhoodBoard(
+            @NotNull Topology topology,
+            int agentID,
+            ArrayList<ArrayList<Integer>> advertsByAgent,
+            @NotNull ArrayList<ArrayList<Integer>> board
+    ) {
+        board.clear();
+        for (int i = 0; i < topology.degree(agentID); i++) {
+            ArrayList<Integer> advert = advertsByAgent.get(topology.neighbour(agentID, i) - 1);
+            if (advert != null) board.add(advert);
+        }
     }
 }
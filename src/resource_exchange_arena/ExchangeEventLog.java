@@ -0,0 +1,167 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+class ExchangeEventLog implements ExchangeTrace, Flushable, Closeable {
+    // Name of the log within an environment's data folder.
+    static final String FILE_NAME = "exchangeEvents.bin";
+
+    // Identifies an exchange event log and the version of its layout.
+    static final int MAGIC = 0x52454145;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 16;
+
+    // The types of record, a day record is written whenever the run or day changes and applies to every record after it.
+    static final byte DAY = 0;
+    static final byte REQUESTED = 1;
+    static final byte ALLOCATED = 2;
+    static final byte ADVERT = 3;
+    static final byte REQUEST = 4;
+    static final byte DECISION = 5;
+    static final byte FINAL_CHECK_FAILED = 6;
+    static final byte EXCHANGE = 7;
+
+    // Flags held in the detail of a record alongside the agent type or decision reason.
+    static final int UNDELIVERED = 1;
+    static final int ACCEPTED = 0x80;
+    static final int REQUESTER_FAILED = 1;
+    static final int SOCIAL_CAPITAL_GAIN = 1;
+    static final int SOCIAL_CAPITAL_LOSS = 2;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_BYTES * 65536).order(ByteOrder.LITTLE_ENDIAN);
+    private int currentRun;
+    private int currentDay;
+
+    /**
+     * Records every step of each exchange round as fixed width binary records, so that individual trades can be
+     * examined after a set of simulations without slowing the simulations noticeably. Records are gathered in a
+     * buffer and written to the file in large blocks. See {@link ExchangeEventReader} for reading the log back.
+     * <p>
+     * The log starts with a header of {@value #HEADER_BYTES} bytes; the magic number, version, record size,
+     * population size, slots per {@link Agent} and number of unique time slots. Each record is then
+     * {@value #RECORD_BYTES} little endian bytes:
+     * <ul>
+     *     <li>type, one byte, one of the record type constants.</li>
+     *     <li>detail, one byte, the {@link Agent} type, decision reason or flags depending on the type.</li>
+     *     <li>round, two bytes, the {@link Exchange} round.</li>
+     *     <li>agent, four bytes, the {@link Agent} receiving or advertising, or the run for a day record.</li>
+     *     <li>partner, four bytes, the {@link Agent} requesting, or the {@link Day} for a day record.</li>
+     *     <li>time slot, two bytes, the time slot requested, allocated, advertised or no longer held.</li>
+     *     <li>other time slot, two bytes, the time slot offered in return.</li>
+     * </ul>
+     *
+     * @param logFile         {@link Path} of the file that the events are written to.
+     * @param append          Whether to continue an existing log rather than starting a new one.
+     * @param populationSize  {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param slotsPerAgent   {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @throws IOException On output error.
+     */
+    ExchangeEventLog(Path logFile, boolean append, int populationSize, int slotsPerAgent, int uniqueTimeSlots)
+            throws IOException {
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (append && channel.size() >= HEADER_BYTES) {
+            channel.position(channel.size());
+        } else {
+            channel.truncate(0);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(RECORD_BYTES)
+                    .putInt(populationSize)
+                    .putInt(slotsPerAgent)
+                    .putInt(uniqueTimeSlots)
+                    .putLong(0);
+        }
+    }
+
+    @Override
+    public void allocation(int run, int day, int agentID, int agentType, @NotNull ArrayList<Integer> requestedTimeSlots,
+                           @NotNull ArrayList<Integer> allocatedTimeSlots) throws IOException {
+        if (run != currentRun || day != currentDay) {
+            currentRun = run;
+            currentDay = day;
+            record(DAY, 0, 0, run, day, 0, 0);
+        }
+        for (int timeSlot : requestedTimeSlots) record(REQUESTED, agentType, 0, agentID, 0, timeSlot, 0);
+        for (int timeSlot : allocatedTimeSlots) record(ALLOCATED, agentType, 0, agentID, 0, timeSlot, 0);
+    }
+
+    @Override
+    public void advert(int run, int day, int round, int agentID, @NotNull ArrayList<Integer> timeSlots)
+            throws IOException {
+        for (int timeSlot : timeSlots) record(ADVERT, 0, round, agentID, 0, timeSlot, 0);
+    }
+
+    @Override
+    public void request(int run, int day, int round, int requesterID, int receiverID, int requestedTimeSlot,
+                        int offeredTimeSlot, boolean delivered) throws IOException {
+        record(REQUEST, delivered ? 0 : UNDELIVERED, round, receiverID, requesterID, requestedTimeSlot,
+                offeredTimeSlot);
+    }
+
+    @Override
+    public void decision(int run, int day, int round, int receiverID, int requesterID, boolean accepted, int reason)
+            throws IOException {
+        record(DECISION, reason | (accepted ? ACCEPTED : 0), round, receiverID, requesterID, 0, 0);
+    }
+
+    @Override
+    public void finalCheckFailed(int run, int day, int round, int receiverID, int requesterID, int failedID,
+                                 int timeSlot) throws IOException {
+        record(FINAL_CHECK_FAILED, failedID == requesterID ? REQUESTER_FAILED : 0, round, receiverID, requesterID,
+                timeSlot, 0);
+    }
+
+    @Override
+    public void exchange(int run, int day, int round, int receiverID, int requesterID, int requestedTimeSlot,
+                         int offeredTimeSlot, boolean socialCapitalGain, boolean socialCapitalLoss) throws IOException {
+        int flags = (socialCapitalGain ? SOCIAL_CAPITAL_GAIN : 0) | (socialCapitalLoss ? SOCIAL_CAPITAL_LOSS : 0);
+        record(EXCHANGE, flags, round, receiverID, requesterID, requestedTimeSlot, offeredTimeSlot);
+    }
+
+    private void record(byte type, int detail, int round, int agent, int partner, int timeSlot, int otherTimeSlot)
+            throws IOException {
+        if (buffer.remaining() < RECORD_BYTES) drain();
+        buffer.put(type)
+                .put((byte) detail)
+                .putShort((short) round)
+                .putInt(agent)
+                .putInt(partner)
+                .putShort((short) timeSlot)
+                .putShort((short) otherTimeSlot);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered records to the log, so that its length matches the events recorded so far.
+     *
+     * @throws IOException On output error.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        channel.close();
+    }
+}
@@ -0,0 +1,505 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ExchangeEventReader implements Closeable {
+    private final FileChannel channel;
+    private final int populationSize;
+    private final int slotsPerAgent;
+    private final int uniqueTimeSlots;
+
+    /**
+     * Reads back an {@link ExchangeEventLog}, reconstructing the time slots held by every {@link Agent} through each
+     * {@link Exchange} round so that questions about individual runs can be answered after the simulations.
+     *
+     * @param logFile {@link Path} of the log written by an {@link ExchangeEventLog}.
+     * @throws IOException On input error, or if the file isn't an exchange event log.
+     */
+    ExchangeEventReader(Path logFile) throws IOException {
+        channel = FileChannel.open(logFile, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(ExchangeEventLog.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header) >= 0) ;
+        header.flip();
+        if (header.remaining() < ExchangeEventLog.HEADER_BYTES || header.getInt() != ExchangeEventLog.MAGIC
+                || header.getInt() != ExchangeEventLog.VERSION || header.getInt() != ExchangeEventLog.RECORD_BYTES) {
+            channel.close();
+            throw new IOException(logFile + " is not an exchange event log.");
+        }
+        populationSize = header.getInt();
+        slotsPerAgent = header.getInt();
+        uniqueTimeSlots = header.getInt();
+    }
+
+    /**
+     * Prints the state of the market in a round, or the history of an {@link Agent} through a run.
+     *
+     * @param args The log file followed by either "round", the run, {@link Day} and round, or "agent", the run, the
+     *             {@link Agent}'s ID and optionally a {@link Day} to show each round of.
+     * @throws IOException On input error.
+     */
+    public static void main(String @NotNull [] args) throws IOException {
+        if (args.length < 4 || (args[1].equals("round") && args.length < 5)) {
+            System.out.println("Usage: ExchangeEventReader <log> round <run> <day> <round>");
+            System.out.println("       ExchangeEventReader <log> agent <run> <agent> [day]");
+            return;
+        }
+        Writer out = new OutputStreamWriter(System.out);
+        try (ExchangeEventReader reader = new ExchangeEventReader(Path.of(args[0]))) {
+            int run = Integer.parseInt(args[2]);
+            switch (args[1]) {
+                case "round" -> reader.roundState(run, Integer.parseInt(args[3]), Integer.parseInt(args[4])).write(out);
+                case "agent" -> reader.describeAgent(run, Integer.parseInt(args[3]),
+                        args.length > 4 ? Integer.parseInt(args[4]) : 0, out);
+                default -> System.out.println("Unknown query: " + args[1]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reconstructs the market as it was at the end of an {@link Exchange} round.
+     *
+     * @param run   {@link Integer} value identifying the simulation run.
+     * @param day   {@link Integer} value representing the {@link Day}.
+     * @param round {@link Integer} value representing the {@link Exchange} round.
+     * @return The events of the round and the satisfaction of every {@link Agent} at its end.
+     * @throws IOException On input error.
+     */
+    RoundState roundState(int run, int day, int round) throws IOException {
+        MarketState market = new MarketState();
+        RoundState state = new RoundState(run, day, round, populationSize);
+        scan(run, (recordDay, type, detail, recordRound, agent, partner, timeSlot, otherTimeSlot) -> {
+            if (recordDay != day || recordRound > round) return;
+            market.apply(recordDay, type, detail, agent, partner, timeSlot, otherTimeSlot);
+            if (recordRound < round || type == ExchangeEventLog.REQUESTED || type == ExchangeEventLog.ALLOCATED) return;
+            state.found = true;
+            switch (type) {
+                case ExchangeEventLog.ADVERT -> state.advertisedTimeSlots++;
+                case ExchangeEventLog.REQUEST -> {
+                    if ((detail & ExchangeEventLog.UNDELIVERED) != 0) state.undeliveredRequests++;
+                    else state.deliveredRequests++;
+                }
+                case ExchangeEventLog.DECISION -> {
+                    if ((detail & ExchangeEventLog.ACCEPTED) != 0) state.accepted[detail & 0x7F]++;
+                    else state.rejected[detail & 0x7F]++;
+                }
+                case ExchangeEventLog.FINAL_CHECK_FAILED -> state.finalCheckFailures++;
+                case ExchangeEventLog.EXCHANGE -> {
+                    state.exchanges++;
+                    if ((detail & ExchangeEventLog.SOCIAL_CAPITAL_GAIN) != 0) state.socialCapitalGains++;
+                    if ((detail & ExchangeEventLog.SOCIAL_CAPITAL_LOSS) != 0) state.socialCapitalLosses++;
+                }
+                default -> {
+                }
+            }
+        });
+        for (int agent = 1; agent <= populationSize; agent++) {
+            state.agentTypes[agent - 1] = market.types[agent];
+            state.satisfactions[agent - 1] = market.satisfaction(agent);
+        }
+        return state;
+    }
+
+    /**
+     * Describes what happened to an {@link Agent} through a run, to explain where its satisfaction stopped improving.
+     * Without a {@link Day} each {@link Day} of the run is summarised on one line, with a {@link Day} every round of it
+     * is shown followed by what became of the {@link Agent}'s requests after its satisfaction last rose.
+     *
+     * @param run     {@link Integer} value identifying the simulation run.
+     * @param agentID {@link Integer} value identifying the {@link Agent}.
+     * @param day     {@link Integer} value representing the {@link Day} to show each round of, or 0 for every {@link Day}.
+     * @param out     Where the description is written.
+     * @throws IOException On input or output error.
+     */
+    void describeAgent(int run, int agentID, int day, Writer out) throws IOException {
+        MarketState market = new MarketState();
+        TreeMap<Integer, AgentDay> days = new TreeMap<>();
+        scan(run, (recordDay, type, detail, round, agent, partner, timeSlot, otherTimeSlot) -> {
+            if (day != 0 && recordDay != day) return;
+            market.apply(recordDay, type, detail, agent, partner, timeSlot, otherTimeSlot);
+            if (type == ExchangeEventLog.REQUESTED || type == ExchangeEventLog.ALLOCATED) {
+                if (agent != agentID) return;
+                AgentDay agentDay = days.computeIfAbsent(recordDay, d -> new AgentDay());
+                agentDay.type = detail;
+                agentDay.start = market.satisfaction(agentID);
+                agentDay.satisfaction = agentDay.start;
+                return;
+            }
+            AgentDay agentDay = days.get(recordDay);
+            if (agentDay == null) return;
+            agentDay.rounds = Math.max(agentDay.rounds, round + 1);
+            if (agent != agentID && partner != agentID) return;
+
+            RoundCounts counts = agentDay.counts.computeIfAbsent(round, r -> new RoundCounts());
+            String partnerName = "agent " + (agent == agentID ? partner : agent);
+            switch (type) {
+                case ExchangeEventLog.ADVERT -> counts.advertised++;
+                case ExchangeEventLog.REQUEST -> {
+                    if (partner != agentID) {
+                        // Requests that weren't delivered never reached the Agent.
+                        if ((detail & ExchangeEventLog.UNDELIVERED) == 0) counts.receivedRequests++;
+                        return;
+                    }
+                    counts.requests++;
+                    if ((detail & ExchangeEventLog.UNDELIVERED) != 0) {
+                        counts.undelivered++;
+                        agentDay.event(day, round, "wanted " + timeSlot + " from " + partnerName + ", offering "
+                                + otherTimeSlot + ", not delivered as they had already interacted");
+                    } else {
+                        agentDay.event(day, round, "wanted " + timeSlot + " from " + partnerName + ", offering "
+                                + otherTimeSlot);
+                    }
+                }
+                case ExchangeEventLog.DECISION -> {
+                    boolean accepted = (detail & ExchangeEventLog.ACCEPTED) != 0;
+                    String reason = Inflect.getHumanReadableDecisionReason(detail & 0x7F);
+                    if (partner == agentID) {
+                        if (accepted) counts.accepted++;
+                        else counts.rejected[detail & 0x7F]++;
+                        agentDay.event(day, round, partnerName + (accepted ? " accepted: " : " rejected: ") + reason);
+                    } else {
+                        if (accepted) counts.acceptedReceived++;
+                        else counts.rejectedReceived++;
+                        agentDay.event(day, round, (accepted ? "accepted " : "rejected ") + "request from "
+                                + partnerName + ": " + reason);
+                    }
+                }
+                case ExchangeEventLog.FINAL_CHECK_FAILED -> {
+                    counts.finalCheckFailures++;
+                    agentDay.event(day, round, "exchange with " + partnerName + " failed, time slot " + timeSlot
+                            + " was no longer held");
+                }
+                case ExchangeEventLog.EXCHANGE -> {
+                    counts.exchanges++;
+                    double satisfaction = market.satisfaction(agentID);
+                    if (satisfaction > agentDay.satisfaction) agentDay.lastImprovement = round;
+                    agentDay.satisfaction = satisfaction;
+                    agentDay.event(day, round, "exchanged with " + partnerName + ", satisfaction now "
+                            + String.format("%.3f", satisfaction));
+                }
+                default -> {
+                }
+            }
+        });
+
+        if (days.isEmpty()) {
+            Utilities.write(out, "Agent ", String.valueOf(agentID), " has no events in run ", String.valueOf(run), "\n");
+            return;
+        }
+        if (day == 0) {
+            Utilities.write(out, "Day,Agent Type,Start Satisfaction,End Satisfaction,Last Improving Round,Requests,",
+                    "Not Delivered,Accepted,Rejected,Received Accepted,Received Rejected,Final Check Failures\n");
+            for (Map.Entry<Integer, AgentDay> entry : days.entrySet()) {
+                AgentDay agentDay = entry.getValue();
+                RoundCounts total = agentDay.totalFrom(0);
+                Utilities.write(out, String.valueOf(entry.getKey()),
+                        ",", Inflect.getHumanReadableAgentType(agentDay.type),
+                        ",", String.valueOf(agentDay.start),
+                        ",", String.valueOf(agentDay.satisfaction),
+                        ",", String.valueOf(agentDay.lastImprovement),
+                        ",", String.valueOf(total.requests),
+                        ",", String.valueOf(total.undelivered),
+                        ",", String.valueOf(total.accepted),
+                        ",", String.valueOf(total.rejectedTotal()),
+                        ",", String.valueOf(total.acceptedReceived),
+                        ",", String.valueOf(total.rejectedReceived),
+                        ",", String.valueOf(total.finalCheckFailures), "\n");
+            }
+            return;
+        }
+
+        AgentDay agentDay = days.get(day);
+        if (agentDay == null) {
+            Utilities.write(out, "Agent ", String.valueOf(agentID), " has no events on day ", String.valueOf(day), "\n");
+            return;
+        }
+        Utilities.write(out, "Agent ", String.valueOf(agentID), " (", Inflect.getHumanReadableAgentType(agentDay.type),
+                "), run ", String.valueOf(run), ", day ", String.valueOf(day), "\n",
+                "Satisfaction after allocation: ", String.valueOf(agentDay.start), "\n");
+        for (String event : agentDay.events) Utilities.write(out, event, "\n");
+
+        // The rounds after the last improvement show why the satisfaction plateaued.
+        RoundCounts after = agentDay.totalFrom(agentDay.lastImprovement + 1);
+        int roundsAfter = agentDay.rounds - (agentDay.lastImprovement + 1);
+        Utilities.write(out, "\n", agentDay.lastImprovement < 0
+                        ? "Satisfaction never rose above its allocation"
+                        : "Satisfaction last rose in round " + agentDay.lastImprovement,
+                ", ending at ", String.valueOf(agentDay.satisfaction), " with ",
+                String.valueOf(Math.round(agentDay.satisfaction * slotsPerAgent)), " of the ",
+                String.valueOf(slotsPerAgent), " time slots wanted\n",
+                "In the ", String.valueOf(roundsAfter), " rounds after that:\n",
+                "  Rounds spent answering a request instead of making one: ",
+                String.valueOf(after.receivedRequests), "\n",
+                "  Rounds without a request, ", agentDay.satisfaction == 1.0
+                        ? "as every wanted time slot was held: "
+                        : "as no advert held a wanted time slot: ",
+                String.valueOf(roundsAfter - after.requests - after.receivedRequests), "\n",
+                "  Requests not delivered, the advertiser had already interacted: ",
+                String.valueOf(after.undelivered), "\n",
+                "  Requests accepted: ", String.valueOf(after.accepted), "\n",
+                "  Final checks failed: ", String.valueOf(after.finalCheckFailures), "\n");
+        for (int reason = 1; reason < after.rejected.length; reason++) {
+            if (after.rejected[reason] == 0) continue;
+            Utilities.write(out, "  Requests rejected, ", Inflect.getHumanReadableDecisionReason(reason), ": ",
+                    String.valueOf(after.rejected[reason]), "\n");
+        }
+        Utilities.write(out, "  Requests received, accepted: ", String.valueOf(after.acceptedReceived),
+                ", rejected: ", String.valueOf(after.rejectedReceived), "\n");
+    }
+
+    /**
+     * Reads every record of a run in order, passing each one along with the {@link Day} it belongs to. Reading stops
+     * once the run has ended, runs are always written in order.
+     */
+    private void scan(int run, Visitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ExchangeEventLog.RECORD_BYTES * 65536).order(ByteOrder.LITTLE_ENDIAN);
+        long position = ExchangeEventLog.HEADER_BYTES;
+        int currentRun = 0;
+        int currentDay = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < ExchangeEventLog.RECORD_BYTES) return;
+            position += read - read % ExchangeEventLog.RECORD_BYTES;
+            buffer.flip();
+            while (buffer.remaining() >= ExchangeEventLog.RECORD_BYTES) {
+                byte type = buffer.get();
+                int detail = buffer.get() & 0xFF;
+                int round = buffer.getShort();
+                int agent = buffer.getInt();
+                int partner = buffer.getInt();
+                int timeSlot = buffer.getShort();
+                int otherTimeSlot = buffer.getShort();
+                if (type == ExchangeEventLog.DAY) {
+                    if (agent > run) return;
+                    currentRun = agent;
+                    currentDay = partner;
+                } else if (currentRun == run) {
+                    visitor.visit(currentDay, type, detail, round, agent, partner, timeSlot, otherTimeSlot);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private interface Visitor {
+        void visit(int day, byte type, int detail, int round, int agent, int partner, int timeSlot, int otherTimeSlot);
+    }
+
+    /**
+     * The time slots wanted and held by every {@link Agent}, kept up to date as records are applied. Each
+     * {@link Agent}'s time slots are held in an array as long as its request rather than counted per time slot, so the
+     * state doesn't grow with the number of time slots.
+     */
+    private class MarketState {
+        private final int[] types = new int[populationSize + 1];
+        private final int[][] requested = new int[populationSize + 1][slotsPerAgent];
+        private final int[][] held = new int[populationSize + 1][slotsPerAgent];
+        private final int[] requestedCount = new int[populationSize + 1];
+        private final int[] heldCount = new int[populationSize + 1];
+        private int allocatingDay;
+        private int allocatingAgent;
+
+        private void apply(int day, byte type, int detail, int agent, int partner, int timeSlot, int otherTimeSlot) {
+            switch (type) {
+                case ExchangeEventLog.REQUESTED -> {
+                    // The first record of an Agent's allocation replaces what it held the day before.
+                    if (allocatingDay != day || allocatingAgent != agent) {
+                        allocatingDay = day;
+                        allocatingAgent = agent;
+                        requestedCount[agent] = 0;
+                        heldCount[agent] = 0;
+                    }
+                    types[agent] = detail;
+                    requested[agent][requestedCount[agent]++] = timeSlot;
+                }
+                case ExchangeEventLog.ALLOCATED -> held[agent][heldCount[agent]++] = timeSlot;
+                case ExchangeEventLog.EXCHANGE -> {
+                    replace(agent, timeSlot, otherTimeSlot);
+                    replace(partner, otherTimeSlot, timeSlot);
+                }
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * Replaces one of the time slots held by an {@link Agent} with the time slot that it was exchanged for.
+         */
+        private void replace(int agent, int timeSlot, int newTimeSlot) {
+            for (int i = 0; i < heldCount[agent]; i++) {
+                if (held[agent][i] == timeSlot) {
+                    held[agent][i] = newTimeSlot;
+                    return;
+                }
+            }
+        }
+
+        private double satisfaction(int agent) {
+            // Each held time slot can satisfy a single request for it.
+            int[] unmatched = Arrays.copyOf(held[agent], heldCount[agent]);
+            int satisfiedSlots = 0;
+            for (int i = 0; i < requestedCount[agent]; i++) {
+                for (int j = 0; j < unmatched.length; j++) {
+                    if (unmatched[j] == requested[agent][i]) {
+                        unmatched[j] = -1;
+                        satisfiedSlots++;
+                        break;
+                    }
+                }
+            }
+            return (double) satisfiedSlots / slotsPerAgent;
+        }
+    }
+
+    /**
+     * The events of a single {@link Exchange} round and the market as it was at the end of the round.
+     */
+    static class RoundState {
+        final int run;
+        final int day;
+        final int round;
+        // Whether the round had any events, rounds without adverts leave no records.
+        boolean found;
+        int advertisedTimeSlots;
+        int deliveredRequests;
+        int undeliveredRequests;
+        // Decisions indexed by their reason.
+        final int[] accepted = new int[8];
+        final int[] rejected = new int[8];
+        int finalCheckFailures;
+        int exchanges;
+        int socialCapitalGains;
+        int socialCapitalLosses;
+        // The type and satisfaction of each Agent at the end of the round, indexed by agent ID - 1.
+        final int[] agentTypes;
+        final double[] satisfactions;
+
+        private RoundState(int run, int day, int round, int populationSize) {
+            this.run = run;
+            this.day = day;
+            this.round = round;
+            agentTypes = new int[populationSize];
+            satisfactions = new double[populationSize];
+        }
+
+        /**
+         * @param out Where the state of the round is written.
+         * @throws IOException On output error.
+         */
+        void write(Writer out) throws IOException {
+            Utilities.write(out, "Run ", String.valueOf(run), ", day ", String.valueOf(day), ", round ",
+                    String.valueOf(round), found ? "" : " (no events)", "\n",
+                    "Advertised time slots: ", String.valueOf(advertisedTimeSlots), "\n",
+                    "Requests delivered: ", String.valueOf(deliveredRequests),
+                    ", not delivered: ", String.valueOf(undeliveredRequests), "\n");
+            for (int reason = 1; reason < accepted.length; reason++) {
+                if (accepted[reason] > 0) {
+                    Utilities.write(out, "Accepted, ", Inflect.getHumanReadableDecisionReason(reason), ": ",
+                            String.valueOf(accepted[reason]), "\n");
+                }
+                if (rejected[reason] > 0) {
+                    Utilities.write(out, "Rejected, ", Inflect.getHumanReadableDecisionReason(reason), ": ",
+                            String.valueOf(rejected[reason]), "\n");
+                }
+            }
+            Utilities.write(out, "Final checks failed: ", String.valueOf(finalCheckFailures), "\n",
+                    "Exchanges: ", String.valueOf(exchanges),
+                    ", social capital gained: ", String.valueOf(socialCapitalGains),
+                    ", lost: ", String.valueOf(socialCapitalLosses), "\n");
+
+            TreeMap<Integer, double[]> byType = new TreeMap<>();
+            for (int i = 0; i < agentTypes.length; i++) {
+                double[] totals = byType.computeIfAbsent(agentTypes[i], t -> new double[3]);
+                totals[0]++;
+                totals[1] += satisfactions[i];
+                if (satisfactions[i] == 1.0) totals[2]++;
+            }
+            for (Map.Entry<Integer, double[]> entry : byType.entrySet()) {
+                double[] totals = entry.getValue();
+                Utilities.write(out, Inflect.getHumanReadableAgentType(entry.getKey()),
+                        ": population ", String.valueOf((int) totals[0]),
+                        ", average satisfaction ", String.valueOf(totals[1] / totals[0]),
+                        ", fully satisfied ", String.valueOf((int) totals[2]), "\n");
+            }
+        }
+    }
+
+    /**
+     * What happened to an {@link Agent} in a single round.
+     */
+    private static class RoundCounts {
+        int advertised;
+        int requests;
+        int undelivered;
+        int accepted;
+        // Rejections of the Agent's requests indexed by their reason.
+        final int[] rejected = new int[8];
+        int receivedRequests;
+        int acceptedReceived;
+        int rejectedReceived;
+        int finalCheckFailures;
+        int exchanges;
+
+        int rejectedTotal() {
+            int total = 0;
+            for (int count : rejected) total += count;
+            return total;
+        }
+
+        void add(@NotNull RoundCounts counts) {
+            advertised += counts.advertised;
+            requests += counts.requests;
+            undelivered += counts.undelivered;
+            accepted += counts.accepted;
+            for (int i = 0; i < rejected.length; i++) rejected[i] += counts.rejected[i];
+            receivedRequests += counts.receivedRequests;
+            acceptedReceived += counts.acceptedReceived;
+            rejectedReceived += counts.rejectedReceived;
+            finalCheckFailures += counts.finalCheckFailures;
+            exchanges += counts.exchanges;
+        }
+    }
+
+    /**
+     * What happened to an {@link Agent} on a single {@link Day}.
+     */
+    private static class AgentDay {
+        int type;
+        double start;
+        double satisfaction;
+        int lastImprovement = -1;
+        int rounds;
+        final TreeMap<Integer, RoundCounts> counts = new TreeMap<>();
+        // The events are only kept when a single Day is being described.
+        final ArrayList<String> events = new ArrayList<>();
+
+        void event(int describedDay, int round, String event) {
+            if (describedDay != 0) events.add("Round " + round + ": " + event);
+        }
+
+        RoundCounts totalFrom(int round) {
+            RoundCounts total = new RoundCounts();
+            counts.tailMap(round).values().forEach(total::add);
+            return total;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package resource_exchange_arena;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Receives every step of each {@link Exchange} round as it happens, for detailed diagnostics of individual runs.
+ */
+interface ExchangeTrace {
+
+    /**
+     * An {@link Agent} has been allocated its time slots at the start of a {@link Day}, before any exchanges.
+     *
+     * @param run                {@link Integer} value identifying the current simulation run.
+     * @param day                {@link Integer} value representing the current {@link Day} being simulated.
+     * @param agentID            {@link Integer} value identifying the {@link Agent}.
+     * @param agentType          {@link Integer} value representing the {@link Agent}'s type on this {@link Day}.
+     * @param requestedTimeSlots The time slots the {@link Agent} wants.
+     * @param allocatedTimeSlots The time slots the {@link Agent} was allocated.
+     * @throws IOException On output error.
+     */
+    void allocation(int run, int day, int agentID, int agentType, ArrayList<Integer> requestedTimeSlots,
+                    ArrayList<Integer> allocatedTimeSlots) throws IOException;
+
+    /**
+     * An {@link Agent} has advertised the time slots it may be willing to exchange.
+     *
+     * @param run       {@link Integer} value identifying the current simulation run.
+     * @param day       {@link Integer} value representing the current {@link Day} being simulated.
+     * @param round     {@link Integer} value representing the current {@link Exchange} round.
+     * @param agentID   {@link Integer} value identifying the advertising {@link Agent}.
+     * @param timeSlots The time slots advertised.
+     * @throws IOException On output error.
+     */
+    void advert(int run, int day, int round, int agentID, ArrayList<Integer> timeSlots) throws IOException;
+
+    /**
+     * An {@link Agent} has sent an exchange request to the {@link Agent} that advertised the time slot it wants. The
+     * request isn't delivered if that {@link Agent} has already interacted this round.
+     *
+     * @param run               {@link Integer} value identifying the current simulation run.
+     * @param day               {@link Integer} value representing the current {@link Day} being simulated.
+     * @param round             {@link Integer} value representing the current {@link Exchange} round.
+     * @param requesterID       {@link Integer} value identifying the {@link Agent} making the request.
+     * @param receiverID        {@link Integer} value identifying the {@link Agent} receiving the request.
+     * @param requestedTimeSlot The time slot wanted by the requesting {@link Agent}.
+     * @param offeredTimeSlot   The time slot offered in return.
+     * @param delivered         Whether the receiving {@link Agent} received the request.
+     * @throws IOException On output error.
+     */
+    void request(int run, int day, int round, int requesterID, int receiverID, int requestedTimeSlot,
+                 int offeredTimeSlot, boolean delivered) throws IOException;
+
+    /**
+     * An {@link Agent} has decided whether to accept an exchange request it received.
+     *
+     * @param run         {@link Integer} value identifying the current simulation run.
+     * @param day         {@link Integer} value representing the current {@link Day} being simulated.
+     * @param round       {@link Integer} value representing the current {@link Exchange} round.
+     * @param receiverID  {@link Integer} value identifying the {@link Agent} that received the request.
+     * @param requesterID {@link Integer} value identifying the {@link Agent} that made the request.
+     * @param accepted    Whether the request was accepted.
+     * @param reason      {@link Integer} value representing the reason for the decision, one of the {@link Agent}'s reason constants.
+     * @throws IOException On output error.
+     */
+    void decision(int run, int day, int round, int receiverID, int requesterID, boolean accepted, int reason)
+            throws IOException;
+
+    /**
+     * An accepted exchange could not be completed because one of the {@link Agent}s no longer had its time slot.
+     *
+     * @param run         {@link Integer} value identifying the current simulation run.
+     * @param day         {@link Integer} value representing the current {@link Day} being simulated.
+     * @param round       {@link Integer} value representing the current {@link Exchange} round.
+     * @param receiverID  {@link Integer} value identifying the {@link Agent} that received the request.
+     * @param requesterID {@link Integer} value identifying the {@link Agent} that made the request.
+     * @param failedID    {@link Integer} value identifying the {@link Agent} that no longer had its time slot.
+     * @param timeSlot    The time slot that was no longer held.
+     * @throws IOException On output error.
+     */
+    void finalCheckFailed(int run, int day, int round, int receiverID, int requesterID, int failedID, int timeSlot)
+            throws IOException;
+
+    /**
+     * An exchange has been completed.
+     *
+     * @param run               {@link Integer} value identifying the current simulation run.
+     * @param day               {@link Integer} value representing the current {@link Day} being simulated.
+     * @param round             {@link Integer} value representing the current {@link Exchange} round.
+     * @param receiverID        {@link Integer} value identifying the {@link Agent} that received the request.
+     * @param requesterID       {@link Integer} value identifying the {@link Agent} that made the request.
+     * @param requestedTimeSlot The time slot given to the requesting {@link Agent}.
+     * @param offeredTimeSlot   The time slot given to the receiving {@link Agent}.
+     * @param socialCapitalGain Whether the receiving {@link Agent} gained social capital.
+     * @param socialCapitalLoss Whether the requesting {@link Agent} lost social capital.
+     * @throws IOException On output error.
+     */
+    void exchange(int run, int day, int round, int receiverID, int requesterID, int requestedTimeSlot,
+                  int offeredTimeSlot, boolean socialCapitalGain, boolean socialCapitalLoss) throws IOException;
+}
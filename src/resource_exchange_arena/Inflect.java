@@ -19,4 +19,39 @@ class Inflect {
         // Names match types specified by constant integers for the ExchangeArena.
         return name;
     }
+
+    /**
+     * Takes a descriptive agentType name, as output by {@link #getHumanReadableAgentType(int)}, and converts it back to
+     * its {@link Integer} format.
+     *
+     * @param name {@link String} name of the type of the {@link Agent}.
+     * @return {@link Integer} value representing the type of the {@link Agent}.
+     */
+    static int getAgentType(String name) {
+        return switch (name) {
+            case "Social" -> ResourceExchangeArena.SOCIAL;
+            case "Selfish" -> ResourceExchangeArena.SELFISH;
+            default -> Integer.parseInt(name);
+        };
+    }
+
+    /**
+     * Takes the reason for an {@link Agent}'s decision on an exchange request and converts it to a descriptive
+     * {@link String}.
+     *
+     * @param reason {@link Integer} value representing the reason, one of the {@link Agent}'s reason constants.
+     * @return The given reason as a descriptive {@link String}.
+     */
+    static String getHumanReadableDecisionReason(int reason) {
+        return switch (reason) {
+            case Agent.IMPROVES_SATISFACTION -> "Improves satisfaction";
+            case Agent.REPAYS_SOCIAL_CAPITAL -> "Repays social capital";
+            case Agent.NEUTRAL_ACCEPTED -> "Neutral exchange accepted";
+            case Agent.TIME_SLOT_NOT_HELD -> "Requested time slot no longer held";
+            case Agent.LOWERS_SATISFACTION -> "Lowers satisfaction";
+            case Agent.NO_IMPROVEMENT -> "No improvement";
+            case Agent.NO_SOCIAL_CAPITAL_OWED -> "No social capital owed";
+            default -> String.valueOf(reason);
+        };
+    }
 }
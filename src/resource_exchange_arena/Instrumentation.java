@@ -0,0 +1,311 @@
+package resource_exchange_arena;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.Writer;
+
+class Instrumentation {
+    // The phases of the simulation that are timed.
+    static final int DAY_SETUP = 0;
+    static final int ADVERTISING = 1;
+    static final int REQUESTING = 2;
+    static final int CONSIDERING = 3;
+    static final int COMPLETING = 4;
+    static final int TRADING_CYCLES = 5;
+    static final int CENTRAL_PLANNER = 6;
+    static final int ROUND_STATISTICS = 7;
+    static final int DAY_STATISTICS = 8;
+    static final int DATA_OUTPUT = 9;
+    static final int SOCIAL_LEARNING = 10;
+    static final int VISUALISER = 11;
+    private static final String[] PHASE_NAMES = {
+            "Day setup", "Advertising", "Requesting", "Considering", "Completing", "Trading cycles", "Central planner",
+            "Round statistics", "Day statistics", "Data output", "Social learning", "Visualiser"
+    };
+
+    // The events that are counted.
+    static final int RUNS = 0;
+    static final int DAYS = 1;
+    static final int ROUNDS = 2;
+    static final int ALLOCATED_TIME_SLOTS = 3;
+    static final int REQUESTS = 4;
+    static final int REJECTIONS = 5;
+    static final int EXCHANGES = 6;
+    static final int CYCLE_EXCHANGES = 7;
+    private static final String[] COUNTER_NAMES = {
+            "Runs", "Days", "Rounds", "Allocated time slots", "Requests", "Rejections", "Exchanges", "Cycle exchanges"
+    };
+
+    // The number of threads with an environment being instrumented, so that nothing more is done when there are none.
+    private static volatile int active;
+    private static final ThreadLocal<Instrumentation> current = new ThreadLocal<>();
+
+    private final long[] phaseNanos = new long[PHASE_NAMES.length];
+    private final long[] counters = new long[COUNTER_NAMES.length];
+    private final long startNanos = System.nanoTime();
+    private long endNanos;
+
+    // The Flight Recorder events in progress, and the counters when they began.
+    private RunEvent runEvent;
+    private DayEvent dayEvent;
+    private RoundEvent roundEvent;
+    private long runStartDays;
+    private long dayStartRounds;
+    private long dayStartExchanges;
+    private long roundStartExchanges;
+
+    /**
+     * Times each phase of an environment's simulations and counts what happens in them, and emits JDK Flight Recorder
+     * events for each run, {@link Day} and {@link Exchange} round. The instrumentation of an environment belongs to the
+     * thread simulating it and is reached through static methods, which return straight away when no environment is
+     * being instrumented so that they cost next to nothing otherwise.
+     */
+    private Instrumentation() {
+    }
+
+    /**
+     * Starts instrumenting the environment being simulated by the current thread.
+     *
+     * @return The instrumentation of the environment, which must be ended once the environment is complete.
+     */
+    static synchronized Instrumentation begin() {
+        if (current.get() == null) active++;
+        Instrumentation instrumentation = new Instrumentation();
+        current.set(instrumentation);
+        return instrumentation;
+    }
+
+    /**
+     * Stops instrumenting the environment, after which its summary can be written.
+     */
+    void end() {
+        endNanos = System.nanoTime();
+        synchronized (Instrumentation.class) {
+            if (current.get() == this) {
+                current.remove();
+                active--;
+            }
+        }
+    }
+
+    /**
+     * @return The time that a phase starts, or 0 if the current thread's environment isn't being instrumented.
+     */
+    static long start() {
+        if (active == 0 || current.get() == null) return 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds the time since a phase started to the phase's total.
+     *
+     * @param phase {@link Integer} value representing the phase, one of the phase constants.
+     * @param start The time returned by {@link #start()} or {@link #lap(int, long)} when the phase started.
+     * @return The time that the phase ended, so that the next phase can start from it, or 0 if not instrumented.
+     */
+    static long lap(int phase, long start) {
+        if (start == 0) return 0;
+        long now = System.nanoTime();
+        current.get().phaseNanos[phase] += now - start;
+        return now;
+    }
+
+    /**
+     * @param counter {@link Integer} value representing what is being counted, one of the counter constants.
+     * @param amount  {@link Long} value to add to the count.
+     */
+    static void count(int counter, long amount) {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation != null) instrumentation.counters[counter] += amount;
+    }
+
+    /**
+     * @param run {@link Integer} value identifying the simulation run that is starting.
+     */
+    static void startRun(int run) {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation == null) return;
+        instrumentation.runEvent = new RunEvent();
+        instrumentation.runEvent.run = run;
+        instrumentation.runStartDays = instrumentation.counters[DAYS];
+        instrumentation.runEvent.begin();
+    }
+
+    /**
+     * Marks the end of the simulation run started by {@link #startRun(int)}.
+     */
+    static void endRun() {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation == null || instrumentation.runEvent == null) return;
+        instrumentation.counters[RUNS]++;
+        RunEvent event = instrumentation.runEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.days = instrumentation.counters[DAYS] - instrumentation.runStartDays;
+            event.commit();
+        }
+        instrumentation.runEvent = null;
+    }
+
+    /**
+     * @param run {@link Integer} value identifying the current simulation run.
+     * @param day {@link Integer} value representing the {@link Day} that is starting.
+     */
+    static void startDay(int run, int day) {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation == null) return;
+        instrumentation.dayEvent = new DayEvent();
+        instrumentation.dayEvent.run = run;
+        instrumentation.dayEvent.day = day;
+        instrumentation.dayStartRounds = instrumentation.counters[ROUNDS];
+        instrumentation.dayStartExchanges = instrumentation.counters[EXCHANGES];
+        instrumentation.dayEvent.begin();
+    }
+
+    /**
+     * Marks the end of the {@link Day} started by {@link #startDay(int, int)}.
+     */
+    static void endDay() {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation == null || instrumentation.dayEvent == null) return;
+        instrumentation.counters[DAYS]++;
+        DayEvent event = instrumentation.dayEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.rounds = instrumentation.counters[ROUNDS] - instrumentation.dayStartRounds;
+            event.exchanges = instrumentation.counters[EXCHANGES] - instrumentation.dayStartExchanges;
+            event.commit();
+        }
+        instrumentation.dayEvent = null;
+    }
+
+    /**
+     * @param run   {@link Integer} value identifying the current simulation run.
+     * @param day   {@link Integer} value representing the current {@link Day}.
+     * @param round {@link Integer} value representing the {@link Exchange} round that is starting.
+     */
+    static void startRound(int run, int day, int round) {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation == null) return;
+        instrumentation.roundEvent = new RoundEvent();
+        instrumentation.roundEvent.run = run;
+        instrumentation.roundEvent.day = day;
+        instrumentation.roundEvent.round = round;
+        instrumentation.roundStartExchanges = instrumentation.counters[EXCHANGES];
+        instrumentation.roundEvent.begin();
+    }
+
+    /**
+     * Marks the end of the {@link Exchange} round started by {@link #startRound(int, int, int)}.
+     */
+    static void endRound() {
+        if (active == 0) return;
+        Instrumentation instrumentation = current.get();
+        if (instrumentation == null || instrumentation.roundEvent == null) return;
+        instrumentation.counters[ROUNDS]++;
+        RoundEvent event = instrumentation.roundEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.exchanges = instrumentation.counters[EXCHANGES] - instrumentation.roundStartExchanges;
+            event.commit();
+        }
+        instrumentation.roundEvent = null;
+    }
+
+    /**
+     * @param counter {@link Integer} value representing what has been counted, one of the counter constants.
+     * @return The number of times it has happened so far.
+     */
+    long total(int counter) {
+        return counters[counter];
+    }
+
+    /**
+     * @return The time in seconds since the instrumentation began, until it ended if it has.
+     */
+    double seconds() {
+        return ((endNanos == 0 ? System.nanoTime() : endNanos) - startNanos) / 1e9;
+    }
+
+    /**
+     * Writes the time spent in each phase and the counts of what happened, for the environment's simulation data.
+     *
+     * @param writer Used to store the key data about the simulation.
+     * @throws IOException On output error.
+     */
+    void write(Writer writer) throws IOException {
+        double totalSeconds = seconds();
+        Utilities.write(writer, "Timing: \n",
+                "Total time: ", String.format("%.3f", totalSeconds), " s\n");
+        long phasesNanos = 0;
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            phasesNanos += phaseNanos[phase];
+            double seconds = phaseNanos[phase] / 1e9;
+            Utilities.write(writer, PHASE_NAMES[phase], ": ", String.format("%.3f", seconds), " s (",
+                    String.format("%.1f", totalSeconds == 0 ? 0 : 100 * seconds / totalSeconds), "%)\n");
+        }
+        Utilities.write(writer, "Other: ", String.format("%.3f", totalSeconds - phasesNanos / 1e9), " s\n");
+        for (int counter = 0; counter < COUNTER_NAMES.length; counter++) {
+            Utilities.write(writer, COUNTER_NAMES[counter], ": ", String.valueOf(counters[counter]), "\n");
+        }
+        if (counters[DAYS] > 0) {
+            Utilities.write(writer, "Rounds per day: ",
+                    String.format("%.2f", (double) counters[ROUNDS] / counters[DAYS]), "\n",
+                    "Days per second: ", String.format("%.1f", counters[DAYS] / totalSeconds), "\n",
+                    "Exchanges per second: ", String.format("%.1f", counters[EXCHANGES] / totalSeconds), "\n");
+        }
+        writer.append("\n");
+    }
+
+    @Name("resource_exchange_arena.Run")
+    @Label("Simulation Run")
+    @Category("Resource Exchange Arena")
+    @Description("A simulation run, from the creation of its agents to its final day.")
+    static class RunEvent extends Event {
+        @Label("Run")
+        int run;
+        @Label("Days")
+        long days;
+    }
+
+    @Name("resource_exchange_arena.Day")
+    @Label("Day")
+    @Category("Resource Exchange Arena")
+    @Description("A day of a simulation run, from the allocation of time slots to social learning.")
+    static class DayEvent extends Event {
+        @Label("Run")
+        int run;
+        @Label("Day")
+        int day;
+        @Label("Rounds")
+        long rounds;
+        @Label("Exchanges")
+        long exchanges;
+    }
+
+    @Name("resource_exchange_arena.Round")
+    @Label("Exchange Round")
+    @Category("Resource Exchange Arena")
+    @Description("A round of exchanges within a day.")
+    static class RoundEvent extends Event {
+        @Label("Run")
+        int run;
+        @Label("Day")
+        int day;
+        @Label("Round")
+        int round;
+        @Label("Exchanges")
+        long exchanges;
+    }
+}
@@ -0,0 +1,218 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+
+class KeyDaysData implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // Index of each population's results, a run is attributed to the population that took over.
+    static final int SOCIAL_TAKEOVER = 0;
+    static final int SELFISH_TAKEOVER = 1;
+
+    // Running totals for the day a population took over and for the final day of each run.
+    private final KeyDayTotals[] takeoverTotals = {new KeyDayTotals(), new KeyDayTotals()};
+    private final KeyDayTotals[] finalTotals = {new KeyDayTotals(), new KeyDayTotals()};
+
+    // Takeover runs ordered by the day on which the takeover happened.
+    private final TakeoverOrder[] takeoverOrders = {new TakeoverOrder(), new TakeoverOrder()};
+
+    // The takeover day and final satisfaction of every run regardless of which population took over.
+    private final RunningStatistics takeoverDays = new RunningStatistics();
+    private final RunningStatistics finalSatisfaction = new RunningStatistics();
+
+    /**
+     * Stores the state of a simulation run when a population takes over and when the simulation ends. Rather than
+     * keeping every record, only the totals needed for the averages and the order of the takeovers are kept.
+     *
+     * @param run     {@link Integer} value identifying the simulation run the record belongs to.
+     * @param day     {@link Integer} value representing the {@link Day} being recorded.
+     * @param current The {@link Day} being recorded.
+     * @param isFinal Whether the record is for the final {@link Day} of the run, otherwise it is for the takeover.
+     */
+    void record(int run, int day, @NotNull Day current, boolean isFinal) {
+        int population = population(current);
+        double satisfaction = population == SOCIAL_TAKEOVER ? current.socSat : current.selSat;
+        double sd = population == SOCIAL_TAKEOVER ? current.socSD : current.selSD;
+
+        if (isFinal) {
+            finalTotals[population].add(day, satisfaction, sd);
+            finalSatisfaction.add(satisfaction);
+        } else {
+            takeoverTotals[population].add(day, satisfaction, sd);
+            takeoverOrders[population].insert(day, run);
+            takeoverDays.add(day);
+        }
+    }
+
+    /**
+     * A run is counted as a social takeover when no selfish agents remain.
+     *
+     * @param current The {@link Day} on which the takeover happened.
+     * @return Either {@link #SOCIAL_TAKEOVER} or {@link #SELFISH_TAKEOVER}.
+     */
+    static int population(@NotNull Day current) {
+        return current.selPop == 0 ? SOCIAL_TAKEOVER : SELFISH_TAKEOVER;
+    }
+
+    /**
+     * @return The number of runs in which a takeover has been recorded.
+     */
+    int runs() {
+        return takeoverTotals[SOCIAL_TAKEOVER].count + takeoverTotals[SELFISH_TAKEOVER].count;
+    }
+
+    /**
+     * @return The proportion of runs in which the social population took over.
+     */
+    double takeoverProbability() {
+        int runs = runs();
+        return runs == 0 ? 0.0 : (double) takeovers(SOCIAL_TAKEOVER) / runs;
+    }
+
+    /**
+     * Uses the Wilson score interval, which unlike the normal approximation remains meaningful when every run so far
+     * has had the same outcome.
+     *
+     * @return Half the width of the 95% confidence interval for the probability of a social takeover.
+     */
+    double takeoverProbabilityInterval() {
+        int runs = runs();
+        if (runs == 0) return 0.5;
+        double z = RunningStatistics.Z_95;
+        double p = takeoverProbability();
+        return z / (1 + z * z / runs) * Math.sqrt(p * (1 - p) / runs + z * z / (4.0 * runs * runs));
+    }
+
+    /**
+     * @return The days on which takeovers happened across all runs.
+     */
+    RunningStatistics takeoverDays() {
+        return takeoverDays;
+    }
+
+    /**
+     * @return The final day satisfaction of the population that took over, across all runs.
+     */
+    RunningStatistics finalSatisfaction() {
+        return finalSatisfaction;
+    }
+
+    /**
+     * @param population Either {@link #SOCIAL_TAKEOVER} or {@link #SELFISH_TAKEOVER}.
+     * @return The number of runs in which the given population took over.
+     */
+    int takeovers(int population) {
+        return takeoverTotals[population].count;
+    }
+
+    /**
+     * @param population Either {@link #SOCIAL_TAKEOVER} or {@link #SELFISH_TAKEOVER}.
+     * @return The run in which the given population took over the fastest.
+     */
+    int fastestRun(int population) {
+        return takeoverOrders[population].runAt(0);
+    }
+
+    /**
+     * @param population Either {@link #SOCIAL_TAKEOVER} or {@link #SELFISH_TAKEOVER}.
+     * @return The run in which the given population took over the slowest.
+     */
+    int slowestRun(int population) {
+        TakeoverOrder order = takeoverOrders[population];
+        return order.runAt(order.size - 1);
+    }
+
+    /**
+     * @param population Either {@link #SOCIAL_TAKEOVER} or {@link #SELFISH_TAKEOVER}.
+     * @return The run with the median takeover day for the given population, or 0 if it never took over.
+     */
+    int typicalRun(int population) {
+        TakeoverOrder order = takeoverOrders[population];
+        return order.size == 0 ? 0 : order.runAt(order.size / 2);
+    }
+
+    double averageTakeoverDays(int population) {
+        return takeoverTotals[population].averageDays();
+    }
+
+    double averageTakeoverSatisfaction(int population) {
+        return takeoverTotals[population].averageSatisfaction();
+    }
+
+    double averageTakeoverSD(int population) {
+        return takeoverTotals[population].averageSD();
+    }
+
+    double averageFinalSatisfaction(int population) {
+        return finalTotals[population].averageSatisfaction();
+    }
+
+    double averageFinalSD(int population) {
+        return finalTotals[population].averageSD();
+    }
+
+    /**
+     * Streaming sums of the key day values for a single population.
+     */
+    private static final class KeyDayTotals implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private int count;
+        private double days;
+        private double satisfaction;
+        private double sd;
+
+        void add(int day, double satisfaction, double sd) {
+            count++;
+            this.days += day;
+            this.satisfaction += satisfaction;
+            this.sd += sd;
+        }
+
+        double averageDays() {
+            return days / count;
+        }
+
+        double averageSatisfaction() {
+            return satisfaction / count;
+        }
+
+        double averageSD() {
+            return sd / count;
+        }
+    }
+
+    /**
+     * Keeps takeover runs sorted by takeover day, with ties kept in run order, so that the fastest, typical and
+     * slowest runs can be found without storing the rest of the run's data. Each run is packed into a single
+     * {@code long} with the day in the high bits and the run in the low bits.
+     */
+    private static final class TakeoverOrder implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private long[] keys = new long[16];
+        private int size;
+
+        void insert(int day, int run) {
+            long key = ((long) day << 32) | (run & 0xFFFFFFFFL);
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index < 0) index = -index - 1;
+
+            if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            keys[index] = key;
+            size++;
+        }
+
+        int runAt(int rank) {
+            return (int) keys[rank];
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+class OrderBook {
+    // The distinct time slots that each Agent wants and could give away. An order that takes any time slot in return
+    // is filed under the value after the last time slot value.
+    private final TimeSlotIndex index;
+    private final int timeSlotValues;
+    private final int anyTimeSlot;
+
+    // The Agents that posted orders, in order of priority, and the key each was ranked by.
+    private final Agent[] ranked;
+    private final long[] priorities;
+
+    // Every resting order, as the pair of time slots it gives and wants in the high bits and the rank of the Agent that
+    // posted it in the low bits, sorted so that the orders for a pair of time slots are together and in priority order.
+    private long[] orders;
+    private long[] unsorted;
+    private final int[] counts;
+    private int size;
+
+    // The position from which to look for the next order whose Agent can still trade, skipping those that have been
+    // found to be taken.
+    private int[] skip;
+
+    /**
+     * A market that keeps a book of orders for each time slot, in place of the shuffled advertising board that each
+     * {@link Agent} searches at random. Each {@link Agent} that could give away a time slot posts orders of the form
+     * "have X, want Y" for every time slot X it doesn't need and every time slot Y it wants, and an order "have X" that
+     * takes any time slot in return. An {@link Agent} making a request is matched with the resting order that gives
+     * it a time slot it wants in exchange for a time slot it has; first with an order that wants that time slot in
+     * return, an exchange that both sides accept, and otherwise with an order that takes any time slot.
+     * <p>
+     * Orders are ranked by the social capital of the {@link Agent} that posted them and then by arrival, the order
+     * that the {@link Agent}s advertised in. The orders are sorted once when they are posted, by counting the orders
+     * for each time slot as they are written out in rank order, so a request is matched by binary searches of the book
+     * rather than by a walk through every advert, and orders of {@link Agent}s that have already traded are passed over
+     * by following pointers that skip each taken order at most once. The order buffers only grow if more orders are
+     * posted than before.
+     *
+     * @param populationSize  {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param slotsPerAgent   {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     */
+    OrderBook(int populationSize, int uniqueTimeSlots, int slotsPerAgent) {
+        index = new TimeSlotIndex(populationSize, uniqueTimeSlots, slotsPerAgent, true);
+        timeSlotValues = index.timeSlotValues;
+        anyTimeSlot = timeSlotValues;
+        ranked = new Agent[populationSize];
+        priorities = new long[populationSize];
+        orders = new long[0];
+        unsorted = new long[0];
+        counts = new int[timeSlotValues + 2];
+        skip = new int[0];
+    }
+
+    /**
+     * Replaces the book with the orders of the {@link Agent}s, who are taken to have arrived in the order given.
+     *
+     * @param agents {@link ArrayList} of all the {@link Agent}s that exist in the current simulation, in the order
+     *               that they advertised.
+     */
+    void post(@NotNull ArrayList<Agent> agents) {
+        int posted = 0;
+        for (int arrival = 0; arrival < agents.size(); arrival++) {
+            Agent a = agents.get(arrival);
+            int id = index.index(a);
+            if (index.unwantedCount[id] > 0) {
+                // The most social capital first, and then the earliest arrival.
+                priorities[posted++] = ((long) -a.getUnspentSocialCapital() << 32) | arrival;
+            }
+        }
+        Arrays.sort(priorities, 0, posted);
+
+        size = 0;
+        for (int rank = 0; rank < posted; rank++) {
+            Agent a = agents.get((int) priorities[rank]);
+            int id = a.agentID - 1;
+            ranked[rank] = a;
+            int needed = size + index.unwantedCount[id] * (index.wantedCount[id] + 1);
+            if (unsorted.length < needed) unsorted = Arrays.copyOf(unsorted, Math.max(needed, unsorted.length * 2));
+            for (int i = 0; i < index.unwantedCount[id]; i++) {
+                int have = index.unwanted[id][i];
+                for (int j = 0; j < index.wantedCount[id]; j++) {
+                    unsorted[size++] = (long) pair(have, index.wanted[id][j]) << 32 | rank;
+                }
+                unsorted[size++] = (long) pair(have, anyTimeSlot) << 32 | rank;
+            }
+        }
+
+        // The orders are written in rank order, so sorting them by the time slot wanted and then, keeping that order,
+        // by the time slot given leaves the orders for each pair in rank order.
+        if (orders.length < unsorted.length) {
+            orders = new long[unsorted.length];
+            skip = new int[unsorted.length];
+        }
+        sortByTimeSlot(unsorted, orders, false);
+        sortByTimeSlot(orders, unsorted, true);
+        long[] sorted = unsorted;
+        unsorted = orders;
+        orders = sorted;
+
+        for (int i = 0; i < size; i++) skip[i] = i;
+    }
+
+    /**
+     * Matches an {@link Agent}'s request with the best resting order of an {@link Agent} that hasn't yet traded this
+     * round. Orders that want one of the requesting {@link Agent}'s spare time slots in return are preferred to those
+     * that take any time slot.
+     *
+     * @param a The {@link Agent} making the request, after the orders have been posted.
+     * @return The ID of the {@link Agent} whose order was matched and the time slot it gives, followed by the time slot
+     * that it wants in return if it named one, or an empty list if no order could be matched.
+     */
+    ArrayList<Integer> match(@NotNull Agent a) {
+        int id = a.agentID - 1;
+        ArrayList<Integer> match = new ArrayList<>();
+        if (index.wantedCount[id] == 0) return match;
+
+        int best = -1;
+        int bestTimeSlot = -1;
+        int bestReturn = -1;
+        for (int i = 0; i < index.wantedCount[id]; i++) {
+            for (int j = 0; j < index.unwantedCount[id]; j++) {
+                int position = bestOrder(pair(index.wanted[id][i], index.unwanted[id][j]));
+                if (position >= 0 && (best < 0 || (int) orders[position] < (int) orders[best])) {
+                    best = position;
+                    bestTimeSlot = index.wanted[id][i];
+                    bestReturn = index.unwanted[id][j];
+                }
+            }
+        }
+        if (best < 0) {
+            for (int i = 0; i < index.wantedCount[id]; i++) {
+                int position = bestOrder(pair(index.wanted[id][i], anyTimeSlot));
+                if (position >= 0 && (best < 0 || (int) orders[position] < (int) orders[best])) {
+                    best = position;
+                    bestTimeSlot = index.wanted[id][i];
+                }
+            }
+        }
+        if (best >= 0) {
+            match.add(ranked[(int) orders[best]].agentID);
+            match.add(bestTimeSlot);
+            if (bestReturn >= 0) match.add(bestReturn);
+        }
+        return match;
+    }
+
+    private int pair(int have, int want) {
+        return have * (timeSlotValues + 1) + want;
+    }
+
+    /**
+     * Copies the orders from one buffer to another in order of the time slot that they give or want, keeping the
+     * order of those with the same time slot.
+     */
+    private void sortByTimeSlot(long @NotNull [] from, long @NotNull [] to, boolean byTimeSlotGiven) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < size; i++) counts[timeSlot(from[i], byTimeSlotGiven) + 1]++;
+        for (int timeSlot = 1; timeSlot < counts.length; timeSlot++) counts[timeSlot] += counts[timeSlot - 1];
+        for (int i = 0; i < size; i++) to[counts[timeSlot(from[i], byTimeSlotGiven)]++] = from[i];
+    }
+
+    private int timeSlot(long order, boolean given) {
+        int pair = (int) (order >>> 32);
+        return given ? pair / (timeSlotValues + 1) : pair % (timeSlotValues + 1);
+    }
+
+    /**
+     * @return The position of the highest ranked order for the pair of time slots whose {@link Agent} can still
+     * trade, or -1 if there is none.
+     */
+    private int bestOrder(int pair) {
+        long first = (long) pair << 32;
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (orders[middle] < first) low = middle + 1;
+            else high = middle;
+        }
+        int position = open(low);
+        return position < size && (int) (orders[position] >>> 32) == pair ? position : -1;
+    }
+
+    /**
+     * Finds the first order at or after a position whose {@link Agent} hasn't yet traded this round, marking the
+     * orders passed over so that later searches skip straight past them.
+     */
+    private int open(int from) {
+        int position = from;
+        while (position < size && (skip[position] != position || ranked[(int) orders[position]].madeInteraction())) {
+            if (skip[position] == position) skip[position] = position + 1;
+            position = skip[position];
+        }
+        for (int passed = from; passed < position; ) {
+            int next = skip[passed];
+            skip[passed] = position;
+            passed = next;
+        }
+        return position;
+    }
+}
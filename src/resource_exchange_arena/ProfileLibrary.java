@@ -0,0 +1,291 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class ProfileLibrary {
+    // Identifies a profile library file and the version of its layout.
+    private static final int MAGIC = 0x52454150;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    private final Path libraryFile;
+    private final long librarySeed;
+    private final int uniqueTimeSlots;
+    private final int slotsPerAgent;
+    private final int cacheSize;
+
+    private final int profiles;
+    private final int valuesPerDay;
+    private final double scale;
+    private final long checksum;
+
+    // The profiles mapped from the library file, each mapping holding a whole number of profiles.
+    private final MappedByteBuffer[] chunks;
+    private final int profilesPerChunk;
+
+    // The most recently used households, with their bucketed curves and sampling tables.
+    private final LinkedHashMap<Integer, Household> households;
+    private long cacheMisses;
+
+    /**
+     * A library of metered household demand profiles, from which every {@link Agent} is given a household of its own
+     * rather than sharing one of a few demand curves. The profiles are stored in a compact binary file that is memory
+     * mapped, so a library of tens of thousands of households is read from the page cache as it is used rather than
+     * being loaded onto the heap. Only the most recently used households are kept on the heap, bucketed into the
+     * simulation's time slots and with the table that their requests are sampled from.
+     * <p>
+     * Each {@link Agent}'s household is drawn from its own stream, keyed by the library's seed, the run and the
+     * {@link Agent}, so every environment that uses the same library and seed gives its {@link Agent}s the same
+     * households, and an {@link Agent} keeps its household for the whole run.
+     *
+     * @param libraryFile     {@link Path} of a library written by {@link #write(Path, ArrayList)}.
+     * @param librarySeed     {@link Long} value that the households are drawn from.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param slotsPerAgent   {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param cacheSize       {@link Integer} value representing the number of bucketed households kept on the heap.
+     * @throws IOException On input error, or if the file isn't a profile library.
+     */
+    ProfileLibrary(Path libraryFile, long librarySeed, int uniqueTimeSlots, int slotsPerAgent, int cacheSize)
+            throws IOException {
+        this.libraryFile = libraryFile;
+        this.librarySeed = librarySeed;
+        this.uniqueTimeSlots = uniqueTimeSlots;
+        this.slotsPerAgent = slotsPerAgent;
+        this.cacheSize = Math.max(1, cacheSize);
+
+        try (FileChannel channel = FileChannel.open(libraryFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(libraryFile + " is not a profile library.");
+            }
+            profiles = header.getInt();
+            valuesPerDay = header.getInt();
+            scale = header.getDouble();
+            checksum = header.getLong();
+
+            long profileBytes = (long) valuesPerDay * Character.BYTES;
+            if (profiles < 1 || valuesPerDay < 1 || channel.size() != HEADER_BYTES + profiles * profileBytes) {
+                throw new IOException(libraryFile + " is not a complete profile library.");
+            }
+
+            // Each chunk is mapped separately, which keeps every mapping within the size limit of a single buffer.
+            profilesPerChunk = (int) Math.min(profiles, Integer.MAX_VALUE / profileBytes);
+            chunks = new MappedByteBuffer[(profiles + profilesPerChunk - 1) / profilesPerChunk];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                int first = chunk * profilesPerChunk;
+                int length = Math.min(profilesPerChunk, profiles - first);
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * profileBytes, length * profileBytes);
+            }
+        }
+
+        households = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Household> eldest) {
+                return size() > ProfileLibrary.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Converts a CSV of metered household profiles into a profile library.
+     *
+     * @param args The CSV, with one household per line and one column for each value of its day, optionally beginning
+     *             with a line of column names, followed by the library file to write.
+     * @throws IOException On input or output error.
+     */
+    public static void main(String @NotNull [] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: ProfileLibrary <profiles csv> <library file>");
+            return;
+        }
+        ArrayList<double[]> profiles = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                String[] values = line.split(",");
+                double[] profile = new double[values.length];
+                try {
+                    for (int i = 0; i < values.length; i++) {
+                        profile[i] = Double.parseDouble(values[i].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    // The first line may name the columns.
+                    if (lineNumber == 1) continue;
+                    throw new IOException("Line " + lineNumber + " of " + args[0] + " is not a profile.", e);
+                }
+                profiles.add(profile);
+            }
+        }
+        write(Path.of(args[1]), profiles);
+        System.out.println("Wrote " + profiles.size() + " profiles to " + args[1]);
+    }
+
+    /**
+     * Writes a profile library. Each value is stored as an unsigned 16 bit multiple of a scale shared by the library,
+     * which is fine enough that bucketing rounds away the difference. The file is written under a temporary name and
+     * then renamed, so an interrupted write never leaves a partial library behind.
+     *
+     * @param libraryFile {@link Path} of the library to write.
+     * @param profiles    {@link Double} arrays of demand, one for each household, which must all be the same length.
+     * @throws IOException On output error.
+     */
+    static void write(@NotNull Path libraryFile, @NotNull ArrayList<double[]> profiles) throws IOException {
+        if (profiles.isEmpty()) throw new IllegalArgumentException("A profile library needs at least one profile.");
+        int valuesPerDay = profiles.get(0).length;
+        double maximum = 0;
+        for (double[] profile : profiles) {
+            if (profile.length != valuesPerDay) {
+                throw new IllegalArgumentException("Every profile must have " + valuesPerDay + " values.");
+            }
+            for (double value : profile) {
+                if (value < 0 || Double.isNaN(value)) throw new IllegalArgumentException("Demand can't be negative.");
+                maximum = Math.max(maximum, value);
+            }
+        }
+        double scale = maximum > 0 ? maximum / Character.MAX_VALUE : 1.0;
+
+        Path parent = libraryFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporaryFile = Files.createTempFile(parent, "profileLibrary", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long profileBytes = (long) valuesPerDay * Character.BYTES;
+            CRC32 crc = new CRC32();
+            ByteBuffer profileBuffer = ByteBuffer.allocate((int) profileBytes);
+            channel.position(HEADER_BYTES);
+            for (double[] profile : profiles) {
+                profileBuffer.clear();
+                for (double value : profile) {
+                    profileBuffer.putChar((char) Math.round(value / scale));
+                }
+                profileBuffer.flip();
+                crc.update(profileBuffer.duplicate());
+                while (profileBuffer.hasRemaining()) channel.write(profileBuffer);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(profiles.size()).putInt(valuesPerDay)
+                    .putDouble(scale).putLong(crc.getValue());
+            header.rewind();
+            channel.position(0);
+            while (header.hasRemaining()) channel.write(header);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+        Files.move(temporaryFile, libraryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param run     {@link Integer} value identifying the current simulation run.
+     * @param agentID {@link Integer} value identifying the {@link Agent}.
+     * @return The household that the {@link Agent} is given for the run.
+     */
+    Household household(int run, int agentID) {
+        CounterBasedRandom random = new CounterBasedRandom(librarySeed);
+        random.jump(run, 0, 0, CounterBasedRandom.PROFILES, agentID);
+        return household(random.nextInt(profiles));
+    }
+
+    /**
+     * @param profile {@link Integer} value identifying a profile in the library.
+     * @return The profile's household, bucketed into the simulation's time slots.
+     */
+    synchronized Household household(int profile) {
+        Household household = households.get(profile);
+        if (household == null) {
+            cacheMisses++;
+            household = new Household(profile, read(profile));
+            households.put(profile, household);
+        }
+        return household;
+    }
+
+    /**
+     * @return {@link Long} value representing the number of households that have been read from the library and
+     * bucketed, rather than found among the recently used households.
+     */
+    synchronized long cacheMisses() {
+        return cacheMisses;
+    }
+
+    private double @NotNull [] read(int profile) {
+        MappedByteBuffer chunk = chunks[profile / profilesPerChunk];
+        int start = (profile % profilesPerChunk) * valuesPerDay * Character.BYTES;
+        double[] values = new double[valuesPerDay];
+        for (int i = 0; i < valuesPerDay; i++) {
+            values[i] = chunk.getChar(start + i * Character.BYTES) * scale;
+        }
+        return values;
+    }
+
+    /**
+     * @return {@link Path} of the file that the profiles are stored in.
+     */
+    Path file() {
+        return libraryFile;
+    }
+
+    /**
+     * @return {@link Long} value that the households are drawn from.
+     */
+    long seed() {
+        return librarySeed;
+    }
+
+    /**
+     * @return A description of the library that identifies the households it gives the {@link Agent}s, regardless of
+     * where its file is stored.
+     */
+    @Override
+    public String toString() {
+        return "ProfileLibrary[seed=" + librarySeed + ", profiles=" + profiles + ", valuesPerDay=" + valuesPerDay
+                + ", checksum=" + Long.toHexString(checksum) + "]";
+    }
+
+    /**
+     * A single household's demand, bucketed into the simulation's time slots, with the selection wheel that the time
+     * slots it requests are sampled from.
+     */
+    class Household {
+        final int profile;
+        final double[] demandCurve;
+        final double totalDemand;
+        final SelectionWheel demandWheel;
+
+        private Household(int profile, double[] values) {
+            this.profile = profile;
+            demandCurve = ArenaEnvironment.bucketDemandCurve(values, uniqueTimeSlots);
+            totalDemand = ArenaEnvironment.totalDemand(demandCurve);
+            demandWheel = SelectionWheel.ofDemand(demandCurve, totalDemand);
+
+            // An Agent requests distinct time slots, so a household must demand at least as many as it requests.
+            int demandedTimeSlots = demandWheel.weightedTimeSlots();
+            if (demandedTimeSlots < slotsPerAgent || demandWheel.size() < 1) {
+                throw new IllegalArgumentException("Household profile " + profile + " of " + libraryFile
+                        + " demands " + demandedTimeSlots + " time slots, but each agent requests " + slotsPerAgent
+                        + ".");
+            }
+        }
+    }
+}
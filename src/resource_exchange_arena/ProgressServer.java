@@ -0,0 +1,258 @@
+package resource_exchange_arena;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+class ProgressServer {
+    // The number of most recent runs that the rolling takeover split is taken over.
+    static final int ROLLING_RUNS = 50;
+
+    private static volatile ProgressServer server;
+
+    private final HttpServer httpServer;
+    private final long startNanos = System.nanoTime();
+
+    // Totals since the server started.
+    private long runs;
+    private long days;
+    private long exchanges;
+    private long runNanos;
+
+    // The environments of the sweep, 0 planned when the number isn't known in advance.
+    private int plannedEnvironments;
+    private int environmentsCompleted;
+
+    // The environment currently being simulated.
+    private String environmentTag = "";
+    private long environmentStartNanos;
+    private long runStartNanos;
+    private int environmentRuns;
+    private int environmentRunsCompleted;
+    private long environmentRunsTimed;
+    private long environmentDays;
+    private long environmentExchanges;
+    private long environmentRunNanos;
+    private final int[] environmentTakeovers = new int[2];
+
+    // The populations that took over in the most recent runs, oldest first once the buffer has wrapped.
+    private final int[] recentTakeovers = new int[ROLLING_RUNS];
+    private int recentRuns;
+
+    /**
+     * Serves the progress of a long set of simulations over HTTP, so that a sweep can be watched and abandoned early
+     * when it is going badly. A plain text summary of throughput, memory use, the estimated time remaining and the
+     * split of takeovers between the populations is returned for any path. The simulations report their progress
+     * through static methods, which return straight away when no server has been started.
+     *
+     * @param port {@link Integer} value representing the local port to listen on.
+     * @throws IOException If the port can't be listened on.
+     */
+    private ProgressServer(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts serving progress, only a single server runs at once.
+     *
+     * @param port {@link Integer} value representing the local port to listen on.
+     * @throws IOException If the port can't be listened on.
+     */
+    static synchronized void start(int port) throws IOException {
+        if (server != null) return;
+        ProgressServer progressServer = new ProgressServer(port);
+        progressServer.httpServer.start();
+        server = progressServer;
+        System.out.println("Progress served at http://localhost:" + progressServer.httpServer.getAddress().getPort() + "/");
+    }
+
+    /**
+     * Stops serving progress, so that the JVM can exit once the simulations are complete.
+     */
+    static synchronized void stop() {
+        if (server == null) return;
+        server.httpServer.stop(0);
+        server = null;
+    }
+
+    /**
+     * @param environments {@link Integer} value representing the number of environments about to be added to the sweep,
+     *                     or 0 if it is not known in advance.
+     */
+    static void plan(int environments) {
+        ProgressServer progressServer = server;
+        if (progressServer == null) return;
+        synchronized (progressServer) {
+            progressServer.plannedEnvironments = environments == 0 || progressServer.plannedEnvironments < 0
+                    ? -1
+                    : progressServer.plannedEnvironments + environments;
+        }
+    }
+
+    /**
+     * @param environmentTag {@link String} detailing specifics about the simulation environment that is starting.
+     */
+    static void environmentStarted(String environmentTag) {
+        ProgressServer progressServer = server;
+        if (progressServer == null) return;
+        synchronized (progressServer) {
+            progressServer.environmentTag = environmentTag;
+            progressServer.environmentStartNanos = System.nanoTime();
+            progressServer.runStartNanos = progressServer.environmentStartNanos;
+            progressServer.environmentRuns = 0;
+            progressServer.environmentRunsCompleted = 0;
+            progressServer.environmentRunsTimed = 0;
+            progressServer.environmentDays = 0;
+            progressServer.environmentExchanges = 0;
+            progressServer.environmentRunNanos = 0;
+            progressServer.environmentTakeovers[KeyDaysData.SOCIAL_TAKEOVER] = 0;
+            progressServer.environmentTakeovers[KeyDaysData.SELFISH_TAKEOVER] = 0;
+        }
+    }
+
+    /**
+     * @param runsCompleted {@link Integer} value representing the runs of the environment already complete, such as
+     *                      those restored from a checkpoint.
+     * @param runsToComplete {@link Integer} value representing the runs the environment is currently expected to make.
+     */
+    static void runsPlanned(int runsCompleted, int runsToComplete) {
+        ProgressServer progressServer = server;
+        if (progressServer == null) return;
+        synchronized (progressServer) {
+            progressServer.environmentRunsCompleted = Math.max(progressServer.environmentRunsCompleted, runsCompleted);
+            progressServer.environmentRuns = runsToComplete;
+        }
+    }
+
+    /**
+     * @param exchanges {@link Integer} value representing the number of exchanges made during the {@link Day}.
+     */
+    static void dayCompleted(int exchanges) {
+        ProgressServer progressServer = server;
+        if (progressServer == null) return;
+        synchronized (progressServer) {
+            progressServer.days++;
+            progressServer.exchanges += exchanges;
+            progressServer.environmentDays++;
+            progressServer.environmentExchanges += exchanges;
+        }
+    }
+
+    /**
+     * @param population Either {@link KeyDaysData#SOCIAL_TAKEOVER} or {@link KeyDaysData#SELFISH_TAKEOVER}.
+     */
+    static void runCompleted(int population) {
+        ProgressServer progressServer = server;
+        if (progressServer == null) return;
+        synchronized (progressServer) {
+            long now = System.nanoTime();
+            progressServer.runs++;
+            progressServer.runNanos += now - progressServer.runStartNanos;
+            progressServer.environmentRunNanos += now - progressServer.runStartNanos;
+            progressServer.runStartNanos = now;
+            progressServer.environmentRunsCompleted++;
+            progressServer.environmentRunsTimed++;
+            progressServer.environmentTakeovers[population]++;
+            progressServer.recentTakeovers[progressServer.recentRuns % ROLLING_RUNS] = population;
+            progressServer.recentRuns++;
+        }
+    }
+
+    /**
+     * Marks the end of the environment started by {@link #environmentStarted(String)}.
+     */
+    static void environmentCompleted() {
+        ProgressServer progressServer = server;
+        if (progressServer == null) return;
+        synchronized (progressServer) {
+            progressServer.environmentsCompleted++;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        StringWriter summary = new StringWriter();
+        write(summary);
+        byte[] body = summary.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    /**
+     * Writes the progress so far, the rates are given both since the server started and for the current environment.
+     *
+     * @param writer Used to store the progress.
+     * @throws IOException On output error.
+     */
+    synchronized void write(Writer writer) throws IOException {
+        long now = System.nanoTime();
+        double seconds = (now - startNanos) / 1e9;
+        double environmentSeconds = environmentStartNanos == 0 ? 0 : (now - environmentStartNanos) / 1e9;
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+
+        Utilities.write(writer, "Progress: \n\n",
+                "Environment: ", environmentTag, "\n",
+                "Environment runs completed: ", String.valueOf(environmentRunsCompleted), " of ",
+                String.valueOf(environmentRuns), "\n",
+                "Environments completed: ", String.valueOf(environmentsCompleted),
+                plannedEnvironments > 0 ? " of " + plannedEnvironments : "", "\n",
+                "Elapsed: ", String.format("%.1f", seconds), " s\n",
+                "Runs per second: ", rate(runs, seconds), " (environment ",
+                rate(environmentRunsTimed, environmentSeconds), ")\n",
+                "Days per second: ", rate(days, seconds), " (environment ",
+                rate(environmentDays, environmentSeconds), ")\n",
+                "Exchanges per second: ", rate(exchanges, seconds), " (environment ",
+                rate(environmentExchanges, environmentSeconds), ")\n",
+                "Heap used: ", String.valueOf(heapUsed >> 20), " MB of ",
+                String.valueOf(runtime.maxMemory() >> 20), " MB\n");
+
+        // Runs are assumed to take as long as they have so far in this environment, or in earlier ones before any of
+        // this environment's runs are complete.
+        double runSeconds = environmentRunsTimed > 0
+                ? environmentRunNanos / 1e9 / environmentRunsTimed
+                : runs > 0 ? runNanos / 1e9 / runs : Double.NaN;
+        double environmentEta = Math.max(0, environmentRuns - environmentRunsCompleted) * runSeconds;
+        Utilities.write(writer, "Environment ETA: ", eta(environmentEta), "\n");
+        if (plannedEnvironments > 0) {
+            int environmentsRemaining = Math.max(0, plannedEnvironments - environmentsCompleted - 1);
+            Utilities.write(writer, "Sweep ETA: ",
+                    eta(environmentEta + environmentsRemaining * environmentRuns * runSeconds), "\n");
+        }
+
+        int recentSocial = 0;
+        int recent = Math.min(recentRuns, ROLLING_RUNS);
+        for (int i = 0; i < recent; i++) {
+            if (recentTakeovers[i] == KeyDaysData.SOCIAL_TAKEOVER) recentSocial++;
+        }
+        writeSplit(writer, "Environment takeovers: ", environmentTakeovers[KeyDaysData.SOCIAL_TAKEOVER],
+                environmentTakeovers[KeyDaysData.SELFISH_TAKEOVER]);
+        writeSplit(writer, "Takeovers in last " + recent + " runs: ", recentSocial, recent - recentSocial);
+    }
+
+    private static void writeSplit(Writer writer, String label, int social, int selfish) throws IOException {
+        int total = social + selfish;
+        Utilities.write(writer, label, "social ", String.valueOf(social), ", selfish ", String.valueOf(selfish),
+                total == 0 ? "" : String.format(" (%.1f%% social)", 100.0 * social / total), "\n");
+    }
+
+    private static String rate(long count, double seconds) {
+        return seconds == 0 ? "0.00" : String.format("%.2f", count / seconds);
+    }
+
+    private static String eta(double seconds) {
+        if (Double.isNaN(seconds)) return "unknown";
+        long total = Math.round(seconds);
+        return String.format("%d:%02d:%02d", total / 3600, total / 60 % 60, total % 60);
+    }
+}
@@ -0,0 +1,56 @@
+package resource_exchange_arena;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+class QuantileSketch implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final double lowerBound;
+    private final double binWidth;
+    private final int[] bins;
+    private long count;
+
+    /**
+     * Estimates quantiles of a stream of bounded values using a fixed number of equal width bins, so that the memory
+     * used does not depend on the number of values seen. Quantiles are accurate to within one bin width.
+     *
+     * @param lowerBound   The smallest value expected.
+     * @param upperBound   The largest value expected.
+     * @param numberOfBins {@link Integer} value representing the resolution of the sketch.
+     */
+    QuantileSketch(double lowerBound, double upperBound, int numberOfBins) {
+        this.lowerBound = lowerBound;
+        this.binWidth = (upperBound - lowerBound) / numberOfBins;
+        this.bins = new int[numberOfBins];
+    }
+
+    /**
+     * @param value The next value of the stream, values outside the bounds are counted in the outermost bins.
+     */
+    void add(double value) {
+        int bin = (int) ((value - lowerBound) / binWidth);
+        bins[Math.max(0, Math.min(bins.length - 1, bin))]++;
+        count++;
+    }
+
+    /**
+     * @param p The quantile to estimate, between 0 and 1.
+     * @return The estimated value below which the proportion {@code p} of values fall, interpolated within a bin.
+     */
+    double quantile(double p) {
+        if (count == 0) return 0.0;
+
+        double target = p * count;
+        long cumulative = 0;
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] > 0 && cumulative + bins[i] >= target) {
+                double fraction = (target - cumulative) / bins[i];
+                return lowerBound + (i + fraction) * binWidth;
+            }
+            cumulative += bins[i];
+        }
+        return lowerBound + bins.length * binWidth;
+    }
+}
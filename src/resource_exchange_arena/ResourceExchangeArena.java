@@ -5,6 +5,7 @@ import resource_exchange_arena.parameters.UserParameters;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -14,8 +15,50 @@ import java.util.Random;
 public class ResourceExchangeArena extends UserParameters {
 
     // Create a single Random object for generating random numerical data for the simulation, a single object exists to
-    // allow for result replication given a specific user seed.
-    static Random random = new Random();
+    // allow for result replication given a specific user seed. Each thread has its own, which is only meaningful for
+    // the counter based generator as its streams don't depend on what was drawn before. A thread must be given its
+    // Random before it simulates, so that no results come from an unseeded one.
+    private static final ThreadLocal<Random> random = ThreadLocal.withInitial(() -> {
+        throw new IllegalStateException("The random generator of thread '" + Thread.currentThread().getName()
+                + "' hasn't been set.");
+    });
+
+    // The seed of the current simulation run, moved on by one each run. Each thread has its own, so that environments
+    // simulated at once on different threads never share a seed, and it must be set before the thread simulates.
+    private static final ThreadLocal<Long> currentSeed = ThreadLocal.withInitial(() -> {
+        throw new IllegalStateException("The seed of thread '" + Thread.currentThread().getName()
+                + "' hasn't been set.");
+    });
+
+    /**
+     * @return The {@link Random} used by the current thread.
+     * @throws IllegalStateException If the current thread hasn't been given a {@link Random}.
+     */
+    static Random random() {
+        return random.get();
+    }
+
+    /**
+     * @param newRandom The {@link Random} to be used by the current thread from now on.
+     */
+    static void setRandom(Random newRandom) {
+        random.set(newRandom);
+    }
+
+    /**
+     * @return {@link Long} value representing the seed of the current thread's simulation run.
+     * @throws IllegalStateException If the current thread hasn't been given a seed.
+     */
+    static long currentSeed() {
+        return currentSeed.get();
+    }
+
+    /**
+     * @param seed {@link Long} value representing the seed of the current thread's simulation run from now on.
+     */
+    static void setCurrentSeed(long seed) {
+        currentSeed.set(seed);
+    }
 
     /**
      * This is the main method which runs the entire {@link ResourceExchangeArena} simulation.
@@ -25,14 +68,101 @@ public class ResourceExchangeArena extends UserParameters {
      * @see IOException
      */
     public static void main(String[] args) throws IOException {
+        if (PROGRESS_PORT != 0) ProgressServer.start(PROGRESS_PORT);
+        try {
+            runSweep(WORKERS);
+        } finally {
+            ProgressServer.stop();
+        }
+
+        // String version of starting ratios for file names.
+        ArrayList<String> startingRatiosArray = new ArrayList<>();
+
+        for (int[] AGENT_TYPES : AGENT_TYPES_ARRAY) {
+            StringBuilder ratio = new StringBuilder();
+            int typesListed = 0;
+            for (int type : AGENT_TYPES) {
+                if (typesListed != 0) {
+                    ratio.append("_");
+                }
+                typesListed++;
+                ratio.append(Inflect.getHumanReadableAgentType(type));
+            }
+            startingRatiosArray.add(ratio.toString());
+        }
+    }
+
+    /**
+     * Runs every environment of the sweep described by the current parameters, each comparison level adding its
+     * versions of the environments.
+     *
+     * @param workers {@link Integer} value representing the number of worker processes to share the environments
+     *                between, or 0 to simulate them in this process.
+     * @throws IOException On input error.
+     */
+    static void runSweep(int workers) throws IOException {
+        // The environments of the sweep take their seeds in turn, starting from the configured seed.
+        setCurrentSeed(seed);
+
+        // Every version of the environment replays the same scenarios from the bank, generated from the initial seed.
+        ScenarioBank scenarioBank = USE_SCENARIO_BANK
+                ? new ScenarioBank(Path.of(FOLDER_NAME, "scenarioBank.bin"), seed, SIMULATION_RUNS, SCENARIO_BANK_DAYS)
+                : null;
+
+        // Every version of the environment gives its agents the same households, drawn with the initial seed.
+        ProfileLibrary profileLibrary = PROFILE_LIBRARY.isEmpty() ? null : new ProfileLibrary(
+                Path.of(PROFILE_LIBRARY), seed, UNIQUE_TIME_SLOTS, SLOTS_PER_AGENT, PROFILE_CACHE_SIZE);
+
+        // Every version of the environment places its agents in the same network, generated with the initial seed.
+        Topology topology = TOPOLOGY.isEmpty() ? null : Topology.of(TOPOLOGY, POPULATION_SIZE, seed);
+
+        // The environments are shared between worker processes when there are workers.
+        SweepCoordinator coordinator = null;
+        if (workers > 0) {
+            if (!COUNTER_BASED_RANDOM || ADAPTIVE_RUNS || ADAPTIVE_SWEEP) {
+                throw new IllegalArgumentException("Workers need the counter based random generator and a fixed number "
+                        + "of runs and environments, so that each environment's seed is known before it begins.");
+            }
+            // The workers share the bank, so it is generated before any of them can begin.
+            if (scenarioBank != null) {
+                double[] totalDemandValues = new double[DEMAND_CURVES.length];
+                int[] bucketedAvailabilityCurve = new int[UNIQUE_TIME_SLOTS];
+                scenarioBank.prepare(
+                        ArenaEnvironment.bucketDemandCurves(DEMAND_CURVES, UNIQUE_TIME_SLOTS, totalDemandValues),
+                        totalDemandValues,
+                        bucketedAvailabilityCurve,
+                        ArenaEnvironment.bucketAvailabilityCurve(AVAILABILITY_CURVE, bucketedAvailabilityCurve),
+                        POPULATION_SIZE,
+                        SLOTS_PER_AGENT
+                );
+            }
+            coordinator = new SweepCoordinator(workers, WORKER_MAX_HEAP);
+        }
+
+        runEnvironmentVersions(scenarioBank, profileLibrary, topology, coordinator);
+
+        if (coordinator != null) coordinator.finish();
+    }
+
+    /**
+     * Runs the versions of the environments that the comparison level asks for, each as a set of simulations.
+     *
+     * @throws IOException On input error.
+     */
+    private static void runEnvironmentVersions(
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            Topology topology,
+            SweepCoordinator coordinator
+    ) throws IOException {
         switch (COMPARISON_LEVEL) {
             case 1 -> {
                 // Test user parameters with and without social capital for comparison.
                 USE_SOCIAL_CAPITAL = false;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 1 / 2 ENVIRONMENT VERSIONS COMPLETE **********");
                 USE_SOCIAL_CAPITAL = true;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 2 / 2 ENVIRONMENT VERSIONS COMPLETE **********");
             }
             case 2 -> {
@@ -40,56 +170,46 @@ public class ResourceExchangeArena extends UserParameters {
                 USE_SOCIAL_CAPITAL = false;
                 SINGLE_AGENT_TYPE = true;
                 SELECTED_SINGLE_AGENT_TYPE = SELFISH;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 1 / 5 ENVIRONMENT VERSIONS COMPLETE **********");
                 USE_SOCIAL_CAPITAL = false;
                 SINGLE_AGENT_TYPE = true;
                 SELECTED_SINGLE_AGENT_TYPE = SOCIAL;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 2 / 5 ENVIRONMENT VERSIONS COMPLETE **********");
                 USE_SOCIAL_CAPITAL = true;
                 SINGLE_AGENT_TYPE = true;
                 SELECTED_SINGLE_AGENT_TYPE = SOCIAL;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 3 / 5 ENVIRONMENT VERSIONS COMPLETE **********");
                 USE_SOCIAL_CAPITAL = false;
                 SINGLE_AGENT_TYPE = false;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 4 / 5 ENVIRONMENT VERSIONS COMPLETE **********");
                 USE_SOCIAL_CAPITAL = true;
                 SINGLE_AGENT_TYPE = false;
-                runSimulationSet();
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
                 System.out.println("********** 5 / 5 ENVIRONMENT VERSIONS COMPLETE **********");
             }
-            default ->
+            default -> {
                 // Run only the set of parameters defined by the user.
-                    runSimulationSet();
-        }
-
-        // String version of starting ratios for file names.
-        ArrayList<String> startingRatiosArray = new ArrayList<>();
-
-        for (int[] AGENT_TYPES : AGENT_TYPES_ARRAY) {
-            StringBuilder ratio = new StringBuilder();
-            int typesListed = 0;
-            for (int type : AGENT_TYPES) {
-                if (typesListed != 0) {
-                    ratio.append("_");
-                }
-                typesListed++;
-                ratio.append(Inflect.getHumanReadableAgentType(type));
+                runSimulationSet(scenarioBank, profileLibrary, topology, coordinator);
             }
-            startingRatiosArray.add(ratio.toString());
         }
     }
 
-    private static void runSimulationSet() throws IOException {
+    private static void runSimulationSet(
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            Topology topology,
+            SweepCoordinator coordinator
+    ) throws IOException {
         // Set the simulations initial random seed.
-        random.setSeed(seed);
+        setRandom(COUNTER_BASED_RANDOM ? new CounterBasedRandom(currentSeed()) : new Random(currentSeed()));
 
         // Create a directory to store the data output by all simulations being run.
-        String dataOutputFolder = FOLDER_NAME + "/useSC_" + USE_SOCIAL_CAPITAL + "_AType_";
-        dataOutputFolder += !SINGLE_AGENT_TYPE ? "mixed" : Inflect.getHumanReadableAgentType(SELECTED_SINGLE_AGENT_TYPE);
+        String dataOutputFolder = FOLDER_NAME + "/useSC_" + USE_SOCIAL_CAPITAL + "_AType_"
+                + (!SINGLE_AGENT_TYPE ? "mixed" : Inflect.getHumanReadableAgentType(SELECTED_SINGLE_AGENT_TYPE));
 
         Path dataOutputPath = Paths.get(dataOutputFolder);
         Files.createDirectories(dataOutputPath);
@@ -102,7 +222,8 @@ public class ResourceExchangeArena extends UserParameters {
         Utilities.write(allSimulationsDataWriter, "Simulation Information (all runs): \n\n",
                 "Single agent type: ", String.valueOf(SINGLE_AGENT_TYPE),
                 "\n", "Use social capital: ", String.valueOf(USE_SOCIAL_CAPITAL),
-                "\n", "Simulation runs: ", String.valueOf(SIMULATION_RUNS),
+                "\n", "Random source: ", COUNTER_BASED_RANDOM ? "counter based" : "legacy",
+                "\n", "Simulation runs: ", ADAPTIVE_RUNS ? "adaptive" : String.valueOf(SIMULATION_RUNS),
                 "\n", "Additional Days: ", String.valueOf(DAYS),
                 "\n", "Population size: ", String.valueOf(POPULATION_SIZE),
                 "\n", "Unique time slots: ", String.valueOf(UNIQUE_TIME_SLOTS),
@@ -116,24 +237,39 @@ public class ResourceExchangeArena extends UserParameters {
         allSimulationsDataWriter.append("Simulation Information (specific run details): \n\n");
 
 
-        // Percentage of learning agents converted to actual number of agents that can learn each day.
-        int[] numberOfLearningAgents = new int[PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY.length];
-        float onePercent = POPULATION_SIZE / 100.0f;
-        for (int i = 0; i < PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY.length; i++) {
-            int learningAgents = Math.round(onePercent * PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY[i]);
-            numberOfLearningAgents[i] = learningAgents;
+        // The number of environments refined adaptively isn't known in advance.
+        ProgressServer.plan(ADAPTIVE_SWEEP && !SINGLE_AGENT_TYPE ? 0
+                : SINGLE_AGENT_TYPE ? 1 : AGENT_TYPES_ARRAY.length * PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY.length);
+
+        if (ADAPTIVE_SWEEP && !SINGLE_AGENT_TYPE) {
+            // Refine the grid of parameters around the points where the takeover outcome changes.
+            new AdaptiveSweep(
+                    PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY,
+                    AGENT_TYPES_ARRAY,
+                    SWEEP_RESOLUTION,
+                    SWEEP_MIN_PROBABILITY_CHANGE,
+                    SWEEP_MAX_ENVIRONMENTS
+            ).run(dataOutputFolder, (fileName, evolvePercentage, agentTypes) -> {
+                describeEnvironment(allSimulationsDataWriter, evolvePercentage, agentTypes);
+                return runEnvironment(
+                        dataOutputFolder, scenarioBank, profileLibrary, topology, fileName, evolvePercentage,
+                        agentTypes
+                ).keyDaysData.takeoverProbability();
+            });
+            allSimulationsDataWriter.close();
+            return;
         }
 
         // Perform a parameter sweep for the key parameters being tested.
         int simVersionsCompleted = 0;
         parameterSweep:
         for (int[] AGENT_TYPES : AGENT_TYPES_ARRAY) {
-            for (int i = 0; i < numberOfLearningAgents.length; i++) {
+            for (int evolvePercentage : PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY) {
 
                 String fileName;
 
                 if (!SINGLE_AGENT_TYPE) {
-                    fileName = "AE_" + PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY[i];
+                    fileName = "AE_" + evolvePercentage;
 
                     StringBuilder typeRatio = new StringBuilder("_SR_");
                     int typesListed = 0;
@@ -149,51 +285,31 @@ public class ResourceExchangeArena extends UserParameters {
                     fileName = "SR_" + Inflect.getHumanReadableAgentType(SELECTED_SINGLE_AGENT_TYPE);
                 }
 
-                String initialSeed = seed + "L";
+                describeEnvironment(allSimulationsDataWriter, evolvePercentage, AGENT_TYPES);
+                if (coordinator != null) {
+                    // A worker simulates the environment from the seed it would have begun from here, and each run
+                    // moves the seed on by one.
+                    coordinator.submit(new SweepCoordinator.WorkUnit(
+                            dataOutputFolder,
+                            fileName,
+                            evolvePercentage,
+                            AGENT_TYPES,
+                            USE_SOCIAL_CAPITAL,
+                            SINGLE_AGENT_TYPE,
+                            SELECTED_SINGLE_AGENT_TYPE,
+                            currentSeed(),
+                            scenarioBank,
+                            profileLibrary,
+                            topology
+                    ));
+                    setCurrentSeed(currentSeed() + SIMULATION_RUNS);
+                } else {
+                    runEnvironment(dataOutputFolder, scenarioBank, profileLibrary, topology, fileName,
+                            evolvePercentage, AGENT_TYPES);
 
-                // The parameters about to be tested are stored so that it is clear what they were when looking at
-                // the results.
-                allSimulationsDataWriter.append("Seed: ").append(initialSeed).append("\n");
-                allSimulationsDataWriter.append("Number of agents to evolve: ")
-                        .append(String.valueOf(numberOfLearningAgents[i]))
-                        .append("\n");
-                if (!SINGLE_AGENT_TYPE) {
-                    allSimulationsDataWriter.append("Starting ratio of agent types: ");
-                    int typesListed = 0;
-                    for (int type : AGENT_TYPES) {
-                        if (typesListed != 0) {
-                            allSimulationsDataWriter.append(" : ");
-                        }
-                        typesListed++;
-                        allSimulationsDataWriter.append(Inflect.getHumanReadableAgentType(type));
-                    }
+                    simVersionsCompleted++;
+                    System.out.println("Simulation versions completed: " + simVersionsCompleted);
                 }
-                allSimulationsDataWriter.append("\n\n");
-
-                /*
-                 * The arena is the environment in which all simulations take place.
-                 */
-                new ArenaEnvironment(
-                        dataOutputFolder,
-                        fileName,
-                        DEMAND_CURVES,
-                        AVAILABILITY_CURVE,
-                        USE_SOCIAL_CAPITAL,
-                        SIMULATION_RUNS,
-                        DAYS,
-                        POPULATION_SIZE,
-                        UNIQUE_TIME_SLOTS,
-                        SLOTS_PER_AGENT,
-                        numberOfLearningAgents[i],
-                        AGENT_TYPES,
-                        SINGLE_AGENT_TYPE,
-                        SELECTED_SINGLE_AGENT_TYPE,
-                        PYTHON_EXE,
-                        PYTHON_PATH
-                );
-
-                simVersionsCompleted++;
-                System.out.println("Simulation versions completed: " + simVersionsCompleted);
 
                 if (SINGLE_AGENT_TYPE) {
                     break parameterSweep;
@@ -202,4 +318,115 @@ public class ResourceExchangeArena extends UserParameters {
         }
         allSimulationsDataWriter.close();
     }
+
+    /**
+     * Records the parameters of an environment alongside the other environments of the set.
+     *
+     * @param allSimulationsDataWriter Used to store the key data about all simulations in the set.
+     * @param evolvePercentage         {@link Integer} value representing the percentage of agents that may change strategy each day.
+     * @param agentTypes               {@link Integer} array containing the agent types that the simulation will begin with.
+     * @throws IOException On output error.
+     */
+    private static void describeEnvironment(
+            Writer allSimulationsDataWriter,
+            int evolvePercentage,
+            int[] agentTypes
+    ) throws IOException {
+        // Percentage of learning agents converted to actual number of agents that can learn each day.
+        int numberOfLearningAgents = Math.round(POPULATION_SIZE / 100.0f * evolvePercentage);
+
+        String initialSeed = currentSeed() + "L";
+
+        // The parameters about to be tested are stored so that it is clear what they were when looking at
+        // the results.
+        allSimulationsDataWriter.append("Seed: ").append(initialSeed).append("\n");
+        allSimulationsDataWriter.append("Number of agents to evolve: ")
+                .append(String.valueOf(numberOfLearningAgents))
+                .append("\n");
+        if (!SINGLE_AGENT_TYPE) {
+            allSimulationsDataWriter.append("Starting ratio of agent types: ");
+            int typesListed = 0;
+            for (int type : agentTypes) {
+                if (typesListed != 0) {
+                    allSimulationsDataWriter.append(" : ");
+                }
+                typesListed++;
+                allSimulationsDataWriter.append(Inflect.getHumanReadableAgentType(type));
+            }
+        }
+        allSimulationsDataWriter.append("\n\n");
+    }
+
+    /**
+     * Runs a single {@link ArenaEnvironment} with the given parameters.
+     *
+     * @param dataOutputFolder {@link String} representing the folder that the set's data is stored in.
+     * @param scenarioBank     Replays the same scenarios in every environment, or {@code null} to sample them.
+     * @param profileLibrary   Gives each agent a household's demand of its own, or {@code null} to share the demand curves.
+     * @param topology         The network that limits who the agents trade with and learn from, or {@code null} for a complete network.
+     * @param fileName         {@link String} detailing specifics about the simulation environment.
+     * @param evolvePercentage {@link Integer} value representing the percentage of agents that may change strategy each day.
+     * @param agentTypes       {@link Integer} array containing the agent types that the simulation will begin with.
+     * @return The completed {@link ArenaEnvironment}.
+     * @throws IOException On input error.
+     */
+    static ArenaEnvironment runEnvironment(
+            String dataOutputFolder,
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            Topology topology,
+            String fileName,
+            int evolvePercentage,
+            int[] agentTypes
+    ) throws IOException {
+        // Percentage of learning agents converted to actual number of agents that can learn each day.
+        int numberOfLearningAgents = Math.round(POPULATION_SIZE / 100.0f * evolvePercentage);
+
+        /*
+         * The arena is the environment in which all simulations take place.
+         */
+        return new ArenaEnvironment.Builder(dataOutputFolder, fileName)
+                .demandCurves(DEMAND_CURVES)
+                .availabilityCurve(AVAILABILITY_CURVE)
+                .socialCapital(USE_SOCIAL_CAPITAL)
+                .simulationRuns(SIMULATION_RUNS)
+                .sequentialStopping(ADAPTIVE_RUNS ? new SequentialStopping(
+                        ADAPTIVE_RUN_BATCH_SIZE,
+                        MAX_SIMULATION_RUNS,
+                        TAKEOVER_PROBABILITY_CI_WIDTH,
+                        TAKEOVER_DAY_CI_WIDTH,
+                        FINAL_SATISFACTION_CI_WIDTH
+                ) : null)
+                .days(DAYS)
+                .populationSize(POPULATION_SIZE)
+                .uniqueTimeSlots(UNIQUE_TIME_SLOTS)
+                .slotsPerAgent(SLOTS_PER_AGENT)
+                .numberOfAgentsToEvolve(numberOfLearningAgents)
+                .agentTypes(agentTypes)
+                .singleAgentType(SINGLE_AGENT_TYPE)
+                .selectedSingleAgentType(SELECTED_SINGLE_AGENT_TYPE)
+                .scenarioBank(scenarioBank)
+                .profileLibrary(profileLibrary)
+                .shardedMarket(SHARDS > 1 ? new ShardedMarket(SHARDS, SHARD_EXCHANGE_INTERVAL, SHARD_WINDOW_AGENTS) : null)
+                .topology(topology)
+                .exchangeMechanism(EXCHANGE_MECHANISM)
+                .tradingCycles(TRADING_CYCLES)
+                .checkpointInterval(USE_CHECKPOINTS ? CHECKPOINT_INTERVAL_DAYS : 0)
+                .resultCache(USE_RESULT_CACHE ? new ResultCache(resultCacheFolder()) : null)
+                .traceExchanges(TRACE_EXCHANGES)
+                .instrument(INSTRUMENT)
+                .pythonExe(PYTHON_EXE)
+                .pythonPath(PYTHON_PATH)
+                .build();
+    }
+
+    /**
+     * @return {@link String} representing the folder of the result cache, a 'cache' folder beside the sets of
+     * simulations unless another has been given.
+     */
+    static String resultCacheFolder() {
+        return RESULT_CACHE_FOLDER.isEmpty()
+                ? Path.of(FOLDER_NAME).resolveSibling("cache").toString()
+                : RESULT_CACHE_FOLDER;
+    }
 }
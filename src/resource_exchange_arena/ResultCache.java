@@ -0,0 +1,219 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class ResultCache {
+    // Name of the file within each cache entry that holds the state needed to continue after a cache hit.
+    private static final String STATE_FILE = "state.bin";
+    // Name of the folder within each cache entry that holds the environment's data files.
+    private static final String DATA_FOLDER = "data";
+
+    private final Path cacheFolder;
+
+    /**
+     * Stores the outputs of completed {@link ArenaEnvironment}s on disk so that an environment that has already been
+     * simulated, with the same parameters and the same random state, does not need to be simulated again.
+     *
+     * @param cacheFolder {@link String} representing the folder that cached results are stored in.
+     */
+    ResultCache(String cacheFolder) {
+        this.cacheFolder = Path.of(cacheFolder);
+    }
+
+    /**
+     * Creates a key from every parameter that affects an environment's results, along with the current seed and the
+     * state of the simulation's {@link Random}. Parameters are first reduced to a canonical form so that environments
+     * which are guaranteed to produce the same results share a key, for example social capital has no effect on a
+     * population that can never contain a social agent.
+     *
+     * @param demandCurves            The bucketed demand curves used by the {@link Agent}s.
+     * @param totalDemandValues       The sum of each bucketed demand curve.
+     * @param availabilityCurve       The bucketed availability curve.
+     * @param socialCapital           {@link Boolean} value that determines whether social {@link Agent}s will utilise social capital.
+     * @param runs                    {@link String} describing the number of runs, or how the number of runs is chosen.
+     * @param scenarios               {@link String} describing where each day's requested and available time slots come from.
+     * @param market                  {@link String} describing how the market is divided into regions, or {@code null} for a single global market.
+     * @param profiles                {@link String} describing the library that each {@link Agent}'s household is drawn from, or {@code null} to share the demand curves.
+     * @param network                 {@link String} describing the network that limits who the {@link Agent}s trade with, or {@code null} for a complete network.
+     * @param exchangeMechanism       {@link String} naming how {@link Agent}s find a partner for an exchange.
+     * @param tradingCycles           {@link Boolean} value that determines whether {@link Agent}s also trade around cycles.
+     * @param days                    {@link Integer} value representing the number of {@link Day}s to be simulated after a takeover.
+     * @param populationSize          {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param uniqueTimeSlots         {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param slotsPerAgent           {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param numberOfAgentsToEvolve  {@link Integer} value representing the number of {@link Agent}s whose strategy may change each {@link Day}.
+     * @param agentTypes              {@link Integer} array containing the {@link Agent} types that the simulation will begin with.
+     * @param uniqueAgentTypes        The unique {@link Agent} types that are recorded in the output files.
+     * @param singleAgentType         {@link Boolean} value specifying whether only a single {@link Agent} type should exist.
+     * @param selectedSingleAgentType {@link Integer} value representing the single {@link Agent} type when {@code singleAgentType} is true.
+     * @return A hexadecimal SHA-256 hash identifying the environment's results.
+     */
+    static @NotNull String key(
+            double[][] demandCurves,
+            double[] totalDemandValues,
+            int[] availabilityCurve,
+            boolean socialCapital,
+            String runs,
+            String scenarios,
+            String market,
+            String profiles,
+            String network,
+            String exchangeMechanism,
+            boolean tradingCycles,
+            int days,
+            int populationSize,
+            int uniqueTimeSlots,
+            int slotsPerAgent,
+            int numberOfAgentsToEvolve,
+            int[] agentTypes,
+            ArrayList<Integer> uniqueAgentTypes,
+            boolean singleAgentType,
+            int selectedSingleAgentType
+    ) {
+        // The types that agents actually start with, a single agent type overrides the starting ratio.
+        int[] startingTypes = singleAgentType && selectedSingleAgentType != 0
+                ? new int[]{selectedSingleAgentType}
+                : agentTypes;
+        // Only social agents consult their favours, so social capital is irrelevant if no agent can become social.
+        boolean socialCapitalUsed = socialCapital
+                && Arrays.stream(startingTypes).anyMatch(type -> type == ResourceExchangeArena.SOCIAL);
+
+        String canonical = "demandCurves=" + Arrays.deepToString(demandCurves)
+                + ";totalDemandValues=" + Arrays.toString(totalDemandValues)
+                + ";availabilityCurve=" + Arrays.toString(availabilityCurve)
+                + ";socialCapital=" + socialCapitalUsed
+                + ";runs=" + runs
+                + ";scenarios=" + scenarios
+                // Only sharded markets are named, so that the keys of earlier results still match.
+                + (market == null ? "" : ";market=" + market)
+                + (profiles == null ? "" : ";profiles=" + profiles)
+                + (network == null ? "" : ";network=" + network)
+                + (exchangeMechanism.equals(Exchange.BOARD) ? "" : ";exchangeMechanism=" + exchangeMechanism)
+                + (tradingCycles ? ";tradingCycles=true" : "")
+                + ";days=" + days
+                + ";populationSize=" + populationSize
+                + ";uniqueTimeSlots=" + uniqueTimeSlots
+                + ";slotsPerAgent=" + slotsPerAgent
+                + ";numberOfAgentsToEvolve=" + numberOfAgentsToEvolve
+                + ";startingTypes=" + Arrays.toString(startingTypes)
+                + ";uniqueAgentTypes=" + uniqueAgentTypes
+                + ";seed=" + ResourceExchangeArena.currentSeed()
+                + ";random=" + Base64.getEncoder().encodeToString(serialize(ResourceExchangeArena.random()));
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * @param key      The key of the environment, see {@link #key}.
+     * @param dataFile {@link String} naming a data file.
+     * @return Whether the environment has been cached along with the given data file.
+     */
+    boolean contains(String key, String dataFile) {
+        Path entry = cacheFolder.resolve(key);
+        return Files.isRegularFile(entry.resolve(STATE_FILE)) && Files.isRegularFile(entry.resolve(DATA_FOLDER).resolve(dataFile));
+    }
+
+    /**
+     * Restores a cached environment by placing its data files in the data output folder and moving the simulation's
+     * seed and {@link Random} on to where they would be had the environment been simulated.
+     *
+     * @param key            The key of the environment, see {@link #key}.
+     * @param dataOutputPath The folder that the environment's data should be placed in.
+     * @return The key day data of the cached environment, or {@code null} if it has not been cached.
+     * @throws IOException On input error.
+     */
+    KeyDaysData restore(String key, Path dataOutputPath) throws IOException {
+        Path entry = cacheFolder.resolve(key);
+        if (!Files.isRegularFile(entry.resolve(STATE_FILE))) return null;
+
+        KeyDaysData keyDaysData;
+        try (ObjectInputStream state = new ObjectInputStream(Files.newInputStream(entry.resolve(STATE_FILE)))) {
+            keyDaysData = (KeyDaysData) state.readObject();
+            ResourceExchangeArena.setCurrentSeed(state.readLong());
+            ResourceExchangeArena.setRandom((Random) state.readObject());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable result cache entry " + entry, e);
+        }
+
+        try (Stream<Path> files = Files.list(entry.resolve(DATA_FOLDER))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path target = dataOutputPath.resolve(file.getFileName());
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return keyDaysData;
+    }
+
+    /**
+     * Stores a completed environment. The entry is written to a temporary folder and then renamed, so that an
+     * interrupted store never leaves a partial entry behind.
+     *
+     * @param key            The key of the environment, see {@link #key}.
+     * @param dataOutputPath The folder that the environment's data has been written to.
+     * @param keyDaysData    The key day data of the environment.
+     * @throws IOException On output error.
+     */
+    void store(String key, Path dataOutputPath, KeyDaysData keyDaysData) throws IOException {
+        Files.createDirectories(cacheFolder);
+        Path entry = cacheFolder.resolve(key);
+        if (Files.exists(entry)) return;
+
+        Path temporaryEntry = Files.createTempDirectory(cacheFolder, key + ".");
+        Path data = Files.createDirectory(temporaryEntry.resolve(DATA_FOLDER));
+        try (Stream<Path> files = Files.list(dataOutputPath)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) Files.copy(file, data.resolve(file.getFileName()));
+            }
+        }
+
+        try (ObjectOutputStream state = new ObjectOutputStream(Files.newOutputStream(temporaryEntry.resolve(STATE_FILE)))) {
+            state.writeObject(keyDaysData);
+            state.writeLong(ResourceExchangeArena.currentSeed());
+            state.writeObject(ResourceExchangeArena.random());
+        }
+
+        try {
+            Files.move(temporaryEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another process may have stored the same environment first.
+            if (!Files.exists(entry)) throw e;
+        }
+    }
+
+    /**
+     * @param random The {@link Random} to capture the state of.
+     * @return The serialized form of the {@link Random}, which holds its complete internal state.
+     */
+    static byte @NotNull [] serialize(Random random) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,434 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class RunReplay {
+
+    /**
+     * Re-simulates a single run of an environment that has already been simulated, recording every step of every
+     * exchange round as well as the usual data. The environment's parameters, seed and starting random state are read
+     * from its simulationData.txt, and the demand and availability curves are taken from the current
+     * {@link ResourceExchangeArena} parameters, as they aren't recorded with the results.
+     * <p>
+     * Using the counter based random source, the run's random numbers are jumped to directly and only that run is
+     * simulated. Using the legacy random source, each run continues from the random state that the previous run left
+     * behind, so the runs before the chosen one are simulated without output to reach its starting state.
+     *
+     * @param args The environment folder containing simulationData.txt, then the run to replay, either its number or
+     *             "social" or "selfish" for the environment's typical run of that takeover, then optionally the folder
+     *             to output the replay to, by default a folder named after the run within the environment folder.
+     * @throws IOException On input or output error.
+     */
+    public static void main(String @NotNull [] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: RunReplay <environment folder> <run | social | selfish> [output folder]");
+            return;
+        }
+        Path environmentFolder = Path.of(args[0]);
+        Map<String, String> simulationData = readSimulationData(environmentFolder.resolve("simulationData.txt"));
+
+        int run = switch (args[1]) {
+            case "social" -> typicalRun(simulationData, "Typical social");
+            case "selfish" -> typicalRun(simulationData, "Typical selfish");
+            default -> Integer.parseInt(args[1]);
+        };
+        Path outputFolder = args.length > 2 ? Path.of(args[2]) : environmentFolder.resolve("replay_run_" + run);
+        Files.createDirectories(outputFolder);
+
+        RecordedEnvironment environment = new RecordedEnvironment(simulationData);
+        if (!environment.market.equals("global")) {
+            System.out.println("The exchanges of a sharded market can't be traced, so its runs can't be replayed.");
+            return;
+        }
+
+        // Every scenario in a bank is generated from its own seed, so a bank that only holds the seed regenerates the
+        // scenarios of the replayed run without touching the bank the environment used.
+        ScenarioBank scenarioBank = environment.scenarioBank(outputFolder.resolve("scenarioBank.bin"));
+        if (scenarioBank != null) {
+            scenarioBank.prepare(
+                    environment.bucketedDemandCurves,
+                    environment.totalDemandValues,
+                    environment.bucketedAvailabilityCurve,
+                    environment.totalAvailability,
+                    environment.populationSize,
+                    environment.slotsPerAgent
+            );
+        }
+        ProfileLibrary profileLibrary = environment.profileLibrary();
+        Topology topology = environment.topology();
+
+        int firstRun;
+        if (environment.counterBased) {
+            // The seed is incremented once per run, and every stream of the run is keyed by the seed and the run.
+            ResourceExchangeArena.setCurrentSeed(environment.seed + run - 1);
+            ResourceExchangeArena.setRandom(new CounterBasedRandom(ResourceExchangeArena.currentSeed()));
+            firstRun = run;
+        } else {
+            ResourceExchangeArena.setCurrentSeed(environment.seed);
+            ResourceExchangeArena.setRandom(environment.random());
+            firstRun = 1;
+        }
+
+        // The runs before the replayed run are only simulated to reach its random state, their data is discarded.
+        File discarded = File.createTempFile("replay", ".csv");
+        try {
+            for (int simulationRun = firstRun; simulationRun < run; simulationRun++) {
+                try (FileWriter discardedWriter = new FileWriter(discarded)) {
+                    new SimulationRun(
+                            environment.bucketedDemandCurves,
+                            environment.totalDemandValues,
+                            environment.bucketedAvailabilityCurve,
+                            environment.totalAvailability,
+                            scenarioBank,
+                            profileLibrary,
+                            null,
+                            topology,
+                            environment.exchangeMechanism,
+                            environment.tradingCycles,
+                            environment.days,
+                            environment.populationSize,
+                            environment.uniqueTimeSlots,
+                            environment.slotsPerAgent,
+                            environment.numberOfAgentsToEvolve,
+                            environment.agentTypes,
+                            environment.uniqueAgentTypes,
+                            environment.singleAgentType,
+                            environment.selectedSingleAgentType,
+                            environment.socialCapital,
+                            new KeyDaysData(),
+                            new CrossRunSummary(environment.populationSize, environment.uniqueAgentTypes),
+                            null,
+                            null,
+                            null,
+                            discardedWriter,
+                            discardedWriter,
+                            discardedWriter,
+                            simulationRun
+                    );
+                }
+                System.out.println("RUNS SKIPPED: " + simulationRun);
+            }
+        } finally {
+            Files.deleteIfExists(discarded.toPath());
+        }
+
+        try (FileWriter dailyDataWriter = new FileWriter(outputFolder.resolve("dailyData.csv").toFile());
+             FileWriter perAgentDataWriter = new FileWriter(outputFolder.resolve("agentData.csv").toFile());
+             FileWriter eachRoundDataWriter = new FileWriter(outputFolder.resolve("exchangeData.csv").toFile());
+             FileWriter exchangeTraceWriter = new FileWriter(outputFolder.resolve("exchangeTrace.csv").toFile())) {
+
+            ArenaEnvironment.writeDailyDataHeader(dailyDataWriter);
+            ArenaEnvironment.writeAgentDataHeader(perAgentDataWriter);
+            ArenaEnvironment.writeExchangeDataHeader(eachRoundDataWriter);
+
+            new SimulationRun(
+                    environment.bucketedDemandCurves,
+                    environment.totalDemandValues,
+                    environment.bucketedAvailabilityCurve,
+                    environment.totalAvailability,
+                    scenarioBank,
+                    profileLibrary,
+                    null,
+                    topology,
+                    environment.exchangeMechanism,
+                    environment.tradingCycles,
+                    environment.days,
+                    environment.populationSize,
+                    environment.uniqueTimeSlots,
+                    environment.slotsPerAgent,
+                    environment.numberOfAgentsToEvolve,
+                    environment.agentTypes,
+                    environment.uniqueAgentTypes,
+                    environment.singleAgentType,
+                    environment.selectedSingleAgentType,
+                    environment.socialCapital,
+                    new KeyDaysData(),
+                    new CrossRunSummary(environment.populationSize, environment.uniqueAgentTypes),
+                    new CSVExchangeTrace(exchangeTraceWriter),
+                    null,
+                    null,
+                    dailyDataWriter,
+                    perAgentDataWriter,
+                    eachRoundDataWriter,
+                    run
+            );
+        }
+        System.out.println("RUN REPLAYED: " + run);
+    }
+
+    /**
+     * @param simulationData {@link Path} of an environment's simulationData.txt.
+     * @return Each value in the file, keyed by the name before its colon.
+     * @throws IOException On input error.
+     */
+    static @NotNull Map<String, String> readSimulationData(Path simulationData) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        for (String line : Files.readAllLines(simulationData)) {
+            int separator = line.indexOf(": ");
+            if (separator > 0) values.putIfAbsent(line.substring(0, separator), line.substring(separator + 2));
+        }
+        return values;
+    }
+
+    private static String value(@NotNull Map<String, String> simulationData, String name) {
+        String value = simulationData.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("simulationData.txt has no \"" + name + "\", it may predate replays.");
+        }
+        return value;
+    }
+
+    private static int typicalRun(Map<String, String> simulationData, String name) {
+        String value = simulationData.get(name);
+        if (value == null) throw new IllegalArgumentException("The environment has no \"" + name + "\" run.");
+        return Integer.parseInt(value.substring("Run ".length()));
+    }
+
+    private static Random deserialize(String state) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(state)))) {
+            return (Random) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * The parameters of an environment that has already been simulated, as recorded in its simulationData.txt, with
+     * the current {@link ResourceExchangeArena} curves bucketed for them.
+     */
+    static class RecordedEnvironment {
+        final long seed;
+        final boolean counterBased;
+        final String randomState;
+        final String scenarios;
+        final String market;
+        final String demand;
+        final String network;
+        final String exchangeMechanism;
+        final boolean tradingCycles;
+        final boolean singleAgentType;
+        final boolean socialCapital;
+        final int days;
+        final int populationSize;
+        final int uniqueTimeSlots;
+        final int slotsPerAgent;
+        final int numberOfAgentsToEvolve;
+        final int[] agentTypes;
+        final int selectedSingleAgentType;
+        final ArrayList<Integer> uniqueAgentTypes;
+
+        final double[] totalDemandValues;
+        final double[][] bucketedDemandCurves;
+        final int[] bucketedAvailabilityCurve;
+        final int totalAvailability;
+
+        /**
+         * The environment's curves aren't recorded in full, so they are taken from
+         * {@link resource_exchange_arena.parameters.UserParameters} and checked against the environment's checksum.
+         *
+         * @param simulationData Each value in the environment's simulationData.txt, keyed by the name before its colon.
+         * @throws IOException If the demand or availability curves have changed since the environment was simulated.
+         */
+        RecordedEnvironment(@NotNull Map<String, String> simulationData) throws IOException {
+            seed = Long.parseLong(value(simulationData, "Seed"));
+            counterBased = value(simulationData, "Random source").equals("counter based");
+            randomState = value(simulationData, "Random state");
+            scenarios = value(simulationData, "Scenarios");
+            // Environments from before sharded markets always traded in a single global market.
+            market = simulationData.getOrDefault("Market", "global");
+            // Environments from before profile libraries always shared the demand curves.
+            demand = simulationData.getOrDefault("Demand", "demand curves");
+            // Environments from before networks always let every agent trade with any other.
+            network = simulationData.getOrDefault("Network", "complete");
+            // Environments from before order books always searched the advertising board.
+            exchangeMechanism = simulationData.getOrDefault("Exchange mechanism", Exchange.BOARD);
+            // Environments from before trading cycles only exchanged in pairs.
+            tradingCycles = Boolean.parseBoolean(simulationData.getOrDefault("Trading cycles", "false"));
+            singleAgentType = Boolean.parseBoolean(value(simulationData, "Single agent type"));
+            socialCapital = Boolean.parseBoolean(value(simulationData, "Use social capital"));
+            days = Integer.parseInt(value(simulationData, "Days after strategy takeover"));
+            populationSize = Integer.parseInt(value(simulationData, "Population size"));
+            uniqueTimeSlots = Integer.parseInt(value(simulationData, "Unique time slots"));
+            slotsPerAgent = Integer.parseInt(value(simulationData, "Slots per agent"));
+            numberOfAgentsToEvolve = Integer.parseInt(value(simulationData, "Number of agents to evolve"));
+
+            // The selected single agent type follows the starting ratio on the same line.
+            String[] startingRatio = value(simulationData, "Starting ratio of agent types").split("Agent type: ");
+            agentTypes = Arrays.stream(startingRatio[0].split(" : ")).mapToInt(Inflect::getAgentType).toArray();
+            selectedSingleAgentType = startingRatio.length > 1 ? Integer.parseInt(startingRatio[1].trim()) : 0;
+            uniqueAgentTypes = Arrays.stream(agentTypes).distinct().boxed().sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+
+            // Environments from before the checksum was recorded can't be checked.
+            String curvesChecksum = simulationData.get("Curves checksum");
+            if (curvesChecksum != null && Long.parseUnsignedLong(curvesChecksum, 16) != ArenaEnvironment.curvesChecksum(
+                    ResourceExchangeArena.DEMAND_CURVES, ResourceExchangeArena.AVAILABILITY_CURVE)) {
+                throw new IOException("The demand or availability curves have changed since the environment was "
+                        + "simulated.");
+            }
+            totalDemandValues = new double[ResourceExchangeArena.DEMAND_CURVES.length];
+            bucketedDemandCurves = ArenaEnvironment.bucketDemandCurves(
+                    ResourceExchangeArena.DEMAND_CURVES, uniqueTimeSlots, totalDemandValues);
+            bucketedAvailabilityCurve = new int[uniqueTimeSlots];
+            totalAvailability = ArenaEnvironment.bucketAvailabilityCurve(
+                    ResourceExchangeArena.AVAILABILITY_CURVE, bucketedAvailabilityCurve);
+        }
+
+        /**
+         * @param bankFile {@link Path} to generate the bank's scenarios in, separate from the bank the environment used.
+         * @return A new bank with the same seed as the environment's, yet to be prepared, or {@code null} if the
+         * environment sampled its scenarios each {@link Day}.
+         */
+        ScenarioBank scenarioBank(Path bankFile) {
+            if (!scenarios.startsWith("ScenarioBank[seed=")) return null;
+            long bankSeed = Long.parseLong(scenarios.substring("ScenarioBank[seed=".length(), scenarios.length() - 1));
+            return new ScenarioBank(bankFile, bankSeed, 0, 0);
+        }
+
+        /**
+         * @return The library that the environment's households were drawn from, with the same seed, or {@code null}
+         * if the environment's {@link Agent}s shared the demand curves.
+         * @throws IOException If the library can't be read or has changed since the environment was simulated.
+         */
+        ProfileLibrary profileLibrary() throws IOException {
+            int description = demand.lastIndexOf(" ProfileLibrary[seed=");
+            if (description < 0) return null;
+            String seedField = demand.substring(description + " ProfileLibrary[seed=".length());
+            long librarySeed = Long.parseLong(seedField.substring(0, seedField.indexOf(',')));
+            ProfileLibrary profileLibrary = new ProfileLibrary(Path.of(demand.substring(0, description)), librarySeed,
+                    uniqueTimeSlots, slotsPerAgent, ResourceExchangeArena.PROFILE_CACHE_SIZE);
+            if (!profileLibrary.toString().equals(demand.substring(description + 1))) {
+                throw new IOException("The profile library " + profileLibrary.file()
+                        + " has changed since the environment was simulated.");
+            }
+            return profileLibrary;
+        }
+
+        /**
+         * @return The network that limited the environment's trading and learning, generated from the same seed, or
+         * {@code null} if every {@link Agent} could trade with any other.
+         * @throws IOException If the edge list can't be read or has changed since the environment was simulated.
+         */
+        Topology topology() throws IOException {
+            int description = network.lastIndexOf(" Topology[seed=");
+            if (description < 0) return null;
+            String seedField = network.substring(description + " Topology[seed=".length());
+            long topologySeed = Long.parseLong(seedField.substring(0, seedField.indexOf(',')));
+            Topology topology = Topology.of(network.substring(0, description), populationSize, topologySeed);
+            if (!topology.toString().equals(network.substring(description + 1))) {
+                throw new IOException("The network " + topology.source()
+                        + " has changed since the environment was simulated.");
+            }
+            return topology;
+        }
+
+        /**
+         * @return The {@link Random} in the state it was in when the environment started.
+         * @throws IOException If the state can't be read.
+         */
+        Random random() throws IOException {
+            return deserialize(randomState);
+        }
+    }
+
+    /**
+     * Writes every step of each exchange round as a row of a CSV file.
+     */
+    private static class CSVExchangeTrace implements ExchangeTrace {
+        private final FileWriter writer;
+
+        CSVExchangeTrace(FileWriter writer) throws IOException {
+            this.writer = writer;
+            Utilities.write(writer, "Simulation Run",
+                    ",", "Day",
+                    ",", "Round",
+                    ",", "Event",
+                    ",", "Receiver",
+                    ",", "Requester",
+                    ",", "Requested Time Slot",
+                    ",", "Offered Time Slot",
+                    ",", "Outcome", "\n");
+        }
+
+        @Override
+        public void allocation(int run, int day, int agentID, int agentType, ArrayList<Integer> requestedTimeSlots,
+                               ArrayList<Integer> allocatedTimeSlots) throws IOException {
+            row(run, day, "", "Allocation", agentID, "", join(requestedTimeSlots), join(allocatedTimeSlots),
+                    Inflect.getHumanReadableAgentType(agentType));
+        }
+
+        @Override
+        public void advert(int run, int day, int round, int agentID, @NotNull ArrayList<Integer> timeSlots)
+                throws IOException {
+            row(run, day, String.valueOf(round), "Advert", agentID, "", "", "", join(timeSlots));
+        }
+
+        @Override
+        public void request(int run, int day, int round, int requesterID, int receiverID, int requestedTimeSlot,
+                            int offeredTimeSlot, boolean delivered) throws IOException {
+            row(run, day, String.valueOf(round), "Request", receiverID, String.valueOf(requesterID),
+                    String.valueOf(requestedTimeSlot), String.valueOf(offeredTimeSlot),
+                    delivered ? "" : "Not delivered as the receiver had already interacted");
+        }
+
+        @Override
+        public void decision(int run, int day, int round, int receiverID, int requesterID, boolean accepted,
+                             int reason) throws IOException {
+            row(run, day, String.valueOf(round), "Decision", receiverID, String.valueOf(requesterID), "", "",
+                    (accepted ? "Accepted: " : "Rejected: ") + Inflect.getHumanReadableDecisionReason(reason));
+        }
+
+        @Override
+        public void finalCheckFailed(int run, int day, int round, int receiverID, int requesterID, int failedID,
+                                     int timeSlot) throws IOException {
+            row(run, day, String.valueOf(round), "Final Check Failed", receiverID, String.valueOf(requesterID),
+                    failedID == requesterID ? "" : String.valueOf(timeSlot),
+                    failedID == requesterID ? String.valueOf(timeSlot) : "",
+                    "Agent " + failedID + " no longer has its time slot");
+        }
+
+        @Override
+        public void exchange(int run, int day, int round, int receiverID, int requesterID, int requestedTimeSlot,
+                             int offeredTimeSlot, boolean socialCapitalGain, boolean socialCapitalLoss)
+                throws IOException {
+            List<String> outcome = new ArrayList<>();
+            if (socialCapitalGain) outcome.add("Receiver gained social capital");
+            if (socialCapitalLoss) outcome.add("Requester lost social capital");
+            row(run, day, String.valueOf(round), "Exchange", receiverID, String.valueOf(requesterID),
+                    String.valueOf(requestedTimeSlot), String.valueOf(offeredTimeSlot), String.join(" and ", outcome));
+        }
+
+        private static String join(@NotNull ArrayList<Integer> timeSlots) {
+            return timeSlots.stream().map(String::valueOf).collect(Collectors.joining(" "));
+        }
+
+        private void row(int run, int day, String round, String event, int receiverID, String requesterID,
+                         String requestedTimeSlot, String offeredTimeSlot, String outcome) throws IOException {
+            Utilities.write(writer, String.valueOf(run),
+                    ",", String.valueOf(day),
+                    ",", round,
+                    ",", event,
+                    ",", String.valueOf(receiverID),
+                    ",", requesterID,
+                    ",", requestedTimeSlot,
+                    ",", offeredTimeSlot,
+                    ",", outcome, "\n");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package resource_exchange_arena;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+class RunningStatistics implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // The z value for a two-sided 95% confidence interval under the normal approximation.
+    static final double Z_95 = 1.959963984540054;
+
+    private long count;
+    private double mean;
+    private double sumSquaredDifferences;
+
+    /**
+     * Accumulates the mean and variance of a stream of values in a single pass using Welford's algorithm, so that no
+     * values need to be stored.
+     *
+     * @param value The next value of the stream.
+     */
+    void add(double value) {
+        count++;
+        double difference = value - mean;
+        mean += difference / count;
+        sumSquaredDifferences += difference * (value - mean);
+    }
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return count == 0 ? 0.0 : mean;
+    }
+
+    /**
+     * @return The sample variance of the values seen so far, or 0 when there are fewer than two values.
+     */
+    double variance() {
+        return count < 2 ? 0.0 : sumSquaredDifferences / (count - 1);
+    }
+
+    double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     * @return Half the width of the 95% confidence interval for the mean of the values seen so far.
+     */
+    double confidenceInterval() {
+        return count < 2 ? 0.0 : Z_95 * standardDeviation() / Math.sqrt(count);
+    }
+}
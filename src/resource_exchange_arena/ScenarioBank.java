@@ -0,0 +1,323 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+class ScenarioBank {
+    // Identifies a scenario bank file and the version of its layout.
+    private static final int MAGIC = 0x52454153;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    private final Path bankFile;
+    private final long bankSeed;
+    private final int runs;
+    private final int days;
+
+    // The inputs that the scenarios were generated from, set once the bank has been prepared.
+    private int populationSize;
+    private int slotsPerAgent;
+    private long fingerprint;
+    // The selection wheels of the inputs, that the scenarios are sampled from.
+    private SelectionWheel[] demandWheels;
+    private SelectionWheel availabilityWheel;
+
+    // The scenarios of each run, mapped from the bank file, where index 0 holds run 1.
+    private ShortBuffer[] runScenarios;
+    // Scenarios beyond the capacity of the bank are generated when needed, the most recent one is kept.
+    private short[] overflowBlock;
+    private int overflowRun;
+    private int overflowDay;
+
+    /**
+     * A bank of pre-generated scenarios, the time slots available and the time slots requested by each {@link Agent}
+     * for every {@link Day} of every simulation run. Every environment that uses the same bank replays the same
+     * scenarios, so that differences between environments are caused by their parameters rather than by the demand
+     * and availability they happened to draw. The scenarios are stored as a memory mapped file of time slots.
+     * <p>
+     * Each scenario is generated from its own {@link Random}, seeded from the bank's seed, the run and the day, so a
+     * scenario beyond the capacity of the bank is generated on demand and is identical to the one that a larger bank
+     * would have stored.
+     *
+     * @param bankFile {@link Path} of the file that the scenarios are stored in, an existing bank is reused if it matches.
+     * @param bankSeed {@link Long} value that all scenarios are generated from.
+     * @param runs     {@link Integer} value representing the number of simulation runs to pre-generate scenarios for.
+     * @param days     {@link Integer} value representing the number of {@link Day}s of each run to pre-generate scenarios for.
+     */
+    ScenarioBank(Path bankFile, long bankSeed, int runs, int days) {
+        this.bankFile = bankFile;
+        this.bankSeed = bankSeed;
+        this.runs = runs;
+        this.days = days;
+    }
+
+    /**
+     * Makes the scenarios for the given curves and population available, either by mapping an existing bank file that
+     * was generated from the same inputs or by generating a new one. Environments that only differ in parameters which
+     * don't affect the scenarios share the prepared bank.
+     *
+     * @param demandCurves      The bucketed demand curves used by the {@link Agent}s.
+     * @param totalDemandValues The sum of each bucketed demand curve.
+     * @param availabilityCurve The bucketed availability curve.
+     * @param totalAvailability {@link Integer} value representing the total energy available throughout the {@link Day}.
+     * @param populationSize    {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param slotsPerAgent     {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @throws IOException On input error.
+     */
+    void prepare(
+            double[][] demandCurves,
+            double[] totalDemandValues,
+            int[] availabilityCurve,
+            int totalAvailability,
+            int populationSize,
+            int slotsPerAgent
+    ) throws IOException {
+        long fingerprint = fingerprint(demandCurves, totalDemandValues, availabilityCurve, totalAvailability);
+        if (runScenarios != null && fingerprint == this.fingerprint
+                && populationSize == this.populationSize && slotsPerAgent == this.slotsPerAgent) return;
+
+        this.populationSize = populationSize;
+        this.slotsPerAgent = slotsPerAgent;
+        this.fingerprint = fingerprint;
+        demandWheels = new SelectionWheel[demandCurves.length];
+        for (int i = 0; i < demandCurves.length; i++) {
+            demandWheels[i] = SelectionWheel.ofDemand(demandCurves[i], totalDemandValues[i]);
+        }
+        availabilityWheel = SelectionWheel.ofAvailability(availabilityCurve, totalAvailability);
+        overflowBlock = null;
+
+        if (!matchesHeader()) generate();
+        map();
+    }
+
+    /**
+     * Fills a list with the time slots available on the given {@link Day}.
+     *
+     * @param run   {@link Integer} value identifying the current simulation run.
+     * @param day   {@link Integer} value representing the current {@link Day} being simulated.
+     * @param slots {@link ArrayList} that the available time slots are added to.
+     */
+    void availableTimeSlots(int run, int day, @NotNull ArrayList<Integer> slots) {
+        int requiredTimeSlots = populationSize * slotsPerAgent;
+        copy(run, day, 0, requiredTimeSlots, slots);
+    }
+
+    /**
+     * Fills a list with the time slots requested by a single {@link Agent} on the given {@link Day}.
+     *
+     * @param run     {@link Integer} value identifying the current simulation run.
+     * @param day     {@link Integer} value representing the current {@link Day} being simulated.
+     * @param agentID {@link Integer} value identifying the {@link Agent} making the request.
+     * @param slots   {@link ArrayList} that the requested time slots are added to.
+     */
+    void requestedTimeSlots(int run, int day, int agentID, @NotNull ArrayList<Integer> slots) {
+        int offset = (populationSize + agentID - 1) * slotsPerAgent;
+        copy(run, day, offset, slotsPerAgent, slots);
+    }
+
+    private void copy(int run, int day, int offset, int length, ArrayList<Integer> slots) {
+        int blockLength = blockLength();
+        if (run <= runs && day <= days) {
+            ShortBuffer scenarios = runScenarios[run - 1];
+            int start = (day - 1) * blockLength + offset;
+            for (int i = start; i < start + length; i++) {
+                slots.add((int) scenarios.get(i));
+            }
+        } else {
+            if (overflowBlock == null || overflowRun != run || overflowDay != day) {
+                if (overflowBlock == null) overflowBlock = new short[blockLength];
+                generateBlock(run, day, overflowBlock);
+                overflowRun = run;
+                overflowDay = day;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                slots.add((int) overflowBlock[i]);
+            }
+        }
+    }
+
+    /**
+     * @return The number of time slots stored for each {@link Day}, the available time slots followed by each
+     * {@link Agent}'s requested time slots in order of agentID.
+     */
+    private int blockLength() {
+        return 2 * populationSize * slotsPerAgent;
+    }
+
+    private long runBytes() {
+        return (long) days * blockLength() * Short.BYTES;
+    }
+
+    /**
+     * Creates the scenario for a single {@link Day}, sampling the available and requested time slots in the same way
+     * as a {@link Day} that isn't using a bank. The demand curves are split equally between the {@link Agent}s.
+     */
+    private void generateBlock(int run, int day, short[] block) {
+        Random random = new Random(blockSeed(run, day));
+
+        int requiredTimeSlots = populationSize * slotsPerAgent;
+        for (int i = 0; i < requiredTimeSlots; i++) {
+            block[i] = (short) availabilityWheel.select(random);
+        }
+
+        int[] curves = new int[populationSize];
+        for (int i = 0; i < populationSize; i++) {
+            curves[i] = i % demandWheels.length;
+        }
+        for (int i = populationSize - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int curve = curves[i];
+            curves[i] = curves[j];
+            curves[j] = curve;
+        }
+
+        for (int agent = 0; agent < populationSize; agent++) {
+            SelectionWheel demandWheel = demandWheels[curves[agent]];
+            int start = requiredTimeSlots + agent * slotsPerAgent;
+
+            // Ensures all requested time slots are unique.
+            for (int filled = 0; filled < slotsPerAgent; ) {
+                short timeSlot = (short) demandWheel.select(random);
+                boolean requested = false;
+                for (int i = start; i < start + filled; i++) {
+                    if (block[i] == timeSlot) {
+                        requested = true;
+                        break;
+                    }
+                }
+                if (!requested) {
+                    block[start + filled] = timeSlot;
+                    filled++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mixes the bank's seed with the run and day using the SplitMix64 finaliser, so that neighbouring scenarios are
+     * generated from unrelated seeds.
+     */
+    private long blockSeed(int run, int day) {
+        long z = bankSeed + 0x9E3779B97F4A7C15L * (((long) run << 32) | (day & 0xFFFFFFFFL));
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long fingerprint(
+            double[][] demandCurves,
+            double[] totalDemandValues,
+            int[] availabilityCurve,
+            int totalAvailability
+    ) {
+        long fingerprint = Arrays.deepHashCode(demandCurves);
+        fingerprint = fingerprint * 31 + Arrays.hashCode(totalDemandValues);
+        fingerprint = fingerprint * 31 + Arrays.hashCode(availabilityCurve);
+        return fingerprint * 31 + totalAvailability;
+    }
+
+    private boolean matchesHeader() throws IOException {
+        if (!Files.isRegularFile(bankFile)) return false;
+        try (FileChannel channel = FileChannel.open(bankFile, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_BYTES + runs * runBytes()) return false;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            return header.getInt() == MAGIC
+                    && header.getInt() == VERSION
+                    && header.getLong() == bankSeed
+                    && header.getLong() == fingerprint
+                    && header.getInt() == runs
+                    && header.getInt() == days
+                    && header.getInt() == populationSize
+                    && header.getInt() == slotsPerAgent;
+        }
+    }
+
+    /**
+     * Generates every scenario within the capacity of the bank. The file is written under a temporary name and then
+     * renamed, so an interrupted generation never leaves a partial bank behind.
+     */
+    private void generate() throws IOException {
+        System.out.println("Generating scenario bank...");
+        Files.createDirectories(bankFile.toAbsolutePath().getParent());
+        Path temporaryFile = Files.createTempFile(bankFile.toAbsolutePath().getParent(), "scenarioBank", ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(bankSeed).putLong(fingerprint)
+                    .putInt(runs).putInt(days).putInt(populationSize).putInt(slotsPerAgent);
+            header.rewind();
+            while (header.hasRemaining()) channel.write(header);
+
+            // Scenarios are independent of each other, so each run is generated in parallel.
+            IntStream.rangeClosed(1, runs).parallel().forEach(run -> {
+                try {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+                            HEADER_BYTES + (run - 1) * runBytes(), runBytes());
+                    ShortBuffer scenarios = mapped.asShortBuffer();
+                    short[] block = new short[blockLength()];
+                    for (int day = 1; day <= days; day++) {
+                        generateBlock(run, day, block);
+                        scenarios.put(block);
+                    }
+                    mapped.force();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e.getCause();
+        }
+        Files.move(temporaryFile, bankFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void map() throws IOException {
+        runScenarios = new ShortBuffer[runs];
+        try (FileChannel channel = FileChannel.open(bankFile, StandardOpenOption.READ)) {
+            // Each run is mapped separately, which keeps every mapping within the size limit of a single buffer.
+            for (int run = 1; run <= runs; run++) {
+                runScenarios[run - 1] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + (run - 1) * runBytes(), runBytes()).asShortBuffer();
+            }
+        }
+    }
+
+    /**
+     * @return {@link Path} of the file that the scenarios are stored in.
+     */
+    Path file() {
+        return bankFile;
+    }
+
+    /**
+     * @return {@link Long} value that all scenarios are generated from.
+     */
+    long seed() {
+        return bankSeed;
+    }
+
+    /**
+     * @return A description of the bank that identifies the scenarios it replays.
+     */
+    @Override
+    public String toString() {
+        return "ScenarioBank[seed=" + bankSeed + "]";
+    }
+}
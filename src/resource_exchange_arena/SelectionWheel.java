@@ -0,0 +1,89 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+class SelectionWheel {
+    // The sum of the weights of the time slots before each time slot, so that index 0 holds 0.
+    private final int[] cumulativeWeights;
+    private final int size;
+
+    /**
+     * A roulette wheel over the time slots of a {@link Day}, on which each time slot's chance of being selected is
+     * proportional to its weight. The wheel holds the cumulative weight of the time slots, so a time slot is selected
+     * by a binary search rather than by walking the curve, and the cost of a selection barely grows with the number of
+     * time slots.
+     *
+     * @param weights {@link Integer} array of the weight of each time slot.
+     * @param size    {@link Integer} value representing the range that the selector is drawn from.
+     */
+    private SelectionWheel(int @NotNull [] weights, int size) {
+        this.size = size;
+        cumulativeWeights = new int[weights.length + 1];
+        for (int timeSlot = 0; timeSlot < weights.length; timeSlot++) {
+            cumulativeWeights[timeSlot + 1] = cumulativeWeights[timeSlot] + weights[timeSlot];
+        }
+    }
+
+    /**
+     * @param demandCurve An array of {@link Double}s representing a demand curve bucketed into time slots.
+     * @param totalDemand {@link Double} value representing the sum of all values in the demand curve.
+     * @return A wheel that selects the time slots requested by an {@link Agent} with this demand curve, where the
+     * demand is resolved to a tenth of a unit.
+     */
+    static @NotNull SelectionWheel ofDemand(double @NotNull [] demandCurve, double totalDemand) {
+        int[] weights = new int[demandCurve.length];
+        for (int timeSlot = 0; timeSlot < demandCurve.length; timeSlot++) {
+            weights[timeSlot] = (int) (demandCurve[timeSlot] * 10);
+        }
+        return new SelectionWheel(weights, (int) (totalDemand * 10));
+    }
+
+    /**
+     * @param availabilityCurve {@link Integer} array representing the amount of energy available at each timeslot.
+     * @param totalAvailability {@link Integer} value representing the total energy available throughout the {@link Day}.
+     * @return A wheel that selects the time slots available each {@link Day}.
+     */
+    static @NotNull SelectionWheel ofAvailability(int @NotNull [] availabilityCurve, int totalAvailability) {
+        return new SelectionWheel(availabilityCurve, totalAvailability);
+    }
+
+    /**
+     * Selects a time slot, drawing a single value from the {@link Random}. The selected time slot is the first whose
+     * cumulative weight, excluding its own, reaches the drawn value, which is the time slot that walking the curve and
+     * adding each weight in turn until the total reaches the drawn value arrives at.
+     *
+     * @param random The {@link Random} to draw from.
+     * @return The selected time slot.
+     */
+    int select(@NotNull Random random) {
+        int wheelSelector = random.nextInt(size);
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeWeights[middle] < wheelSelector) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return {@link Integer} value representing the number of time slots that can be selected.
+     */
+    int weightedTimeSlots() {
+        int weightedTimeSlots = 0;
+        for (int timeSlot = 1; timeSlot < cumulativeWeights.length; timeSlot++) {
+            if (cumulativeWeights[timeSlot] > cumulativeWeights[timeSlot - 1]) weightedTimeSlots++;
+        }
+        return weightedTimeSlots;
+    }
+
+    /**
+     * @return {@link Integer} value representing the range that the selector is drawn from.
+     */
+    int size() {
+        return size;
+    }
+}
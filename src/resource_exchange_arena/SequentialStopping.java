@@ -0,0 +1,104 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+class SequentialStopping {
+    private final int batchSize;
+    private final int maximumRuns;
+    private final double takeoverProbabilityWidth;
+    private final double takeoverDayWidth;
+    private final double finalSatisfactionWidth;
+
+    /**
+     * Decides how many simulation runs an {@link ArenaEnvironment} needs, running batches of runs until the 95%
+     * confidence intervals of the key results are narrower than the widths requested, or until a maximum number of
+     * runs has been reached.
+     *
+     * @param batchSize                {@link Integer} value representing the number of runs between each check.
+     * @param maximumRuns              {@link Integer} value representing the most runs that will be made.
+     * @param takeoverProbabilityWidth The widest acceptable interval for the probability of a social takeover.
+     * @param takeoverDayWidth         The widest acceptable interval for the day on which a takeover happens.
+     * @param finalSatisfactionWidth   The widest acceptable interval for the satisfaction on the final day.
+     */
+    SequentialStopping(
+            int batchSize,
+            int maximumRuns,
+            double takeoverProbabilityWidth,
+            double takeoverDayWidth,
+            double finalSatisfactionWidth
+    ) {
+        this.batchSize = Math.max(2, batchSize);
+        this.maximumRuns = Math.max(this.batchSize, maximumRuns);
+        this.takeoverProbabilityWidth = takeoverProbabilityWidth;
+        this.takeoverDayWidth = takeoverDayWidth;
+        this.finalSatisfactionWidth = finalSatisfactionWidth;
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    int maximumRuns() {
+        return maximumRuns;
+    }
+
+    /**
+     * @param keyDaysData The key day results of all runs completed so far.
+     * @return Whether every confidence interval is narrower than its requested width.
+     */
+    boolean isPrecise(@NotNull KeyDaysData keyDaysData) {
+        return 2 * keyDaysData.takeoverProbabilityInterval() <= takeoverProbabilityWidth
+                && keyDaysData.takeoverDays().count() > 1
+                && 2 * keyDaysData.takeoverDays().confidenceInterval() <= takeoverDayWidth
+                && keyDaysData.finalSatisfaction().count() > 1
+                && 2 * keyDaysData.finalSatisfaction().confidenceInterval() <= finalSatisfactionWidth;
+    }
+
+    /**
+     * @param runsCompleted {@link Integer} value representing the number of runs completed so far.
+     * @param keyDaysData   The key day results of all runs completed so far.
+     * @return The number of runs to complete before checking again, 0 once no more runs are needed.
+     */
+    int nextBatch(int runsCompleted, KeyDaysData keyDaysData) {
+        if (runsCompleted == 0) return batchSize;
+        if (runsCompleted >= maximumRuns || isPrecise(keyDaysData)) return 0;
+        return Math.min(batchSize, maximumRuns - runsCompleted);
+    }
+
+    @Override
+    public String toString() {
+        return "adaptive(batchSize=" + batchSize
+                + ", maximumRuns=" + maximumRuns
+                + ", takeoverProbabilityWidth=" + takeoverProbabilityWidth
+                + ", takeoverDayWidth=" + takeoverDayWidth
+                + ", finalSatisfactionWidth=" + finalSatisfactionWidth + ")";
+    }
+
+    /**
+     * Records the precision that was achieved so that it is clear how reliable the results are.
+     *
+     * @param writer      Used to store the key data about the simulation.
+     * @param keyDaysData The key day results of all completed runs.
+     * @throws IOException On output error.
+     */
+    void writePrecision(Writer writer, @NotNull KeyDaysData keyDaysData) throws IOException {
+        RunningStatistics takeoverDays = keyDaysData.takeoverDays();
+        RunningStatistics finalSatisfaction = keyDaysData.finalSatisfaction();
+
+        Utilities.write(writer, "Adaptive runs completed: ", String.valueOf(keyDaysData.runs()),
+                "\n", "Target precision reached: ", String.valueOf(isPrecise(keyDaysData)),
+                "\n", "Social takeover probability: ",
+                String.valueOf(keyDaysData.takeoverProbability()), " +/- ",
+                String.valueOf(keyDaysData.takeoverProbabilityInterval()),
+                " (target width ", String.valueOf(takeoverProbabilityWidth), ")",
+                "\n", "Takeover day: ",
+                String.valueOf(takeoverDays.mean()), " +/- ", String.valueOf(takeoverDays.confidenceInterval()),
+                " (target width ", String.valueOf(takeoverDayWidth), ")",
+                "\n", "Final satisfaction: ",
+                String.valueOf(finalSatisfaction.mean()), " +/- ", String.valueOf(finalSatisfaction.confidenceInterval()),
+                " (target width ", String.valueOf(finalSatisfactionWidth), ")", "\n\n");
+    }
+}
@@ -0,0 +1,383 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class ShardedMarket {
+    private final int shards;
+    private final int exchangeInterval;
+    private final int windowAgents;
+
+    /**
+     * Partitions the population of each run into regional markets rather than a single global market in which every
+     * {@link Agent} can trade with every other. Each region allocates time slots and runs its exchange rounds on its own
+     * thread, so the cost of a {@link Day} grows with the square of a region's size rather than of the population.
+     * Periodically a few {@link Agent}s from every region meet in an exchange window to trade across region boundaries,
+     * and social learning always observes the whole population. The regions' results are combined into the usual
+     * daily, per-agent and per-round data.
+     *
+     * @param shards           {@link Integer} value representing the number of regions the population is divided into.
+     * @param exchangeInterval {@link Integer} value representing the number of {@link Day}s between exchange windows,
+     *                         or 0 for no trading between regions.
+     * @param windowAgents     {@link Integer} value representing the number of {@link Agent}s each region sends to an
+     *                         exchange window.
+     */
+    ShardedMarket(int shards, int exchangeInterval, int windowAgents) {
+        this.shards = Math.max(1, shards);
+        this.exchangeInterval = Math.max(0, exchangeInterval);
+        this.windowAgents = Math.max(0, windowAgents);
+    }
+
+    /**
+     * Divides a run's {@link Agent}s into regions by their current order, which is already shuffled.
+     *
+     * @param agents            {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param demandCurves      {@link Double} arrays of demand used by the {@link Agent}s.
+     * @param totalDemandValues {@link Double} values representing the sum of all values in their associated demand curves.
+     * @param availabilityCurve {@link Integer} array representing the amount of energy available at each timeslot.
+     * @param totalAvailability {@link Integer} value representing the total energy available throughout the {@link Day}.
+     * @param profileLibrary    Gives each {@link Agent} a household's demand of its own, or {@code null} to share the demand curves.
+     * @param slotsPerAgent     {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param seed              {@link Long} value that the run's random numbers are drawn from.
+     * @return The regions, which must be closed once the run is complete.
+     */
+    Regions partition(
+            @NotNull ArrayList<Agent> agents,
+            double[][] demandCurves,
+            double[] totalDemandValues,
+            int[] availabilityCurve,
+            int totalAvailability,
+            ProfileLibrary profileLibrary,
+            int slotsPerAgent,
+            long seed
+    ) {
+        return new Regions(agents, demandCurves, totalDemandValues, availabilityCurve, totalAvailability,
+                profileLibrary, slotsPerAgent, seed);
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedMarket[shards=" + shards + ", exchangeInterval=" + exchangeInterval
+                + ", windowAgents=" + windowAgents + "]";
+    }
+
+    /**
+     * The regional markets of a single run, and the threads that they trade on.
+     */
+    class Regions {
+        private final ArrayList<ArrayList<Agent>> regions = new ArrayList<>();
+        // Reused by each region to hold the time slots that are yet to be allocated.
+        private final ArrayList<ArrayList<Integer>> availableTimeSlots = new ArrayList<>();
+        private final ExecutorService executor;
+
+        private final double[][] demandCurves;
+        private final double[] totalDemandValues;
+        private final int[] availabilityCurve;
+        private final int totalAvailability;
+        private final ProfileLibrary profileLibrary;
+        private final int slotsPerAgent;
+        private final int populationSize;
+        private final long seed;
+        private final boolean counterBased;
+
+        private double randomAllocations;
+        private double optimumAllocations;
+
+        private Regions(
+                @NotNull ArrayList<Agent> agents,
+                double[][] demandCurves,
+                double[] totalDemandValues,
+                int[] availabilityCurve,
+                int totalAvailability,
+                ProfileLibrary profileLibrary,
+                int slotsPerAgent,
+                long seed
+        ) {
+            this.demandCurves = demandCurves;
+            this.totalDemandValues = totalDemandValues;
+            this.availabilityCurve = availabilityCurve;
+            this.totalAvailability = totalAvailability;
+            this.profileLibrary = profileLibrary;
+            this.slotsPerAgent = slotsPerAgent;
+            this.populationSize = agents.size();
+            this.seed = seed;
+            this.counterBased = CounterBasedRandom.isCounterBased(ResourceExchangeArena.random());
+
+            int regionCount = Math.max(1, Math.min(shards, agents.size()));
+            for (int region = 0; region < regionCount; region++) {
+                int from = (int) ((long) agents.size() * region / regionCount);
+                int to = (int) ((long) agents.size() * (region + 1) / regionCount);
+                regions.add(new ArrayList<>(agents.subList(from, to)));
+                availableTimeSlots.add(new ArrayList<>());
+            }
+
+            int threads = Math.min(regionCount, Runtime.getRuntime().availableProcessors());
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "region");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * Each region allocates time slots to its {@link Agent}s and trades until no more exchanges are made, in
+         * parallel, followed by an exchange window between the regions when one is due. The average satisfaction of
+         * each type after every round is the average across all regions, with regions that have already finished
+         * trading counted as they finished.
+         *
+         * @param run                    {@link Integer} value identifying the current simulation run.
+         * @param day                    {@link Integer} value representing the current {@link Day} being simulated.
+         * @param uniqueAgentTypes       {@link Integer} {@link ArrayList} containing each unique {@link Agent} type that exists when the simulation begins.
+         * @param crossRunSummary        Summarises each {@link Day} and round across all simulation runs.
+         * @param eachRoundDataCSVWriter Used to store data regarding the state of the system at the end of each round.
+         * @return The number of exchanges made across all regions and exchange windows.
+         * @throws IOException On output error.
+         */
+        int trade(
+                int run,
+                int day,
+                ArrayList<Integer> uniqueAgentTypes,
+                CrossRunSummary crossRunSummary,
+                Writer eachRoundDataCSVWriter
+        ) throws IOException {
+            List<Future<RegionDay>> futures = new ArrayList<>();
+            for (int region = 0; region < regions.size(); region++) {
+                int r = region;
+                futures.add(executor.submit(() -> tradeRegion(r, run, day, uniqueAgentTypes)));
+            }
+
+            int exchanges = 0;
+            int rounds = 0;
+            double allocatedSatisfaction = 0;
+            int[] requestedSlots = new int[0];
+            int[] allocatedSlots = new int[0];
+            int[] typeCounts = new int[uniqueAgentTypes.size()];
+            ArrayList<RegionDay> regionDays = new ArrayList<>();
+            for (Future<RegionDay> future : futures) {
+                RegionDay regionDay = result(future);
+                regionDays.add(regionDay);
+                exchanges += regionDay.exchanges;
+                rounds = Math.max(rounds, regionDay.roundTotals.size());
+                allocatedSatisfaction += regionDay.allocatedSatisfaction;
+                requestedSlots = add(requestedSlots, regionDay.requestedSlots);
+                allocatedSlots = add(allocatedSlots, regionDay.allocatedSlots);
+                for (int type = 0; type < typeCounts.length; type++) typeCounts[type] += regionDay.typeCounts[type];
+                Instrumentation.count(Instrumentation.ROUNDS, regionDay.roundTotals.size());
+            }
+            randomAllocations = allocatedSatisfaction / populationSize;
+            optimumAllocations = CalculateSatisfaction.optimumAgentSatisfaction(requestedSlots, allocatedSlots);
+            Instrumentation.count(Instrumentation.ALLOCATED_TIME_SLOTS, (long) populationSize * slotsPerAgent);
+            Instrumentation.count(Instrumentation.EXCHANGES, exchanges);
+
+            // Regions that finished trading early keep the satisfaction of their last round.
+            ArrayList<double[]> roundTotals = new ArrayList<>();
+            for (int round = 0; round < rounds; round++) {
+                double[] totals = new double[uniqueAgentTypes.size()];
+                for (RegionDay regionDay : regionDays) {
+                    double[] regionTotals = regionDay.roundTotals.get(Math.min(round, regionDay.roundTotals.size() - 1));
+                    for (int type = 0; type < totals.length; type++) totals[type] += regionTotals[type];
+                }
+                roundTotals.add(totals);
+            }
+
+            if (exchangeInterval > 0 && day % exchangeInterval == 0 && regions.size() > 1 && windowAgents > 0) {
+                exchanges += exchangeWindow(run, day, uniqueAgentTypes, roundTotals);
+            }
+
+            for (int round = 0; round < roundTotals.size(); round++) {
+                for (int type = 0; type < uniqueAgentTypes.size(); type++) {
+                    int uniqueAgentType = uniqueAgentTypes.get(type);
+                    double averageSatisfaction = typeCounts[type] == 0 ? 0.0 : roundTotals.get(round)[type] / typeCounts[type];
+                    // Types that no longer exist are recorded as 0 but left out of the summary across runs.
+                    if (typeCounts[type] > 0) crossRunSummary.addRound(day, round, uniqueAgentType, averageSatisfaction);
+                    Utilities.write(eachRoundDataCSVWriter, String.valueOf(run), ",",
+                            String.valueOf(day), ",",
+                            String.valueOf(round), ",",
+                            String.valueOf(uniqueAgentType), ",",
+                            String.valueOf(averageSatisfaction), "\n");
+                }
+            }
+            return exchanges;
+        }
+
+        /**
+         * @return The average satisfaction of all {@link Agent}s with their random allocations, before any exchanges.
+         */
+        double randomAllocations() {
+            return randomAllocations;
+        }
+
+        /**
+         * @return The optimum average satisfaction of all {@link Agent}s, as if they could all trade with each other.
+         */
+        double optimumAllocations() {
+            return optimumAllocations;
+        }
+
+        /**
+         * Stops the threads that the regions trade on.
+         */
+        void close() {
+            executor.shutdown();
+        }
+
+        /**
+         * Allocates time slots to a region's {@link Agent}s and runs its exchange rounds, on one of the region threads.
+         * Each region draws from its own random numbers, which are derived from the run's seed, the {@link Day} and the
+         * region, so the results don't depend on which thread a region happens to run on.
+         */
+        private @NotNull RegionDay tradeRegion(int region, int run, int day, ArrayList<Integer> uniqueAgentTypes)
+                throws IOException {
+            CounterBasedRandom seeds = new CounterBasedRandom(seed);
+            seeds.jump(run, day, 0, CounterBasedRandom.SHARDING, region + 1);
+            long regionSeed = seeds.nextLong();
+            ResourceExchangeArena.setRandom(counterBased ? new CounterBasedRandom(regionSeed) : new Random(regionSeed));
+
+            ArrayList<Agent> agents = regions.get(region);
+            Day.allocate(
+                    agents,
+                    availableTimeSlots.get(region),
+                    demandCurves,
+                    totalDemandValues,
+                    availabilityCurve,
+                    totalAvailability,
+                    null,
+                    profileLibrary,
+                    null,
+                    slotsPerAgent,
+                    run,
+                    day
+            );
+
+            RegionDay regionDay = new RegionDay(uniqueAgentTypes.size());
+            for (Agent a : agents) {
+                regionDay.allocatedSatisfaction += a.calculateSatisfaction(null);
+                regionDay.requestedSlots =
+                        CalculateSatisfaction.countTimeSlots(a.publishRequestedTimeSlots(), regionDay.requestedSlots);
+                regionDay.allocatedSlots =
+                        CalculateSatisfaction.countTimeSlots(a.publishAllocatedTimeSlots(), regionDay.allocatedSlots);
+                int type = uniqueAgentTypes.indexOf(a.getAgentType());
+                if (type >= 0) regionDay.typeCounts[type]++;
+            }
+
+            int round = 0;
+            int timeout = 0;
+            while (timeout < Day.MAX_TIMEOUT) {
+                Exchange current = new Exchange(run, day, round, uniqueAgentTypes, agents, null, null, null, null, null, null, null);
+                regionDay.exchanges += current.exchanges;
+                regionDay.roundTotals.add(satisfactionTotals(agents, uniqueAgentTypes));
+                if (current.noExchanges) timeout++;
+                else timeout = 0;
+                round++;
+            }
+            return regionDay;
+        }
+
+        /**
+         * A few randomly chosen {@link Agent}s from every region trade with each other, continuing the {@link Day}'s
+         * rounds until no more exchanges are made.
+         *
+         * @param roundTotals The total satisfaction of each type after each round so far, which the window's rounds
+         *                    are added to.
+         * @return The number of exchanges made in the window.
+         */
+        private int exchangeWindow(int run, int day, ArrayList<Integer> uniqueAgentTypes,
+                                   @NotNull ArrayList<double[]> roundTotals) throws IOException {
+            Random random = ResourceExchangeArena.random();
+            CounterBasedRandom.jump(random, run, day, 0, CounterBasedRandom.SHARDING, 0);
+            ArrayList<Agent> window = new ArrayList<>();
+            for (ArrayList<Agent> agents : regions) {
+                // A partial Fisher-Yates shuffle draws the region's representatives without replacement.
+                int representatives = Math.min(windowAgents, agents.size());
+                for (int i = 0; i < representatives; i++) {
+                    Collections.swap(agents, i, i + random.nextInt(agents.size() - i));
+                    window.add(agents.get(i));
+                }
+            }
+
+            // Only the window's Agents can change, so the totals move by the change in their satisfaction.
+            double[] totals = roundTotals.get(roundTotals.size() - 1);
+            double[] before = satisfactionTotals(window, uniqueAgentTypes);
+
+            int exchanges = 0;
+            int round = roundTotals.size();
+            int timeout = 0;
+            while (timeout < Day.MAX_TIMEOUT) {
+                Exchange current = new Exchange(run, day, round, uniqueAgentTypes, window, null, null, null, null, null, null, null);
+                exchanges += current.exchanges;
+                double[] after = satisfactionTotals(window, uniqueAgentTypes);
+                double[] windowTotals = new double[totals.length];
+                for (int type = 0; type < totals.length; type++) {
+                    windowTotals[type] = totals[type] - before[type] + after[type];
+                }
+                roundTotals.add(windowTotals);
+                if (current.noExchanges) timeout++;
+                else timeout = 0;
+                round++;
+            }
+            return exchanges;
+        }
+    }
+
+    /**
+     * @param agents           The {@link Agent}s to total.
+     * @param uniqueAgentTypes {@link Integer} {@link ArrayList} containing each unique {@link Agent} type.
+     * @return The total satisfaction of the {@link Agent}s of each type, in the order of the unique types.
+     */
+    private static double @NotNull [] satisfactionTotals(@NotNull ArrayList<Agent> agents,
+                                                         @NotNull ArrayList<Integer> uniqueAgentTypes) {
+        double[] totals = new double[uniqueAgentTypes.size()];
+        for (Agent a : agents) {
+            int type = uniqueAgentTypes.indexOf(a.getAgentType());
+            if (type >= 0) totals[type] += a.calculateSatisfaction(null);
+        }
+        return totals;
+    }
+
+    private static int @NotNull [] add(int @NotNull [] counts, int @NotNull [] more) {
+        int[] total = counts.length >= more.length ? counts : Arrays.copyOf(counts, more.length);
+        for (int i = 0; i < more.length; i++) total[i] += more[i];
+        return total;
+    }
+
+    private static RegionDay result(@NotNull Future<RegionDay> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the regions were trading.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * What happened in a single region during a {@link Day}.
+     */
+    private static class RegionDay {
+        final int[] typeCounts;
+        final ArrayList<double[]> roundTotals = new ArrayList<>();
+        double allocatedSatisfaction;
+        int[] requestedSlots = new int[0];
+        int[] allocatedSlots = new int[0];
+        int exchanges;
+
+        RegionDay(int uniqueAgentTypes) {
+            typeCounts = new int[uniqueAgentTypes];
+        }
+    }
+}
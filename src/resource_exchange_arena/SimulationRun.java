@@ -1,7 +1,7 @@
 package resource_exchange_arena;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.stream.IntStream;
@@ -15,8 +15,13 @@ class SimulationRun {
      * @param totalDemandValues       {@link Double} values representing the sum of all values in their associated demand curves.
      * @param availabilityCurve       {@link Integer} array representing the amount of energy available at each timeslot.
      * @param totalAvailability       {@link Integer} value representing the total energy available throughout the {@link Day}.
+     * @param scenarioBank            Replays pre-generated requested and available time slots, or {@code null} to sample them each {@link Day}.
+     * @param profileLibrary          Gives each {@link Agent} a household's demand of its own, or {@code null} to share the demand curves.
+     * @param shardedMarket           Divides the {@link Agent}s into regional markets, or {@code null} to trade in a single global market.
+     * @param topology                The network that limits which {@link Agent}s can trade with and learn from each other, or {@code null} for a complete network.
+     * @param exchangeMechanism       {@link String} naming how {@link Agent}s find a partner for an exchange, {@link Exchange#BOARD}, {@link Exchange#ORDER_BOOK} or {@link Exchange#CENTRAL_PLANNER}.
+     * @param tradingCycles           {@link Boolean} value that determines whether {@link Agent}s also trade around cycles after each round's pairwise exchanges.
      * @param days                    {@link Integer} value representing the number of days to be simulated.
-     * @param maxExchanges            Stores the highest number of exchange rounds reached each simulation.
      * @param populationSize          {@link Integer} value representing the size of the initial {@link Agent} population.
      * @param uniqueTimeSlots         {@link Integer} value representing the number of unique time slots available in the simulation.
      * @param slotsPerAgent           {@link Integer} value representing the number of time slots each {@link Agent} requires.
@@ -27,6 +32,10 @@ class SimulationRun {
      * @param selectedSingleAgentType {@link Integer} value representing the single {@link Agent} type to be modelled when singleAgentType is true.
      * @param socialCapital           Boolean value that determines whether social {@link Agent}s will utilise social capital.
      * @param keyDaysData             Stores the state of the simulation when a population takes over and when the simulation ends.
+     * @param crossRunSummary         Summarises each {@link Day} and round across all simulation runs.
+     * @param exchangeTrace           Receives every step of each exchange round, or {@code null} if they aren't traced.
+     * @param checkpoint              Takes snapshots at the end of each {@link Day} so the run can be resumed, or {@code null}.
+     * @param resume                  The snapshot to continue the run from, or {@code null} to start the run from the beginning.
      * @param dailyDataWriter         Used to store data regarding the state of the system at the end of each {@link Day}.
      * @param perAgentDataCSVWriter   Used to store data regarding the state of the {@link Agent} at the end of each {@link Day}.
      * @param eachRoundDataCSVWriter  Used to store data regarding the state of the system at the end of each round.
@@ -38,8 +47,13 @@ class SimulationRun {
             double[] totalDemandValues,
             int[] availabilityCurve,
             int totalAvailability,
+            ScenarioBank scenarioBank,
+            ProfileLibrary profileLibrary,
+            ShardedMarket shardedMarket,
+            Topology topology,
+            String exchangeMechanism,
+            boolean tradingCycles,
             int days,
-            ArrayList<Integer> maxExchanges,
             int populationSize,
             int uniqueTimeSlots,
             int slotsPerAgent,
@@ -49,123 +63,145 @@ class SimulationRun {
             boolean singleAgentType,
             int selectedSingleAgentType,
             boolean socialCapital,
-            ArrayList<ArrayList<Double>> keyDaysData,
-            FileWriter dailyDataWriter,
-            FileWriter perAgentDataCSVWriter,
-            FileWriter eachRoundDataCSVWriter,
+            KeyDaysData keyDaysData,
+            CrossRunSummary crossRunSummary,
+            ExchangeTrace exchangeTrace,
+            Checkpoint checkpoint,
+            Checkpoint.Snapshot resume,
+            Writer dailyDataWriter,
+            Writer perAgentDataCSVWriter,
+            Writer eachRoundDataCSVWriter,
             int run
     ) throws IOException {
 
+        Instrumentation.startRun(run);
+
         // List of all the Agents that are part of the current simulation.
         ArrayList<Agent> agents = new ArrayList<>();
 
-        // Create the Agents for the simulation.
-        IntStream.rangeClosed(1, populationSize).forEach(agentNumber -> new Agent(
-                agentNumber,
-                agentTypes[agentNumber % agentTypes.length],
-                slotsPerAgent,
-                agents,
-                socialCapital
-        ));
-
-        Collections.shuffle(agents, ResourceExchangeArena.random);
-
-        // Set all agents to a single type, used for establishing baseline performance.
-        if (singleAgentType && selectedSingleAgentType != 0) agents.forEach(a -> a.setType(selectedSingleAgentType));
-
-        // Increment the simulations seed each run.
-        ResourceExchangeArena.seed++;
-        ResourceExchangeArena.random.setSeed(ResourceExchangeArena.seed);
-
-        // Initialise each Agents relations with each other Agent.
-        agents.forEach(a -> a.initializeFavoursStore(agents));
-
         boolean complete = false;
         boolean takeover = false;
+        int takeoverPopulation = -1;
         int extension = 1;
         int day = 1;
-        while (!complete) {
-
-            Day current = new Day(
-                    demandCurves,
-                    totalDemandValues,
-                    availabilityCurve,
-                    totalAvailability,
-                    day,
-                    maxExchanges,
-                    populationSize,
-                    uniqueTimeSlots,
+
+        if (resume != null) {
+            // Continue from the snapshot, whose seed and Random have already been restored.
+            resume.restoreAgents(agents, slotsPerAgent, socialCapital);
+            takeover = resume.takeover;
+            extension = resume.extension;
+            day = resume.day;
+        } else {
+            // Create the Agents for the simulation.
+            IntStream.rangeClosed(1, populationSize).forEach(agentNumber -> new Agent(
+                    agentNumber,
+                    agentTypes[agentNumber % agentTypes.length],
                     slotsPerAgent,
-                    numberOfAgentsToEvolve,
-                    uniqueAgentTypes,
                     agents,
-                    dailyDataWriter,
-                    perAgentDataCSVWriter,
-                    eachRoundDataCSVWriter,
-                    run
-            );
-
-            if (((current.selPop == 0 || current.socPop == 0) || numberOfAgentsToEvolve == 0) && !takeover) {
-                takeover = true;
-                ArrayList<Double> takeoverData = new ArrayList<>();
-                takeoverData.add((double) run);
-                takeoverData.add((double) day);
-                takeoverData.add((double) current.socPop);
-                takeoverData.add((double) current.selPop);
-                takeoverData.add(current.socSat);
-                takeoverData.add(current.selSat);
-                takeoverData.add(current.socSD);
-                takeoverData.add(current.selSD);
-                takeoverData.add(current.socialStatValues[0]);
-                takeoverData.add(current.selfishStatValues[0]);
-                takeoverData.add(current.socialStatValues[1]);
-                takeoverData.add(current.selfishStatValues[1]);
-                takeoverData.add(current.socialStatValues[2]);
-                takeoverData.add(current.selfishStatValues[2]);
-                takeoverData.add(current.socialStatValues[3]);
-                takeoverData.add(current.selfishStatValues[3]);
-                takeoverData.add(current.socialStatValues[4]);
-                takeoverData.add(current.selfishStatValues[4]);
-                takeoverData.add(current.socialStatValues[5]);
-                takeoverData.add(current.selfishStatValues[5]);
-                takeoverData.add(current.randomAllocations);
-                takeoverData.add(current.optimumAllocations);
-                takeoverData.add(0.0);
-                keyDaysData.add(takeoverData);
-            }
-            if (takeover) {
-                extension++;
-            }
+                    socialCapital
+            ));
+
+            CounterBasedRandom.jump(ResourceExchangeArena.random(), run, 0, 0, CounterBasedRandom.SETUP, 0);
+            Collections.shuffle(agents, ResourceExchangeArena.random());
+
+            // Set all agents to a single type, used for establishing baseline performance.
+            if (singleAgentType && selectedSingleAgentType != 0) agents.forEach(a -> a.setType(selectedSingleAgentType));
 
-            if (extension == days) {
-                complete = true;
-                ArrayList<Double> finalData = new ArrayList<>();
-                finalData.add((double) run);
-                finalData.add((double) day);
-                finalData.add((double) current.socPop);
-                finalData.add((double) current.selPop);
-                finalData.add(current.socSat);
-                finalData.add(current.selSat);
-                finalData.add(current.socSD);
-                finalData.add(current.selSD);
-                finalData.add(current.socialStatValues[0]);
-                finalData.add(current.selfishStatValues[0]);
-                finalData.add(current.socialStatValues[1]);
-                finalData.add(current.selfishStatValues[1]);
-                finalData.add(current.socialStatValues[2]);
-                finalData.add(current.selfishStatValues[2]);
-                finalData.add(current.socialStatValues[3]);
-                finalData.add(current.selfishStatValues[3]);
-                finalData.add(current.socialStatValues[4]);
-                finalData.add(current.selfishStatValues[4]);
-                finalData.add(current.socialStatValues[5]);
-                finalData.add(current.selfishStatValues[5]);
-                finalData.add(current.randomAllocations);
-                finalData.add(current.optimumAllocations);
-                finalData.add(1.0);
-                keyDaysData.add(finalData);
+            // Increment the simulations seed each run.
+            ResourceExchangeArena.setCurrentSeed(ResourceExchangeArena.currentSeed() + 1);
+            ResourceExchangeArena.random().setSeed(ResourceExchangeArena.currentSeed());
+
+            // Clear each Agent's relations with the other Agents.
+            agents.forEach(Agent::initializeFavoursStore);
+        }
+
+        // Buffers reused by every Day of the run for the end of day satisfactions, social learning, the order book, the
+        // central planner and trading cycles.
+        double[] agentSatisfactions = new double[populationSize];
+        SocialLearning socialLearning = new SocialLearning(populationSize, slotsPerAgent, numberOfAgentsToEvolve,
+                topology);
+        OrderBook orderBook = exchangeMechanism.equals(Exchange.ORDER_BOOK)
+                ? new OrderBook(populationSize, uniqueTimeSlots, slotsPerAgent)
+                : null;
+        CentralPlanner centralPlanner = exchangeMechanism.equals(Exchange.CENTRAL_PLANNER)
+                ? new CentralPlanner(populationSize, uniqueTimeSlots, slotsPerAgent)
+                : null;
+        TradingCycles cycles = tradingCycles ? new TradingCycles(populationSize, uniqueTimeSlots, slotsPerAgent) : null;
+
+        // Agents only trade within their own region when the market is sharded.
+        ShardedMarket.Regions regions = shardedMarket == null ? null : shardedMarket.partition(
+                agents,
+                demandCurves,
+                totalDemandValues,
+                availabilityCurve,
+                totalAvailability,
+                profileLibrary,
+                slotsPerAgent,
+                ResourceExchangeArena.currentSeed()
+        );
+
+        try {
+            while (!complete) {
+
+                Day current = new Day(
+                        demandCurves,
+                        totalDemandValues,
+                        availabilityCurve,
+                        totalAvailability,
+                        scenarioBank,
+                        profileLibrary,
+                        regions,
+                        topology,
+                        orderBook,
+                        centralPlanner,
+                        cycles,
+                        day,
+                        populationSize,
+                        uniqueTimeSlots,
+                        slotsPerAgent,
+                        uniqueAgentTypes,
+                        agents,
+                        agentSatisfactions,
+                        socialLearning,
+                        crossRunSummary,
+                        exchangeTrace,
+                        dailyDataWriter,
+                        perAgentDataCSVWriter,
+                        eachRoundDataCSVWriter,
+                        run
+                );
+                ProgressServer.dayCompleted(current.exchanges);
+
+                if (((current.selPop == 0 || current.socPop == 0) || numberOfAgentsToEvolve == 0) && !takeover) {
+                    takeover = true;
+                    takeoverPopulation = KeyDaysData.population(current);
+                    keyDaysData.record(run, day, current, false);
+                }
+                if (takeover) {
+                    extension++;
+                }
+
+                if (extension == days) {
+                    complete = true;
+                    keyDaysData.record(run, day, current, true);
+                    // A run resumed after its takeover is attributed by its final day instead.
+                    if (takeoverPopulation < 0) takeoverPopulation = KeyDaysData.population(current);
+                }
+                if (!takeover && centralPlanner != null && day == ResourceExchangeArena.PLANNER_MAX_DAYS) {
+                    complete = true;
+                    keyDaysData.record(run, day, current, true);
+                    takeoverPopulation = KeyDaysData.population(current);
+                    System.out.println("Run " + run + " reached " + day + " days without a takeover and has been ended.");
+                }
+                day++;
+
+                if (!complete && checkpoint != null) checkpoint.saveDay(run, day, takeover, extension, agents);
             }
-            day++;
+        } finally {
+            if (regions != null) regions.close();
         }
+
+        Instrumentation.endRun();
+        ProgressServer.runCompleted(takeoverPopulation);
     }
 }
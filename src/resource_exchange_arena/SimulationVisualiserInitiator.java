@@ -11,13 +11,15 @@ import java.util.List;
 class SimulationVisualiserInitiator {
 
     /**
-     * Begins python code that visualises the gathered data from the current environment being simulated.
+     * Begins python code that visualises the gathered data from the current environment being simulated. The typical
+     * runs are drawn from the data of each {@link Day}, and the averages across all runs from the daily summary.
      *
      * @param pythonExe      {@link String} representing the system path to python environment executable.
      * @param pythonPath     {@link String} representing the system path to the python data visualiser.
      * @param folderName     {@link String} representing the output destination folder, used to organise output data.
      * @param environmentTag {@link String} detailing specifics about the simulation environment.
      * @param dataFile       Stores all the data that can be analysed for each {@link Day}.
+     * @param summaryFile    Stores the averages of each {@link Day} across all runs, see {@link CrossRunSummary}.
      * @param typicalSocial  The most average performing social run.
      * @param typicalSelfish The most average performing selfish run.
      * @throws IOException On input error.
@@ -29,6 +31,7 @@ class SimulationVisualiserInitiator {
             String folderName,
             String environmentTag,
             @NotNull File dataFile,
+            @NotNull File summaryFile,
             double typicalSocial,
             double typicalSelfish
     ) throws IOException {
@@ -38,26 +41,40 @@ class SimulationVisualiserInitiator {
 
         String satisfactionPythonPath = pythonPath + "TypicalRun.py";
 
-        List<String> satisfactionPythonArgs = new ArrayList<>(Arrays.asList(pythonExe,
+        visualise(new ArrayList<>(Arrays.asList(pythonExe,
                 satisfactionPythonPath,
                 folderName,
                 environmentTag,
                 dataFile.getAbsolutePath(),
                 Double.toString(typicalSocial),
-                Double.toString(typicalSelfish)));
+                Double.toString(typicalSelfish))));
 
-        ProcessBuilder satisfactionBuilder = new ProcessBuilder(satisfactionPythonArgs);
+        // The averages across runs are drawn from the summary alone, which holds a single row for each day.
+        System.out.println("Starting average run visualisation...");
+
+        String averagePythonPath = pythonPath + "AverageRun.py";
+
+        visualise(new ArrayList<>(Arrays.asList(pythonExe,
+                averagePythonPath,
+                folderName,
+                environmentTag,
+                summaryFile.getAbsolutePath())));
+
+        System.out.println("Visualisation complete.");
+    }
+
+    private static void visualise(List<String> pythonArgs) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(pythonArgs);
 
         // IO from the Python is shared with the same terminal as the Java code.
-        satisfactionBuilder.inheritIO();
-        satisfactionBuilder.redirectErrorStream(true);
+        builder.inheritIO();
+        builder.redirectErrorStream(true);
 
-        Process satisfactionProcess = satisfactionBuilder.start();
+        Process process = builder.start();
         try {
-            satisfactionProcess.waitFor();
+            process.waitFor();
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        System.out.println("Visualisation complete.");
     }
 }
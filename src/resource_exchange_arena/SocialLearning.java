@@ -5,6 +5,31 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 
 class SocialLearning {
+    // Positions within the list of Agents, partially shuffled each day to select the learning Agents.
+    private final int[] learnerOrder;
+    // The type of each Agent before any learning takes place, indexed by agentID - 1.
+    private final int[] previousTypes;
+    private final int slotsPerAgent;
+    private final int numberOfAgentsToEvolve;
+    private final Topology topology;
+
+    /**
+     * The buffers used for {@link SocialLearning} are allocated once per simulation run so that the daily learning
+     * stage does not create any new objects.
+     *
+     * @param populationSize         {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param slotsPerAgent          {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param numberOfAgentsToEvolve {@link Integer} value representing the number of {@link Agent}s whose strategy may change at the end of each {@link Day}.
+     * @param topology               The network that limits which {@link Agent}s can observe each other, or {@code null}
+     *                               for every {@link Agent} to observe any other.
+     */
+    SocialLearning(int populationSize, int slotsPerAgent, int numberOfAgentsToEvolve, Topology topology) {
+        this.learnerOrder = new int[populationSize];
+        this.previousTypes = new int[populationSize];
+        this.slotsPerAgent = slotsPerAgent;
+        this.numberOfAgentsToEvolve = numberOfAgentsToEvolve;
+        this.topology = topology;
+    }
 
     /**
      * To facilitate {@link SocialLearning}, for the number of the {@link Agent}s who are able to consider changing their strategy,
@@ -12,46 +37,58 @@ class SocialLearning {
      * checks whether their performance was weaker than the {@link Agent} observed, if so they have a chance to copy the
      * strategy used by the observed {@link Agent} in the previous {@link Day}, with the likelihood of copying their strategy
      * proportional to the difference between their individual satisfactions.
+     * <p>
+     * Learning {@link Agent}s are drawn without replacement using a partial Fisher–Yates shuffle over their positions,
+     * so the whole stage is linear in the number of {@link Agent}s. On a network the observed {@link Agent} is one of the
+     * learning {@link Agent}'s neighbours, and an {@link Agent} with no neighbours has no one to learn from.
      *
-     * @param agents                 {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
-     * @param slotsPerAgent          {@link Integer} value representing the number of time slots each {@link Agent} requires.
-     * @param numberOfAgentsToEvolve {@link Integer} value representing the number of {@link Agent}s whose strategy may change at the end of each {@link Day}.
+     * @param agents        {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param satisfactions The satisfaction of each {@link Agent} at the end of the {@link Day}, indexed by agentID - 1.
+     * @param run           {@link Integer} value identifying the current simulation run.
+     * @param day           {@link Integer} value representing the {@link Day} that has finished.
      */
-    SocialLearning(@NotNull ArrayList<Agent> agents, int slotsPerAgent, int numberOfAgentsToEvolve) {
-        // Copy agents to store previous results, this needs to be a deep copy and so a new cloned agent is made.
+    void learn(@NotNull ArrayList<Agent> agents, double @NotNull [] satisfactions, int run, int day) {
         int totalAgents = agents.size();
-        double[][] previousPerformances = new double[totalAgents][3];
-        for (Agent a : agents) {
-            double type = a.getAgentType();
-            double sat = a.calculateSatisfaction(null);
+        // An Agent can't observe itself, so there is nothing to learn from in a population of one.
+        if (totalAgents < 2) return;
 
-            previousPerformances[a.agentID - 1][0] = type;
-            previousPerformances[a.agentID - 1][1] = sat;
+        // Store the previous types, as Agents that have already learnt today must still be observed as they were.
+        for (int i = 0; i < totalAgents; i++) {
+            Agent a = agents.get(i);
+            previousTypes[a.agentID - 1] = a.getAgentType();
+            learnerOrder[i] = i;
         }
 
-        // Copy agents to store all agents that haven't yet been selected for social learning.
-        ArrayList<Agent> unselectedAgents = new ArrayList<>(agents);
-
-        // Agents who mutated can't do social learning.
-        int learningSize = numberOfAgentsToEvolve;
-        if (unselectedAgents.size() < learningSize) {
-            learningSize = unselectedAgents.size();
-        }
+        int learningSize = Math.min(numberOfAgentsToEvolve, totalAgents);
         for (int i = 0; i < learningSize; i++) {
-            // Assign the selected agent another agents performance to 'retrospectively' observe.
-            int observedPerformance = ResourceExchangeArena.random.nextInt(totalAgents);
+            CounterBasedRandom.jump(ResourceExchangeArena.random(), run, day, 0, CounterBasedRandom.LEARNING, i + 1);
+
+            int observedPerformance;
+            Agent learningAgent;
+            if (topology != null) {
+                learningAgent = agents.get(selectLearner(i, totalAgents));
 
-            // Select an agent to learn.
-            Agent learningAgent = unselectedAgents.get(ResourceExchangeArena.random.nextInt(unselectedAgents.size()));
+                // Assign the selected agent one of its neighbours performance to 'retrospectively' observe.
+                int degree = topology.degree(learningAgent.agentID);
+                if (degree == 0) continue;
+                observedPerformance = topology.neighbour(learningAgent.agentID,
+                        ResourceExchangeArena.random().nextInt(degree)) - 1;
+            } else {
+                // Assign the selected agent another agents performance to 'retrospectively' observe.
+                observedPerformance = ResourceExchangeArena.random().nextInt(totalAgents);
 
-            // Ensure the agent altering its strategy doesn't copy itself.
-            while (learningAgent.agentID == observedPerformance)
-                observedPerformance = ResourceExchangeArena.random.nextInt(totalAgents);
+                // Select an agent to learn from those that haven't yet been selected.
+                learningAgent = agents.get(selectLearner(i, totalAgents));
+
+                // Ensure the agent altering its strategy doesn't copy itself.
+                while (learningAgent.agentID - 1 == observedPerformance)
+                    observedPerformance = ResourceExchangeArena.random().nextInt(totalAgents);
+            }
 
             // Copy the observed agents strategy if it is better than its own, with likelihood dependent on the
             // difference between the agents satisfaction and the observed satisfaction.
-            double learningAgentSatisfaction = learningAgent.calculateSatisfaction(null);
-            double observedAgentSatisfaction = previousPerformances[observedPerformance][1];
+            double learningAgentSatisfaction = satisfactions[learningAgent.agentID - 1];
+            double observedAgentSatisfaction = satisfactions[observedPerformance];
             if (Math.round(learningAgentSatisfaction * slotsPerAgent) < Math.round(observedAgentSatisfaction * slotsPerAgent)) {
                 double difference = observedAgentSatisfaction - learningAgentSatisfaction;
                 if (difference >= 0) {
@@ -59,15 +96,28 @@ class SocialLearning {
                     double learningChance = 1 / (1 + (Math.exp(-beta * difference)));
                     double normalisedLearningChance = (learningChance * 2) - 1;
 
-                    double threshold = ResourceExchangeArena.random.nextDouble();
+                    double threshold = ResourceExchangeArena.random().nextDouble();
 
                     if (normalisedLearningChance > threshold) {
-                        int newType = (int) Math.round(previousPerformances[observedPerformance][0]);
-                        learningAgent.setType(newType);
+                        learningAgent.setType(previousTypes[observedPerformance]);
                     }
                 }
             }
-            unselectedAgents.remove(learningAgent);
         }
     }
+
+    /**
+     * Takes the next step of the partial Fisher–Yates shuffle over the positions of the {@link Agent}s.
+     *
+     * @param i           {@link Integer} value representing the number of {@link Agent}s already selected today.
+     * @param totalAgents {@link Integer} value representing the number of {@link Agent}s in the population.
+     * @return The position of an {@link Agent} that hasn't yet been selected.
+     */
+    private int selectLearner(int i, int totalAgents) {
+        int selected = i + ResourceExchangeArena.random().nextInt(totalAgents - i);
+        int position = learnerOrder[selected];
+        learnerOrder[selected] = learnerOrder[i];
+        learnerOrder[i] = position;
+        return position;
+    }
 }
@@ -0,0 +1,399 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+class SweepCoordinator {
+    // The number of times an environment is handed out before its failures are taken to be its own.
+    static final int MAX_ATTEMPTS = 3;
+    // The number of seconds without even a heartbeat after which a worker is taken to be hung, several heartbeats long
+    // so that a worker slowed by garbage collection isn't dropped.
+    static final int WORKER_TIMEOUT_SECONDS = 6 * SweepWorker.HEARTBEAT_SECONDS;
+
+    private final ServerSocket serverSocket;
+    private final int initialWorkers;
+    private final String maxHeap;
+    private final ArrayList<Process> workers = new ArrayList<>();
+    private final LinkedBlockingDeque<WorkUnit> pending = new LinkedBlockingDeque<>();
+
+    private int submitted;
+    private int completed;
+    private int workersStarted;
+    private int workersLost;
+    private String failure;
+    private volatile boolean finished;
+
+    /**
+     * Shares the environments of a parameter sweep between worker processes on this machine. The workers connect to
+     * the coordinator over a local socket and are handed one environment at a time, which they simulate into the same
+     * folders that a single process would have used. An environment is handed to another worker if its worker dies or
+     * stops responding before completing it, and a replacement worker is started in its place. Further workers, started
+     * by hand with {@link SweepWorker}, can join the sweep through the port that is printed when it starts.
+     *
+     * @param workers {@link Integer} value representing the number of worker processes to start.
+     * @param maxHeap {@link String} representing the maximum heap of each worker, e.g. "8g", or empty for the default.
+     * @throws IOException If the coordinator's socket can't be opened or a worker can't be started.
+     */
+    SweepCoordinator(int workers, @NotNull String maxHeap) throws IOException {
+        this.initialWorkers = workers;
+        this.maxHeap = maxHeap;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        System.out.println("Coordinating the sweep on port " + serverSocket.getLocalPort());
+
+        Thread acceptor = new Thread(this::accept, "sweep-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        for (int worker = 0; worker < workers; worker++) {
+            startWorker();
+        }
+    }
+
+    /**
+     * Queues an environment to be simulated by the next free worker.
+     *
+     * @param unit The environment and the state of the sweep when it would have begun.
+     */
+    synchronized void submit(@NotNull WorkUnit unit) {
+        unit.id = submitted++;
+        pending.add(unit);
+    }
+
+    /**
+     * Waits for every environment that has been submitted to be simulated, then stops the workers.
+     *
+     * @throws IOException If an environment failed on every attempt.
+     */
+    void finish() throws IOException {
+        try {
+            synchronized (this) {
+                while (completed < submitted && failure == null) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the workers.");
+        } finally {
+            finished = true;
+            serverSocket.close();
+            synchronized (this) {
+                for (Process worker : workers) {
+                    try {
+                        if (!worker.waitFor(10, TimeUnit.SECONDS)) worker.destroy();
+                    } catch (InterruptedException e) {
+                        worker.destroy();
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+        if (failure != null) throw new IOException(failure);
+    }
+
+    /**
+     * Starts another worker process with this process's Java and class path, which connects back to the coordinator.
+     */
+    private synchronized void startWorker() throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (!maxHeap.isEmpty()) command.add("-Xmx" + maxHeap);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SweepWorker.class.getName());
+        command.add(String.valueOf(serverSocket.getLocalPort()));
+
+        // The workers report what they simulate to the coordinator, so only their errors are shown.
+        Process worker = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        workers.add(worker);
+        workersStarted++;
+        int workerNumber = workersStarted;
+        worker.onExit().thenRun(() -> workerExited(workerNumber, worker));
+    }
+
+    /**
+     * Replaces a worker that died while environments remain, unless workers keep dying, in which case the sweep fails.
+     */
+    private void workerExited(int workerNumber, @NotNull Process worker) {
+        if (finished) return;
+        System.out.println("Worker " + workerNumber + " exited with status " + worker.exitValue());
+        synchronized (this) {
+            workers.remove(worker);
+            workersLost++;
+            if (workersLost >= initialWorkers * MAX_ATTEMPTS) {
+                fail("Workers keep exiting, the last with status " + worker.exitValue() + ".");
+                return;
+            }
+        }
+        try {
+            startWorker();
+        } catch (IOException e) {
+            fail("A replacement worker couldn't be started: " + e.getMessage());
+        }
+    }
+
+    private void accept() {
+        while (!finished) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serve(socket), "sweep-worker");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // The socket is closed once the sweep is finished.
+                if (!finished) fail("The coordinator's socket failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hands environments to a single connected worker until the sweep is finished or the worker is lost, in which case
+     * the environment it was simulating is returned to the front of the queue. A worker that isn't heard from for
+     * {@link #WORKER_TIMEOUT_SECONDS} is dropped, and stopped if the coordinator started it.
+     */
+    private void serve(@NotNull Socket socket) {
+        WorkUnit unit = null;
+        long workerProcess = -1;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            socket.setSoTimeout(WORKER_TIMEOUT_SECONDS * 1000);
+            String ready = in.readLine();
+            if (ready == null || !ready.matches(SweepWorker.READY + "\\d+")) throw new IOException("Not a worker.");
+            workerProcess = Long.parseLong(ready.substring(SweepWorker.READY.length()));
+
+            while (!finished) {
+                unit = pending.poll(1, TimeUnit.SECONDS);
+                if (unit == null) continue;
+                unit.attempts++;
+                Utilities.write(out, unit.encode(), "\n");
+                out.flush();
+
+                // The worker's heartbeats, including any sent while it was waiting, only show that it is still alive.
+                String reply = in.readLine();
+                while (SweepWorker.HEARTBEAT.equals(reply)) reply = in.readLine();
+                if (reply == null) throw new IOException("Connection closed.");
+                if (reply.startsWith(SweepWorker.DONE)) {
+                    completed(unit);
+                } else {
+                    // The worker survived, so the environment failed by itself and is unlikely to succeed elsewhere.
+                    fail("Environment " + unit.folder + "/" + unit.fileName + " failed: "
+                            + reply.substring(SweepWorker.FAILED.length()));
+                }
+                unit = null;
+            }
+            Utilities.write(out, SweepWorker.STOP, "\n");
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SocketTimeoutException e) {
+            System.out.println("Worker process " + workerProcess + " stopped responding and has been dropped.");
+            stopWorker(workerProcess);
+        } catch (IOException e) {
+            // The worker was lost, it may have died or been killed.
+        } finally {
+            if (unit != null) reassign(unit);
+        }
+    }
+
+    /**
+     * Stops a hung worker process if it was started by the coordinator, which then replaces it as if it had died.
+     * Workers that joined by hand are only disconnected.
+     */
+    private synchronized void stopWorker(long workerProcess) {
+        for (Process worker : workers) {
+            if (worker.pid() == workerProcess) worker.destroyForcibly();
+        }
+    }
+
+    private synchronized void completed(@NotNull WorkUnit unit) {
+        completed++;
+        System.out.println("Environment " + unit.folder + "/" + unit.fileName + " complete (" + completed + " / "
+                + submitted + ")");
+        ProgressServer.environmentCompleted();
+        notifyAll();
+    }
+
+    private synchronized void reassign(@NotNull WorkUnit unit) {
+        if (unit.attempts >= MAX_ATTEMPTS) {
+            fail("Environment " + unit.folder + "/" + unit.fileName + " was lost by " + unit.attempts + " workers.");
+        } else {
+            System.out.println("Environment " + unit.folder + "/" + unit.fileName
+                    + " was lost by its worker and will be reassigned.");
+            pending.addFirst(unit);
+        }
+    }
+
+    private synchronized void fail(String message) {
+        if (failure == null) failure = message;
+        notifyAll();
+    }
+
+    /**
+     * A single environment of the sweep, with the parameters that vary between environments and the seed it begins
+     * from. The parameters common to every environment are read from the worker's own {@link ResourceExchangeArena}.
+     */
+    static class WorkUnit {
+        final String folder;
+        final String fileName;
+        final int evolvePercentage;
+        final int[] agentTypes;
+        final boolean socialCapital;
+        final boolean singleAgentType;
+        final int selectedSingleAgentType;
+        final long seed;
+        final String scenarioBankFile;
+        final long scenarioBankSeed;
+        final String profileLibraryFile;
+        final long profileLibrarySeed;
+        final String topologySource;
+        final long topologySeed;
+
+        private int id;
+        private int attempts;
+
+        /**
+         * @param folder                  {@link String} representing the folder that the set's data is stored in.
+         * @param fileName                {@link String} detailing specifics about the simulation environment.
+         * @param evolvePercentage        {@link Integer} value representing the percentage of agents that may change strategy each day.
+         * @param agentTypes              {@link Integer} array containing the agent types that the simulation will begin with.
+         * @param socialCapital           {@link Boolean} value that determines whether social agents will utilise social capital.
+         * @param singleAgentType         {@link Boolean} value specifying whether only a single agent type should exist.
+         * @param selectedSingleAgentType {@link Integer} value representing the single agent type when {@code singleAgentType} is true.
+         * @param seed                    {@link Long} value that the environment's first run begins from.
+         * @param scenarioBank            The bank of scenarios shared by every environment, or {@code null}.
+         * @param profileLibrary          The library of households shared by every environment, or {@code null}.
+         * @param topology                The network shared by every environment, or {@code null}.
+         */
+        WorkUnit(
+                String folder,
+                String fileName,
+                int evolvePercentage,
+                int[] agentTypes,
+                boolean socialCapital,
+                boolean singleAgentType,
+                int selectedSingleAgentType,
+                long seed,
+                ScenarioBank scenarioBank,
+                ProfileLibrary profileLibrary,
+                Topology topology
+        ) {
+            this(folder, fileName, evolvePercentage, agentTypes, socialCapital, singleAgentType,
+                    selectedSingleAgentType, seed,
+                    scenarioBank == null ? "" : scenarioBank.file().toString(),
+                    scenarioBank == null ? 0 : scenarioBank.seed(),
+                    profileLibrary == null ? "" : profileLibrary.file().toString(),
+                    profileLibrary == null ? 0 : profileLibrary.seed(),
+                    topology == null ? "" : topology.source(),
+                    topology == null ? 0 : topology.seed());
+        }
+
+        private WorkUnit(
+                String folder,
+                String fileName,
+                int evolvePercentage,
+                int[] agentTypes,
+                boolean socialCapital,
+                boolean singleAgentType,
+                int selectedSingleAgentType,
+                long seed,
+                String scenarioBankFile,
+                long scenarioBankSeed,
+                String profileLibraryFile,
+                long profileLibrarySeed,
+                String topologySource,
+                long topologySeed
+        ) {
+            this.folder = folder;
+            this.fileName = fileName;
+            this.evolvePercentage = evolvePercentage;
+            this.agentTypes = agentTypes;
+            this.socialCapital = socialCapital;
+            this.singleAgentType = singleAgentType;
+            this.selectedSingleAgentType = selectedSingleAgentType;
+            this.seed = seed;
+            this.scenarioBankFile = scenarioBankFile;
+            this.scenarioBankSeed = scenarioBankSeed;
+            this.profileLibraryFile = profileLibraryFile;
+            this.profileLibrarySeed = profileLibrarySeed;
+            this.topologySource = topologySource;
+            this.topologySeed = topologySeed;
+        }
+
+        /**
+         * @return The unit as a single line of tab separated fields, as sent to the workers.
+         */
+        String encode() {
+            return String.join("\t",
+                    String.valueOf(id),
+                    folder,
+                    fileName,
+                    String.valueOf(evolvePercentage),
+                    Arrays.stream(agentTypes).mapToObj(String::valueOf).collect(Collectors.joining(",")),
+                    String.valueOf(socialCapital),
+                    String.valueOf(singleAgentType),
+                    String.valueOf(selectedSingleAgentType),
+                    String.valueOf(seed),
+                    scenarioBankFile,
+                    String.valueOf(scenarioBankSeed),
+                    profileLibraryFile,
+                    String.valueOf(profileLibrarySeed),
+                    topologySource,
+                    String.valueOf(topologySeed));
+        }
+
+        /**
+         * @param line A unit encoded by {@link #encode()}.
+         * @return The decoded unit.
+         */
+        static @NotNull WorkUnit decode(@NotNull String line) {
+            String[] fields = line.split("\t", -1);
+            WorkUnit unit = new WorkUnit(
+                    fields[1],
+                    fields[2],
+                    Integer.parseInt(fields[3]),
+                    Arrays.stream(fields[4].split(",")).mapToInt(Integer::parseInt).toArray(),
+                    Boolean.parseBoolean(fields[5]),
+                    Boolean.parseBoolean(fields[6]),
+                    Integer.parseInt(fields[7]),
+                    Long.parseLong(fields[8]),
+                    fields[9],
+                    Long.parseLong(fields[10]),
+                    fields[11],
+                    Long.parseLong(fields[12]),
+                    fields[13],
+                    Long.parseLong(fields[14])
+            );
+            unit.id = Integer.parseInt(fields[0]);
+            return unit;
+        }
+
+        /**
+         * @return {@link Integer} value identifying the unit within the sweep.
+         */
+        int id() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class SweepDaemon {
+    // Spec files are picked up by their suffix, and renamed as they are queued, completed or fail.
+    static final String SPEC_SUFFIX = ".properties";
+    static final String QUEUED_SUFFIX = ".queued";
+    static final String DONE_SUFFIX = ".done";
+    static final String FAILED_SUFFIX = ".failed";
+    // A spec sent over the socket ends at the end of the stream or at a line holding only this.
+    static final String END_OF_SPEC = "end";
+    // The number of milliseconds between looks at the spec folder.
+    static final int POLL_MILLIS = 500;
+
+    private static final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private static SweepSpec defaults;
+    private static int socketSpecs;
+
+    /**
+     * Keeps a JVM running that simulates sweeps as they arrive, so that each sweep runs on an engine that the JIT has
+     * already compiled rather than paying for a cold start. A sweep is described by a spec in {@link Properties} format,
+     * whose keys are the names of the parameters in {@link resource_exchange_arena.parameters.UserParameters} that it
+     * overrides, see {@link SweepSpec#KEYS}. Parameters that a spec doesn't name keep their compiled values.
+     * <p>
+     * Specs are given as '.properties' files in the spec folder, which are renamed to '.queued' when they are read and
+     * to '.done' or '.failed' when their sweep ends, with the outcome appended as a comment. Specs can also be sent to
+     * the port, if one is given, e.g. {@code printf 'POPULATION_SIZE=48\nSIMULATION_RUNS=5\nend\n' | nc localhost 7070},
+     * and the connection is held open until the sweep ends and its outcome has been sent back. Sweeps run one at a time
+     * in the order that their specs arrive.
+     *
+     * @param args The folder that spec files are read from, then optionally the local port to accept specs on.
+     * @throws IOException If the spec folder or the port can't be used.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: SweepDaemon <spec folder> [port]");
+            return;
+        }
+        Path specFolder = Path.of(args[0]);
+        Files.createDirectories(specFolder);
+        defaults = new SweepSpec();
+
+        warmUp();
+
+        Thread watcher = new Thread(() -> watch(specFolder), "spec-folder");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        if (args.length > 1) {
+            ServerSocket serverSocket = new ServerSocket(Integer.parseInt(args[1]), 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(() -> accept(serverSocket), "spec-socket");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            System.out.println("Accepting specs on port " + serverSocket.getLocalPort());
+        }
+        System.out.println("Waiting for specs in " + specFolder.toAbsolutePath());
+
+        if (ResourceExchangeArena.PROGRESS_PORT != 0) ProgressServer.start(ResourceExchangeArena.PROGRESS_PORT);
+        try {
+            while (true) {
+                Job job = queue.take();
+                job.report.accept(run(job));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ProgressServer.stop();
+        }
+    }
+
+    /**
+     * Simulates a small sweep that is thrown away, so that the JIT has compiled the engine before the first real spec.
+     */
+    private static void warmUp() throws IOException {
+        Path warmUpFolder = Files.createTempDirectory("sweep-warm-up");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("SEED", "0");
+            properties.setProperty("RESULTS_FOLDER", warmUpFolder.toString());
+            properties.setProperty("SIMULATION_RUNS", "5");
+            properties.setProperty("DAYS", "10");
+            properties.setProperty("COMPARISON_LEVEL", "0");
+            properties.setProperty("PYTHON_EXE", "");
+            System.out.println(run(new Job("warm-up", defaults.with(properties), outcome -> { })));
+        } finally {
+            try (Stream<Path> paths = Files.walk(warmUpFolder)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * @return The outcome of the job's sweep, to be reported to whoever sent its spec.
+     */
+    private static @NotNull String run(@NotNull Job job) {
+        long start = System.nanoTime();
+        try {
+            job.spec.apply();
+            ResourceExchangeArena.runSweep(0);
+            return "Complete: " + job.name + " in " + String.format("%.3f", (System.nanoTime() - start) / 1e9)
+                    + " s, " + ResourceExchangeArena.FOLDER_NAME;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return "Failed: " + job.name + ", " + String.valueOf(e).replace('\n', ' ');
+        }
+    }
+
+    /**
+     * Queues each spec file that appears in the spec folder, in the order of their names.
+     */
+    private static void watch(@NotNull Path specFolder) {
+        while (true) {
+            ArrayList<Path> specFiles = new ArrayList<>();
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(specFolder, "*" + SPEC_SUFFIX)) {
+                paths.forEach(specFiles::add);
+            } catch (IOException e) {
+                System.out.println("Unable to read the spec folder: " + e.getMessage());
+            }
+            specFiles.sort(Comparator.naturalOrder());
+            for (Path specFile : specFiles) {
+                try {
+                    queueFile(specFile);
+                } catch (IOException e) {
+                    System.out.println("Unable to queue " + specFile + ": " + e.getMessage());
+                }
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void queueFile(@NotNull Path specFile) throws IOException {
+        String fileName = specFile.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - SPEC_SUFFIX.length());
+        Path queuedFile = specFile.resolveSibling(name + QUEUED_SUFFIX);
+
+        SweepSpec spec;
+        try (Reader reader = Files.newBufferedReader(specFile)) {
+            spec = defaults.with(reader);
+        } catch (IllegalArgumentException e) {
+            finishFile(specFile, specFile.resolveSibling(name + FAILED_SUFFIX), "Rejected: " + e.getMessage());
+            return;
+        }
+        Files.move(specFile, queuedFile, StandardCopyOption.REPLACE_EXISTING);
+        queue.add(new Job(name, spec, outcome -> {
+            try {
+                Path finishedFile = queuedFile.resolveSibling(
+                        name + (outcome.startsWith("Complete") ? DONE_SUFFIX : FAILED_SUFFIX));
+                finishFile(queuedFile, finishedFile, outcome);
+            } catch (IOException e) {
+                System.out.println("Unable to record the outcome of " + name + ": " + e.getMessage());
+            }
+        }));
+        System.out.println("Queued " + name);
+    }
+
+    /**
+     * Appends the outcome of a spec to its file as a comment, and renames the file to show how it ended.
+     */
+    private static void finishFile(@NotNull Path specFile, @NotNull Path finishedFile, String outcome)
+            throws IOException {
+        Files.writeString(specFile, "\n# " + outcome + "\n", StandardOpenOption.APPEND);
+        Files.move(specFile, finishedFile, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println(outcome);
+    }
+
+    private static void accept(@NotNull ServerSocket serverSocket) {
+        while (true) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> queueSocket(socket), "spec-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                System.out.println("No longer accepting specs on the port: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a spec from a connection and queues it, the connection is closed once its sweep has ended.
+     */
+    private static void queueSocket(@NotNull Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            StringBuilder text = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null && !line.trim().equals(END_OF_SPEC)) {
+                text.append(line).append('\n');
+            }
+
+            String name;
+            synchronized (SweepDaemon.class) {
+                name = "socket-" + ++socketSpecs;
+            }
+            SweepSpec spec;
+            try {
+                spec = defaults.with(new StringReader(text.toString()));
+            } catch (IllegalArgumentException e) {
+                Utilities.write(out, "Rejected: ", String.valueOf(e.getMessage()), "\n");
+                out.flush();
+                socket.close();
+                return;
+            }
+
+            Utilities.write(out, "Queued ", name, ", ", String.valueOf(queue.size()), " ahead\n");
+            out.flush();
+            queue.add(new Job(name, spec, outcome -> {
+                System.out.println(outcome);
+                try (socket) {
+                    Utilities.write(out, outcome, "\n");
+                    out.flush();
+                } catch (IOException e) {
+                    // The sender stopped waiting for the outcome.
+                }
+            }));
+        } catch (IOException e) {
+            System.out.println("Unable to read a spec from the port: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A sweep waiting to be simulated.
+     */
+    private static final class Job {
+        final String name;
+        final SweepSpec spec;
+        final Consumer<String> report;
+
+        /**
+         * @param name   {@link String} identifying the sweep in the daemon's output.
+         * @param spec   The parameters of the sweep.
+         * @param report Receives the outcome of the sweep once it has ended.
+         */
+        Job(String name, SweepSpec spec, Consumer<String> report) {
+            this.name = name;
+            this.spec = spec;
+            this.report = report;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+import resource_exchange_arena.parameters.DemandCurves;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+class SweepSpec {
+    // The parameters that a spec can set, named as in UserParameters.
+    static final List<String> KEYS = List.of(
+            "SEED", "RESULTS_FOLDER", "POPULATION_SIZE", "SLOTS_PER_AGENT", "UNIQUE_TIME_SLOTS", "DAYS", "SIMULATION_RUNS",
+            "DEMAND_CURVES", "AGENT_TYPES_ARRAY", "PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY", "COMPARISON_LEVEL",
+            "USE_SOCIAL_CAPITAL", "SINGLE_AGENT_TYPE", "SELECTED_SINGLE_AGENT_TYPE", "COUNTER_BASED_RANDOM", "EXCHANGE_MECHANISM",
+            "TRADING_CYCLES", "RESULT_CACHE_FOLDER", "PYTHON_EXE", "PYTHON_PATH"
+    );
+
+    private final Long seed;
+    private final String resultsFolder;
+    private final int populationSize;
+    private final int slotsPerAgent;
+    private final int uniqueTimeSlots;
+    private final int days;
+    private final int simulationRuns;
+    private final double[][] demandCurves;
+    private final int[][] agentTypesArray;
+    private final int[] evolvePercentages;
+    private final int comparisonLevel;
+    private final boolean socialCapital;
+    private final boolean singleAgentType;
+    private final int selectedSingleAgentType;
+    private final boolean counterBasedRandom;
+    private final String exchangeMechanism;
+    private final boolean tradingCycles;
+    private final String resultCacheFolder;
+    private final String pythonExe;
+    private final String pythonPath;
+
+    /**
+     * The parameters of a sweep, as set in {@link resource_exchange_arena.parameters.UserParameters} when the spec is
+     * created. Specs given to a {@link SweepDaemon} start from these and override the parameters they name, so that
+     * every sweep starts from the same defaults whatever the sweeps before it changed.
+     */
+    SweepSpec() {
+        seed = null;
+        resultsFolder = String.valueOf(Path.of(ResourceExchangeArena.FOLDER_NAME).getParent());
+        populationSize = ResourceExchangeArena.POPULATION_SIZE;
+        slotsPerAgent = ResourceExchangeArena.SLOTS_PER_AGENT;
+        uniqueTimeSlots = ResourceExchangeArena.UNIQUE_TIME_SLOTS;
+        days = ResourceExchangeArena.DAYS;
+        simulationRuns = ResourceExchangeArena.SIMULATION_RUNS;
+        demandCurves = ResourceExchangeArena.DEMAND_CURVES;
+        agentTypesArray = ResourceExchangeArena.AGENT_TYPES_ARRAY;
+        evolvePercentages = ResourceExchangeArena.PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY;
+        comparisonLevel = ResourceExchangeArena.COMPARISON_LEVEL;
+        socialCapital = ResourceExchangeArena.USE_SOCIAL_CAPITAL;
+        singleAgentType = ResourceExchangeArena.SINGLE_AGENT_TYPE;
+        selectedSingleAgentType = ResourceExchangeArena.SELECTED_SINGLE_AGENT_TYPE;
+        counterBasedRandom = ResourceExchangeArena.COUNTER_BASED_RANDOM;
+        exchangeMechanism = ResourceExchangeArena.EXCHANGE_MECHANISM;
+        tradingCycles = ResourceExchangeArena.TRADING_CYCLES;
+        resultCacheFolder = ResourceExchangeArena.RESULT_CACHE_FOLDER;
+        pythonExe = ResourceExchangeArena.PYTHON_EXE;
+        pythonPath = ResourceExchangeArena.PYTHON_PATH;
+    }
+
+    private SweepSpec(@NotNull SweepSpec defaults, @NotNull Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown parameter '" + key + "', a spec can set " + KEYS + ".");
+            }
+        }
+        try {
+            seed = properties.containsKey("SEED") ? Long.valueOf(property(properties, "SEED")) : defaults.seed;
+            resultsFolder = properties.getProperty("RESULTS_FOLDER", defaults.resultsFolder).trim();
+            populationSize = integer(properties, "POPULATION_SIZE", defaults.populationSize);
+            slotsPerAgent = integer(properties, "SLOTS_PER_AGENT", defaults.slotsPerAgent);
+            uniqueTimeSlots = integer(properties, "UNIQUE_TIME_SLOTS", defaults.uniqueTimeSlots);
+            days = integer(properties, "DAYS", defaults.days);
+            simulationRuns = integer(properties, "SIMULATION_RUNS", defaults.simulationRuns);
+            demandCurves = properties.containsKey("DEMAND_CURVES")
+                    ? Arrays.stream(property(properties, "DEMAND_CURVES").split(","))
+                    .map(name -> DemandCurves.byName(name.trim())).toArray(double[][]::new)
+                    : defaults.demandCurves;
+            agentTypesArray = properties.containsKey("AGENT_TYPES_ARRAY")
+                    ? Arrays.stream(property(properties, "AGENT_TYPES_ARRAY").split(";"))
+                    .map(ratio -> Arrays.stream(ratio.split(":")).mapToInt(SweepSpec::agentType).toArray())
+                    .toArray(int[][]::new)
+                    : defaults.agentTypesArray;
+            evolvePercentages = properties.containsKey("PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY")
+                    ? Arrays.stream(property(properties, "PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY").split(","))
+                    .mapToInt(percentage -> Integer.parseInt(percentage.trim())).toArray()
+                    : defaults.evolvePercentages;
+            comparisonLevel = integer(properties, "COMPARISON_LEVEL", defaults.comparisonLevel);
+            socialCapital = bool(properties, "USE_SOCIAL_CAPITAL", defaults.socialCapital);
+            singleAgentType = bool(properties, "SINGLE_AGENT_TYPE", defaults.singleAgentType);
+            selectedSingleAgentType = properties.containsKey("SELECTED_SINGLE_AGENT_TYPE")
+                    ? agentType(property(properties, "SELECTED_SINGLE_AGENT_TYPE"))
+                    : defaults.selectedSingleAgentType;
+            counterBasedRandom = bool(properties, "COUNTER_BASED_RANDOM", defaults.counterBasedRandom);
+            exchangeMechanism = properties.getProperty("EXCHANGE_MECHANISM", defaults.exchangeMechanism).trim();
+            tradingCycles = bool(properties, "TRADING_CYCLES", defaults.tradingCycles);
+            resultCacheFolder = properties.getProperty("RESULT_CACHE_FOLDER", defaults.resultCacheFolder).trim();
+            // An empty python executable skips the visualisation, which would otherwise dominate short sweeps.
+            pythonExe = properties.containsKey("PYTHON_EXE")
+                    ? emptyToNull(property(properties, "PYTHON_EXE"))
+                    : defaults.pythonExe;
+            pythonPath = properties.getProperty("PYTHON_PATH", defaults.pythonPath).trim();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in spec: " + e.getMessage(), e);
+        }
+        if (populationSize < 1 || slotsPerAgent < 1 || days < 1 || simulationRuns < 1) {
+            throw new IllegalArgumentException("The population, slots per agent, days and runs must all be positive.");
+        }
+        // Requests are of distinct time slots, and time slots are stored as shorts by the trace and scenario bank.
+        if (uniqueTimeSlots < slotsPerAgent || uniqueTimeSlots > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("The unique time slots must be between the slots per agent and "
+                    + Short.MAX_VALUE + ".");
+        }
+    }
+
+    /**
+     * @param properties The parameters to override, keyed by their names in
+     *                   {@link resource_exchange_arena.parameters.UserParameters}.
+     * @return A spec with these parameters overridden and the rest as in this spec.
+     * @throws IllegalArgumentException If a parameter is unknown or its value is invalid.
+     */
+    SweepSpec with(@NotNull Properties properties) {
+        return new SweepSpec(this, properties);
+    }
+
+    /**
+     * @param reader The text of a spec, in {@link Properties} format.
+     * @return A spec with the parameters it names overridden and the rest as in this spec.
+     * @throws IOException On input error.
+     */
+    SweepSpec with(@NotNull Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        return with(properties);
+    }
+
+    /**
+     * Sets the parameters of {@link ResourceExchangeArena} to those of this spec, ready for
+     * {@link ResourceExchangeArena#runSweep(int)}. A spec without a seed takes the current time, as a new set would.
+     */
+    void apply() {
+        ResourceExchangeArena.seed = seed != null ? seed : System.currentTimeMillis();
+        ResourceExchangeArena.FOLDER_NAME = resultsFolder + "/Set_" + ResourceExchangeArena.seed;
+        ResourceExchangeArena.POPULATION_SIZE = populationSize;
+        ResourceExchangeArena.SLOTS_PER_AGENT = slotsPerAgent;
+        ResourceExchangeArena.UNIQUE_TIME_SLOTS = uniqueTimeSlots;
+        ResourceExchangeArena.DAYS = days;
+        ResourceExchangeArena.SIMULATION_RUNS = simulationRuns;
+        ResourceExchangeArena.DEMAND_CURVES = demandCurves;
+        ResourceExchangeArena.AGENT_TYPES_ARRAY = agentTypesArray;
+        ResourceExchangeArena.PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY = evolvePercentages;
+        ResourceExchangeArena.COMPARISON_LEVEL = comparisonLevel;
+        ResourceExchangeArena.USE_SOCIAL_CAPITAL = socialCapital;
+        ResourceExchangeArena.SINGLE_AGENT_TYPE = singleAgentType;
+        ResourceExchangeArena.SELECTED_SINGLE_AGENT_TYPE = selectedSingleAgentType;
+        ResourceExchangeArena.COUNTER_BASED_RANDOM = counterBasedRandom;
+        ResourceExchangeArena.EXCHANGE_MECHANISM = exchangeMechanism;
+        ResourceExchangeArena.TRADING_CYCLES = tradingCycles;
+        ResourceExchangeArena.RESULT_CACHE_FOLDER = resultCacheFolder;
+        ResourceExchangeArena.PYTHON_EXE = pythonExe;
+        ResourceExchangeArena.PYTHON_PATH = pythonPath;
+    }
+
+    private static String property(@NotNull Properties properties, String key) {
+        return properties.getProperty(key).trim();
+    }
+
+    private static int integer(@NotNull Properties properties, String key, int defaultValue) {
+        return properties.containsKey(key) ? Integer.parseInt(property(properties, key)) : defaultValue;
+    }
+
+    private static boolean bool(@NotNull Properties properties, String key, boolean defaultValue) {
+        return properties.containsKey(key) ? Boolean.parseBoolean(property(properties, key)) : defaultValue;
+    }
+
+    /**
+     * @param name An agent type, either 'SELFISH' or 'SOCIAL' in any case, or its number.
+     * @return The {@link Agent} type.
+     */
+    private static int agentType(@NotNull String name) {
+        String trimmed = name.trim();
+        if (trimmed.isEmpty()) throw new IllegalArgumentException("An agent type in the spec is empty.");
+        return Inflect.getAgentType(trimmed.substring(0, 1).toUpperCase() + trimmed.substring(1).toLowerCase());
+    }
+
+    private static String emptyToNull(@NotNull String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
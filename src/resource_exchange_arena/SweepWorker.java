@@ -0,0 +1,132 @@
+package resource_exchange_arena;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SweepWorker {
+    // The messages exchanged with the coordinator, besides the work units themselves.
+    static final String STOP = "stop";
+    static final String READY = "ready ";
+    static final String HEARTBEAT = "heartbeat";
+    static final String DONE = "done ";
+    static final String FAILED = "failed ";
+    // The number of seconds between the heartbeats that tell the coordinator that the worker is still alive.
+    static final int HEARTBEAT_SECONDS = 10;
+
+    /**
+     * Simulates environments handed out by a {@link SweepCoordinator} until it has none left. Workers are usually
+     * started by the coordinator, but more can join a sweep running on the same machine, for example with a larger
+     * heap:
+     * <p>
+     * {@code java -Xmx16g -cp <class path> resource_exchange_arena.SweepWorker <port>}
+     *
+     * @param args The port that the coordinator is listening on.
+     * @throws IOException If the coordinator can't be reached.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: SweepWorker <coordinator port>");
+            return;
+        }
+
+        // Every environment that replays a bank or draws from a library shares it, so each is only mapped once, and
+        // every environment in a network shares it, so each is only built once.
+        HashMap<String, ScenarioBank> scenarioBanks = new HashMap<>();
+        HashMap<String, ProfileLibrary> profileLibraries = new HashMap<>();
+        HashMap<String, Topology> topologies = new HashMap<>();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            // The coordinator is told which process the worker is, so that it can stop the worker if it hangs, and is
+            // sent heartbeats so that a worker simulating a long environment isn't mistaken for a hung one.
+            send(out, READY + ProcessHandle.current().pid());
+            ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeat.scheduleAtFixedRate(() -> {
+                try {
+                    send(out, HEARTBEAT);
+                } catch (IOException e) {
+                    // The coordinator is gone, which the worker finds out when it next reads from it.
+                }
+            }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(STOP)) {
+                SweepCoordinator.WorkUnit unit = SweepCoordinator.WorkUnit.decode(line);
+                try {
+                    ScenarioBank scenarioBank = unit.scenarioBankFile.isEmpty() ? null
+                            : scenarioBanks.computeIfAbsent(unit.scenarioBankFile, file -> new ScenarioBank(
+                                    Path.of(file),
+                                    unit.scenarioBankSeed,
+                                    ResourceExchangeArena.SIMULATION_RUNS,
+                                    ResourceExchangeArena.SCENARIO_BANK_DAYS));
+                    ProfileLibrary profileLibrary = unit.profileLibraryFile.isEmpty() ? null
+                            : profileLibraries.get(unit.profileLibraryFile);
+                    if (profileLibrary == null && !unit.profileLibraryFile.isEmpty()) {
+                        profileLibrary = new ProfileLibrary(
+                                Path.of(unit.profileLibraryFile),
+                                unit.profileLibrarySeed,
+                                ResourceExchangeArena.UNIQUE_TIME_SLOTS,
+                                ResourceExchangeArena.SLOTS_PER_AGENT,
+                                ResourceExchangeArena.PROFILE_CACHE_SIZE);
+                        profileLibraries.put(unit.profileLibraryFile, profileLibrary);
+                    }
+                    Topology topology = unit.topologySource.isEmpty() ? null
+                            : topologies.get(unit.topologySource + "\t" + unit.topologySeed);
+                    if (topology == null && !unit.topologySource.isEmpty()) {
+                        topology = Topology.of(unit.topologySource, ResourceExchangeArena.POPULATION_SIZE,
+                                unit.topologySeed);
+                        topologies.put(unit.topologySource + "\t" + unit.topologySeed, topology);
+                    }
+
+                    // The sweep's state when the environment would have begun in a single process.
+                    ResourceExchangeArena.USE_SOCIAL_CAPITAL = unit.socialCapital;
+                    ResourceExchangeArena.SINGLE_AGENT_TYPE = unit.singleAgentType;
+                    ResourceExchangeArena.SELECTED_SINGLE_AGENT_TYPE = unit.selectedSingleAgentType;
+                    ResourceExchangeArena.setCurrentSeed(unit.seed);
+                    ResourceExchangeArena.setRandom(new CounterBasedRandom(unit.seed));
+
+                    ResourceExchangeArena.runEnvironment(
+                            unit.folder,
+                            scenarioBank,
+                            profileLibrary,
+                            topology,
+                            unit.fileName,
+                            unit.evolvePercentage,
+                            unit.agentTypes
+                    );
+                    send(out, DONE + unit.id());
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    send(out, FAILED + String.valueOf(e).replace('\n', ' '));
+                }
+            }
+            heartbeat.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a single message to the coordinator, which may be written to by the heartbeat at the same time.
+     */
+    private static void send(Writer out, String message) throws IOException {
+        synchronized (out) {
+            Utilities.write(out, message, "\n");
+            out.flush();
+        }
+    }
+}
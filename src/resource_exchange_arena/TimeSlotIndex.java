@@ -0,0 +1,113 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.function.IntPredicate;
+
+class TimeSlotIndex {
+    // Time slots are numbered up to and including the number of unique time slots, as a selection wheel can also
+    // select time slot 0, so there is one value more than there are unique time slots.
+    final int timeSlotValues;
+
+    // Whether a time slot wanted or spare more than once is kept only once.
+    private final boolean distinct;
+
+    // The Agents, and the time slots that each wants and could give away, indexed by agentID - 1.
+    final Agent[] agentsByID;
+    final int[][] wanted;
+    final int[] wantedCount;
+    final int[][] unwanted;
+    final int[] unwantedCount;
+    private final boolean[] matched;
+
+    // The number of Agents placed in the group of each time slot so far.
+    private final int[] filled;
+
+    /**
+     * The time slots that each {@link Agent} wants but hasn't been allocated and has been allocated but doesn't need,
+     * from which the mechanisms that trade between many {@link Agent}s at once find who could trade with whom. The
+     * index is created once per simulation run, and the same buffers are reused every round.
+     *
+     * @param populationSize  {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param slotsPerAgent   {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     * @param distinct        {@link Boolean} value representing whether a time slot wanted or spare more than once is
+     *                        only indexed once.
+     */
+    TimeSlotIndex(int populationSize, int uniqueTimeSlots, int slotsPerAgent, boolean distinct) {
+        timeSlotValues = uniqueTimeSlots + 1;
+        this.distinct = distinct;
+        agentsByID = new Agent[populationSize];
+        wanted = new int[populationSize][slotsPerAgent];
+        wantedCount = new int[populationSize];
+        unwanted = new int[populationSize][slotsPerAgent];
+        unwantedCount = new int[populationSize];
+        matched = new boolean[slotsPerAgent];
+        filled = new int[timeSlotValues];
+    }
+
+    /**
+     * Records the time slots that the {@link Agent} currently wants and could give away.
+     *
+     * @param a The {@link Agent} to index.
+     * @return {@link Integer} value representing the {@link Agent}'s index, its agentID - 1.
+     */
+    int index(@NotNull Agent a) {
+        int id = a.agentID - 1;
+        agentsByID[id] = a;
+        ArrayList<Integer> requested = a.publishRequestedTimeSlots();
+        ArrayList<Integer> allocated = a.publishAllocatedTimeSlots();
+        if (distinct) {
+            wantedCount[id] = Utilities.distinctDifference(requested, allocated, wanted[id], matched);
+            unwantedCount[id] = Utilities.distinctDifference(allocated, requested, unwanted[id], matched);
+        } else {
+            wantedCount[id] = Utilities.difference(requested, allocated, wanted[id], matched);
+            unwantedCount[id] = Utilities.difference(allocated, requested, unwanted[id], matched);
+        }
+        return id;
+    }
+
+    /**
+     * Groups the {@link Agent}s by time slot, each {@link Agent} being placed in the group of every time slot it has,
+     * once for each time it has it. The group of time slot t is held from members[offsets[t]] up to, but not
+     * including, members[offsets[t + 1]], with the {@link Agent}s in the order given.
+     *
+     * @param agents    The indexed {@link Agent}s to group, in the order they are held in each group.
+     * @param timeSlots The time slots of each {@link Agent} to group it by, either {@link #wanted} or {@link #unwanted}.
+     * @param counts    The number of time slots of each {@link Agent}, either {@link #wantedCount} or
+     *                  {@link #unwantedCount}.
+     * @param grouped   Whether the {@link Agent} with the given index is grouped at all.
+     * @param offsets   Filled with the start of each time slot's group, one longer than there are time slot values.
+     * @param members   Receives the index of the {@link Agent} at each position of each group.
+     * @return The members, or a larger array holding them if they didn't fit.
+     */
+    int @NotNull [] group(
+            @NotNull Iterable<Agent> agents,
+            int @NotNull [][] timeSlots,
+            int @NotNull [] counts,
+            @NotNull IntPredicate grouped,
+            int @NotNull [] offsets,
+            int @NotNull [] members
+    ) {
+        for (int timeSlot = 0; timeSlot <= timeSlotValues; timeSlot++) offsets[timeSlot] = 0;
+        for (Agent a : agents) {
+            int id = a.agentID - 1;
+            if (!grouped.test(id)) continue;
+            for (int i = 0; i < counts[id]; i++) offsets[timeSlots[id][i] + 1]++;
+        }
+        for (int timeSlot = 0; timeSlot < timeSlotValues; timeSlot++) offsets[timeSlot + 1] += offsets[timeSlot];
+
+        if (members.length < offsets[timeSlotValues]) members = new int[offsets[timeSlotValues]];
+        for (int timeSlot = 0; timeSlot < timeSlotValues; timeSlot++) filled[timeSlot] = 0;
+        for (Agent a : agents) {
+            int id = a.agentID - 1;
+            if (!grouped.test(id)) continue;
+            for (int i = 0; i < counts[id]; i++) {
+                int timeSlot = timeSlots[id][i];
+                members[offsets[timeSlot] + filled[timeSlot]++] = id;
+            }
+        }
+        return members;
+    }
+}
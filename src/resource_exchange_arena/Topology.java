@@ -0,0 +1,327 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+class Topology {
+    // Names of the generated topologies, any other source is read as an edge list file.
+    static final String GRID = "grid";
+    static final String SMALL_WORLD = "small-world";
+    static final String FEEDER = "feeder";
+
+    private final String source;
+    private final long topologySeed;
+    private final int agents;
+
+    // The neighbours of the Agent with ID i are held in ascending order from neighbours[offsets[i - 1]] up to, but not
+    // including, neighbours[offsets[i]].
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final long checksum;
+
+    // The connected component that each Agent belongs to, indexed by agentID - 1, as no time slot can pass between
+    // Agents in different components however they trade.
+    private final int[] components;
+    private final int componentCount;
+
+    /**
+     * The network of neighbourhoods that the {@link Agent}s live in, where an {@link Agent} can only exchange time
+     * slots with, and learn from, the {@link Agent}s that it shares an edge with. The edges are undirected and are
+     * stored in compressed sparse row form, a single array of every {@link Agent}'s neighbours with the offset at which
+     * each {@link Agent}'s neighbours begin, so the network takes memory in proportion to its edges and an
+     * {@link Agent}'s neighbourhood is read without searching.
+     *
+     * @param source       {@link String} describing where the network came from, as given to {@link #of(String, int, long)}.
+     * @param topologySeed {@link Long} value that a random network was generated from.
+     * @param agents       {@link Integer} value representing the number of {@link Agent}s in the network.
+     * @param edges        The edges of the network, duplicate edges and edges from an {@link Agent} to itself are dropped.
+     */
+    private Topology(String source, long topologySeed, int agents, @NotNull EdgeList edges) {
+        this.source = source;
+        this.topologySeed = topologySeed;
+        this.agents = agents;
+
+        // Each edge is stored once for each of its ends.
+        int[] degrees = new int[agents];
+        for (int i = 0; i < edges.size; i += 2) {
+            if (edges.ends[i] == edges.ends[i + 1]) continue;
+            degrees[edges.ends[i] - 1]++;
+            degrees[edges.ends[i + 1] - 1]++;
+        }
+        int[] starts = new int[agents + 1];
+        for (int agent = 0; agent < agents; agent++) {
+            starts[agent + 1] = starts[agent] + degrees[agent];
+        }
+        int[] filled = Arrays.copyOf(starts, agents);
+        int[] unsorted = new int[starts[agents]];
+        for (int i = 0; i < edges.size; i += 2) {
+            int from = edges.ends[i];
+            int to = edges.ends[i + 1];
+            if (from == to) continue;
+            unsorted[filled[from - 1]++] = to;
+            unsorted[filled[to - 1]++] = from;
+        }
+
+        // Each neighbourhood is sorted so that duplicate edges are next to each other and can be dropped.
+        offsets = new int[agents + 1];
+        int size = 0;
+        for (int agent = 0; agent < agents; agent++) {
+            Arrays.sort(unsorted, starts[agent], starts[agent + 1]);
+            for (int i = starts[agent]; i < starts[agent + 1]; i++) {
+                if (i == starts[agent] || unsorted[i] != unsorted[i - 1]) unsorted[size++] = unsorted[i];
+            }
+            offsets[agent + 1] = size;
+        }
+        neighbours = Arrays.copyOf(unsorted, size);
+
+        checksum = (Arrays.hashCode(offsets) & 0xFFFFFFFFL) << 32 | (Arrays.hashCode(neighbours) & 0xFFFFFFFFL);
+
+        // The components are labelled by a breadth first search from each Agent not yet reached, in order of ID.
+        components = new int[agents];
+        Arrays.fill(components, -1);
+        int[] queue = new int[agents];
+        int count = 0;
+        for (int agent = 0; agent < agents; agent++) {
+            if (components[agent] >= 0) continue;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = agent;
+            components[agent] = count;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                    int neighbour = neighbours[i] - 1;
+                    if (components[neighbour] < 0) {
+                        components[neighbour] = count;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            count++;
+        }
+        componentCount = count;
+    }
+
+    /**
+     * @param source         {@link String} naming a generated network, "grid", "small-world:&lt;neighbours&gt;:&lt;rewiring
+     *                       probability&gt;" or "feeder:&lt;branching&gt;", or otherwise the path of an edge list file.
+     * @param populationSize {@link Integer} value representing the size of the {@link Agent} population.
+     * @param topologySeed   {@link Long} value that a random network is generated from.
+     * @return The network described by the source.
+     * @throws IOException              If the edge list can't be read.
+     * @throws IllegalArgumentException If the source names a generated network with invalid parameters.
+     */
+    static @NotNull Topology of(@NotNull String source, int populationSize, long topologySeed) throws IOException {
+        String[] fields = source.split(":");
+        try {
+            switch (fields[0]) {
+                case GRID -> {
+                    if (fields.length == 1) return grid(source, populationSize);
+                }
+                case SMALL_WORLD -> {
+                    if (fields.length == 3) return smallWorld(source, populationSize,
+                            Integer.parseInt(fields[1]), Double.parseDouble(fields[2]), topologySeed);
+                }
+                case FEEDER -> {
+                    if (fields.length == 2) return feeder(source, populationSize, Integer.parseInt(fields[1]));
+                }
+                default -> {
+                    return load(source, populationSize);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in topology '" + source + "': " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException("Unknown topology '" + source + "', expected '" + GRID + "', '"
+                + SMALL_WORLD + ":<neighbours>:<rewiring probability>', '" + FEEDER + ":<branching>' or an edge list.");
+    }
+
+    /**
+     * Reads a network from a file with one edge per line, given by the IDs of the two {@link Agent}s that it joins
+     * separated by whitespace or a comma. Any further fields on a line, such as a weight, are ignored, as are blank
+     * lines and lines starting with '#'.
+     */
+    private static @NotNull Topology load(String edgeListFile, int populationSize) throws IOException {
+        EdgeList edges = new EdgeList();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(edgeListFile))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+                String[] fields = trimmed.split("[\\s,]+");
+                try {
+                    if (fields.length < 2) throw new NumberFormatException("an edge needs two agents");
+                    int from = Integer.parseInt(fields[0]);
+                    int to = Integer.parseInt(fields[1]);
+                    if (from < 1 || from > populationSize || to < 1 || to > populationSize) {
+                        throw new IllegalArgumentException("Line " + lineNumber + " of " + edgeListFile
+                                + " joins an agent outside of a population of " + populationSize + ".");
+                    }
+                    edges.add(from, to);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + " of " + edgeListFile + " is not an edge: "
+                            + e.getMessage(), e);
+                }
+            }
+        }
+        return new Topology(edgeListFile, 0, populationSize, edges);
+    }
+
+    /**
+     * A street grid, where the {@link Agent}s are laid out in rows as close to square as possible and each is joined
+     * to the {@link Agent}s beside, above and below it.
+     */
+    private static @NotNull Topology grid(String source, int populationSize) {
+        int columns = (int) Math.ceil(Math.sqrt(populationSize));
+        EdgeList edges = new EdgeList();
+        for (int agent = 1; agent <= populationSize; agent++) {
+            if (agent % columns != 0 && agent < populationSize) edges.add(agent, agent + 1);
+            if (agent + columns <= populationSize) edges.add(agent, agent + columns);
+        }
+        return new Topology(source, 0, populationSize, edges);
+    }
+
+    /**
+     * A Watts–Strogatz small world, where the {@link Agent}s start in a ring joined to their nearest neighbours and
+     * each edge is then rewired to a random {@link Agent} with the given probability.
+     */
+    private static @NotNull Topology smallWorld(
+            String source,
+            int populationSize,
+            int ringNeighbours,
+            double rewiringProbability,
+            long topologySeed
+    ) {
+        if (ringNeighbours < 2 || ringNeighbours % 2 != 0 || ringNeighbours >= populationSize
+                || rewiringProbability < 0 || rewiringProbability > 1) {
+            throw new IllegalArgumentException("A small world needs an even number of neighbours that is less than "
+                    + "the population, and a rewiring probability between 0 and 1.");
+        }
+        CounterBasedRandom random = new CounterBasedRandom(topologySeed);
+        random.jump(0, 0, 0, CounterBasedRandom.TOPOLOGY, 0);
+
+        // Edges are keyed by their ends, lowest first, so that rewiring doesn't duplicate an edge.
+        HashSet<Long> joined = new HashSet<>();
+        EdgeList edges = new EdgeList();
+        for (int step = 1; step <= ringNeighbours / 2; step++) {
+            for (int agent = 1; agent <= populationSize; agent++) {
+                int neighbour = (agent - 1 + step) % populationSize + 1;
+                if (random.nextDouble() < rewiringProbability) {
+                    int rewired = random.nextInt(populationSize) + 1;
+                    if (rewired != agent && !joined.contains(edgeKey(agent, rewired))) neighbour = rewired;
+                }
+                if (joined.add(edgeKey(agent, neighbour))) edges.add(agent, neighbour);
+            }
+        }
+        return new Topology(source, topologySeed, populationSize, edges);
+    }
+
+    /**
+     * A radial distribution feeder, a tree in which each {@link Agent} is joined to the {@link Agent} upstream of it
+     * and to the given number of {@link Agent}s downstream, with the first {@link Agent} nearest the substation.
+     */
+    private static @NotNull Topology feeder(String source, int populationSize, int branching) {
+        if (branching < 1) throw new IllegalArgumentException("A feeder needs a branching of at least 1.");
+        EdgeList edges = new EdgeList();
+        for (int agent = 2; agent <= populationSize; agent++) {
+            edges.add((agent - 2) / branching + 1, agent);
+        }
+        return new Topology(source, 0, populationSize, edges);
+    }
+
+    private static long edgeKey(int from, int to) {
+        return ((long) Math.min(from, to) << 32) | Math.max(from, to);
+    }
+
+    /**
+     * @return {@link Integer} value representing the number of {@link Agent}s in the network.
+     */
+    int agents() {
+        return agents;
+    }
+
+    /**
+     * @return {@link Integer} value representing the number of edges in the network.
+     */
+    int edges() {
+        return neighbours.length / 2;
+    }
+
+    /**
+     * @param agentID {@link Integer} value identifying the {@link Agent}.
+     * @return {@link Integer} value representing the number of {@link Agent}s that the {@link Agent} shares an edge with.
+     */
+    int degree(int agentID) {
+        return offsets[agentID] - offsets[agentID - 1];
+    }
+
+    /**
+     * @param agentID {@link Integer} value identifying the {@link Agent}.
+     * @param index   {@link Integer} value between 0 and the {@link Agent}'s degree.
+     * @return {@link Integer} value identifying the {@link Agent}'s neighbour at the index, in ascending order of ID.
+     */
+    int neighbour(int agentID, int index) {
+        return neighbours[offsets[agentID - 1] + index];
+    }
+
+    /**
+     * @return {@link Integer} value representing the number of connected components of the network.
+     */
+    int components() {
+        return componentCount;
+    }
+
+    /**
+     * @param agentID {@link Integer} value identifying the {@link Agent}.
+     * @return {@link Integer} value between 0 and the number of components, identifying the connected component that
+     * the {@link Agent} belongs to.
+     */
+    int component(int agentID) {
+        return components[agentID - 1];
+    }
+
+    /**
+     * @return {@link String} describing where the network came from, as given to {@link #of(String, int, long)}.
+     */
+    String source() {
+        return source;
+    }
+
+    /**
+     * @return {@link Long} value that the network was generated from, 0 if it isn't random.
+     */
+    long seed() {
+        return topologySeed;
+    }
+
+    /**
+     * @return A description of the network that identifies its edges, regardless of where an edge list is stored.
+     */
+    @Override
+    public String toString() {
+        return "Topology[seed=" + topologySeed + ", agents=" + agents + ", edges=" + edges()
+                + ", checksum=" + Long.toHexString(checksum) + "]";
+    }
+
+    /**
+     * The edges of a network as they are read or generated, held as consecutive pairs of {@link Agent} IDs.
+     */
+    private static final class EdgeList {
+        private int[] ends = new int[64];
+        private int size;
+
+        private void add(int from, int to) {
+            if (size + 2 > ends.length) ends = Arrays.copyOf(ends, ends.length * 2);
+            ends[size++] = from;
+            ends[size++] = to;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package resource_exchange_arena;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+class TradingCycles {
+    // The state of each Agent while the cycles are searched for.
+    private static final byte WAITING = 0;
+    private static final byte SEARCHING = 1;
+    private static final byte DONE = 2;
+
+    // The distinct time slots that each Agent wants and could give away.
+    private final TimeSlotIndex index;
+
+    // The Agents that could give away each time slot, those of time slot t being held from holders[holderOffsets[t]]
+    // up to, but not including, holders[holderOffsets[t + 1]]. The holders only grow if more time slots are given away
+    // than before.
+    private final int[] holderOffsets;
+    private int[] holders;
+
+    // Each Agent's place in its list of potential partners, the partner it currently points to and the time slot it
+    // would receive from them.
+    private final byte[] state;
+    private final int[] wantedCursor;
+    private final int[] partnerCursor;
+    private final int[] partnerStart;
+    private final int[] partner;
+    private final int[] receivedTimeSlot;
+
+    // The Agents currently being followed from partner to partner, and each Agent's position on the path.
+    private final int[] path;
+    private final int[] pathPosition;
+
+    /**
+     * A multilateral phase of an {@link Exchange} round, in which {@link Agent}s trade around cycles rather than only
+     * in pairs. Each {@link Agent} that wants a time slot it hasn't been allocated points to an {@link Agent} that could
+     * give it away, and every cycle of pointers is traded around, each {@link Agent} receiving the time slot it wants
+     * and giving away one that it doesn't need. An {@link Agent} holding A and wanting B, another holding B and wanting
+     * C, and a third holding C and wanting A all trade at once, where no pair of them could have traded alone.
+     * <p>
+     * Every {@link Agent} in a cycle improves its satisfaction, so the cycles are trades that both selfish and social
+     * {@link Agent}s accept. The cycles are found as in top trading cycles; the pointers are followed from {@link Agent}
+     * to {@link Agent} until the path returns to itself, and an {@link Agent} that has no one left to point to is
+     * dropped and the {@link Agent} before it points elsewhere. Each {@link Agent} only moves forward through its
+     * potential partners, so a phase costs in proportion to the potential partners considered rather than to the
+     * square of the population.
+     *
+     * @param populationSize  {@link Integer} value representing the size of the initial {@link Agent} population.
+     * @param uniqueTimeSlots {@link Integer} value representing the number of unique time slots available in the simulation.
+     * @param slotsPerAgent   {@link Integer} value representing the number of time slots each {@link Agent} requires.
+     */
+    TradingCycles(int populationSize, int uniqueTimeSlots, int slotsPerAgent) {
+        index = new TimeSlotIndex(populationSize, uniqueTimeSlots, slotsPerAgent, true);
+        holderOffsets = new int[index.timeSlotValues + 1];
+        holders = new int[0];
+        state = new byte[populationSize];
+        wantedCursor = new int[populationSize];
+        partnerCursor = new int[populationSize];
+        partnerStart = new int[populationSize];
+        partner = new int[populationSize];
+        receivedTimeSlot = new int[populationSize];
+        path = new int[populationSize];
+        pathPosition = new int[populationSize];
+    }
+
+    /**
+     * Finds and trades around every cycle that the {@link Agent}s can form. Each {@link Agent} trades in at most one
+     * cycle of a phase.
+     *
+     * @param run           {@link Integer} value identifying the current simulation run.
+     * @param day           {@link Integer} value representing the current {@link Day} being simulated.
+     * @param exchange      {@link Integer} value representing the current exchange being simulated.
+     * @param agents        {@link ArrayList} of all the {@link Agent}s that exist in the current simulation.
+     * @param topology      The network that limits which {@link Agent}s can trade with each other, or {@code null}
+     *                      for every {@link Agent} to trade with any other.
+     * @param exchangeTrace Receives each cycle as the chain of exchanges that passes the first {@link Agent}'s time slot
+     *                      around it, or {@code null} if the round isn't traced.
+     * @return {@link Integer} value representing the number of exchanges made, where a cycle of k {@link Agent}s counts
+     * as the k - 1 exchanges that it is traced as.
+     * @throws IOException On output error.
+     */
+    int trade(
+            int run,
+            int day,
+            int exchange,
+            @NotNull ArrayList<Agent> agents,
+            Topology topology,
+            ExchangeTrace exchangeTrace
+    ) throws IOException {
+        Random random = ResourceExchangeArena.random();
+        CounterBasedRandom.jump(random, run, day, exchange, CounterBasedRandom.CYCLES, 0);
+
+        indexTimeSlots(agents);
+
+        int exchanges = 0;
+        Collections.shuffle(agents, random);
+        for (Agent first : agents) {
+            int start = first.agentID - 1;
+            if (state[start] != WAITING) continue;
+
+            // Follow each Agent to the partner it points to until the path returns to itself.
+            int length = 0;
+            path[length] = start;
+            pathPosition[start] = length++;
+            state[start] = SEARCHING;
+            while (length > 0) {
+                int current = path[length - 1];
+                int next = nextPartner(current, topology, random);
+                if (next < 0) {
+                    // No one left can give the Agent a time slot it wants.
+                    state[current] = DONE;
+                    length--;
+                } else if (state[next] == SEARCHING) {
+                    int cycleStart = pathPosition[next];
+                    exchanges += tradeAround(run, day, exchange, cycleStart, length, exchangeTrace);
+                    length = cycleStart;
+                } else {
+                    path[length] = next;
+                    pathPosition[next] = length++;
+                    state[next] = SEARCHING;
+                }
+            }
+        }
+        return exchanges;
+    }
+
+    /**
+     * Records the time slots that each {@link Agent} wants and could give away, and which {@link Agent}s could give
+     * away each time slot. An {@link Agent} that wants nothing, or has nothing to give, can't be part of a cycle.
+     */
+    private void indexTimeSlots(@NotNull ArrayList<Agent> agents) {
+        for (Agent a : agents) {
+            int id = index.index(a);
+            state[id] = index.wantedCount[id] > 0 && index.unwantedCount[id] > 0 ? WAITING : DONE;
+            wantedCursor[id] = 0;
+            partnerCursor[id] = -1;
+            partner[id] = -1;
+        }
+        holders = index.group(agents, index.unwanted, index.unwantedCount, id -> state[id] == WAITING, holderOffsets,
+                holders);
+    }
+
+    /**
+     * Moves an {@link Agent} on to its next potential partner that hasn't yet traded or been dropped, unless the
+     * partner it points to still can. The {@link Agent}'s potential partners are taken from a random starting point, so
+     * that no {@link Agent} is always pointed to first.
+     *
+     * @return The index of the partner, or -1 if the {@link Agent} has no one left to point to.
+     */
+    private int nextPartner(int id, Topology topology, Random random) {
+        if (partner[id] >= 0 && state[partner[id]] != DONE) return partner[id];
+
+        if (topology != null) {
+            // On a network the potential partners are the neighbours holding a time slot that the Agent wants.
+            int degree = topology.degree(id + 1);
+            if (partnerCursor[id] < 0) {
+                partnerStart[id] = degree > 0 ? random.nextInt(degree) : 0;
+                partnerCursor[id] = 0;
+            }
+            while (partnerCursor[id] < degree) {
+                int neighbour = topology.neighbour(id + 1, (partnerStart[id] + partnerCursor[id]) % degree) - 1;
+                partnerCursor[id]++;
+                if (state[neighbour] == DONE) continue;
+                int timeSlot = firstShared(index.wanted[id], index.wantedCount[id], index.unwanted[neighbour],
+                        index.unwantedCount[neighbour]);
+                if (timeSlot >= 0) {
+                    partner[id] = neighbour;
+                    receivedTimeSlot[id] = timeSlot;
+                    return neighbour;
+                }
+            }
+            return -1;
+        }
+
+        // Otherwise they are the holders of each wanted time slot in turn.
+        while (wantedCursor[id] < index.wantedCount[id]) {
+            int timeSlot = index.wanted[id][wantedCursor[id]];
+            int from = holderOffsets[timeSlot];
+            int count = holderOffsets[timeSlot + 1] - from;
+            if (partnerCursor[id] < 0) {
+                partnerStart[id] = count > 0 ? random.nextInt(count) : 0;
+                partnerCursor[id] = 0;
+            }
+            while (partnerCursor[id] < count) {
+                int holder = holders[from + (partnerStart[id] + partnerCursor[id]) % count];
+                partnerCursor[id]++;
+                if (state[holder] != DONE) {
+                    partner[id] = holder;
+                    receivedTimeSlot[id] = timeSlot;
+                    return holder;
+                }
+            }
+            wantedCursor[id]++;
+            partnerCursor[id] = -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Trades around the cycle held on the path between the given positions, where each {@link Agent} receives the
+     * time slot it wants from the {@link Agent} after it and gives the {@link Agent} before it the time slot that it
+     * wants.
+     *
+     * @return {@link Integer} value representing the number of exchanges that the cycle is traced as.
+     */
+    private int tradeAround(int run, int day, int exchange, int from, int to, ExchangeTrace exchangeTrace)
+            throws IOException {
+        int length = to - from;
+        // The time slot that the first Agent gives away, passed along the chain of exchanges that it is traced as.
+        int passedTimeSlot = receivedTimeSlot[path[to - 1]];
+        for (int position = from; position < to; position++) {
+            int id = path[position];
+            int previous = path[position == from ? to - 1 : position - 1];
+            int next = path[position + 1 == to ? from : position + 1];
+            Agent a = index.agentsByID[id];
+            boolean socialCapitalGain = a.completeCycleExchange(receivedTimeSlot[id], receivedTimeSlot[previous],
+                    next + 1);
+            if (exchangeTrace != null && position + 1 < to) {
+                exchangeTrace.exchange(run, day, exchange, next + 1, id + 1, receivedTimeSlot[id], passedTimeSlot,
+                        socialCapitalGain, false);
+            }
+            state[id] = DONE;
+        }
+        return length - 1;
+    }
+
+    /**
+     * @return The first time slot of the wanted time slots that is among the time slots held, or -1 if there is none.
+     */
+    private static int firstShared(int @NotNull [] wantedTimeSlots, int wantedCount, int @NotNull [] heldTimeSlots,
+                                   int heldCount) {
+        for (int i = 0; i < wantedCount; i++) {
+            for (int j = 0; j < heldCount; j++) {
+                if (heldTimeSlots[j] == wantedTimeSlots[i]) return wantedTimeSlots[i];
+            }
+        }
+        return -1;
+    }
+}
@@ -4,6 +4,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 
 /**
  * @author refracc
@@ -25,4 +26,70 @@ public final class Utilities {
         for (String s : data)
             writer.append(s);
     }
-}
\ No newline at end of file
+
+    /**
+     * Finds the time slots of one list that are left once each time slot of another has been matched against them,
+     * as {@link Agent#publishUnlockedTimeSlots()} does, without creating any new lists.
+     *
+     * @param timeSlots The time slots that may be left.
+     * @param toAvoid   The time slots that are each matched against a single time slot of the first list.
+     * @param into      Receives the distinct time slots that are left.
+     * @param matched   Reused to mark the time slots to avoid that have been matched, at least as long as them.
+     * @return {@link Integer} value representing the number of distinct time slots left.
+     */
+    static int distinctDifference(
+            @NotNull ArrayList<Integer> timeSlots,
+            @NotNull ArrayList<Integer> toAvoid,
+            int @NotNull [] into,
+            boolean @NotNull [] matched
+    ) {
+        return difference(timeSlots, toAvoid, into, matched, true);
+    }
+
+    /**
+     * Finds the time slots of one list that are left once each time slot of another has been matched against them,
+     * keeping a time slot as many times as it is left, without creating any new lists.
+     *
+     * @param timeSlots The time slots that may be left.
+     * @param toAvoid   The time slots that are each matched against a single time slot of the first list.
+     * @param into      Receives the time slots that are left, at least as long as the first list.
+     * @param matched   Reused to mark the time slots to avoid that have been matched, at least as long as them.
+     * @return {@link Integer} value representing the number of time slots left.
+     */
+    static int difference(
+            @NotNull ArrayList<Integer> timeSlots,
+            @NotNull ArrayList<Integer> toAvoid,
+            int @NotNull [] into,
+            boolean @NotNull [] matched
+    ) {
+        return difference(timeSlots, toAvoid, into, matched, false);
+    }
+
+    private static int difference(
+            @NotNull ArrayList<Integer> timeSlots,
+            @NotNull ArrayList<Integer> toAvoid,
+            int @NotNull [] into,
+            boolean @NotNull [] matched,
+            boolean distinct
+    ) {
+        for (int j = 0; j < toAvoid.size(); j++) matched[j] = false;
+        int count = 0;
+        timeSlots:
+        for (int i = 0; i < timeSlots.size(); i++) {
+            int timeSlot = timeSlots.get(i);
+            for (int j = 0; j < toAvoid.size(); j++) {
+                if (!matched[j] && toAvoid.get(j) == timeSlot) {
+                    matched[j] = true;
+                    continue timeSlots;
+                }
+            }
+            if (distinct) {
+                for (int k = 0; k < count; k++) {
+                    if (into[k] == timeSlot) continue timeSlots;
+                }
+            }
+            into[count++] = timeSlot;
+        }
+        return count;
+    }
+}
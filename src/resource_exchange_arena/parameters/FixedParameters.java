@@ -10,7 +10,4 @@ public abstract class FixedParameters {
     public static final int SELFISH = 1;
     public static final int SOCIAL = 2;
     public static final int[] ALL_AGENT_TYPES = {SELFISH, SOCIAL};
-
-    // Constant parameters for all simulations, this version of the system is not designed for these to be modified.
-    public static final int UNIQUE_TIME_SLOTS = 24;
 }
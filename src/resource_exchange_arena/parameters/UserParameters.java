@@ -2,38 +2,41 @@ package resource_exchange_arena.parameters;
 
 public abstract class UserParameters extends FixedParameters {
     // Conda env. location.
-    public static final String PYTHON_EXE =
+    public static String PYTHON_EXE =
             "/home/brooks/anaconda3/envs/rea/bin/python3";
     // Example: "1599767866160L"
     // Alternatively if no specific seed is required...
     // Example: "System.currentTimeMillis()"
     // Location of data visualiser python scripts on your machine.
-    public static final String PYTHON_PATH =
+    public static String PYTHON_PATH =
             "/home/brooks/code/ResourceExchangeArena/src/data_analysis/";
     // Alter the population size.
-    public static final int POPULATION_SIZE = 96;
+    public static int POPULATION_SIZE = 96;
     // Alter the number of timeslots that each agent requests each day.
-    public static final int SLOTS_PER_AGENT = 4;
+    public static int SLOTS_PER_AGENT = 4;
+    // Alter the number of time slots that each day is divided into, e.g. 24 for hourly, 96 for 15 minute or 1440 for
+    // 1 minute time slots. The demand and availability curves below are bucketed into these whatever their own length.
+    public static int UNIQUE_TIME_SLOTS = 24;
     // Example: "/home/nathan/IdeaProjects/ResourceExchangeArena/src/data_analysis/"
     // Alter the length of time to be simulated once the simulation has reached a steady population state.
-    public static final int DAYS = 100;
+    public static int DAYS = 100;
     // Increase the number of simulation runs for more consistent results.
-    public static final int SIMULATION_RUNS = 100;
+    public static int SIMULATION_RUNS = 100;
     // Arrays of demand used by the agents, when multiple curves are used the agents are split equally between the curves.
-    // The arrays should have 1 value for each 10 minute segment of the day.
-    public static final double[][] DEMAND_CURVES = {{1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0}};
+    // The arrays should have 1 value for each 10 minute segment of the day, though any number of values can be bucketed.
+    public static double[][] DEMAND_CURVES = {{1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0}};
     // Example: "500"
     // The proportion of energy available for each hour of the of day.
-    // The arrays should have 1 value for each 30 minute segment of the day.
+    // The arrays should have 1 value for each 30 minute segment of the day, though any number of values can be bucketed.
     public static final int[] AVAILABILITY_CURVE = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
     // Example: "50"
     // Percentage of agents that will evolve their strategy per day.
-    public static final int[] PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY = {100};
+    public static int[] PERCENTAGE_OF_AGENTS_TO_EVOLVE_ARRAY = {100};
     // Ratio of starting agent types, i.e. {SELFISH, SELFISH, SOCIAL} would cause the simulation to start with two
     // selfish agents for each social agent.
     // Note that both types of agents need to exist, for testing with a single agent type set 'SINGLE_AGENT_TYPE'
     // to 'true' and set the 'SELECTED_SINGLE_AGENT_TYPE' as required.
-    public static final int[][] AGENT_TYPES_ARRAY = {{SELFISH, SOCIAL}};
+    public static int[][] AGENT_TYPES_ARRAY = {{SELFISH, SOCIAL}};
     /**
      * Contains all system parameters that can be changed by the user in order to experiment with various scenarios.
      */
@@ -41,23 +44,11 @@ public abstract class UserParameters extends FixedParameters {
     // The seed can be set to replicate previous simulations.
     public static long seed = System.currentTimeMillis();
     // Name of the folder that will contain the set of simulations currently being ran.
-    public static final String FOLDER_NAME = "/home/brooks/code/ResourceExchangeArena/results/Set_" + seed;
+    public static String FOLDER_NAME = "/home/brooks/code/ResourceExchangeArena/results/Set_" + seed;
 
-    //Demand curves to experiment with
-    //Base
-    //1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0,1.0
+    // Demand curves to experiment with, such as the Base, All energy uses, Washing/Drying/Dishwasher and WDD household
+    // profiles, are held in DemandCurves and can be used here, e.g. "{DemandCurves.ALL_ENERGY_USES}".
 
-    //All energy uses
-    //375.4,374.6,350.2,334.5,305.0,285.5,277.2,275.1,273.1,268.1,264.4,262.4,255.3,251.0,244.3,242.1,237.1,236.4,230.3,230.7,223.6,222.5,232.9,241.9,251.2,250.6,239.9,231.6,228.2,220.0,224.8,231.1,231.8,232.1,248.1,253.3,262.5,276.8,283.1,289.0,320.0,361.1,394.1,415.2,432.8,449.4,459.5,480.8,496.4,498.9,506.7,497.4,491.4,497.0,494.0,494.8,495.1,498.0,490.6,488.5,482.0,485.3,480.0,476.2,464.6,468.2,468.4,473.6,482.2,471.9,471.2,476.5,490.3,498.8,490.7,496.9,496.1,490.4,474.6,475.4,472.7,464.2,462.4,458.0,449.8,447.0,440.9,445.5,451.3,455.5,463.9,462.1,470.7,472.6,483.3,489.9,502.5,528.9,543.1,568.6,593.5,610.7,643.0,655.4,664.9,683.1,696.4,711.7,716.5,725.5,712.5,707.1,714.1,709.9,713.5,720.1,705.0,709.0,696.0,701.3,691.9,689.3,681.0,675.8,664.7,656.6,652.1,646.8,631.8,622.3,606.0,594.2,579.6,571.0,553.3,538.4,538.1,518.4,500.0,473.9,445.3,429.2,423.7,406.1
-
-    //Washing/Drying/Dishwasher
-    //31.6,32.9,27.7,24.6,24.0,19.5,16.4,14.6,15.2,11.5,9.3,8.6,7.4,6.4,7.4,10.4,9.9,7.4,6.7,10.1,6.2,7.8,7.0,7.6,5.5,6.7,5.2,4.7,4.9,4.2,5.3,4.3,3.8,4.7,5.5,6.0,7.0,5.4,6.7,13.2,17.9,21.2,23.8,28.7,28.8,36.4,41.3,49.0,55.0,58.1,59.5,66.2,72.7,78.3,79.6,78.7,81.4,82.2,84.0,86.0,82.9,87.4,83.1,88.1,85.1,83.1,82.1,82.9,81.2,81.9,81.2,79.2,77.8,79.1,77.6,76.7,73.8,71.9,72.6,73.0,70.4,69.9,71.7,67.6,65.7,68.2,63.8,68.0,67.1,68.5,68.3,67.7,70.1,67.7,68.2,65.2,64.1,65.8,68.4,64.4,61.0,57.4,64.2,66.1,57.3,55.9,55.7,58.9,61.6,64.4,63.3,61.3,58.4,62.8,70.3,74.3,75.2,76.7,71.9,73.5,73.9,69.3,67.9,68.2,69.2,65.5,61.1,63.3,60.3,53.6,51.3,44.4,45.1,42.3,44.1,44.9,46.3,42.1,41.8,39.7,36.3,37.1,35.7,32.1
-
-    //WDD Single Pensioners
-    //5.2,2.6,0.7,1.5,3.4,2.6,0.4,0.2,0.3,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.1,0.3,0.2,0.2,0.1,0.2,0.3,0.3,0.3,0.4,0.6,1.0,1.0,3.4,7.9,4.0,5.8,14.3,21.6,20.1,24.9,26.1,18.0,18.8,13.2,23.4,20.7,13.3,19.0,15.5,21.7,39.4,42.4,32.4,22.7,27.9,28.5,42.4,36.6,40.6,45.2,49.8,52.3,54.7,37.1,38.8,23.6,29.1,30.8,27.5,18.1,18.8,21.2,18.6,29.9,21.6,17.1,18.0,17.1,16.6,21.3,17.3,9.7,11.1,8.7,10.8,19.0,23.1,20.1,19.8,15.2,12.5,14.9,24.2,24.7,17.7,13.7,8.8,8.0,8.2,4.7,6.4,7.8,7.7,8.4,7.8,8.2,12.6,12.7,10.2,12.5,26.7,21.0,13.7,7.1,8.1,5.3,19.3,25.8,11.0,7.4,6.2,11.7,9.5,7.6,2.6,4.4,10.0,12.2,7.5,4.8,2.3,6.9,10.8,13.1,7.1,2.8,8.3,7.4,6.7,10.6,4.8
-
-    //WDD Single Non-Pen
-    //8.1,10.2,7.8,7.0,13.3,14.9,12.4,11.0,10.7,8.8,6.7,7.8,10.0,8.2,20.3,36.0,29.9,26.8,21.6,46.0,23.7,19.5,13.7,7.5,6.1,5.6,7.3,8.0,5.3,4.0,3.4,4.5,2.8,6.6,8.0,3.2,8.1,7.2,3.7,5.2,7.9,18.0,16.8,22.4,19.3,18.3,17.2,13.8,21.3,22.9,19.0,32.4,31.6,25.7,23.0,22.6,29.9,30.4,27.3,33.7,27.2,29.0,28.1,31.7,35.5,27.9,21.1,22.3,24.0,21.4,16.7,14.4,21.1,20.3,21.6,22.4,16.7,20.3,12.1,8.6,19.7,24.3,20.3,17.4,13.2,21.3,21.6,16.7,14.4,18.7,20.9,16.6,10.0,7.2,7.3,9.1,10.8,14.3,19.2,18.4,25.8,16.3,14.0,18.2,12.7,17.2,20.6,17.8,24.2,30.3,32.2,24.4,15.6,15.9,17.5,19.5,29.5,24.6,16.3,26.0,20.8,19.2,21.1,27.6,21.5,27.0,24.9,37.4,25.7,29.0,21.1,14.1,21.0,17.6,21.1,15.0,9.7,6.7,9.3,6.8,11.0,11.2,11.2,6.9
     // Specify whether only a single agent type should exist in the simulation, used for establishing baseline results.
     public static boolean SINGLE_AGENT_TYPE = false;
     // Specify the single agent type to be simulated when 'SINGLE_AGENT_TYPE = true', e.g. 'SELFISH' or 'SOCIAL'.
@@ -75,4 +66,131 @@ public abstract class UserParameters extends FixedParameters {
     // 2 = The above combinations will be ran both with and without social capital enabled and with only selfish agents
     //     and with only social agents so that a baseline comparison can be made between the agents types.
     public static int COMPARISON_LEVEL = 0;
+    // ################################################################################################################
+    // Specify whether completed environments should be cached, so that an environment that has already been simulated
+    // with the same parameters and seed is restored from the cache instead of being simulated again.
+    public static boolean USE_RESULT_CACHE = false;
+    // Location of the result cache, which can be shared between sets of simulations, or "" for a 'cache' folder beside
+    // the sets, in the folder that holds 'FOLDER_NAME'.
+    public static String RESULT_CACHE_FOLDER = "";
+    // ################################################################################################################
+    // Specify whether random numbers should come from a counter based generator, where each run, day, round, phase and
+    // agent has its own stream that can be reproduced on its own. The legacy generator is a single sequential stream
+    // and must be used to reproduce results produced before the counter based generator existed.
+    public static boolean COUNTER_BASED_RANDOM = false;
+    // ################################################################################################################
+    // Specify whether snapshots of each environment should be taken as it runs, so that a set of simulations that is
+    // interrupted can be resumed by running it again with the same seed. Environments that had already finished are
+    // skipped and the interrupted environment continues from its last snapshot, giving the same results as if the set
+    // had never been interrupted.
+    public static boolean USE_CHECKPOINTS = false;
+    // The number of days between snapshots, a snapshot is also taken at the end of every run.
+    public static final int CHECKPOINT_INTERVAL_DAYS = 10;
+    // ################################################################################################################
+    // Specify whether every advert, request, decision and exchange should be recorded in a binary log in each
+    // environment's data folder, which can be queried with 'ExchangeEventReader' to see why individual agents did as
+    // they did. The log grows by roughly 16 bytes per advertised time slot and exchange request.
+    public static boolean TRACE_EXCHANGES = false;
+    // ################################################################################################################
+    // Specify whether the time spent in each phase of the simulations should be measured and written to each
+    // environment's simulationData.txt. Flight Recorder events are also emitted for each run, day and round, which can
+    // be recorded by starting the JVM with '-XX:StartFlightRecording'.
+    public static boolean INSTRUMENT = false;
+    // ################################################################################################################
+    // Specify a local port on which the progress of the simulations is served while they run, 0 to not serve it. The
+    // throughput, heap use, estimated time remaining and the split of recent takeovers can then be followed with a
+    // browser or 'curl http://localhost:<port>/'.
+    public static final int PROGRESS_PORT = 0;
+    // ################################################################################################################
+    // Specify the number of worker processes that the environments of the parameter sweep are shared between, 0 to
+    // simulate them all in this process. Each worker is a separate JVM on this machine with its own heap, and takes one
+    // environment at a time from this process over a local socket. An environment is handed to another worker if its
+    // worker dies. Workers need 'COUNTER_BASED_RANDOM' and a fixed number of runs and environments, so that each
+    // environment begins from the same seed as it would in a single process.
+    public static final int WORKERS = 0;
+    // The maximum heap of each worker, e.g. "8g", or "" for the JVM's default.
+    public static final String WORKER_MAX_HEAP = "";
+    // ################################################################################################################
+    // Specify whether each day's requested and available time slots should be replayed from a bank of pre-generated
+    // scenarios, so that every environment and every comparison version sees the same demand and availability. This
+    // reduces the number of runs needed to tell environments apart.
+    public static boolean USE_SCENARIO_BANK = false;
+    // The number of days of each run that are pre-generated for each of the 'SIMULATION_RUNS', scenarios beyond these
+    // are generated when needed.
+    public static final int SCENARIO_BANK_DAYS = 500;
+    // ################################################################################################################
+    // Specify a library of metered household demand profiles that each agent is given a household of its own from, or
+    // "" for the agents to share the 'DEMAND_CURVES' above. A library is made from a CSV with one household per line
+    // with 'java resource_exchange_arena.ProfileLibrary <profiles csv> <library file>'. Its profiles may have any number
+    // of values per day, which are bucketed into the time slots as the curves above are. The library is memory mapped,
+    // so only the households in use are read, and it can't be combined with the scenario bank.
+    public static final String PROFILE_LIBRARY = "";
+    // The number of households that are kept bucketed into time slots, with their sampling tables, on the heap. The
+    // least recently used households are dropped once there are more than this.
+    public static final int PROFILE_CACHE_SIZE = 4096;
+    // ################################################################################################################
+    // Specify the number of regional markets that each run's population is divided into, 1 for a single global market.
+    // Each region allocates and trades on its own thread, so the cost of a day grows with the square of a region's size
+    // rather than of the whole population, which allows populations of a million agents. Social learning still spans
+    // every region. A sharded market can't be combined with the scenario bank or with tracing exchanges.
+    public static final int SHARDS = 1;
+    // The number of days between exchange windows, in which a few agents from every region trade with each other, 0
+    // for no trading between regions.
+    public static final int SHARD_EXCHANGE_INTERVAL = 1;
+    // The number of agents that each region sends to an exchange window.
+    public static final int SHARD_WINDOW_AGENTS = 8;
+    // ################################################################################################################
+    // Specify the neighbourhood network that the agents live in, "" for every agent to trade with and learn from any
+    // other. An agent only sees the adverts of the agents it shares an edge with and only learns from those agents, so
+    // a round costs in proportion to the edges rather than to the square of the population. The network is either
+    // generated, "grid" for a street grid, "small-world:<neighbours>:<rewiring probability>" for a Watts-Strogatz small
+    // world or "feeder:<branching>" for a radial distribution feeder, or read from an edge list file with one pair of
+    // agent IDs, counted from 1, per line. A network can't be combined with a sharded market.
+    public static final String TOPOLOGY = "";
+    // ################################################################################################################
+    // Specify how agents find a partner for an exchange. With "board" each agent searches a shuffled board of every
+    // advert for a time slot it wants. With "order-book" each agent posts orders to give each time slot it doesn't need
+    // for each time slot it wants, and each request is matched with the best resting order, preferring an order that
+    // wants one of the requester's time slots in return, ranked by social capital and then by arrival. Matching costs a
+    // few binary searches of the book rather than a walk through every advert, so a round grows little faster than the
+    // population. An order book can't be combined with a network or with a sharded market. With "central-planner" no
+    // agent looks for a partner; a planner moves the time slots itself to reach the optimum allocation in one round,
+    // as a reference for the agents' own exchanges. A central planner can't be combined with a network, a sharded
+    // market or trading cycles.
+    public static String EXCHANGE_MECHANISM = "board";
+    // The most days that a run reallocated by a central planner lasts. Where the planner can satisfy every agent, no
+    // agent learns and neither strategy takes over, so such a run ends here and is recorded without a takeover.
+    public static final int PLANNER_MAX_DAYS = 50000;
+    // ################################################################################################################
+    // Specify whether agents also trade around cycles after each round's pairwise exchanges. An agent holding A and
+    // wanting B, another holding B and wanting C, and a third holding C and wanting A can't trade in pairs, but can all
+    // trade at once around a cycle. Only cycles in which every agent receives a time slot it wants for one it doesn't
+    // need are traded, as these are accepted by every type of agent. Cycles follow the network's edges, and can't be
+    // combined with a sharded market.
+    public static boolean TRADING_CYCLES = false;
+    // ################################################################################################################
+    // Specify whether the number of simulation runs should be chosen adaptively, in which case 'SIMULATION_RUNS' is
+    // ignored and batches of runs are made until the 95% confidence intervals below are narrower than the given widths.
+    public static boolean ADAPTIVE_RUNS = false;
+    // The number of runs made before the confidence intervals are checked again.
+    public static final int ADAPTIVE_RUN_BATCH_SIZE = 10;
+    // The most runs that will be made for a single environment, even if the intervals remain too wide.
+    public static final int MAX_SIMULATION_RUNS = 1000;
+    // Widest acceptable interval for the proportion of runs that end in a social takeover.
+    public static final double TAKEOVER_PROBABILITY_CI_WIDTH = 0.1;
+    // Widest acceptable interval for the average day on which a takeover happens.
+    public static final double TAKEOVER_DAY_CI_WIDTH = 10.0;
+    // Widest acceptable interval for the average satisfaction on the final day of each run.
+    public static final double FINAL_SATISFACTION_CI_WIDTH = 0.02;
+    // ################################################################################################################
+    // Specify whether the parameter sweep should be refined adaptively. The evolve percentages and starting ratios
+    // above form a coarse grid, and new environments are then added halfway between neighbouring environments whose
+    // probability of a social takeover differs the most.
+    public static boolean ADAPTIVE_SWEEP = false;
+    // The smallest gap, in percentage points, between neighbouring environments that will be bisected.
+    public static final int SWEEP_RESOLUTION = 5;
+    // Neighbouring environments whose takeover probabilities differ by less than this are not refined.
+    public static final double SWEEP_MIN_PROBABILITY_CHANGE = 0.1;
+    // The most environments that a single adaptive sweep will run, including the coarse grid.
+    public static final int SWEEP_MAX_ENVIRONMENTS = 50;
 }